@@ -139,6 +139,7 @@ import org.sonar.server.startup.LogServerId;
 import org.sonar.server.test.index.TestIndexer;
 import org.sonar.server.user.DefaultUserFinder;
 import org.sonar.server.user.DeprecatedUserFinder;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.util.OkHttpClientProvider;
@@ -326,6 +327,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       DefaultUserFinder.class,
       UserIndexer.class,
       UserIndex.class,
+      UserSessionCache.class, // used in PermissionTemplateService
 
       // permissions
       DefaultTemplatesResolverImpl.class,
@@ -87,4 +87,9 @@ abstract class AbstractDialect implements Dialect {
   public int getScrollSingleRowFetchSize() {
     return 1;
   }
+
+  @Override
+  public int getBatchUpdateSize() {
+    return 250;
+  }
 }
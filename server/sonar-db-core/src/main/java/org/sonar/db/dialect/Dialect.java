@@ -83,6 +83,13 @@ public interface Dialect {
    */
   int getScrollSingleRowFetchSize();
 
+  /**
+   * Number of rows sent at once by the batched updates of large data migrations.
+   *
+   * @since 6.4
+   */
+  int getBatchUpdateSize();
+
   /**
    * Indicates whether DB migration can be perform on the DB vendor implementation associated with the current dialect.
    *
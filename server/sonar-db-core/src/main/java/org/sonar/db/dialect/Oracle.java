@@ -45,6 +45,11 @@ public class Oracle extends AbstractDialect {
     return true;
   }
 
+  @Override
+  public int getBatchUpdateSize() {
+    return 1000;
+  }
+
   @Override
   public List<String> getConnectionInitStatements() {
     return INIT_STATEMENTS;
@@ -52,6 +52,11 @@ public class H2Test {
     assertThat(dialect.getScrollDefaultFetchSize()).isEqualTo(200);
   }
 
+  @Test
+  public void testBatchUpdateSize() {
+    assertThat(dialect.getBatchUpdateSize()).isEqualTo(250);
+  }
+
   @Test
   public void h2_does_not_supportMigration() {
     assertThat(dialect.supportsMigration()).isFalse();
@@ -53,6 +53,11 @@ public class OracleTest {
     assertThat(underTest.getScrollSingleRowFetchSize()).isEqualTo(1);
   }
 
+  @Test
+  public void testBatchUpdateSize() {
+    assertThat(underTest.getBatchUpdateSize()).isEqualTo(1000);
+  }
+
   @Test
   public void oracle_does_supportMigration() {
     assertThat(underTest.supportsMigration()).isTrue();
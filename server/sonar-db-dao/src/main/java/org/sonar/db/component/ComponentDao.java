@@ -123,11 +123,27 @@ public class ComponentDao implements Dao {
   }
 
   public List<FilePathWithHashDto> selectEnabledDescendantFiles(DbSession session, String rootComponentUuid) {
-    return mapper(session).selectDescendantFiles(rootComponentUuid, Scopes.FILE, true);
+    return mapper(session).selectDescendantFiles(rootComponentUuid, Scopes.FILE, true, null);
+  }
+
+  /**
+   * Same as {@link #selectEnabledDescendantFiles(DbSession, String)}, restricted to the files whose source
+   * has been updated after the given date.
+   */
+  public List<FilePathWithHashDto> selectEnabledDescendantFilesUpdatedAfter(DbSession session, String rootComponentUuid, long updatedAfter) {
+    return mapper(session).selectDescendantFiles(rootComponentUuid, Scopes.FILE, true, updatedAfter);
   }
 
   public List<FilePathWithHashDto> selectEnabledFilesFromProject(DbSession session, String rootComponentUuid) {
-    return mapper(session).selectEnabledFilesFromProject(rootComponentUuid);
+    return mapper(session).selectEnabledFilesFromProject(rootComponentUuid, null);
+  }
+
+  /**
+   * Same as {@link #selectEnabledFilesFromProject(DbSession, String)}, restricted to the files whose source
+   * has been updated after the given date.
+   */
+  public List<FilePathWithHashDto> selectEnabledFilesFromProjectUpdatedAfter(DbSession session, String rootComponentUuid, long updatedAfter) {
+    return mapper(session).selectEnabledFilesFromProject(rootComponentUuid, updatedAfter);
   }
 
   public List<ComponentDto> selectByIds(DbSession session, Collection<Long> ids) {
@@ -190,6 +206,19 @@ public class ComponentDao implements Dao {
     return mapper(dbSession).selectDescendants(query, componentOpt.get().uuid(), query.getUuidPath(component));
   }
 
+  /**
+   * Same as {@link #selectDescendants(DbSession, ComponentTreeQuery)}, but only the fields required to sort and paginate
+   * big trees are loaded: uuid, name, path and qualifier. Other fields of the returned components are {@code null}.
+   */
+  public List<ComponentDto> selectDescendantsSortFields(DbSession dbSession, ComponentTreeQuery query) {
+    Optional<ComponentDto> componentOpt = selectByUuid(dbSession, query.getBaseUuid());
+    if (!componentOpt.isPresent()) {
+      return emptyList();
+    }
+    ComponentDto component = componentOpt.get();
+    return mapper(dbSession).selectDescendantsSortFields(query, component.uuid(), query.getUuidPath(component));
+  }
+
   public ComponentDto selectOrFailByKey(DbSession session, String key) {
     Optional<ComponentDto> component = selectByKey(session, key);
     if (!component.isPresent()) {
@@ -70,6 +70,8 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectDescendants(@Param("query") ComponentTreeQuery query, @Param("baseUuid") String baseUuid, @Param("baseUuidPath") String baseUuidPath);
 
+  List<ComponentDto> selectDescendantsSortFields(@Param("query") ComponentTreeQuery query, @Param("baseUuid") String baseUuid, @Param("baseUuidPath") String baseUuidPath);
+
   /**
    * Returns all enabled projects (Scope {@link org.sonar.api.resources.Scopes#PROJECT} and qualifier
    * {@link org.sonar.api.resources.Qualifiers#PROJECT}) no matter if they are ghost project, provisioned projects or
@@ -88,13 +90,13 @@ public interface ComponentMapper {
   /**
    * Return all files from a given project uuid and scope
    */
-  List<FilePathWithHashDto> selectEnabledFilesFromProject(@Param("projectUuid") String projectUuid);
+  List<FilePathWithHashDto> selectEnabledFilesFromProject(@Param("projectUuid") String projectUuid, @Nullable @Param("updatedAfter") Long updatedAfter);
 
   /**
    * Return all descendant files from a given module uuid and scope
    */
   List<FilePathWithHashDto> selectDescendantFiles(@Param("moduleUuid") String moduleUuid, @Param(value = "scope") String scope,
-    @Param(value = "excludeDisabled") boolean excludeDisabled);
+    @Param(value = "excludeDisabled") boolean excludeDisabled, @Nullable @Param("updatedAfter") Long updatedAfter);
 
   /**
    * Return uuids and project uuids from list of qualifiers
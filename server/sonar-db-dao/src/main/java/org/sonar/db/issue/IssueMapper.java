@@ -19,6 +19,7 @@
  */
 package org.sonar.db.issue;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
@@ -30,6 +31,11 @@ public interface IssueMapper {
 
   void selectNonClosedByComponentUuid(@Param("componentUuid") String componentUuid, ResultHandler resultHandler);
 
+  /**
+   * The number of component uuids must not exceed 1000.
+   */
+  void selectNonClosedByComponentUuids(@Param("componentUuids") Collection<String> componentUuids, ResultHandler resultHandler);
+
   Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(String projectUuid);
 
   List<IssueDto> selectByKeys(List<String> keys);
@@ -22,10 +22,13 @@ package org.sonar.db.notification;
 import java.util.Collections;
 import java.util.List;
 import org.apache.ibatis.session.SqlSession;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 
+import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
+
 public class NotificationQueueDao implements Dao {
 
   private final MyBatis mybatis;
@@ -51,9 +54,8 @@ public class NotificationQueueDao implements Dao {
     DbSession session = mybatis.openSession(true);
     NotificationQueueMapper mapper = session.getMapper(NotificationQueueMapper.class);
     try {
-      for (NotificationQueueDto dto : dtos) {
-        mapper.delete(dto.getId());
-      }
+      List<Long> ids = dtos.stream().map(NotificationQueueDto::getId).collect(Collectors.toList(dtos.size()));
+      executeLargeUpdates(ids, mapper::deleteByIds);
       session.commit();
     } finally {
       MyBatis.closeQuietly(session);
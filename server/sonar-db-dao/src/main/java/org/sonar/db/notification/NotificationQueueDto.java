@@ -21,20 +21,33 @@ package org.sonar.db.notification;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import org.apache.commons.io.IOUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.utils.SonarException;
 
 /**
+ * Column DATA contains the type and the fields of the notification:
+ * <pre>
+ *   magic number | type | number of fields | for each field: name, value
+ * </pre>
+ * Strings are stored as their length in bytes, -1 for null, followed by their UTF-8 bytes. Rows
+ * without the magic number contain Java-serialized notifications.
+ *
  * @since 3.7.1
  */
 public class NotificationQueueDto {
 
+  private static final byte[] MAGIC = {'S', 'Q', 'N', 1};
+
   private Long id;
   private byte[] data;
 
@@ -62,35 +75,83 @@ public class NotificationQueueDto {
   }
 
   public static NotificationQueueDto toNotificationQueueDto(Notification notification) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    try {
-      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-      objectOutputStream.writeObject(notification);
-      objectOutputStream.close();
-      return new NotificationQueueDto().setData(byteArrayOutputStream.toByteArray());
-
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.write(MAGIC);
+      writeString(output, notification.getType());
+      Map<String, String> fields = notification.getFieldValues();
+      output.writeInt(fields.size());
+      for (Map.Entry<String, String> field : fields.entrySet()) {
+        writeString(output, field.getKey());
+        writeString(output, field.getValue());
+      }
     } catch (IOException e) {
       throw new SonarException("Unable to write notification", e);
-
-    } finally {
-      IOUtils.closeQuietly(byteArrayOutputStream);
     }
+    return new NotificationQueueDto().setData(bytes.toByteArray());
   }
 
+  /**
+   * Notifications are read as instances of {@link Notification}, whatever the class of the
+   * notification which was queued, as only the type and the fields are stored.
+   */
   public Notification toNotification() throws IOException, ClassNotFoundException {
     if (this.data == null) {
       return null;
     }
-    ByteArrayInputStream byteArrayInputStream = null;
-    try {
-      byteArrayInputStream = new ByteArrayInputStream(this.data);
-      ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
-      Object result = objectInputStream.readObject();
-      objectInputStream.close();
-      return (Notification) result;
-    } finally {
-      IOUtils.closeQuietly(byteArrayInputStream);
+    if (!hasMagic(this.data)) {
+      return toSerializedNotification();
+    }
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(this.data, MAGIC.length, this.data.length - MAGIC.length))) {
+      Notification notification = new Notification(readString(input));
+      int fields = input.readInt();
+      for (int i = 0; i < fields; i++) {
+        notification.setFieldValue(readString(input), readString(input));
+      }
+      return notification;
+    }
+  }
+
+  /**
+   * Format used before 6.4, which may still be in queue after upgrade
+   */
+  private Notification toSerializedNotification() throws IOException, ClassNotFoundException {
+    try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(this.data))) {
+      return (Notification) objectInputStream.readObject();
+    }
+  }
+
+  private static boolean hasMagic(byte[] data) {
+    if (data.length < MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (data[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeString(DataOutputStream output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
     }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
   }
 
 }
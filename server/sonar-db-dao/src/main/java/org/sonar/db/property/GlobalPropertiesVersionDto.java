@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.property;
+
+import java.util.Objects;
+
+/**
+ * Fingerprint of the global properties, cheap to load. It changes as soon as a global property
+ * is inserted, updated (which is a delete followed by an insert), renamed (which sets the creation
+ * date to the date of renaming) or deleted.
+ */
+public class GlobalPropertiesVersionDto {
+
+  private long count;
+  private long maxId;
+  private long maxCreatedAt;
+
+  public long getCount() {
+    return count;
+  }
+
+  public GlobalPropertiesVersionDto setCount(long count) {
+    this.count = count;
+    return this;
+  }
+
+  public long getMaxId() {
+    return maxId;
+  }
+
+  public GlobalPropertiesVersionDto setMaxId(long maxId) {
+    this.maxId = maxId;
+    return this;
+  }
+
+  public long getMaxCreatedAt() {
+    return maxCreatedAt;
+  }
+
+  public GlobalPropertiesVersionDto setMaxCreatedAt(long maxCreatedAt) {
+    this.maxCreatedAt = maxCreatedAt;
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    GlobalPropertiesVersionDto that = (GlobalPropertiesVersionDto) o;
+    return count == that.count && maxId == that.maxId && maxCreatedAt == that.maxCreatedAt;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(count, maxId, maxCreatedAt);
+  }
+
+  @Override
+  public String toString() {
+    return "GlobalPropertiesVersionDto{count=" + count + ", maxId=" + maxId + ", maxCreatedAt=" + maxCreatedAt + '}';
+  }
+}
@@ -76,6 +76,12 @@ public class InternalPropertiesDao implements Dao {
     mapper.insertAsEmpty(key, system2.now());
   }
 
+  public void delete(DbSession dbSession, String key) {
+    checkKey(key);
+
+    getMapper(dbSession).deleteByKey(key);
+  }
+
   /**
    * No streaming of value
    */
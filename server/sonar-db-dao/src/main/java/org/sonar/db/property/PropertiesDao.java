@@ -107,6 +107,14 @@ public class PropertiesDao implements Dao {
     return getMapper(session).selectGlobalProperties();
   }
 
+  /**
+   * Version of the global properties, to be compared with the version of a previous call in order to
+   * know whether global properties must be reloaded.
+   */
+  public GlobalPropertiesVersionDto selectGlobalPropertiesVersion(DbSession session) {
+    return getMapper(session).selectGlobalPropertiesVersion();
+  }
+
   @CheckForNull
   public PropertyDto selectGlobalProperty(DbSession session, String propertyKey) {
     return getMapper(session).selectByKey(new PropertyDto().setKey(propertyKey));
@@ -282,7 +290,7 @@ public class PropertiesDao implements Dao {
 
     if (!newKey.equals(oldKey)) {
       try (DbSession session = mybatis.openSession(false)) {
-        getMapper(session).renamePropertyKey(oldKey, newKey);
+        getMapper(session).renamePropertyKey(oldKey, newKey, system2.now());
         session.commit();
       }
     }
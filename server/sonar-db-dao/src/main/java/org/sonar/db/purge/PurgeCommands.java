@@ -22,6 +22,8 @@ package org.sonar.db.purge;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 import org.apache.ibatis.session.SqlSession;
 
@@ -32,15 +34,15 @@ class PurgeCommands {
 
   private static final int MAX_SNAPSHOTS_PER_QUERY = 1000;
   private static final int MAX_RESOURCES_PER_QUERY = 1000;
+  private static final int DEFAULT_ROWS_PER_PAGE = 1000;
 
   private final SqlSession session;
   private final PurgeMapper purgeMapper;
   private final PurgeProfiler profiler;
+  private final int rowsPerPage;
 
   PurgeCommands(SqlSession session, PurgeMapper purgeMapper, PurgeProfiler profiler) {
-    this.session = session;
-    this.purgeMapper = purgeMapper;
-    this.profiler = profiler;
+    this(session, purgeMapper, profiler, DEFAULT_ROWS_PER_PAGE);
   }
 
   @VisibleForTesting
@@ -48,6 +50,14 @@ class PurgeCommands {
     this(session, session.getMapper(PurgeMapper.class), profiler);
   }
 
+  @VisibleForTesting
+  PurgeCommands(SqlSession session, PurgeMapper purgeMapper, PurgeProfiler profiler, int rowsPerPage) {
+    this.session = session;
+    this.purgeMapper = purgeMapper;
+    this.profiler = profiler;
+    this.rowsPerPage = rowsPerPage;
+  }
+
   List<String> selectSnapshotUuids(PurgeSnapshotQuery query) {
     return purgeMapper.selectAnalysisIdsAndUuids(query).stream().map(IdUuidPair::getUuid).collect(Collectors.toList());
   }
@@ -157,8 +167,9 @@ class PurgeCommands {
     profiler.stop();
 
     profiler.start("deleteAnalyses (project_measures)");
-    analysisUuidsPartitions.forEach(purgeMapper::deleteAnalysisMeasures);
-    session.commit();
+    analysisUuidsPartitions.forEach(partition -> deleteByPages(
+      afterId -> purgeMapper.selectAnalysisMeasureIds(partition, afterId, rowsPerPage),
+      purgeMapper::deleteMeasuresByIds));
     profiler.stop();
 
     profiler.start("deleteAnalyses (snapshots)");
@@ -174,9 +185,9 @@ class PurgeCommands {
 
     profiler.start("deleteSnapshotWastedMeasures (project_measures)");
     List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
-    analysisUuidsPartitions.stream()
-        .forEach(analysisUuidsPartition -> purgeMapper.deleteAnalysisWastedMeasures(analysisUuidsPartition, metricIdsWithoutHistoricalData));
-    session.commit();
+    analysisUuidsPartitions.forEach(partition -> deleteByPages(
+      afterId -> purgeMapper.selectAnalysisWastedMeasureIds(partition, metricIdsWithoutHistoricalData, afterId, rowsPerPage),
+      purgeMapper::deleteMeasuresByIds));
     profiler.stop();
 
     profiler.start("updatePurgeStatusToOne (snapshots)");
@@ -187,11 +198,35 @@ class PurgeCommands {
 
   private void deleteAnalysisDuplications(List<List<String>> snapshotUuidsPartitions) {
     profiler.start("deleteAnalysisDuplications (duplications_index)");
-    snapshotUuidsPartitions.forEach(purgeMapper::deleteAnalysisDuplications);
-    session.commit();
+    snapshotUuidsPartitions.forEach(partition -> deleteByPages(
+      afterId -> purgeMapper.selectAnalysisDuplicationIds(partition, afterId, rowsPerPage),
+      purgeMapper::deleteDuplicationsByIds));
     profiler.stop();
   }
 
+  /**
+   * Deletes rows by pages of ids sorted in ascending order, each page being committed. Contrary to a single
+   * DELETE of all the rows, transactions are short and rows are located through the primary key.
+   *
+   * @param selectPage ids of the next page of rows, which are greater than the given id
+   */
+  private void deleteByPages(LongFunction<List<Long>> selectPage, Consumer<List<Long>> deleteByIds) {
+    long afterId = Long.MIN_VALUE;
+    while (true) {
+      List<Long> ids = selectPage.apply(afterId);
+      if (ids.isEmpty()) {
+        return;
+      }
+      deleteByIds.accept(ids);
+      session.commit();
+      profiler.addDeletedRows(ids.size());
+      if (ids.size() < rowsPerPage) {
+        return;
+      }
+      afterId = ids.get(ids.size() - 1);
+    }
+  }
+
   public void deleteFileSources(String rootUuid) {
     profiler.start("deleteFileSources (file_sources)");
     purgeMapper.deleteFileSourcesByProjectUuid(rootUuid);
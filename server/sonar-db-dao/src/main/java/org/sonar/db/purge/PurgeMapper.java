@@ -34,18 +34,32 @@ public interface PurgeMapper {
 
   void deleteAnalyses(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisDuplications(@Param("analysisUuids") List<String> analysisUuids);
-
   void deleteAnalysisEvents(@Param("analysisUuids") List<String> analysisUuids);
 
-  void deleteAnalysisMeasures(@Param("analysisUuids") List<String> analysisUuids);
+  /**
+   * Ids of the measures of the given analyses which are greater than {@code afterId}, in ascending order.
+   */
+  List<Long> selectAnalysisMeasureIds(@Param("analysisUuids") List<String> analysisUuids, @Param("afterId") long afterId, @Param("pageSize") int pageSize);
+
+  /**
+   * Ids of the measures of the given analyses which are not kept in history, greater than {@code afterId}, in ascending order.
+   */
+  List<Long> selectAnalysisWastedMeasureIds(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds,
+    @Param("afterId") long afterId, @Param("pageSize") int pageSize);
+
+  /**
+   * Ids of the duplications of the given analyses which are greater than {@code afterId}, in ascending order.
+   */
+  List<Long> selectAnalysisDuplicationIds(@Param("analysisUuids") List<String> analysisUuids, @Param("afterId") long afterId, @Param("pageSize") int pageSize);
+
+  void deleteMeasuresByIds(@Param("ids") List<Long> ids);
+
+  void deleteDuplicationsByIds(@Param("ids") List<Long> ids);
 
   void deleteComponentMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("componentUuids") List<String> componentUuids);
 
   List<Long> selectMetricIdsWithoutHistoricalData();
 
-  void deleteAnalysisWastedMeasures(@Param("analysisUuids") List<String> analysisUuids, @Param("metricIds") List<Long> metricIds);
-
   void updatePurgeStatusToOne(@Param("analysisUuids") List<String> analysisUuid);
 
   void resolveComponentIssuesNotAlreadyResolved(@Param("componentUuids") List<String> componentUuids, @Param("dateAsLong") Long dateAsLong);
@@ -32,6 +32,7 @@ import org.sonar.api.utils.log.Logger;
 public class PurgeProfiler {
 
   private Map<String, Long> durations = new HashMap<>();
+  private Map<String, Long> deletedRows = new HashMap<>();
   private long startTime;
   private String currentTable;
   private final Clock clock;
@@ -47,6 +48,7 @@ public class PurgeProfiler {
 
   public void reset() {
     durations.clear();
+    deletedRows.clear();
   }
 
   void start(String table) {
@@ -64,6 +66,13 @@ public class PurgeProfiler {
     durations.put(currentTable, cumulatedDuration + (clock.now() - startTime));
   }
 
+  /**
+   * Rows deleted by the current step, reported with the throughput of the step
+   */
+  void addDeletedRows(long rows) {
+    deletedRows.merge(currentTable, rows, Long::sum);
+  }
+
   public void dump(long totalTime, Logger logger) {
     List<Entry<String, Long>> data = new ArrayList<>(durations.entrySet());
     Collections.sort(data, (o1, o2) -> o2.getValue().compareTo(o1.getValue()));
@@ -72,6 +81,10 @@ public class PurgeProfiler {
       StringBuilder sb = new StringBuilder();
       sb.append("   o ").append(entry.getKey()).append(": ").append(TimeUtils.formatDuration(entry.getValue()))
         .append(" (").append((int) (entry.getValue() / percent)).append("%)");
+      Long rows = deletedRows.get(entry.getKey());
+      if (rows != null) {
+        sb.append(" | rows=").append(rows).append(" | rows/s=").append(rows * 1000L / Math.max(1L, entry.getValue()));
+      }
       logger.info(sb.toString());
     }
   }
@@ -53,6 +53,8 @@ public interface RuleMapper {
 
   List<RuleParamDto> selectParamsByRuleIds(@Param("ruleIds") List<Integer> ruleIds);
 
+  List<RuleParamDto> selectAllParams();
+
   List<RuleParamDto> selectParamsByRuleKey(RuleKey ruleKey);
 
   List<RuleParamDto> selectParamsByRuleKeys(@Param("ruleKeys") List<RuleKey> ruleKeys);
@@ -0,0 +1,137 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Format of column FILE_SOURCES.BINARY_DATA for the sources of files. Lines are split into chunks
+ * of {@link #LINES_PER_CHUNK} lines, each being an LZ4-compressed {@link DbFileSources.Data}, so
+ * that a range of lines can be read without decompressing the whole file:
+ * <pre>
+ *   magic number | number of chunks | for each chunk: first line, size, compressed size | compressed chunks
+ * </pre>
+ * The former format, a single LZ4 stream, starts with the bytes "LZ4Block" and can't be confused
+ * with this one.
+ */
+final class ChunkedSourceData {
+
+  static final int LINES_PER_CHUNK = 200;
+  private static final byte[] MAGIC = {'S', 'Q', 'C', 1};
+  private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+  private ChunkedSourceData() {
+    // only static stuff
+  }
+
+  static boolean isChunked(byte[] binaryData) {
+    if (binaryData.length < MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (binaryData[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static byte[] encode(DbFileSources.Data data) throws IOException {
+    List<DbFileSources.Line> lines = data.getLinesList();
+    int chunks = (lines.size() + LINES_PER_CHUNK - 1) / LINES_PER_CHUNK;
+    LZ4Compressor compressor = LZ4.fastCompressor();
+    ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    header.write(MAGIC);
+    CodedOutputStream headerOutput = CodedOutputStream.newInstance(header);
+    headerOutput.writeUInt32NoTag(chunks);
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      List<DbFileSources.Line> chunkLines = lines.subList(chunk * LINES_PER_CHUNK, Math.min(lines.size(), (chunk + 1) * LINES_PER_CHUNK));
+      byte[] raw = DbFileSources.Data.newBuilder().addAllLines(chunkLines).build().toByteArray();
+      byte[] compressed = compressor.compress(raw);
+      headerOutput.writeInt32NoTag(chunkLines.get(0).getLine());
+      headerOutput.writeUInt32NoTag(raw.length);
+      headerOutput.writeUInt32NoTag(compressed.length);
+      bodies.write(compressed);
+    }
+    headerOutput.flush();
+    bodies.writeTo(header);
+    return header.toByteArray();
+  }
+
+  /**
+   * Decompresses only the chunks which contain lines between {@code from} and {@code toInclusive}. The
+   * returned data can contain some lines out of this range.
+   */
+  static DbFileSources.Data decode(byte[] binaryData, int from, int toInclusive) throws IOException {
+    CodedInputStream headerInput = CodedInputStream.newInstance(binaryData, MAGIC.length, binaryData.length - MAGIC.length);
+    int chunks = headerInput.readUInt32();
+    List<Chunk> selected = new ArrayList<>();
+    Chunk previous = null;
+    int offset = 0;
+    for (int i = 0; i < chunks; i++) {
+      Chunk chunk = new Chunk(headerInput.readInt32(), headerInput.readUInt32(), headerInput.readUInt32(), offset);
+      offset += chunk.compressedSize;
+      // previous chunk ends just before the first line of this one
+      if (previous != null && chunk.firstLine > from) {
+        selected.add(previous);
+      }
+      previous = chunk.firstLine <= toInclusive ? chunk : null;
+    }
+    if (previous != null) {
+      selected.add(previous);
+    }
+
+    int bodiesOffset = MAGIC.length + headerInput.getTotalBytesRead();
+    LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+    DbFileSources.Data.Builder result = DbFileSources.Data.newBuilder();
+    for (Chunk chunk : selected) {
+      byte[] raw = new byte[chunk.size];
+      decompressor.decompress(binaryData, bodiesOffset + chunk.offset, raw, 0, chunk.size);
+      CodedInputStream input = CodedInputStream.newInstance(raw);
+      input.setSizeLimit(Integer.MAX_VALUE);
+      result.mergeFrom(input);
+    }
+    return result.build();
+  }
+
+  private static class Chunk {
+    private final int firstLine;
+    private final int size;
+    private final int compressedSize;
+    private final int offset;
+
+    private Chunk(int firstLine, int size, int compressedSize, int offset) {
+      this.firstLine = firstLine;
+      this.size = size;
+      this.compressedSize = compressedSize;
+      this.offset = offset;
+    }
+  }
+}
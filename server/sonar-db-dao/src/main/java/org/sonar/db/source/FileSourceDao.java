@@ -25,6 +25,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
@@ -36,6 +37,8 @@ import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -50,6 +53,30 @@ public class FileSourceDao implements Dao {
     return mapper(session).select(fileUuid, Type.SOURCE);
   }
 
+  /**
+   * Hash of column BINARY_DATA of the sources of the file, without loading the data itself.
+   */
+  @CheckForNull
+  public String selectSourceDataHashByFileUuid(DbSession session, String fileUuid) {
+    return mapper(session).selectDataHash(fileUuid, Type.SOURCE);
+  }
+
+  /**
+   * Line hashes and source hashes of the sources of the given files, loaded in a few queries. Other fields
+   * of the returned DTOs, in particular the binary data, are not loaded.
+   */
+  public List<FileSourceDto> selectLineHashesByFileUuids(DbSession session, Collection<String> fileUuids) {
+    return executeLargeInputs(fileUuids, partition -> mapper(session).selectLineHashesByFileUuids(partition, Type.SOURCE));
+  }
+
+  /**
+   * Source hashes and binary data of the sources of the given files, loaded in a few queries. Other fields
+   * of the returned DTOs, in particular the line hashes, are not loaded.
+   */
+  public List<FileSourceDto> selectSourceDataByFileUuids(DbSession session, Collection<String> fileUuids) {
+    return executeLargeInputs(fileUuids, partition -> mapper(session).selectSourceDataByFileUuids(partition, Type.SOURCE));
+  }
+
   @CheckForNull
   public FileSourceDto selectTest(String fileUuid) {
     DbSession session = mybatis.openSession(false);
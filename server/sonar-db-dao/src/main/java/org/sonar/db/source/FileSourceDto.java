@@ -38,6 +38,11 @@ import static java.lang.String.format;
 
 public class FileSourceDto {
 
+  /**
+   * Number of lines of the chunks in which sources are stored. Lines of a chunk are decompressed together.
+   */
+  public static final int LINES_PER_CHUNK = ChunkedSourceData.LINES_PER_CHUNK;
+
   private static final String SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE = "Protocol message was too large.  May be malicious.  " +
     "Use CodedInputStream.setSizeLimit() to increase the size limit.";
 
@@ -94,7 +99,15 @@ public class FileSourceDto {
   }
 
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
+    return decodeSourceData(binaryData, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  private DbFileSources.Data decodeSourceData(byte[] binaryData, int from, int toInclusive) {
     try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decode(binaryData, from, toInclusive);
+      }
+      // format of versions prior to 6.4, rows are converted when the sources of files are persisted again
       return decodeRegularSourceData(binaryData);
     } catch (IOException e) {
       throw new IllegalStateException(
@@ -124,19 +137,15 @@ public class FileSourceDto {
 
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
-   * in the column BINARY_DATA.
+   * in the column BINARY_DATA, by chunks of lines.
+   *
+   * @see ChunkedSourceData
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
-    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
     try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+      return ChunkedSourceData.encode(data);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
   }
 
@@ -212,6 +221,14 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * Same as {@link #getSourceData()}, but decompresses only the chunks of lines which contain the lines
+   * between {@code from} and {@code toInclusive}. Some lines out of this range can be returned.
+   */
+  public DbFileSources.Data getSourceData(int from, int toInclusive) {
+    return decodeSourceData(binaryData, from, toInclusive);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
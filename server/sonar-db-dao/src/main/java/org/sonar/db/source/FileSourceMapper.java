@@ -19,6 +19,7 @@
  */
 package org.sonar.db.source;
 
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.ibatis.annotations.Param;
@@ -30,6 +31,13 @@ public interface FileSourceMapper {
   @CheckForNull
   FileSourceDto select(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
 
+  @CheckForNull
+  String selectDataHash(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
+
+  List<FileSourceDto> selectLineHashesByFileUuids(@Param("fileUuids") Collection<String> fileUuids, @Param("dataType") String dataType);
+
+  List<FileSourceDto> selectSourceDataByFileUuids(@Param("fileUuids") Collection<String> fileUuids, @Param("dataType") String dataType);
+
   void insert(FileSourceDto dto);
 
   void update(FileSourceDto dto);
@@ -47,6 +47,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.sonar.db.component.ComponentTesting.newDeveloper;
 import static org.sonar.db.component.ComponentTesting.newDirectory;
@@ -459,6 +460,19 @@ public class ComponentDaoTest {
     assertThat(underTest.selectEnabledDescendantFiles(dbSession, "unknown")).isEmpty();
   }
 
+  @Test
+  public void select_enabled_module_files_tree_updated_after() {
+    db.prepareDbUnit(getClass(), "select_module_files_tree.xml");
+
+    assertThat(underTest.selectEnabledDescendantFilesUpdatedAfter(dbSession, "ABCD", 1412952242000L)).extracting("uuid").containsOnly("HIJK");
+    assertThat(underTest.selectEnabledDescendantFilesUpdatedAfter(dbSession, "ABCD", 1412952241999L)).extracting("uuid").containsOnly("EFGHI", "HIJK");
+    assertThat(underTest.selectEnabledDescendantFilesUpdatedAfter(dbSession, "ABCD", 1500000000000L)).isEmpty();
+
+    assertThat(underTest.selectEnabledFilesFromProjectUpdatedAfter(dbSession, "ABCD", 1412952242000L)).extracting("uuid").containsOnly("HIJK");
+    assertThat(underTest.selectEnabledFilesFromProjectUpdatedAfter(dbSession, "ABCD", 1412952241999L)).extracting("uuid").containsOnly("EFGHI", "HIJK");
+    assertThat(underTest.selectEnabledFilesFromProjectUpdatedAfter(dbSession, "ABCD", 1500000000000L)).isEmpty();
+  }
+
   @Test
   public void select_enabled_module_files_tree_from_project() {
     db.prepareDbUnit(getClass(), "select_module_files_tree.xml");
@@ -1074,6 +1088,21 @@ public class ComponentDaoTest {
     assertThat(result).extracting("uuid").containsOnly("file-1-uuid", "file-2-uuid", "module-1-uuid");
   }
 
+  @Test
+  public void select_sort_fields_of_descendants() {
+    ComponentDto project = newProjectDto(db.getDefaultOrganization(), PROJECT_UUID);
+    db.components().insertProjectAndSnapshot(project);
+    ComponentDto module = db.components().insertComponent(newModuleDto("module-1-uuid", project));
+    ComponentDto file = db.components().insertComponent(newFileDto(module, null, "file-1-uuid").setName("Foo.java").setPath("src/Foo.java"));
+    db.commit();
+
+    List<ComponentDto> result = underTest.selectDescendantsSortFields(dbSession, newTreeQuery(PROJECT_UUID).setStrategy(LEAVES).setQualifiers(singletonList(Qualifiers.FILE)).build());
+
+    assertThat(result).extracting(ComponentDto::uuid, ComponentDto::name, ComponentDto::path, ComponentDto::qualifier, ComponentDto::getKey)
+      .containsExactly(tuple(file.uuid(), "Foo.java", "src/Foo.java", Qualifiers.FILE, null));
+    assertThat(underTest.selectDescendantsSortFields(dbSession, newTreeQuery("unknown").setStrategy(LEAVES).build())).isEmpty();
+  }
+
   @Test
   public void select_descendants_returns_empty_list_if_base_component_does_not_exist() {
     ComponentTreeQuery query = newTreeQuery(PROJECT_UUID).setStrategy(CHILDREN).build();
@@ -19,6 +19,8 @@
  */
 package org.sonar.db.notification;
 
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import org.junit.Rule;
@@ -46,6 +48,33 @@ public class NotificationQueueDaoTest {
     assertThat(dao.selectOldest(1).get(0).toNotification().getType()).isEqualTo("email");
   }
 
+  @Test
+  public void read_type_and_fields_of_notification() throws Exception {
+    Notification notification = new Notification("issue-changes")
+      .setDefaultMessage("Issue changed")
+      .setFieldValue("key", "ABCD")
+      .setFieldValue("assignee", null)
+      .setFieldValue("message", "Remove this \u00e9l\u00e9ment");
+
+    dao.insert(Arrays.asList(NotificationQueueDto.toNotificationQueueDto(notification)));
+
+    Notification result = dao.selectOldest(1).get(0).toNotification();
+    assertThat(result).isEqualTo(notification);
+    assertThat(result.getFieldValues()).containsOnlyKeys("default_message", "key", "assignee", "message");
+    assertThat(result.getFieldValue("assignee")).isNull();
+  }
+
+  @Test
+  public void read_java_serialized_notification() throws Exception {
+    Notification notification = new Notification("email").setFieldValue("key", "ABCD");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(notification);
+    }
+
+    assertThat(new NotificationQueueDto().setData(bytes.toByteArray()).toNotification()).isEqualTo(notification);
+  }
+
   @Test
   public void should_count_notification_queue() {
     NotificationQueueDto notificationQueueDto = NotificationQueueDto.toNotificationQueueDto(new Notification("email"));
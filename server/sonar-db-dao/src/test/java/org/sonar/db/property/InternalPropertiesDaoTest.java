@@ -275,6 +275,24 @@ public class InternalPropertiesDaoTest {
     assertThat(underTest.selectByKey(dbSession, A_KEY)).contains(VALUE_SIZE_4001);
   }
 
+  @Test
+  public void delete_removes_property() {
+    underTest.save(dbSession, A_KEY, VALUE_SMALL);
+    underTest.save(dbSession, "another key", VALUE_SMALL);
+
+    underTest.delete(dbSession, A_KEY);
+
+    assertThat(underTest.selectByKey(dbSession, A_KEY)).isEmpty();
+    assertThat(underTest.selectByKey(dbSession, "another key")).contains(VALUE_SMALL);
+  }
+
+  @Test
+  public void delete_does_not_fail_when_property_does_not_exist_in_DB() {
+    underTest.delete(dbSession, A_KEY);
+
+    assertThat(underTest.selectByKey(dbSession, A_KEY)).isEmpty();
+  }
+
   private void expectKeyNullOrEmptyIAE() {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("key can't be null nor empty");
@@ -204,6 +204,43 @@ public class PropertiesDaoTest {
       .hasValue("two");
   }
 
+  @Test
+  public void selectGlobalPropertiesVersion_changes_when_global_properties_change() throws SQLException {
+    GlobalPropertiesVersionDto empty = underTest.selectGlobalPropertiesVersion(session);
+    assertThat(empty.getCount()).isEqualTo(0);
+    assertThat(empty.getMaxId()).isEqualTo(0);
+
+    underTest.saveProperty(session, new PropertyDto().setKey("global.one").setValue("one"));
+    GlobalPropertiesVersionDto inserted = underTest.selectGlobalPropertiesVersion(session);
+    assertThat(inserted).isNotEqualTo(empty);
+
+    underTest.saveProperty(session, new PropertyDto().setKey("global.one").setValue("two"));
+    GlobalPropertiesVersionDto updated = underTest.selectGlobalPropertiesVersion(session);
+    assertThat(updated).isNotEqualTo(inserted);
+    assertThat(updated.getCount()).isEqualTo(1);
+
+    // project and user properties are ignored
+    insertProperty("project.one", "one", 10L, null);
+    insertProperty("user.one", "one", null, 100);
+    assertThat(underTest.selectGlobalPropertiesVersion(session)).isEqualTo(updated);
+
+    underTest.deleteGlobalProperty("global.one", session);
+    assertThat(underTest.selectGlobalPropertiesVersion(session)).isEqualTo(empty);
+  }
+
+  @Test
+  public void selectGlobalPropertiesVersion_changes_when_global_property_is_renamed() throws SQLException {
+    insertProperty("old_name", "one", null, null, DATE_1);
+    GlobalPropertiesVersionDto before = underTest.selectGlobalPropertiesVersion(session);
+
+    when(system2.now()).thenReturn(DATE_2);
+    underTest.renamePropertyKey("old_name", "new_name");
+
+    GlobalPropertiesVersionDto after = underTest.selectGlobalPropertiesVersion(session);
+    assertThat(after).isNotEqualTo(before);
+    assertThat(after.getMaxCreatedAt()).isEqualTo(DATE_2);
+  }
+
   @Test
   @UseDataProvider("allValuesForSelect")
   public void selectGlobalProperties_supports_all_values(String dbValue, String expected) throws SQLException {
@@ -901,6 +938,7 @@ public class PropertiesDaoTest {
     long id5 = insertProperty("old_name", "doc4", null, 100, DATE_1);
     long id6 = insertProperty("old_name", "doc5", null, 101, DATE_1);
 
+    when(system2.now()).thenReturn(DATE_2);
     underTest.renamePropertyKey("old_name", "new_name");
 
     assertThatPropertiesRow(id1)
@@ -914,31 +952,31 @@ public class PropertiesDaoTest {
       .hasNoResourceId()
       .hasNoUserId()
       .hasTextValue("doc1")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id3)
       .hasKey("new_name")
       .hasResourceId(15)
       .hasNoUserId()
       .hasTextValue("doc2")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id4)
       .hasKey("new_name")
       .hasResourceId(16)
       .hasNoUserId()
       .hasTextValue("doc3")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id5)
       .hasKey("new_name")
       .hasNoResourceId()
       .hasUserId(100)
       .hasTextValue("doc4")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id6)
       .hasKey("new_name")
       .hasNoResourceId()
       .hasUserId(101)
       .hasTextValue("doc5")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
   }
 
   @Test
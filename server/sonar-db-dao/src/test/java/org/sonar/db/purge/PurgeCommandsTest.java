@@ -58,6 +58,26 @@ public class PurgeCommandsTest {
     dbTester.assertDbUnit(getClass(), "shouldPurgeAnalysis-result.xml", "snapshots", "project_measures", "duplications_index", "events");
   }
 
+  @Test
+  public void purge_analysis_by_pages_of_rows() {
+    dbTester.prepareDbUnit(getClass(), "shouldPurgeAnalysis.xml");
+
+    new PurgeCommands(dbTester.getSession(), dbTester.getSession().getMapper(PurgeMapper.class), profiler, 1)
+      .purgeAnalyses(singletonList(new IdUuidPair(1, "u1")));
+
+    dbTester.assertDbUnit(getClass(), "shouldPurgeAnalysis-result.xml", "snapshots", "project_measures", "duplications_index", "events");
+  }
+
+  @Test
+  public void delete_analyses_by_pages_of_rows() {
+    dbTester.prepareDbUnit(getClass(), "shouldDeleteWastedMeasuresWhenPurgingAnalysis.xml");
+
+    new PurgeCommands(dbTester.getSession(), dbTester.getSession().getMapper(PurgeMapper.class), profiler, 2)
+      .deleteAnalyses(singletonList(new IdUuidPair(1, "u1")));
+
+    assertThat(dbTester.countSql("select count(*) from project_measures where analysis_uuid='u1'")).isZero();
+  }
+
   @Test
   public void delete_wasted_measures_when_purging_analysis() {
     dbTester.prepareDbUnit(getClass(), "shouldDeleteWastedMeasuresWhenPurgingAnalysis.xml");
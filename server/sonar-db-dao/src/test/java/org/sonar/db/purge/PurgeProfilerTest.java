@@ -59,6 +59,18 @@ public class PurgeProfilerTest {
     verify(logger).info(contains("bar: 5ms"));
   }
 
+  @Test
+  public void dump_throughput_of_deleted_rows() {
+    profiler.start("foo");
+    clock.sleep(10);
+    profiler.addDeletedRows(300);
+    profiler.addDeletedRows(200);
+    profiler.stop();
+
+    profiler.dump(50, logger);
+    verify(logger).info(contains("foo: 10ms (20%) | rows=500 | rows/s=50000"));
+  }
+
   @Test
   public void shouldResetPurgeProfiling() {
     profiler.start("foo");
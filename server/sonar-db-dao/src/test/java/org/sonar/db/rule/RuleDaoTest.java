@@ -339,6 +339,15 @@ public class RuleDaoTest {
     )).isEmpty();
   }
 
+  @Test
+  public void select_all_parameters() {
+    dbTester.prepareDbUnit(getClass(), "select_parameters_by_rule_key.xml");
+
+    assertThat(underTest.selectAllRuleParams(dbTester.getSession()))
+      .extracting(RuleParamDto::getName)
+      .containsOnly("myParameter", "otherParam");
+  }
+
   @Test
   public void insert_parameter() {
     dbTester.prepareDbUnit(getClass(), "insert_parameter.xml");
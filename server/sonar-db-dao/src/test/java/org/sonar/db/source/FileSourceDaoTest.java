@@ -21,6 +21,7 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -33,6 +34,7 @@ import org.sonar.db.source.FileSourceDto.Type;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class FileSourceDaoTest {
 
@@ -59,6 +61,14 @@ public class FileSourceDaoTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("123456789");
   }
 
+  @Test
+  public void select_source_data_hash() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    assertThat(underTest.selectSourceDataHashByFileUuid(session, "FILE1_UUID")).isEqualTo("hash");
+    assertThat(underTest.selectSourceDataHashByFileUuid(session, "unknown")).isNull();
+  }
+
   @Test
   public void select_line_hashes() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -69,6 +79,27 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isEqualTo("ABC\\nDEF\\nGHI");
   }
 
+  @Test
+  public void select_line_hashes_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    assertThat(underTest.selectLineHashesByFileUuids(session, Arrays.asList("FILE1_UUID", "unknown")))
+      .extracting(FileSourceDto::getFileUuid, FileSourceDto::getSrcHash, FileSourceDto::getLineHashes, FileSourceDto::getBinaryData)
+      .containsOnly(tuple("FILE1_UUID", "FILE_HASH", "ABC\\nDEF\\nGHI", null));
+    assertThat(underTest.selectLineHashesByFileUuids(session, Arrays.asList("unknown"))).isEmpty();
+  }
+
+  @Test
+  public void select_source_data_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    assertThat(underTest.selectSourceDataByFileUuids(session, Arrays.asList("FILE1_UUID", "unknown")))
+      .extracting(FileSourceDto::getFileUuid, FileSourceDto::getSrcHash, FileSourceDto::getLineHashes)
+      .containsOnly(tuple("FILE1_UUID", "FILE_HASH", null));
+    assertThat(underTest.selectSourceDataByFileUuids(session, Arrays.asList("FILE1_UUID")).get(0).getBinaryData()).isNotEmpty();
+    assertThat(underTest.selectSourceDataByFileUuids(session, Arrays.asList("unknown"))).isEmpty();
+  }
+
   @Test
   public void no_line_hashes_on_unknown_file() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
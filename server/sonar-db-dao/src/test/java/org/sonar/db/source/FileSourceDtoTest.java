@@ -19,8 +19,12 @@
  */
 package org.sonar.db.source;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -80,6 +84,59 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void getSourceData_decompresses_only_chunks_of_requested_lines() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(createData(1000));
+
+    DbFileSources.Data data = underTest.getSourceData(450, 460);
+    assertThat(data.getLinesList()).extracting(DbFileSources.Line::getLine).containsExactlyElementsOf(range(401, 600));
+
+    data = underTest.getSourceData(600, 601);
+    assertThat(data.getLinesList()).extracting(DbFileSources.Line::getLine).containsExactlyElementsOf(range(401, 800));
+
+    data = underTest.getSourceData(990, Integer.MAX_VALUE);
+    assertThat(data.getLinesList()).extracting(DbFileSources.Line::getLine).containsExactlyElementsOf(range(801, 1000));
+
+    assertThat(underTest.getSourceData().getLinesList()).extracting(DbFileSources.Line::getLine).containsExactlyElementsOf(range(1, 1000));
+  }
+
+  @Test
+  public void getSourceData_of_file_without_lines() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(DbFileSources.Data.getDefaultInstance());
+
+    assertThat(underTest.getSourceData().getLinesList()).isEmpty();
+    assertThat(underTest.getSourceData(1, 10).getLinesList()).isEmpty();
+  }
+
+  @Test
+  public void getSourceData_reads_format_of_previous_versions() throws IOException {
+    DbFileSources.Data data = createData(300);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream output = new LZ4BlockOutputStream(bytes)) {
+      data.writeTo(output);
+    }
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(bytes.toByteArray());
+
+    assertThat(underTest.getSourceData()).isEqualTo(data);
+    assertThat(underTest.getSourceData(10, 20)).isEqualTo(data);
+  }
+
+  private static DbFileSources.Data createData(int lines) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= lines; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("line " + i);
+    }
+    return dataBuilder.build();
+  }
+
+  private static List<Integer> range(int from, int toInclusive) {
+    List<Integer> result = new ArrayList<>();
+    for (int i = from; i <= toInclusive; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.step;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Indexes of the ranges of keys already processed by a partitioned {@link MassUpdate}, persisted in table
+ * INTERNAL_PROPERTIES as a list of intervals, for example {@code "100000|0-12,15-16"} where 100000 is the
+ * size of ranges. Nothing is persisted if the resume key is {@code null}.
+ */
+class CompletedRanges {
+
+  private static final String KEY_PREFIX = "massUpdate.";
+  private static final int MAX_KEY_LENGTH = 50;
+  private static final char SIZE_SEPARATOR = '|';
+
+  private final String key;
+  private final long rangeSize;
+  // ranges are closed-open, so that consecutive indexes are merged
+  private final RangeSet<Long> indexes = TreeRangeSet.create();
+
+  private CompletedRanges(@Nullable String key, long rangeSize) {
+    this.key = key;
+    this.rangeSize = rangeSize;
+  }
+
+  static CompletedRanges load(Connection connection, @Nullable String resumeKey, long rangeSize) throws SQLException {
+    if (resumeKey == null) {
+      return new CompletedRanges(null, rangeSize);
+    }
+    String key = KEY_PREFIX + resumeKey;
+    checkArgument(key.length() <= MAX_KEY_LENGTH, "Resume key is too long: %s", resumeKey);
+    CompletedRanges result = new CompletedRanges(key, rangeSize);
+    try (PreparedStatement stmt = connection.prepareStatement("select text_value from internal_properties where kee=?")) {
+      stmt.setString(1, key);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (rs.next()) {
+          result.parse(rs.getString(1));
+        }
+      }
+    }
+    return result;
+  }
+
+  private void parse(@Nullable String value) {
+    String prefix = String.valueOf(rangeSize) + SIZE_SEPARATOR;
+    if (value == null || !value.startsWith(prefix)) {
+      // ranges of a different size can't be reused
+      return;
+    }
+    for (String interval : Splitter.on(',').omitEmptyStrings().split(value.substring(prefix.length()))) {
+      int dash = interval.indexOf('-', 1);
+      indexes.add(Range.closedOpen(Long.parseLong(interval.substring(0, dash)), Long.parseLong(interval.substring(dash + 1)) + 1));
+    }
+  }
+
+  synchronized boolean contains(long index) {
+    return indexes.contains(index);
+  }
+
+  synchronized void add(Connection connection, long index) throws SQLException {
+    indexes.add(Range.closedOpen(index, index + 1));
+    if (key != null) {
+      delete(connection);
+      try (PreparedStatement stmt = connection.prepareStatement("insert into internal_properties (kee, is_empty, text_value, created_at) values (?, ?, ?, ?)")) {
+        stmt.setString(1, key);
+        stmt.setBoolean(2, false);
+        stmt.setString(3, format());
+        stmt.setLong(4, System.currentTimeMillis());
+        stmt.executeUpdate();
+      }
+      connection.commit();
+    }
+  }
+
+  synchronized void clear(Connection connection) throws SQLException {
+    indexes.clear();
+    if (key != null) {
+      delete(connection);
+      connection.commit();
+    }
+  }
+
+  private void delete(Connection connection) throws SQLException {
+    try (PreparedStatement stmt = connection.prepareStatement("delete from internal_properties where kee=?")) {
+      stmt.setString(1, key);
+      stmt.executeUpdate();
+    }
+  }
+
+  String format() {
+    return rangeSize + String.valueOf(SIZE_SEPARATOR) + indexes.asRanges().stream()
+      .map(r -> r.lowerEndpoint() + "-" + (r.upperEndpoint() - 1))
+      .collect(Collectors.joining(","));
+  }
+}
@@ -19,18 +19,31 @@
  */
 package org.sonar.server.platform.db.migration.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 import org.sonar.db.Database;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 public class MassUpdate {
 
+  private static final Logger LOG = Loggers.get(MassUpdate.class);
+
   @FunctionalInterface
   public interface Handler {
     /**
@@ -59,7 +72,10 @@ public class MassUpdate {
   private final ProgressLogger progress = ProgressLogger.create(getClass(), counter);
 
   private Select select;
+  private SelectParameters selectParameters;
   private List<UpsertImpl> updates = new ArrayList<>(1);
+  private List<String> updateSqls = new ArrayList<>(1);
+  private Partitioning partitioning;
 
   public MassUpdate(Database db, Connection readConnection, Connection writeConnection) {
     this.db = db;
@@ -67,13 +83,20 @@ public class MassUpdate {
     this.writeConnection = writeConnection;
   }
 
+  /**
+   * When the mass update is {@link #partitionBy(Partitioning) partitioned}, the two first parameters of the request
+   * are reserved for the bounds of the range of keys, for instance {@code select id from foo where id >= ? and id < ? and bar=?}.
+   * Other parameters are set from index 3.
+   */
   public SqlStatement select(String sql) throws SQLException {
     this.select = SelectImpl.create(db, readConnection, sql);
-    return this.select;
+    this.selectParameters = new SelectParameters(sql, select);
+    return this.selectParameters;
   }
 
   public MassUpdate update(String sql) throws SQLException {
-    this.updates.add(UpsertImpl.create(writeConnection, sql));
+    this.updates.add(UpsertImpl.create(db, writeConnection, sql));
+    this.updateSqls.add(sql);
     return this;
   }
 
@@ -82,14 +105,38 @@ public class MassUpdate {
     return this;
   }
 
+  /**
+   * Splits the rows to be updated into ranges of the numeric key {@link Partitioning#column}, which are processed
+   * concurrently on several connections. Ranges already processed by a previous interrupted execution are skipped
+   * when a {@link Partitioning#setResumeKey(String) resume key} is defined.
+   * <p>
+   * Handlers are called concurrently and must be thread-safe.
+   */
+  public MassUpdate partitionBy(Partitioning partitioning) {
+    this.partitioning = partitioning;
+    return this;
+  }
+
   public void execute(Handler handler) throws SQLException {
     checkState(select != null && !updates.isEmpty(), "SELECT or UPDATE requests are not defined");
     checkState(updates.size() == 1, "There should be only one update when using a " + Handler.class.getName());
 
+    execute((row, update, updateIndex) -> handler.handle(row, update));
+  }
+
+  public void execute(MultiHandler handler) throws SQLException {
+    checkState(select != null && !updates.isEmpty(), "SELECT or UPDATE(s) requests are not defined");
+
     progress.start();
     try {
-      select.scroll(row -> callSingleHandler(handler, updates.iterator().next(), row));
-      closeUpdates();
+      if (partitioning == null) {
+        select.scroll(row -> callMultiHandler(handler, updates, row));
+        closeUpdates(updates);
+      } else {
+        select.close();
+        closeUpdates(updates);
+        executePartitioned(handler);
+      }
 
       // log the total number of processed rows
       progress.log();
@@ -98,26 +145,98 @@ public class MassUpdate {
     }
   }
 
-  public void execute(MultiHandler handler) throws SQLException {
-    checkState(select != null && !updates.isEmpty(), "SELECT or UPDATE(s) requests are not defined");
+  private void executePartitioned(MultiHandler handler) throws SQLException {
+    long[] bounds = selectBounds();
+    if (bounds == null) {
+      return;
+    }
+    long firstRange = Math.floorDiv(bounds[0], partitioning.rangeSize);
+    long lastRange = Math.floorDiv(bounds[1], partitioning.rangeSize);
+    CompletedRanges completedRanges = CompletedRanges.load(writeConnection, partitioning.resumeKey, partitioning.rangeSize);
+    AtomicLong nextRange = new AtomicLong(firstRange);
 
-    progress.start();
+    int threads = (int) Math.min(partitioning.threads, lastRange - firstRange + 1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("DbMigration-MassUpdate-%d")
+      .setDaemon(true)
+      .build());
     try {
-      select.scroll(row -> callMultiHandler(handler, updates, row));
-      closeUpdates();
+      List<Future<Void>> futures = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          processRanges(handler, nextRange, lastRange, completedRanges);
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        awaitTermination(future);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    completedRanges.clear(writeConnection);
+  }
 
-      // log the total number of processed rows
-      progress.log();
+  @CheckForNull
+  private long[] selectBounds() throws SQLException {
+    String sql = "select min(" + partitioning.column + "), max(" + partitioning.column + ") from " + partitioning.table;
+    return SelectImpl.create(db, readConnection, sql).get(row -> {
+      Long min = row.getNullableLong(1);
+      Long max = row.getNullableLong(2);
+      return min == null || max == null ? null : new long[] {min, max};
+    });
+  }
+
+  private void processRanges(MultiHandler handler, AtomicLong nextRange, long lastRange, CompletedRanges completedRanges) throws SQLException {
+    try (Connection workerReadConnection = DataChange.createReadUncommittedConnection(db);
+      Connection workerWriteConnection = DataChange.createDdlConnection(db)) {
+      long range;
+      while ((range = nextRange.getAndIncrement()) <= lastRange && !Thread.currentThread().isInterrupted()) {
+        if (!completedRanges.contains(range)) {
+          processRange(handler, range, workerReadConnection, workerWriteConnection);
+          completedRanges.add(writeConnection, range);
+        }
+      }
+    }
+  }
+
+  private void processRange(MultiHandler handler, long range, Connection workerReadConnection, Connection workerWriteConnection) throws SQLException {
+    long start = System.currentTimeMillis();
+    long from = range * partitioning.rangeSize;
+    long countBefore = counter.get();
+    List<UpsertImpl> rangeUpdates = new ArrayList<>(updateSqls.size());
+    try {
+      for (String updateSql : updateSqls) {
+        rangeUpdates.add(UpsertImpl.create(db, workerWriteConnection, updateSql));
+      }
+      SelectImpl rangeSelect = SelectImpl.create(db, workerReadConnection, selectParameters.sql);
+      rangeSelect.setLong(1, from).setLong(2, from + partitioning.rangeSize);
+      selectParameters.applyTo(rangeSelect);
+      rangeSelect.scroll(row -> callMultiHandler(handler, rangeUpdates, row));
+      closeUpdates(rangeUpdates);
     } finally {
-      progress.stop();
+      rangeUpdates.forEach(UpsertImpl::close);
     }
+    LOG.info("Range [{}, {}[ of {}.{} processed | rows={} | time={}ms", from, from + partitioning.rangeSize, partitioning.table, partitioning.column,
+      counter.get() - countBefore, System.currentTimeMillis() - start);
   }
 
-  private void callSingleHandler(Handler handler, Upsert update, Select.Row row) throws SQLException {
-    if (handler.handle(row, update)) {
-      update.addBatch();
+  private static void awaitTermination(Future<Void> future) throws SQLException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for mass update", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to execute mass update", cause);
     }
-    counter.getAndIncrement();
   }
 
   private void callMultiHandler(MultiHandler handler, List<UpsertImpl> updates, Select.Row row) throws SQLException {
@@ -131,7 +250,7 @@ public class MassUpdate {
     counter.getAndIncrement();
   }
 
-  private void closeUpdates() throws SQLException {
+  private static void closeUpdates(List<UpsertImpl> updates) throws SQLException {
     for (UpsertImpl update : updates) {
       if (update.getBatchCount() > 0L) {
         update.execute().commit();
@@ -140,4 +259,121 @@ public class MassUpdate {
     }
   }
 
+  /**
+   * How to split a {@link MassUpdate} into ranges of keys
+   */
+  public static final class Partitioning {
+    private final String table;
+    private final String column;
+    private int threads = 4;
+    private long rangeSize = 100_000L;
+    private String resumeKey = null;
+
+    /**
+     * @param table the table of the selected rows
+     * @param column numeric column of {@code table}, typically the primary key, which values are split into ranges
+     */
+    public Partitioning(String table, String column) {
+      this.table = table;
+      this.column = column;
+    }
+
+    /**
+     * Number of ranges processed concurrently, each one with its own connections. Default is 4.
+     */
+    public Partitioning setThreads(int threads) {
+      checkArgument(threads > 0, "Number of threads must be positive");
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Number of keys per range. Default is 100'000.
+     */
+    public Partitioning setRangeSize(long rangeSize) {
+      checkArgument(rangeSize > 0, "Size of ranges must be positive");
+      this.rangeSize = rangeSize;
+      return this;
+    }
+
+    /**
+     * Key of the internal property which records the ranges already processed, so that an interrupted
+     * execution can be resumed. The property is dropped when the execution is successful.
+     */
+    public Partitioning setResumeKey(@Nullable String resumeKey) {
+      this.resumeKey = resumeKey;
+      return this;
+    }
+  }
+
+  /**
+   * Parameters of the SELECT request, recorded to be set again on the request of each range
+   */
+  private static final class SelectParameters implements SqlStatement<SelectParameters> {
+    private final String sql;
+    private final Select select;
+    private final List<ParameterSetter> setters = new ArrayList<>();
+
+    private SelectParameters(String sql, Select select) {
+      this.sql = sql;
+      this.select = select;
+    }
+
+    private SelectParameters record(ParameterSetter setter) throws SQLException {
+      setter.set(select);
+      setters.add(setter);
+      return this;
+    }
+
+    private void applyTo(Select rangeSelect) throws SQLException {
+      for (ParameterSetter setter : setters) {
+        setter.set(rangeSelect);
+      }
+    }
+
+    @Override
+    public SelectParameters setBoolean(int columnIndex, @Nullable Boolean value) throws SQLException {
+      return record(s -> s.setBoolean(columnIndex, value));
+    }
+
+    @Override
+    public SelectParameters setDate(int columnIndex, @Nullable Date value) throws SQLException {
+      return record(s -> s.setDate(columnIndex, value));
+    }
+
+    @Override
+    public SelectParameters setDouble(int columnIndex, @Nullable Double value) throws SQLException {
+      return record(s -> s.setDouble(columnIndex, value));
+    }
+
+    @Override
+    public SelectParameters setInt(int columnIndex, @Nullable Integer value) throws SQLException {
+      return record(s -> s.setInt(columnIndex, value));
+    }
+
+    @Override
+    public SelectParameters setLong(int columnIndex, @Nullable Long value) throws SQLException {
+      return record(s -> s.setLong(columnIndex, value));
+    }
+
+    @Override
+    public SelectParameters setString(int columnIndex, @Nullable String value) throws SQLException {
+      return record(s -> s.setString(columnIndex, value));
+    }
+
+    @Override
+    public SelectParameters setBytes(int columnIndex, @Nullable byte[] data) throws SQLException {
+      return record(s -> s.setBytes(columnIndex, data));
+    }
+
+    @Override
+    public void close() {
+      select.close();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ParameterSetter {
+    void set(SqlStatement<?> statement) throws SQLException;
+  }
 }
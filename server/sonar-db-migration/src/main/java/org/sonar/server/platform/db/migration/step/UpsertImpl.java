@@ -22,15 +22,16 @@ package org.sonar.server.platform.db.migration.step;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import org.sonar.db.Database;
 
 public class UpsertImpl extends BaseSqlStatement<Upsert> implements Upsert {
 
-  private static final int MAX_BATCH_SIZE = 250;
-
+  private final int maxBatchSize;
   private long batchCount = 0L;
 
-  private UpsertImpl(PreparedStatement pstmt) {
+  private UpsertImpl(PreparedStatement pstmt, int maxBatchSize) {
     super(pstmt);
+    this.maxBatchSize = maxBatchSize;
   }
 
   @Override
@@ -38,7 +39,7 @@ public class UpsertImpl extends BaseSqlStatement<Upsert> implements Upsert {
     pstmt.addBatch();
     pstmt.clearParameters();
     batchCount++;
-    if (batchCount % MAX_BATCH_SIZE == 0L) {
+    if (batchCount % maxBatchSize == 0L) {
       pstmt.executeBatch();
       pstmt.getConnection().commit();
     }
@@ -65,7 +66,10 @@ public class UpsertImpl extends BaseSqlStatement<Upsert> implements Upsert {
     return this;
   }
 
-  public static UpsertImpl create(Connection connection, String sql) throws SQLException {
-    return new UpsertImpl(connection.prepareStatement(sql));
+  /**
+   * Batched rows are sent to DB and committed by groups of {@link org.sonar.db.dialect.Dialect#getBatchUpdateSize()}.
+   */
+  public static UpsertImpl create(Database db, Connection connection, String sql) throws SQLException {
+    return new UpsertImpl(connection.prepareStatement(sql), db.getDialect().getBatchUpdateSize());
   }
 }
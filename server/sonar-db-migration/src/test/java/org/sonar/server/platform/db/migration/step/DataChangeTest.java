@@ -47,6 +47,7 @@ public class DataChangeTest {
   @Before
   public void setUp() {
     db.executeUpdateSql("truncate table persons");
+    db.executeUpdateSql("truncate table internal_properties");
   }
 
   @Test
@@ -355,6 +356,59 @@ public class DataChangeTest {
     db.assertDbUnit(getClass(), "mass-update-result.xml", "persons");
   }
 
+  @Test
+  public void mass_update_by_ranges_of_ids() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        MassUpdate massUpdate = context.prepareMassUpdate();
+        massUpdate.select("select id from persons where id>=? and id<? and id>=?").setLong(3, 2L);
+        massUpdate.update("update persons set login=?, age=? where id=?");
+        massUpdate.partitionBy(new MassUpdate.Partitioning("persons", "id").setRangeSize(1L).setThreads(2).setResumeKey("test"));
+        massUpdate.execute((row, update) -> {
+          long id = row.getNullableLong(1);
+          update
+            .setString(1, "login" + id)
+            .setInt(2, 10 + (int) id)
+            .setLong(3, id);
+          return true;
+        });
+      }
+    }.execute();
+
+    db.assertDbUnit(getClass(), "mass-update-result.xml", "persons");
+    assertThat(db.countRowsOfTable("internal_properties")).isEqualTo(0);
+  }
+
+  @Test
+  public void mass_update_by_ranges_skips_ranges_completed_by_previous_execution() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+    // range of id 2 has already been processed
+    db.executeInsert("internal_properties", "kee", "massUpdate.test", "is_empty", false, "text_value", "1|2-2");
+
+    List<Long> processedIds = new ArrayList<>();
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        MassUpdate massUpdate = context.prepareMassUpdate();
+        massUpdate.select("select id from persons where id>=? and id<?");
+        massUpdate.update("update persons set login=? where id=?");
+        massUpdate.partitionBy(new MassUpdate.Partitioning("persons", "id").setRangeSize(1L).setThreads(1).setResumeKey("test"));
+        massUpdate.execute((row, update) -> {
+          long id = row.getNullableLong(1);
+          processedIds.add(id);
+          update.setString(1, "login" + id).setLong(2, id);
+          return true;
+        });
+      }
+    }.execute();
+
+    assertThat(processedIds).containsExactly(1L, 3L);
+    assertThat(db.countRowsOfTable("internal_properties")).isEqualTo(0);
+  }
+
   @Test
   public void display_current_row_details_if_error_during_mass_update() throws Exception {
     db.prepareDbUnit(getClass(), "persons.xml");
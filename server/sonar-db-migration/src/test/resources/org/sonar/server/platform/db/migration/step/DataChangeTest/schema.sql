@@ -6,3 +6,11 @@ CREATE TABLE "PERSONS" (
   "UPDATED_AT" TIMESTAMP,
   "COEFF" DOUBLE
 );
+
+CREATE TABLE "INTERNAL_PROPERTIES" (
+  "KEE" VARCHAR(50) NOT NULL PRIMARY KEY,
+  "IS_EMPTY" BOOLEAN NOT NULL,
+  "TEXT_VALUE" VARCHAR(4000),
+  "CLOB_VALUE" CLOB,
+  "CREATED_AT" BIGINT
+);
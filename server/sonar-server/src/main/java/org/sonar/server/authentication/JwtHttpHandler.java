@@ -35,6 +35,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.user.UserSessionCache;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
@@ -69,10 +70,13 @@ public class JwtHttpHandler {
   // This timeout is used to disconnect the user we he has not browse any page for a while
   private final int sessionTimeoutInSeconds;
   private final JwtCsrfVerifier jwtCsrfVerifier;
+  private final UserSessionCache userSessionCache;
 
-  public JwtHttpHandler(System2 system2, DbClient dbClient, Settings settings, JwtSerializer jwtSerializer, JwtCsrfVerifier jwtCsrfVerifier) {
+  public JwtHttpHandler(System2 system2, DbClient dbClient, Settings settings, JwtSerializer jwtSerializer, JwtCsrfVerifier jwtCsrfVerifier,
+    UserSessionCache userSessionCache) {
     this.jwtSerializer = jwtSerializer;
     this.dbClient = dbClient;
+    this.userSessionCache = userSessionCache;
     this.system2 = system2;
     this.sessionTimeoutInSeconds = getSessionTimeoutInSeconds(settings);
     this.jwtCsrfVerifier = jwtCsrfVerifier;
@@ -171,12 +175,11 @@ public class JwtHttpHandler {
   }
 
   private Optional<UserDto> selectUserFromDb(String userLogin) {
-    DbSession dbSession = dbClient.openSession(false);
-    try {
-      return Optional.ofNullable(dbClient.userDao().selectActiveUserByLogin(dbSession, userLogin));
-    } finally {
-      dbClient.closeSession(dbSession);
-    }
+    return Optional.ofNullable(userSessionCache.getActiveUser(userLogin, login -> {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        return dbClient.userDao().selectActiveUserByLogin(dbSession, login);
+      }
+    }));
   }
 
   private static int getSessionTimeoutInSeconds(Settings settings) {
@@ -42,6 +42,7 @@ import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.user.ExternalIdentity;
 import org.sonar.server.user.NewUser;
 import org.sonar.server.user.UpdateUser;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.user.UserUpdater;
 
 import static java.lang.String.format;
@@ -55,11 +56,14 @@ public class UserIdentityAuthenticator {
   private final DbClient dbClient;
   private final UserUpdater userUpdater;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final UserSessionCache userSessionCache;
 
-  public UserIdentityAuthenticator(DbClient dbClient, UserUpdater userUpdater, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public UserIdentityAuthenticator(DbClient dbClient, UserUpdater userUpdater, DefaultOrganizationProvider defaultOrganizationProvider,
+    UserSessionCache userSessionCache) {
     this.dbClient = dbClient;
     this.userUpdater = userUpdater;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.userSessionCache = userSessionCache;
   }
 
   public UserDto authenticate(UserIdentity user, IdentityProvider provider, AuthenticationEvent.Source source) {
@@ -141,6 +145,7 @@ public class UserIdentityAuthenticator {
       removeGroups(dbSession, userDto, groupsToRemove, groupsByName);
 
       dbSession.commit();
+      userSessionCache.invalidateUser(userDto.getLogin());
     }
   }
 
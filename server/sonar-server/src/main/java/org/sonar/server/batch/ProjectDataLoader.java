@@ -26,6 +26,8 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
@@ -33,6 +35,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.FilePathWithHashDto;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
@@ -85,7 +88,9 @@ public class ProjectDataLoader {
       TreeModuleSettings treeModuleSettings = new TreeModuleSettings(moduleUuidsByKey, moduleIdsByKey, modulesTree, modulesTreeSettings);
 
       addSettingsToChildrenModules(data, query.getModuleKey(), Maps.<String, String>newHashMap(), treeModuleSettings, hasScanPerm);
-      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, module);
+      String version = dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(session, project.uuid()).map(SnapshotDto::getUuid).orElse(null);
+      data.setVersion(version);
+      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, project, module, version, query.getSinceVersion(), data);
       addFileData(data, modulesTree, files);
 
       // FIXME need real value but actually only used to know if there is a previous analysis in local issue tracking mode so any value is
@@ -103,6 +108,34 @@ public class ProjectDataLoader {
     return Qualifiers.PROJECT.equals(module.qualifier()) || Qualifiers.MODULE.equals(module.qualifier());
   }
 
+  /**
+   * When the client already holds the file data of a previous analysis of the project, only the files whose source
+   * has been updated since this analysis are returned. Sources are compared with the date of processing of the analysis
+   * by the Compute Engine, not with the analysis date provided by the scanner, so that files are not missed because of
+   * clock skew or back-dated analyses. Files updated by the analysis itself can be returned again, as the sources are
+   * persisted after the analysis.
+   */
+  private List<FilePathWithHashDto> searchFilesWithHashAndRevision(DbSession session, ComponentDto project, ComponentDto module, @Nullable String version,
+    @Nullable String sinceVersion, ProjectRepositories data) {
+    if (sinceVersion == null) {
+      return searchFilesWithHashAndRevision(session, module);
+    }
+    if (sinceVersion.equals(version)) {
+      data.setIncremental(true);
+      return Collections.emptyList();
+    }
+    Optional<SnapshotDto> sinceAnalysis = dbClient.snapshotDao().selectByUuid(session, sinceVersion)
+      .filter(analysis -> analysis.getComponentUuid().equals(project.uuid()))
+      .filter(analysis -> analysis.getBuildDate() != null);
+    if (!sinceAnalysis.isPresent()) {
+      return searchFilesWithHashAndRevision(session, module);
+    }
+    data.setIncremental(true);
+    long updatedAfter = sinceAnalysis.get().getBuildDate();
+    return module.isRootProject() ? dbClient.componentDao().selectEnabledFilesFromProjectUpdatedAfter(session, module.uuid(), updatedAfter)
+      : dbClient.componentDao().selectEnabledDescendantFilesUpdatedAfter(session, module.uuid(), updatedAfter);
+  }
+
   private List<FilePathWithHashDto> searchFilesWithHashAndRevision(DbSession session, ComponentDto module) {
     return module.isRootProject() ? dbClient.componentDao().selectEnabledFilesFromProject(session, module.uuid())
       : dbClient.componentDao().selectEnabledDescendantFiles(session, module.uuid());
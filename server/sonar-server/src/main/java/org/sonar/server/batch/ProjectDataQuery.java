@@ -27,6 +27,7 @@ public class ProjectDataQuery {
   private String projectOrModuleKey;
   private String profileName;
   private boolean issuesMode;
+  private String sinceVersion;
 
   private ProjectDataQuery() {
     // No direct call
@@ -60,6 +61,19 @@ public class ProjectDataQuery {
     return this;
   }
 
+  /**
+   * Version of the project repository already known by the client, if any
+   */
+  @CheckForNull
+  public String getSinceVersion() {
+    return sinceVersion;
+  }
+
+  public ProjectDataQuery setSinceVersion(@Nullable String sinceVersion) {
+    this.sinceVersion = sinceVersion;
+    return this;
+  }
+
   public static ProjectDataQuery create() {
     return new ProjectDataQuery();
   }
@@ -26,12 +26,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.sonar.api.resources.Qualifiers;
@@ -202,41 +203,54 @@ public class FileMoveDetectionStep implements ComputationStep {
     int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
     int maxScore = 0;
 
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
-
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
+    List<File> reportFiles = new ArrayList<>(reportFileSourcesByKey.values());
+    LineHashesIndex index = new LineHashesIndex(from(reportFiles).transform(File::getLineHashes).toList());
+    Map<String, File> dbFilesByKey = getDbFilesByKey(dtosByKey, dbFileKeys);
+    long scoredPairs = 0;
+
+    int dbFileIndex = 0;
+    for (String removedFileKey : dbFileKeys) {
+      File fileInDb = dbFilesByKey.get(removedFileKey);
+      if (fileInDb != null) {
+        BitSet candidates = index.candidates(fileInDb.getLineHashes());
+        for (int reportFileIndex = candidates.nextSetBit(0); reportFileIndex >= 0; reportFileIndex = candidates.nextSetBit(reportFileIndex + 1)) {
+          int score = fileSimilarity.score(fileInDb, reportFiles.get(reportFileIndex));
           scoreMatrix[dbFileIndex][reportFileIndex] = score;
           if (score > maxScore) {
             maxScore = score;
           }
-          reportFileIndex++;
+          scoredPairs++;
         }
-        dbFileIndex++;
       }
+      dbFileIndex++;
     }
 
+    long totalPairs = (long) dbFileKeys.size() * reportFiles.size();
+    LOG.info("{} pairs of files scored, {} pruned", scoredPairs, totalPairs - scoredPairs);
     return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
   }
 
-  @CheckForNull
-  private File getFile(DbSession dbSession, DbComponent dbComponent) {
-    if (dbComponent.getPath() == null) {
-      return null;
+  /**
+   * Line hashes of the files removed since the previous analysis, loaded with a few queries
+   */
+  private Map<String, File> getDbFilesByKey(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys) {
+    Map<String, DbComponent> componentsByUuid = new HashMap<>(dbFileKeys.size());
+    for (String dbFileKey : dbFileKeys) {
+      DbComponent dbComponent = dtosByKey.get(dbFileKey);
+      if (dbComponent.getPath() != null) {
+        componentsByUuid.put(dbComponent.getUuid(), dbComponent);
+      }
     }
-    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, dbComponent.getUuid());
-    if (fileSourceDto == null) {
-      return null;
+    Map<String, File> result = new HashMap<>(componentsByUuid.size());
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (FileSourceDto fileSourceDto : dbClient.fileSourceDao().selectLineHashesByFileUuids(dbSession, componentsByUuid.keySet())) {
+        DbComponent dbComponent = componentsByUuid.get(fileSourceDto.getFileUuid());
+        String lineHashes = fileSourceDto.getLineHashes();
+        result.put(dbComponent.getKey(), new File(dbComponent.getPath(), fileSourceDto.getSrcHash(),
+          lineHashes == null ? null : LINES_HASHES_SPLITTER.splitToList(lineHashes)));
+      }
     }
-    return new File(dbComponent.getPath(), fileSourceDto.getSrcHash(), LINES_HASHES_SPLITTER.splitToList(fileSourceDto.getLineHashes()));
+    return result;
   }
 
   private static void printIfDebug(ScoreMatrix scoreMatrix) {
@@ -0,0 +1,149 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.annotation.Nullable;
+
+/**
+ * Locality-sensitive index of files by the MinHash signature of their line hashes. Files sharing most of their
+ * lines are very likely to share the signature of at least one band, so only those are returned by
+ * {@link #candidates(List)} and need to be scored by {@link FileSimilarity}.
+ * <p>
+ * Lines are hashed with their number of previous occurrences in the file, so that the signature estimates the
+ * Jaccard similarity of the multisets of lines. Repeated lines, like blank lines or closing braces, are then
+ * not counted only once. Each edit of the Levenshtein distance scored by {@link SourceSimilarityImpl} removes at most
+ * one line from the intersection of multisets, so a pair of files getting the
+ * {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE minimum score} of 85 has a multiset Jaccard similarity of at
+ * least 85 / 115 = 0.74.
+ * <p>
+ * With {@link #BANDS} bands of {@link #ROWS} rows, such a pair is a candidate with a probability greater than
+ * 99.99%, whereas a pair with a similarity of 0.2 is a candidate with a probability of 5%.
+ */
+final class LineHashesIndex {
+
+  static final int BANDS = 32;
+  static final int ROWS = 4;
+  private static final int[] SEEDS = seeds(BANDS * ROWS);
+
+  private final int[] sizes;
+  private final Map<Long, List<Integer>> filesByBand = new HashMap<>();
+
+  /**
+   * @param lineHashes line hashes of the indexed files, a file being then identified by its position in the list
+   */
+  LineHashesIndex(List<List<String>> lineHashes) {
+    this.sizes = new int[lineHashes.size()];
+    for (int file = 0; file < lineHashes.size(); file++) {
+      List<String> hashes = lineHashes.get(file);
+      if (hashes == null) {
+        continue;
+      }
+      sizes[file] = hashes.size();
+      int[] signature = signature(hashes);
+      for (int band = 0; band < BANDS; band++) {
+        filesByBand.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>(1)).add(file);
+      }
+    }
+  }
+
+  /**
+   * Positions of the indexed files which may be similar enough to the given file to get the minimum score.
+   * Files which differ too much by their number of lines are excluded, as the score can't be greater than the
+   * ratio of the smallest number of lines to the greatest one.
+   */
+  BitSet candidates(@Nullable List<String> lineHashes) {
+    BitSet result = new BitSet(sizes.length);
+    if (lineHashes == null) {
+      return result;
+    }
+    int[] signature = signature(lineHashes);
+    for (int band = 0; band < BANDS; band++) {
+      List<Integer> files = filesByBand.get(bandKey(signature, band));
+      if (files != null) {
+        files.forEach(result::set);
+      }
+    }
+    for (int file = result.nextSetBit(0); file >= 0; file = result.nextSetBit(file + 1)) {
+      if (!haveCompatibleSizes(lineHashes.size(), sizes[file])) {
+        result.clear(file);
+      }
+    }
+    return result;
+  }
+
+  private static boolean haveCompatibleSizes(int size1, int size2) {
+    return 100L * Math.min(size1, size2) >= (long) FileMoveDetectionStep.MIN_REQUIRED_SCORE * Math.max(size1, size2);
+  }
+
+  static int[] signature(List<String> lineHashes) {
+    int[] signature = new int[SEEDS.length];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    Map<String, Integer> occurrences = new HashMap<>();
+    for (String lineHash : lineHashes) {
+      int occurrence = occurrences.merge(lineHash, 1, Integer::sum);
+      int hash = 31 * lineHash.hashCode() + mix(occurrence);
+      for (int i = 0; i < SEEDS.length; i++) {
+        int value = mix(hash ^ SEEDS[i]);
+        if (value < signature[i]) {
+          signature[i] = value;
+        }
+      }
+    }
+    return signature;
+  }
+
+  private static long bandKey(int[] signature, int band) {
+    int hash = 1;
+    for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+      hash = 31 * hash + signature[row];
+    }
+    return ((long) band << 32) | (hash & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Finalization step of MurmurHash3, so that close inputs give unrelated outputs
+   */
+  private static int mix(int value) {
+    int h = value;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private static int[] seeds(int count) {
+    // fixed seed so that detection of moves is reproducible
+    Random random = new Random(42L);
+    int[] seeds = new int[count];
+    for (int i = 0; i < count; i++) {
+      seeds[i] = random.nextInt();
+    }
+    return seeds;
+  }
+}
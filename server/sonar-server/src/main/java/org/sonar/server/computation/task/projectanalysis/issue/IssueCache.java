@@ -19,25 +19,221 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.core.issue.DefaultIssue;
-import org.sonar.server.util.cache.DiskCache;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.util.cache.CacheAppender;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Cache of all the issues involved in the analysis. Their state is as it will be
  * persisted in database (after issue tracking, auto-assignment, ...)
+ * <p>
+ * Issues are stored on disk with the compact encoding of {@link IssueCodec}. The cache supports
+ * only appending and full traversal, plus the traversal of the issues of a given component
+ * when it was created with a component index. As no step of the analysis traverses the issues
+ * of a single component, the cache created by picocontainer does not index components. Not thread-safe.
  */
-public class IssueCache extends DiskCache<DefaultIssue> {
+public class IssueCache {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final System2 system2;
+  private final IssueCodec.Encoder encoder = new IssueCodec.Encoder();
+  @CheckForNull
+  private final Map<String, List<Segment>> segmentsByComponentUuid;
 
   // this constructor is used by picocontainer
   public IssueCache(TempFolder tempFolder, System2 system2) throws IOException {
-    super(tempFolder.newFile("issues", ".dat"), system2);
+    this(tempFolder.newFile("issues", ".dat"), system2);
   }
 
   public IssueCache(File file, System2 system2) {
-    super(file, system2);
+    this(file, system2, false);
+  }
+
+  /**
+   * @param indexComponents whether the offsets of the issues of each component are kept in memory, as
+   *                        required by {@link #traverse(String)}
+   */
+  public IssueCache(File file, System2 system2, boolean indexComponents) {
+    this.file = file;
+    this.system2 = system2;
+    this.segmentsByComponentUuid = indexComponents ? new HashMap<>() : null;
+    try {
+      // truncates the file if it already exists
+      new FileOutputStream(file).close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    }
+  }
+
+  public CacheAppender<DefaultIssue> newAppender() {
+    return new IssueAppender();
+  }
+
+  public CloseableIterator<DefaultIssue> traverse() {
+    try {
+      return new IssueIterator(FileUtils.openInputStream(file), new IssueCodec.Decoder(), Long.MAX_VALUE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  /**
+   * Traverses only the issues whose {@link DefaultIssue#componentUuid()} is the specified one, without
+   * reading the rest of the file.
+   *
+   * @throws IllegalStateException if the cache does not index components
+   */
+  public CloseableIterator<DefaultIssue> traverse(String componentUuid) {
+    requireNonNull(componentUuid, "Component UUID can't be null");
+    if (segmentsByComponentUuid == null) {
+      throw new IllegalStateException("Issues are not indexed by component in file: " + file);
+    }
+    List<Segment> segments = segmentsByComponentUuid.getOrDefault(componentUuid, Collections.emptyList());
+    List<DefaultIssue> issues = new ArrayList<>();
+    for (Segment segment : segments) {
+      try (CloseableIterator<DefaultIssue> it = traverse(segment)) {
+        it.forEachRemaining(issues::add);
+      }
+    }
+    return CloseableIterator.from(issues.iterator());
+  }
+
+  private CloseableIterator<DefaultIssue> traverse(Segment segment) {
+    InputStream input = null;
+    try {
+      input = FileUtils.openInputStream(file);
+      IOUtils.skipFully(input, segment.offset);
+      return new IssueIterator(input, new IssueCodec.Decoder(encoder.strings(), segment.internedStrings), segment.count);
+    } catch (IOException e) {
+      IOUtils.closeQuietly(input);
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  /**
+   * A range of consecutive issues of the same component
+   */
+  private static class Segment {
+    private final long offset;
+    private final int internedStrings;
+    private int count = 0;
+
+    private Segment(long offset, int internedStrings) {
+      this.offset = offset;
+      this.internedStrings = internedStrings;
+    }
+  }
+
+  private class IssueAppender implements CacheAppender<DefaultIssue> {
+    private final CountingOutputStream counter;
+    private final CodedOutputStream output;
+    private final long initialFileSize;
+    private String currentComponentUuid = null;
+    private Segment currentSegment = null;
+
+    private IssueAppender() {
+      try {
+        this.initialFileSize = file.length();
+        this.counter = new CountingOutputStream(new FileOutputStream(file, true));
+        this.output = CodedOutputStream.newInstance(counter, BUFFER_SIZE);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to open file " + file, e);
+      }
+    }
+
+    @Override
+    public IssueAppender append(DefaultIssue issue) {
+      try {
+        if (segmentsByComponentUuid != null) {
+          index(issue);
+        }
+        encoder.write(output, issue);
+        return this;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
+    }
+
+    private void index(DefaultIssue issue) throws IOException {
+      String componentUuid = issue.componentUuid();
+      if (currentSegment == null || !Objects.equals(componentUuid, currentComponentUuid)) {
+        output.flush();
+        currentComponentUuid = componentUuid;
+        currentSegment = new Segment(initialFileSize + counter.getByteCount(), encoder.strings().size());
+        if (componentUuid != null) {
+          segmentsByComponentUuid.computeIfAbsent(componentUuid, k -> new ArrayList<>()).add(currentSegment);
+        }
+      }
+      currentSegment.count++;
+    }
+
+    @Override
+    public void close() {
+      try {
+        output.flush();
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      } finally {
+        system2.close(counter);
+      }
+    }
+  }
+
+  private static class IssueIterator extends CloseableIterator<DefaultIssue> {
+    private final InputStream input;
+    private final CodedInputStream codedInput;
+    private final IssueCodec.Decoder decoder;
+    private long remaining;
+
+    private IssueIterator(InputStream input, IssueCodec.Decoder decoder, long count) {
+      this.input = input;
+      this.codedInput = CodedInputStream.newInstance(new BufferedInputStream(input, BUFFER_SIZE));
+      this.decoder = decoder;
+      this.remaining = count;
+    }
+
+    @Override
+    @CheckForNull
+    protected DefaultIssue doNext() {
+      try {
+        if (remaining <= 0 || codedInput.isAtEnd()) {
+          return null;
+        }
+        remaining--;
+        // the limit of message size applies to the whole stream, not to a single issue
+        codedInput.resetSizeCounter();
+        return decoder.read(codedInput);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read issue", e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
   }
 }
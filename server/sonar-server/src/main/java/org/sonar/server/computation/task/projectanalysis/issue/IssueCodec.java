@@ -0,0 +1,563 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+
+/**
+ * Compact binary encoding of {@link DefaultIssue}, as stored by {@link IssueCache}.
+ * <p>
+ * Fields are written in a fixed order as protobuf varints, so neither field tags nor class
+ * descriptors are stored. Strings with a low cardinality (rule keys, component UUIDs, statuses,
+ * messages...) are interned: the first occurrence is written inline and the next ones as
+ * a reference to it. Interning is shared by all the issues of a cache, so the {@link Encoder}
+ * and the {@link Decoder} must respectively see all the issues in the order they are stored.
+ */
+final class IssueCodec {
+
+  /**
+   * Maximum number of interned strings. Next strings are written inline in order to bound
+   * the memory used by the dictionary.
+   */
+  static final int MAX_INTERNED_STRINGS = 200_000;
+
+  private static final int NULL_STRING = 0;
+  private static final int LITERAL = 1;
+  private static final int INTERNED_LITERAL = 2;
+  private static final int FIRST_REFERENCE = 3;
+
+  private static final int MANUAL_SEVERITY = 1;
+  private static final int NEW = 1 << 1;
+  private static final int BEING_CLOSED = 1 << 2;
+  private static final int ON_DISABLED_RULE = 1 << 3;
+  private static final int CHANGED = 1 << 4;
+  private static final int SEND_NOTIFICATIONS = 1 << 5;
+  private static final int HAS_LINE = 1 << 6;
+  private static final int HAS_GAP = 1 << 7;
+  private static final int HAS_EFFORT = 1 << 8;
+  private static final int HAS_CREATION_DATE = 1 << 9;
+  private static final int HAS_UPDATE_DATE = 1 << 10;
+  private static final int HAS_CLOSE_DATE = 1 << 11;
+  private static final int HAS_SELECTED_AT = 1 << 12;
+  private static final int HAS_RULE_KEY = 1 << 13;
+
+  private static final int NULL_VALUE = 0;
+  private static final int STRING_VALUE = 1;
+  private static final int LONG_VALUE = 2;
+  private static final int INTEGER_VALUE = 3;
+  private static final int RULE_TYPE_VALUE = 4;
+  private static final int SERIALIZED_VALUE = 5;
+
+  private static final int NULL_LOCATIONS = 0;
+  private static final int PROTOBUF_LOCATIONS = 1;
+  private static final int SERIALIZED_LOCATIONS = 2;
+
+  private IssueCodec() {
+    // only static stuff
+  }
+
+  /**
+   * Not thread-safe
+   */
+  static final class Encoder {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * The interned strings, ordered by id. The list is only appended, so a {@link Decoder} can
+     * share it in order to read issues from the middle of the stream.
+     */
+    List<String> strings() {
+      return strings;
+    }
+
+    void write(CodedOutputStream out, DefaultIssue issue) throws IOException {
+      out.writeUInt32NoTag(flagsOf(issue));
+      writeRaw(out, issue.key());
+      out.writeUInt32NoTag(issue.type() == null ? 0 : issue.type().getDbConstant());
+      writeInterned(out, issue.componentUuid());
+      writeInterned(out, issue.componentKey());
+      writeInterned(out, issue.moduleUuid());
+      writeInterned(out, issue.moduleUuidPath());
+      writeInterned(out, issue.projectUuid());
+      writeInterned(out, issue.projectKey());
+      RuleKey ruleKey = issue.ruleKey();
+      if (ruleKey != null) {
+        writeInterned(out, ruleKey.repository());
+        writeInterned(out, ruleKey.rule());
+      }
+      writeInterned(out, issue.language());
+      writeInterned(out, issue.severity());
+      writeInterned(out, issue.message());
+      if (issue.line() != null) {
+        out.writeUInt32NoTag(issue.line());
+      }
+      if (issue.gap() != null) {
+        out.writeDoubleNoTag(issue.gap());
+      }
+      if (issue.effort() != null) {
+        out.writeSInt64NoTag(issue.effort().toMinutes());
+      }
+      writeInterned(out, issue.status());
+      writeInterned(out, issue.resolution());
+      writeInterned(out, issue.assignee());
+      writeRaw(out, issue.checksum());
+      writeInterned(out, issue.authorLogin());
+      writePresentDate(out, issue.creationDate());
+      writePresentDate(out, issue.updateDate());
+      writePresentDate(out, issue.closeDate());
+      if (issue.selectedAt() != null) {
+        out.writeSInt64NoTag(issue.selectedAt());
+      }
+      writeAttributes(out, issue.attributes());
+      writeTags(out, issue.tags());
+      writeComments(out, issue.comments());
+      writeLocations(out, issue.getLocations());
+      writeChanges(out, issue);
+    }
+
+    private static int flagsOf(DefaultIssue issue) {
+      int flags = 0;
+      flags |= issue.manualSeverity() ? MANUAL_SEVERITY : 0;
+      flags |= issue.isNew() ? NEW : 0;
+      flags |= issue.isBeingClosed() ? BEING_CLOSED : 0;
+      flags |= issue.isOnDisabledRule() ? ON_DISABLED_RULE : 0;
+      flags |= issue.isChanged() ? CHANGED : 0;
+      flags |= issue.mustSendNotifications() ? SEND_NOTIFICATIONS : 0;
+      flags |= issue.line() != null ? HAS_LINE : 0;
+      flags |= issue.gap() != null ? HAS_GAP : 0;
+      flags |= issue.effort() != null ? HAS_EFFORT : 0;
+      flags |= issue.creationDate() != null ? HAS_CREATION_DATE : 0;
+      flags |= issue.updateDate() != null ? HAS_UPDATE_DATE : 0;
+      flags |= issue.closeDate() != null ? HAS_CLOSE_DATE : 0;
+      flags |= issue.selectedAt() != null ? HAS_SELECTED_AT : 0;
+      flags |= issue.ruleKey() != null ? HAS_RULE_KEY : 0;
+      return flags;
+    }
+
+    private void writeAttributes(CodedOutputStream out, Map<String, String> attributes) throws IOException {
+      out.writeUInt32NoTag(attributes.size());
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        writeInterned(out, attribute.getKey());
+        writeInterned(out, attribute.getValue());
+      }
+    }
+
+    private void writeTags(CodedOutputStream out, Set<String> tags) throws IOException {
+      out.writeUInt32NoTag(tags.size());
+      for (String tag : tags) {
+        writeInterned(out, tag);
+      }
+    }
+
+    private void writeComments(CodedOutputStream out, List<IssueComment> comments) throws IOException {
+      out.writeUInt32NoTag(comments.size());
+      for (IssueComment comment : comments) {
+        DefaultIssueComment defaultComment = (DefaultIssueComment) comment;
+        writeRaw(out, defaultComment.key());
+        writeRaw(out, defaultComment.issueKey());
+        writeInterned(out, defaultComment.userLogin());
+        writeRaw(out, defaultComment.markdownText());
+        writeDate(out, defaultComment.createdAt());
+        writeDate(out, defaultComment.updatedAt());
+        out.writeBoolNoTag(defaultComment.isNew());
+      }
+    }
+
+    private static void writeLocations(CodedOutputStream out, @Nullable Object locations) throws IOException {
+      if (locations == null) {
+        out.writeUInt32NoTag(NULL_LOCATIONS);
+      } else if (locations instanceof DbIssues.Locations) {
+        out.writeUInt32NoTag(PROTOBUF_LOCATIONS);
+        out.writeByteArrayNoTag(((DbIssues.Locations) locations).toByteArray());
+      } else {
+        out.writeUInt32NoTag(SERIALIZED_LOCATIONS);
+        writeSerialized(out, (Serializable) locations);
+      }
+    }
+
+    /**
+     * {@link DefaultIssue#currentChange()} is generally one of the elements of {@link DefaultIssue#changes()},
+     * which may even contain the same instance several times. References are kept as is.
+     */
+    private void writeChanges(CodedOutputStream out, DefaultIssue issue) throws IOException {
+      List<FieldDiffs> changes = issue.changes();
+      out.writeUInt32NoTag(changes.size());
+      for (int i = 0; i < changes.size(); i++) {
+        FieldDiffs change = changes.get(i);
+        int sameAs = indexOfInstance(changes, change, i);
+        if (sameAs < 0) {
+          out.writeUInt32NoTag(0);
+          writeFieldDiffs(out, change);
+        } else {
+          out.writeUInt32NoTag(sameAs + 1);
+        }
+      }
+      FieldDiffs currentChange = issue.currentChange();
+      if (currentChange == null) {
+        out.writeUInt32NoTag(0);
+      } else {
+        int index = indexOfInstance(changes, currentChange, changes.size());
+        if (index < 0) {
+          out.writeUInt32NoTag(1);
+          writeFieldDiffs(out, currentChange);
+        } else {
+          out.writeUInt32NoTag(index + 2);
+        }
+      }
+    }
+
+    private static int indexOfInstance(List<FieldDiffs> changes, FieldDiffs change, int maxIndex) {
+      for (int i = 0; i < maxIndex; i++) {
+        if (changes.get(i) == change) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void writeFieldDiffs(CodedOutputStream out, FieldDiffs diffs) throws IOException {
+      writeRaw(out, diffs.issueKey());
+      writeInterned(out, diffs.userLogin());
+      writeDate(out, diffs.creationDate());
+      out.writeUInt32NoTag(diffs.diffs().size());
+      for (Map.Entry<String, FieldDiffs.Diff> diff : diffs.diffs().entrySet()) {
+        writeInterned(out, diff.getKey());
+        writeDiffValue(out, diff.getValue().oldValue());
+        writeDiffValue(out, diff.getValue().newValue());
+      }
+    }
+
+    private void writeDiffValue(CodedOutputStream out, @Nullable Serializable value) throws IOException {
+      if (value == null) {
+        out.writeUInt32NoTag(NULL_VALUE);
+      } else if (value instanceof String) {
+        out.writeUInt32NoTag(STRING_VALUE);
+        writeInterned(out, (String) value);
+      } else if (value instanceof Long) {
+        out.writeUInt32NoTag(LONG_VALUE);
+        out.writeSInt64NoTag((Long) value);
+      } else if (value instanceof Integer) {
+        out.writeUInt32NoTag(INTEGER_VALUE);
+        out.writeSInt32NoTag((Integer) value);
+      } else if (value instanceof RuleType) {
+        out.writeUInt32NoTag(RULE_TYPE_VALUE);
+        out.writeUInt32NoTag(((RuleType) value).getDbConstant());
+      } else {
+        out.writeUInt32NoTag(SERIALIZED_VALUE);
+        writeSerialized(out, value);
+      }
+    }
+
+    private static void writeDate(CodedOutputStream out, @Nullable Date date) throws IOException {
+      if (date == null) {
+        out.writeBoolNoTag(false);
+      } else {
+        out.writeBoolNoTag(true);
+        out.writeSInt64NoTag(date.getTime());
+      }
+    }
+
+    /**
+     * Presence of the date is already known by {@link #flagsOf(DefaultIssue)}
+     */
+    private static void writePresentDate(CodedOutputStream out, @Nullable Date date) throws IOException {
+      if (date != null) {
+        out.writeSInt64NoTag(date.getTime());
+      }
+    }
+
+    private static void writeRaw(CodedOutputStream out, @Nullable String s) throws IOException {
+      if (s == null) {
+        out.writeUInt32NoTag(NULL_STRING);
+      } else {
+        out.writeUInt32NoTag(LITERAL);
+        out.writeStringNoTag(s);
+      }
+    }
+
+    private void writeInterned(CodedOutputStream out, @Nullable String s) throws IOException {
+      if (s == null) {
+        out.writeUInt32NoTag(NULL_STRING);
+        return;
+      }
+      Integer id = ids.get(s);
+      if (id != null) {
+        out.writeUInt32NoTag(FIRST_REFERENCE + id);
+      } else if (strings.size() < MAX_INTERNED_STRINGS) {
+        ids.put(s, strings.size());
+        strings.add(s);
+        out.writeUInt32NoTag(INTERNED_LITERAL);
+        out.writeStringNoTag(s);
+      } else {
+        writeRaw(out, s);
+      }
+    }
+
+    private static void writeSerialized(CodedOutputStream out, Serializable value) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+        objectOutput.writeObject(value);
+      }
+      out.writeByteArrayNoTag(bytes.toByteArray());
+    }
+  }
+
+  /**
+   * Not thread-safe
+   */
+  static final class Decoder {
+    private final List<String> strings;
+    private int nextId;
+
+    /**
+     * Decoder of a stream read from its beginning
+     */
+    Decoder() {
+      this(new ArrayList<>(), 0);
+    }
+
+    /**
+     * Decoder of a stream read from the middle, when {@code nextId} strings
+     * have already been interned in {@code strings}.
+     */
+    Decoder(List<String> strings, int nextId) {
+      this.strings = strings;
+      this.nextId = nextId;
+    }
+
+    DefaultIssue read(CodedInputStream in) throws IOException {
+      DefaultIssue issue = new DefaultIssue();
+      int flags = in.readUInt32();
+      issue.setManualSeverity((flags & MANUAL_SEVERITY) != 0);
+      issue.setNew((flags & NEW) != 0);
+      issue.setBeingClosed((flags & BEING_CLOSED) != 0);
+      issue.setOnDisabledRule((flags & ON_DISABLED_RULE) != 0);
+      issue.setChanged((flags & CHANGED) != 0);
+      issue.setSendNotifications((flags & SEND_NOTIFICATIONS) != 0);
+
+      issue.setKey(readString(in));
+      int type = in.readUInt32();
+      issue.setType(type == 0 ? null : RuleType.valueOf(type));
+      issue.setComponentUuid(readString(in));
+      issue.setComponentKey(readString(in));
+      issue.setModuleUuid(readString(in));
+      issue.setModuleUuidPath(readString(in));
+      issue.setProjectUuid(readString(in));
+      issue.setProjectKey(readString(in));
+      if ((flags & HAS_RULE_KEY) != 0) {
+        issue.setRuleKey(RuleKey.of(readString(in), readString(in)));
+      }
+      issue.setLanguage(readString(in));
+      issue.setSeverity(readString(in));
+      issue.setMessage(readString(in));
+      if ((flags & HAS_LINE) != 0) {
+        issue.setLine(in.readUInt32());
+      }
+      if ((flags & HAS_GAP) != 0) {
+        issue.setGap(in.readDouble());
+      }
+      if ((flags & HAS_EFFORT) != 0) {
+        issue.setEffort(Duration.create(in.readSInt64()));
+      }
+      String status = readString(in);
+      if (status != null) {
+        issue.setStatus(status);
+      }
+      issue.setResolution(readString(in));
+      issue.setAssignee(readString(in));
+      issue.setChecksum(readString(in));
+      issue.setAuthorLogin(readString(in));
+      issue.setCreationDate(readDate(in, (flags & HAS_CREATION_DATE) != 0));
+      issue.setUpdateDate(readDate(in, (flags & HAS_UPDATE_DATE) != 0));
+      issue.setCloseDate(readDate(in, (flags & HAS_CLOSE_DATE) != 0));
+      if ((flags & HAS_SELECTED_AT) != 0) {
+        issue.setSelectedAt(in.readSInt64());
+      }
+      readAttributes(in, issue);
+      readTags(in, issue);
+      readComments(in, issue);
+      issue.setLocations(readLocations(in));
+      readChanges(in, issue);
+      return issue;
+    }
+
+    private void readAttributes(CodedInputStream in, DefaultIssue issue) throws IOException {
+      int size = in.readUInt32();
+      for (int i = 0; i < size; i++) {
+        issue.setAttribute(readString(in), readString(in));
+      }
+    }
+
+    private void readTags(CodedInputStream in, DefaultIssue issue) throws IOException {
+      int size = in.readUInt32();
+      if (size > 0) {
+        Set<String> tags = new LinkedHashSet<>(size);
+        for (int i = 0; i < size; i++) {
+          tags.add(readString(in));
+        }
+        issue.setTags(tags);
+      }
+    }
+
+    private void readComments(CodedInputStream in, DefaultIssue issue) throws IOException {
+      int size = in.readUInt32();
+      for (int i = 0; i < size; i++) {
+        DefaultIssueComment comment = new DefaultIssueComment()
+          .setKey(readString(in))
+          .setIssueKey(readString(in))
+          .setUserLogin(readString(in))
+          .setMarkdownText(readString(in))
+          .setCreatedAt(readDate(in))
+          .setUpdatedAt(readDate(in))
+          .setNew(in.readBool());
+        issue.addComment(comment);
+      }
+    }
+
+    @CheckForNull
+    private static Object readLocations(CodedInputStream in) throws IOException {
+      int kind = in.readUInt32();
+      switch (kind) {
+        case NULL_LOCATIONS:
+          return null;
+        case PROTOBUF_LOCATIONS:
+          return DbIssues.Locations.parseFrom(in.readByteArray());
+        case SERIALIZED_LOCATIONS:
+          return readSerialized(in);
+        default:
+          throw new IllegalStateException("Unsupported kind of locations: " + kind);
+      }
+    }
+
+    private void readChanges(CodedInputStream in, DefaultIssue issue) throws IOException {
+      int size = in.readUInt32();
+      List<FieldDiffs> changes = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        int sameAs = in.readUInt32();
+        changes.add(sameAs == 0 ? readFieldDiffs(in) : changes.get(sameAs - 1));
+      }
+      int currentChange = in.readUInt32();
+      if (currentChange == 1) {
+        issue.setCurrentChange(readFieldDiffs(in));
+      } else if (currentChange > 1) {
+        issue.setCurrentChange(changes.get(currentChange - 2));
+      }
+      // setCurrentChange() also appends to the list of changes, which must be restored as is
+      issue.setChanges(changes.isEmpty() ? null : changes);
+    }
+
+    private FieldDiffs readFieldDiffs(CodedInputStream in) throws IOException {
+      FieldDiffs diffs = new FieldDiffs();
+      diffs.setIssueKey(readString(in));
+      diffs.setUserLogin(readString(in));
+      diffs.setCreationDate(readDate(in));
+      int size = in.readUInt32();
+      for (int i = 0; i < size; i++) {
+        diffs.setDiff(readString(in), readDiffValue(in), readDiffValue(in));
+      }
+      return diffs;
+    }
+
+    @CheckForNull
+    private Serializable readDiffValue(CodedInputStream in) throws IOException {
+      int kind = in.readUInt32();
+      switch (kind) {
+        case NULL_VALUE:
+          return null;
+        case STRING_VALUE:
+          return readString(in);
+        case LONG_VALUE:
+          return in.readSInt64();
+        case INTEGER_VALUE:
+          return in.readSInt32();
+        case RULE_TYPE_VALUE:
+          return RuleType.valueOf(in.readUInt32());
+        case SERIALIZED_VALUE:
+          return readSerialized(in);
+        default:
+          throw new IllegalStateException("Unsupported kind of value: " + kind);
+      }
+    }
+
+    @CheckForNull
+    private static Date readDate(CodedInputStream in) throws IOException {
+      return readDate(in, in.readBool());
+    }
+
+    @CheckForNull
+    private static Date readDate(CodedInputStream in, boolean present) throws IOException {
+      return present ? new Date(in.readSInt64()) : null;
+    }
+
+    @CheckForNull
+    private String readString(CodedInputStream in) throws IOException {
+      int code = in.readUInt32();
+      switch (code) {
+        case NULL_STRING:
+          return null;
+        case LITERAL:
+          return in.readString();
+        case INTERNED_LITERAL:
+          String s = in.readString();
+          if (nextId == strings.size()) {
+            strings.add(s);
+          }
+          nextId++;
+          return s;
+        default:
+          return strings.get(code - FIRST_REFERENCE);
+      }
+    }
+
+    private static Serializable readSerialized(CodedInputStream in) throws IOException {
+      try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(in.readByteArray()))) {
+        return (Serializable) objectInput.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Fail to deserialize issue value", e);
+      }
+    }
+  }
+
+}
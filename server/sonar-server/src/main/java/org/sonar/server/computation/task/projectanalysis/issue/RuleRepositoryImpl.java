@@ -31,12 +31,14 @@ import org.sonar.db.rule.RuleDto;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Rules are lazily loaded on first request. Loading is thread-safe, as base issues are converted
+ * by the background thread of a prefetcher.
+ */
 public class RuleRepositoryImpl implements RuleRepository {
 
   @CheckForNull
-  private Map<RuleKey, Rule> rulesByKey;
-  @CheckForNull
-  private Map<Integer, Rule> rulesById;
+  private volatile Rules rules;
 
   private final DbClient dbClient;
 
@@ -48,9 +50,7 @@ public class RuleRepositoryImpl implements RuleRepository {
   public Rule getByKey(RuleKey key) {
     verifyKeyArgument(key);
 
-    ensureInitialized();
-
-    Rule rule = rulesByKey.get(key);
+    Rule rule = ensureInitialized().byKey.get(key);
     checkArgument(rule != null, "Can not find rule for key %s. This rule does not exist in DB", key);
     return rule;
   }
@@ -59,43 +59,45 @@ public class RuleRepositoryImpl implements RuleRepository {
   public Optional<Rule> findByKey(RuleKey key) {
     verifyKeyArgument(key);
 
-    ensureInitialized();
-
-    return Optional.fromNullable(rulesByKey.get(key));
+    return Optional.fromNullable(ensureInitialized().byKey.get(key));
   }
 
   @Override
   public Rule getById(int id) {
-    ensureInitialized();
-
-    Rule rule = rulesById.get(id);
+    Rule rule = ensureInitialized().byId.get(id);
     checkArgument(rule != null, "Can not find rule for id %s. This rule does not exist in DB", id);
     return rule;
   }
 
   @Override
   public Optional<Rule> findById(int id) {
-    ensureInitialized();
-
-    return Optional.fromNullable(rulesById.get(id));
+    return Optional.fromNullable(ensureInitialized().byId.get(id));
   }
 
   private static void verifyKeyArgument(RuleKey key) {
     requireNonNull(key, "RuleKey can not be null");
   }
 
-  private void ensureInitialized() {
-    if (rulesByKey == null) {
-      DbSession dbSession = dbClient.openSession(false);
-      try {
-        loadRulesFromDb(dbSession);
-      } finally {
-        dbClient.closeSession(dbSession);
+  private Rules ensureInitialized() {
+    Rules result = rules;
+    if (result == null) {
+      synchronized (this) {
+        result = rules;
+        if (result == null) {
+          DbSession dbSession = dbClient.openSession(false);
+          try {
+            result = loadRulesFromDb(dbSession);
+          } finally {
+            dbClient.closeSession(dbSession);
+          }
+          rules = result;
+        }
       }
     }
+    return result;
   }
 
-  private void loadRulesFromDb(DbSession dbSession) {
+  private Rules loadRulesFromDb(DbSession dbSession) {
     ImmutableMap.Builder<RuleKey, Rule> rulesByKeyBuilder = ImmutableMap.builder();
     ImmutableMap.Builder<Integer, Rule> rulesByIdBuilder = ImmutableMap.builder();
     for (RuleDto ruleDto : dbClient.ruleDao().selectAll(dbSession)) {
@@ -103,8 +105,17 @@ public class RuleRepositoryImpl implements RuleRepository {
       rulesByKeyBuilder.put(ruleDto.getKey(), rule);
       rulesByIdBuilder.put(ruleDto.getId(), rule);
     }
-    this.rulesByKey = rulesByKeyBuilder.build();
-    this.rulesById = rulesByIdBuilder.build();
+    return new Rules(rulesByKeyBuilder.build(), rulesByIdBuilder.build());
+  }
+
+  private static final class Rules {
+    private final Map<RuleKey, Rule> byKey;
+    private final Map<Integer, Rule> byId;
+
+    private Rules(Map<RuleKey, Rule> byKey, Map<Integer, Rule> byId) {
+      this.byKey = byKey;
+      this.byId = byId;
+    }
   }
 
 }
@@ -19,10 +19,17 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import com.google.common.base.Splitter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.picocontainer.Startable;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.LazyInput;
@@ -30,30 +37,110 @@ import org.sonar.core.issue.tracking.LineHashSequence;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
+import org.sonar.server.computation.util.Prefetcher;
+
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
 /**
- * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded.
+ * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded. Issues and line hashes of the components
+ * of the tree are prefetched by batches, in the order of the traversal of {@link IntegrateIssuesVisitor}.
  */
-public class TrackerBaseInputFactory {
+public class TrackerBaseInputFactory implements Startable {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
+  private static final Splitter LINES_HASHES_SPLITTER = Splitter.on('\n');
 
   private final BaseIssuesLoader baseIssuesLoader;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
+  private final TreeRootHolder treeRootHolder;
+  private final Set<String> fileUuidsWithoutIssues = new HashSet<>();
+
+  private Prefetcher<List<DefaultIssue>> issuesPrefetcher;
+  private Prefetcher<List<String>> lineHashesPrefetcher;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository, TreeRootHolder treeRootHolder) {
     this.baseIssuesLoader = baseIssuesLoader;
     this.dbClient = dbClient;
     this.movedFilesRepository = movedFilesRepository;
+    this.treeRootHolder = treeRootHolder;
   }
 
   public Input<DefaultIssue> create(Component component) {
+    initPrefetchers();
     return new BaseLazyInput(component, movedFilesRepository.getOriginalFile(component).orNull());
   }
 
+  private void initPrefetchers() {
+    if (issuesPrefetcher != null) {
+      return;
+    }
+    List<String> componentUuids = new ArrayList<>();
+    List<String> fileUuids = new ArrayList<>();
+    new DepthTraversalTypeAwareCrawler(
+      new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, POST_ORDER) {
+        @Override
+        public void visitAny(Component component) {
+          String uuid = effectiveUuid(component, movedFilesRepository.getOriginalFile(component).orNull());
+          componentUuids.add(uuid);
+          if (component.getType() == Component.Type.FILE) {
+            fileUuids.add(uuid);
+          }
+        }
+      }).visit(treeRootHolder.getRoot());
+    // line hashes are needed only to match base issues
+    Set<String> uuidsWithOpenIssues = baseIssuesLoader.loadUuidsOfComponentsWithOpenIssues();
+    fileUuidsWithoutIssues.addAll(fileUuids);
+    fileUuidsWithoutIssues.removeAll(uuidsWithOpenIssues);
+    fileUuids.retainAll(uuidsWithOpenIssues);
+
+    issuesPrefetcher = new Prefetcher<>("issues", dbClient, componentUuids, Prefetcher.DEFAULT_BATCH_SIZE, false, baseIssuesLoader::loadForComponentUuids);
+    lineHashesPrefetcher = new Prefetcher<>("line_hashes", dbClient, fileUuids, Prefetcher.DEFAULT_BATCH_SIZE, false, this::loadLineHashes);
+  }
+
+  private Map<String, List<String>> loadLineHashes(DbSession dbSession, List<String> fileUuids) {
+    Map<String, List<String>> result = new HashMap<>();
+    for (FileSourceDto dto : dbClient.fileSourceDao().selectLineHashesByFileUuids(dbSession, fileUuids)) {
+      String lineHashes = dto.getLineHashes();
+      result.put(dto.getFileUuid(), lineHashes == null ? Collections.emptyList() : LINES_HASHES_SPLITTER.splitToList(lineHashes));
+    }
+    return result;
+  }
+
+  @CheckForNull
+  private List<String> selectLineHashes(String fileUuid) {
+    DbSession session = dbClient.openSession(false);
+    try {
+      return dbClient.fileSourceDao().selectLineHashes(session, fileUuid);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private static String effectiveUuid(Component component, @Nullable OriginalFile originalFile) {
+    return originalFile == null ? component.getUuid() : originalFile.getUuid();
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (issuesPrefetcher != null) {
+      issuesPrefetcher.close();
+      lineHashesPrefetcher.close();
+    }
+  }
+
   private class BaseLazyInput extends LazyInput<DefaultIssue> {
     private final Component component;
     @CheckForNull
@@ -61,30 +148,26 @@ public class TrackerBaseInputFactory {
 
     private BaseLazyInput(Component component, @Nullable OriginalFile originalFile) {
       this.component = component;
-      this.effectiveUuid = originalFile == null ? component.getUuid() : originalFile.getUuid();
+      this.effectiveUuid = effectiveUuid(component, originalFile);
     }
 
     @Override
     protected LineHashSequence loadLineHashSequence() {
-      if (component.getType() != Component.Type.FILE) {
+      if (component.getType() != Component.Type.FILE || fileUuidsWithoutIssues.contains(effectiveUuid)) {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
-      
-      DbSession session = dbClient.openSession(false);
-      try {
-        List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
-        if (hashes == null || hashes.isEmpty()) {
-          return EMPTY_LINE_HASH_SEQUENCE;
-        }
-        return new LineHashSequence(hashes);
-      } finally {
-        MyBatis.closeQuietly(session);
+
+      List<String> hashes = lineHashesPrefetcher.get(effectiveUuid, TrackerBaseInputFactory.this::selectLineHashes);
+      if (hashes == null || hashes.isEmpty()) {
+        return EMPTY_LINE_HASH_SEQUENCE;
       }
+      return new LineHashSequence(hashes);
     }
 
     @Override
     protected List<DefaultIssue> loadIssues() {
-      return baseIssuesLoader.loadForComponentUuid(effectiveUuid);
+      List<DefaultIssue> issues = issuesPrefetcher.get(effectiveUuid, baseIssuesLoader::loadForComponentUuid);
+      return issues == null ? new ArrayList<>() : issues;
     }
   }
 }
@@ -0,0 +1,182 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures and stores them in {@link MeasureColumns}, so
+ * that the memory used does not depend on the number of {@link Measure} objects. Measures are read back as new
+ * instances of {@link Measure}.
+ * <p>
+ * Metrics are indexed by their key, in the order they are first used. Measures of developers are delegated to a
+ * {@link MapBasedRawMeasureRepository}.
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ColumnarRawMeasureRepository implements MeasureRepository {
+  private final ToIntFunction<Component> componentToKey;
+  private final MeasureColumns columns;
+  private final MapBasedRawMeasureRepository<Integer> developerMeasures;
+  private final Map<String, Integer> metricIndexesByKey = new HashMap<>();
+  private final List<String> metricKeys = new ArrayList<>();
+
+  /**
+   * @param componentToKey unique int identifier of components, for example their reference in the scanner report
+   * @param offHeap whether numeric values are stored off heap
+   */
+  public ColumnarRawMeasureRepository(ToIntFunction<Component> componentToKey, boolean offHeap) {
+    this.componentToKey = requireNonNull(componentToKey);
+    this.columns = new MeasureColumns(offHeap);
+    this.developerMeasures = new MapBasedRawMeasureRepository<>(componentToKey::applyAsInt);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    int slot = find(component, metric);
+    return slot < 0 ? Optional.absent() : Optional.of(columns.get(slot));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (measure.getDeveloper() != null) {
+      developerMeasures.add(component, metric, measure);
+      return;
+    }
+    if (find(component, metric) >= 0) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    columns.put(componentToKey.applyAsInt(component), metricIndex(metric), measure);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (measure.getDeveloper() != null) {
+      developerMeasures.update(component, metric, measure);
+      return;
+    }
+    if (find(component, metric) < 0) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    columns.put(componentToKey.applyAsInt(component), metricIndex(metric), measure);
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    if (measure.getDeveloper() != null) {
+      developerMeasures.add(component, metric, measure, overridePolicy);
+    } else if (overridePolicy == OverridePolicy.OVERRIDE || find(component, metric) < 0) {
+      columns.put(componentToKey.applyAsInt(component), metricIndex(metric), measure);
+    }
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    int slot = find(component, metric);
+    if (slot >= 0) {
+      builder.add(columns.get(slot));
+    }
+    return builder.addAll(developerMeasures.getRawMeasures(component, metric)).build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    int[] slots = columns.slots(componentToKey.applyAsInt(component));
+    for (int metricIndex = 0; metricIndex < slots.length; metricIndex++) {
+      if (slots[metricIndex] >= 0) {
+        builder.put(metricKeys.get(metricIndex), columns.get(slots[metricIndex]));
+      }
+    }
+    return builder.putAll(developerMeasures.getRawMeasures(component)).build();
+  }
+
+  private int find(Component component, Metric metric) {
+    Integer metricIndex = metricIndexesByKey.get(metric.getKey());
+    if (metricIndex == null) {
+      return -1;
+    }
+    return columns.find(componentToKey.applyAsInt(component), metricIndex);
+  }
+
+  private int metricIndex(Metric metric) {
+    return metricIndexesByKey.computeIfAbsent(metric.getKey(), key -> {
+      metricKeys.add(key);
+      return metricKeys.size() - 1;
+    });
+  }
+}
@@ -95,6 +95,14 @@ public final class Measure {
     this.variation = variation;
   }
 
+  /**
+   * Measure with the given fields, which are not checked nor scaled. Used to read back stored measures.
+   */
+  static Measure restore(ValueType valueType, @Nullable Double value, @Nullable String data, @Nullable Level dataLevel,
+    @Nullable String description, @Nullable QualityGateStatus qualityGateStatus, @Nullable Double variation) {
+    return new Measure(valueType, null, value, data, dataLevel, description, qualityGateStatus, variation);
+  }
+
   public static NewMeasureBuilder newMeasureBuilder() {
     return new NewMeasureBuilder();
   }
@@ -0,0 +1,283 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Storage of measures by columns, indexed by component and metric, both identified by an int, metrics being expected to
+ * be numbered from 0. Numeric values, variations and value types are stored in fixed-size records, on heap or off heap,
+ * while data, levels, descriptions and quality gate statuses are kept in a separate column of objects, allocated only
+ * for the records which have some.
+ * <p>
+ * Measures of developers are not supported.
+ */
+final class MeasureColumns {
+
+  private static final int TYPE_OFFSET = 0;
+  private static final int FLAGS_OFFSET = 1;
+  private static final int VALUE_OFFSET = 2;
+  private static final int VARIATION_OFFSET = 10;
+  private static final int RECORD_SIZE = 18;
+
+  private static final byte HAS_VALUE = 1;
+  private static final byte HAS_VARIATION = 2;
+
+  private static final int CHUNK_BITS = 14;
+  private static final int RECORDS_PER_CHUNK = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = RECORDS_PER_CHUNK - 1;
+  private static final int NO_SLOT = -1;
+  private static final int[] NO_SLOTS = new int[0];
+  private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+
+  private final boolean offHeap;
+  private final List<ByteBuffer> records = new ArrayList<>();
+  private final List<Extra[]> extras = new ArrayList<>();
+  private final IntIntHashMap rowsByComponent = new IntIntHashMap();
+  // slots of the measures of each component, by metric
+  private int[][] slotsByRow = new int[16][];
+  private int rows = 0;
+  private int size = 0;
+
+  MeasureColumns(boolean offHeap) {
+    this.offHeap = offHeap;
+  }
+
+  /**
+   * @return the slot of the measure, or {@code -1} if there is none
+   */
+  int find(int component, int metric) {
+    int row = rowsByComponent.get(component);
+    if (row == NO_SLOT) {
+      return NO_SLOT;
+    }
+    int[] slots = slotsByRow[row];
+    return metric < slots.length ? slots[metric] : NO_SLOT;
+  }
+
+  /**
+   * Stores the measure, overriding the existing one if any.
+   */
+  void put(int component, int metric, Measure measure) {
+    int row = rowsByComponent.get(component);
+    if (row == NO_SLOT) {
+      row = addRow();
+      rowsByComponent.put(component, row);
+    }
+    int[] slots = slotsByRow[row];
+    if (metric >= slots.length) {
+      int length = slots.length;
+      slots = Arrays.copyOf(slots, Math.max(metric + 1, length * 2));
+      Arrays.fill(slots, length, slots.length, NO_SLOT);
+      slotsByRow[row] = slots;
+    }
+    if (slots[metric] == NO_SLOT) {
+      slots[metric] = allocate();
+    }
+    write(slots[metric], measure);
+  }
+
+  /**
+   * Slots of the measures of the component, indexed by metric, {@code -1} meaning that there is no measure for the metric.
+   * The returned array must not be modified.
+   */
+  int[] slots(int component) {
+    int row = rowsByComponent.get(component);
+    return row == NO_SLOT ? NO_SLOTS : slotsByRow[row];
+  }
+
+  Measure get(int slot) {
+    ByteBuffer buffer = records.get(slot >>> CHUNK_BITS);
+    int offset = (slot & CHUNK_MASK) * RECORD_SIZE;
+    byte flags = buffer.get(offset + FLAGS_OFFSET);
+    Double value = (flags & HAS_VALUE) == 0 ? null : buffer.getDouble(offset + VALUE_OFFSET);
+    Double variation = (flags & HAS_VARIATION) == 0 ? null : buffer.getDouble(offset + VARIATION_OFFSET);
+    Extra extra = getExtra(slot);
+    return Measure.restore(VALUE_TYPES[buffer.get(offset + TYPE_OFFSET)], value,
+      extra == null ? null : extra.data,
+      extra == null ? null : extra.level,
+      extra == null ? null : extra.description,
+      extra == null ? null : extra.qualityGateStatus,
+      variation);
+  }
+
+  private int addRow() {
+    if (rows == slotsByRow.length) {
+      slotsByRow = Arrays.copyOf(slotsByRow, rows * 2);
+    }
+    slotsByRow[rows] = NO_SLOTS;
+    rows++;
+    return rows - 1;
+  }
+
+  private int allocate() {
+    if ((size & CHUNK_MASK) == 0) {
+      int capacity = RECORDS_PER_CHUNK * RECORD_SIZE;
+      records.add(offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+      extras.add(null);
+    }
+    int slot = size;
+    size++;
+    return slot;
+  }
+
+  private void write(int slot, Measure measure) {
+    ByteBuffer buffer = records.get(slot >>> CHUNK_BITS);
+    int offset = (slot & CHUNK_MASK) * RECORD_SIZE;
+    byte flags = 0;
+    Double value = valueOf(measure);
+    if (value != null) {
+      flags |= HAS_VALUE;
+      buffer.putDouble(offset + VALUE_OFFSET, value);
+    }
+    if (measure.hasVariation()) {
+      flags |= HAS_VARIATION;
+      buffer.putDouble(offset + VARIATION_OFFSET, measure.getVariation());
+    }
+    buffer.put(offset + TYPE_OFFSET, (byte) measure.getValueType().ordinal());
+    buffer.put(offset + FLAGS_OFFSET, flags);
+    setExtra(slot, Extra.of(measure));
+  }
+
+  @CheckForNull
+  private static Double valueOf(Measure measure) {
+    switch (measure.getValueType()) {
+      case BOOLEAN:
+        return measure.getBooleanValue() ? 1.0d : 0.0d;
+      case INT:
+        return (double) measure.getIntValue();
+      case LONG:
+        return (double) measure.getLongValue();
+      case DOUBLE:
+        return measure.getDoubleValue();
+      default:
+        return null;
+    }
+  }
+
+  @CheckForNull
+  private Extra getExtra(int slot) {
+    Extra[] chunk = extras.get(slot >>> CHUNK_BITS);
+    return chunk == null ? null : chunk[slot & CHUNK_MASK];
+  }
+
+  private void setExtra(int slot, @Nullable Extra extra) {
+    int chunkIndex = slot >>> CHUNK_BITS;
+    Extra[] chunk = extras.get(chunkIndex);
+    if (chunk == null) {
+      if (extra == null) {
+        return;
+      }
+      chunk = new Extra[RECORDS_PER_CHUNK];
+      extras.set(chunkIndex, chunk);
+    }
+    chunk[slot & CHUNK_MASK] = extra;
+  }
+
+  private static final class Extra {
+    private final String data;
+    private final Measure.Level level;
+    private final String description;
+    private final QualityGateStatus qualityGateStatus;
+
+    private Extra(@Nullable String data, @Nullable Measure.Level level, @Nullable String description, @Nullable QualityGateStatus qualityGateStatus) {
+      this.data = data;
+      this.level = level;
+      this.description = description;
+      this.qualityGateStatus = qualityGateStatus;
+    }
+
+    @CheckForNull
+    private static Extra of(Measure measure) {
+      Measure.Level level = measure.getValueType() == Measure.ValueType.LEVEL ? measure.getLevelValue() : null;
+      QualityGateStatus qualityGateStatus = measure.hasQualityGateStatus() ? measure.getQualityGateStatus() : null;
+      if (measure.getData() == null && level == null && measure.getDescription() == null && qualityGateStatus == null) {
+        return null;
+      }
+      return new Extra(measure.getData(), level, measure.getDescription(), qualityGateStatus);
+    }
+  }
+
+  /**
+   * Open addressing hash table of positive int values by int keys, without boxing
+   */
+  private static final class IntIntHashMap {
+    private int[] keys = new int[16];
+    private int[] values = newValues(16);
+    private int size = 0;
+
+    int get(int key) {
+      int mask = keys.length - 1;
+      for (int i = hash(key) & mask; values[i] != NO_SLOT; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+      }
+      return NO_SLOT;
+    }
+
+    void put(int key, int value) {
+      int mask = keys.length - 1;
+      int i = hash(key) & mask;
+      while (values[i] != NO_SLOT) {
+        if (keys[i] == key) {
+          values[i] = value;
+          return;
+        }
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values[i] = value;
+      size++;
+      if (size > keys.length / 2) {
+        rehash();
+      }
+    }
+
+    private void rehash() {
+      int[] oldKeys = keys;
+      int[] oldValues = values;
+      keys = new int[oldKeys.length * 2];
+      values = newValues(oldKeys.length * 2);
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldValues[i] != NO_SLOT) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    private static int[] newValues(int capacity) {
+      int[] values = new int[capacity];
+      Arrays.fill(values, NO_SLOT);
+      return values;
+    }
+
+    private static int hash(int key) {
+      int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
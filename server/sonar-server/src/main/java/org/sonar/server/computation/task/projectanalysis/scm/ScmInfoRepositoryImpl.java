@@ -20,8 +20,14 @@
 package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
@@ -31,11 +37,25 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
+import org.sonar.server.computation.util.Prefetcher;
 
 import static java.util.Objects.requireNonNull;
-
-public class ScmInfoRepositoryImpl implements ScmInfoRepository {
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
+
+/**
+ * SCM data copied from previous analysis are loaded by batches of files, in the order of the traversal of the
+ * component tree. Only the files which changesets are flagged as copied from previous analysis are prefetched.
+ * Files skipped by the consumer are discarded, and loaded one by one if they are requested later.
+ * <p>
+ * The changesets of the report are parsed once per file: those read when listing the files to prefetch are kept
+ * in cache.
+ */
+public class ScmInfoRepositoryImpl implements ScmInfoRepository, Startable {
 
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
 
@@ -43,14 +63,31 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final DbClient dbClient;
   private final SourceHashRepository sourceHashRepository;
+  private final TreeRootHolder treeRootHolder;
 
   private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  private final Set<Component> filesCopiedFromPrevious = new HashSet<>();
+  private Prefetcher<FileSourceDto> sourcesPrefetcher;
 
-  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient,
+    SourceHashRepository sourceHashRepository, TreeRootHolder treeRootHolder) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.dbClient = dbClient;
     this.sourceHashRepository = sourceHashRepository;
+    this.treeRootHolder = treeRootHolder;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (sourcesPrefetcher != null) {
+      sourcesPrefetcher.close();
+    }
   }
 
   @Override
@@ -81,6 +118,9 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
   }
 
   private ScmInfo getScmInfoForComponent(Component component) {
+    if (filesCopiedFromPrevious.contains(component)) {
+      return getScmInfoFromDb(component);
+    }
     ScannerReport.Changesets changesets = batchReportReader.readChangesets(component.getReportAttributes().getRef());
     if (changesets == null) {
       LOGGER.trace("No SCM info for file '{}'", component.getKey());
@@ -98,13 +138,59 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
+    FileSourceDto dto = getSourcesPrefetcher().get(file.getUuid(), this::selectSource);
+    if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
+      return NoScmInfo.INSTANCE;
+    }
+    return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+  }
+
+  private Prefetcher<FileSourceDto> getSourcesPrefetcher() {
+    if (sourcesPrefetcher == null) {
+      List<String> fileUuids = new ArrayList<>();
+      new DepthTraversalTypeAwareCrawler(
+        new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, POST_ORDER) {
+          @Override
+          public void visitFile(Component file) {
+            if (!scmInfoCache.containsKey(file)) {
+              readChangesets(file, fileUuids);
+            }
+          }
+        }).visit(treeRootHolder.getRoot());
+      sourcesPrefetcher = new Prefetcher<>("scm", dbClient, fileUuids, Prefetcher.DEFAULT_BATCH_SIZE, false, this::loadSources);
+    }
+    return sourcesPrefetcher;
+  }
+
+  /**
+   * Files copied from previous analysis are added to {@code fileUuidsToPrefetch}, whereas the SCM info of the
+   * other files are cached, so that their changesets are not parsed again.
+   */
+  private void readChangesets(Component file, List<String> fileUuidsToPrefetch) {
+    ScannerReport.Changesets changesets = batchReportReader.readChangesets(file.getReportAttributes().getRef());
+    if (changesets == null) {
+      scmInfoCache.put(file, NoScmInfo.INSTANCE);
+    } else if (changesets.getCopyFromPrevious()) {
+      filesCopiedFromPrevious.add(file);
+      fileUuidsToPrefetch.add(file.getUuid());
+    } else {
+      scmInfoCache.put(file, new ReportScmInfo(changesets));
+    }
+  }
+
+  private Map<String, FileSourceDto> loadSources(DbSession dbSession, List<String> fileUuids) {
+    Map<String, FileSourceDto> result = new HashMap<>();
+    for (FileSourceDto dto : dbClient.fileSourceDao().selectSourceDataByFileUuids(dbSession, fileUuids)) {
+      result.put(dto.getFileUuid(), dto);
+    }
+    return result;
+  }
+
+  @CheckForNull
+  private FileSourceDto selectSource(String fileUuid) {
     DbSession dbSession = dbClient.openSession(false);
     try {
-      FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
-      if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
-        return NoScmInfo.INSTANCE;
-      }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+      return dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
     } finally {
       dbClient.closeSession(dbSession);
     }
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.source;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -34,8 +35,6 @@ import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConve
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.lang.String.format;
-import static org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter.OFFSET_SEPARATOR;
-import static org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter.SYMBOLS_SEPARATOR;
 
 public class HighlightingLineReader implements LineReader {
 
@@ -43,16 +42,16 @@ public class HighlightingLineReader implements LineReader {
 
   private boolean isHighlightingValid = true;
 
-  private static final Map<HighlightingType, String> cssClassByType = ImmutableMap.<HighlightingType, String>builder()
-    .put(HighlightingType.ANNOTATION, "a")
-    .put(HighlightingType.CONSTANT, "c")
-    .put(HighlightingType.COMMENT, "cd")
-    .put(HighlightingType.CPP_DOC, "cppd")
-    .put(HighlightingType.STRUCTURED_COMMENT, "j")
-    .put(HighlightingType.KEYWORD, "k")
-    .put(HighlightingType.KEYWORD_LIGHT, "h")
-    .put(HighlightingType.HIGHLIGHTING_STRING, "s")
-    .put(HighlightingType.PREPROCESS_DIRECTIVE, "p")
+  private static final Map<HighlightingType, DbFileSources.HighlightingType> dbTypeByType = ImmutableMap.<HighlightingType, DbFileSources.HighlightingType>builder()
+    .put(HighlightingType.ANNOTATION, DbFileSources.HighlightingType.ANNOTATION)
+    .put(HighlightingType.CONSTANT, DbFileSources.HighlightingType.CONSTANT)
+    .put(HighlightingType.COMMENT, DbFileSources.HighlightingType.COMMENT)
+    .put(HighlightingType.CPP_DOC, DbFileSources.HighlightingType.CPP_DOC)
+    .put(HighlightingType.STRUCTURED_COMMENT, DbFileSources.HighlightingType.STRUCTURED_COMMENT)
+    .put(HighlightingType.KEYWORD, DbFileSources.HighlightingType.KEYWORD)
+    .put(HighlightingType.KEYWORD_LIGHT, DbFileSources.HighlightingType.KEYWORD_LIGHT)
+    .put(HighlightingType.HIGHLIGHTING_STRING, DbFileSources.HighlightingType.HIGHLIGHTING_STRING)
+    .put(HighlightingType.PREPROCESS_DIRECTIVE, DbFileSources.HighlightingType.PREPROCESS_DIRECTIVE)
     .build();
 
   private final Component file;
@@ -84,46 +83,37 @@ public class HighlightingLineReader implements LineReader {
 
   private void processHighlightings(DbFileSources.Line.Builder lineBuilder) {
     int line = lineBuilder.getLine();
-    StringBuilder highlighting = new StringBuilder();
+    List<Integer> highlighting = newArrayList();
 
     incrementHighlightingListMatchingLine(line);
     for (Iterator<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingIterator = highlightingList.iterator(); syntaxHighlightingIterator.hasNext();) {
       processHighlighting(syntaxHighlightingIterator, highlighting, lineBuilder);
     }
-    if (highlighting.length() > 0) {
-      lineBuilder.setHighlighting(highlighting.toString());
-    }
+    // ranges are added only once the whole line is processed, as a RangeOffsetConverterException drops the highlighting
+    lineBuilder.addAllHighlightingRanges(highlighting);
   }
 
-  private void processHighlighting(Iterator<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingIterator, StringBuilder highlighting,
+  private void processHighlighting(Iterator<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingIterator, List<Integer> highlighting,
     DbFileSources.Line.Builder lineBuilder) {
     ScannerReport.SyntaxHighlightingRule syntaxHighlighting = syntaxHighlightingIterator.next();
     int line = lineBuilder.getLine();
     ScannerReport.TextRange range = syntaxHighlighting.getRange();
     if (range.getStartLine() <= line) {
-      String offsets = rangeOffsetConverter.offsetToString(syntaxHighlighting.getRange(), line, lineBuilder.getSource().length());
-      if (offsets.isEmpty()) {
-        if (range.getEndLine() == line) {
-          syntaxHighlightingIterator.remove();
-        }
-      } else {
-        if (highlighting.length() > 0) {
-          highlighting.append(SYMBOLS_SEPARATOR);
-        }
-        highlighting.append(offsets)
-          .append(OFFSET_SEPARATOR)
-          .append(getCssClass(syntaxHighlighting.getType()));
-        if (range.getEndLine() == line) {
-          syntaxHighlightingIterator.remove();
-        }
+      int[] offsets = rangeOffsetConverter.offsets(syntaxHighlighting.getRange(), line, lineBuilder.getSource().length());
+      if (offsets.length > 0) {
+        highlighting.addAll(Ints.asList(offsets));
+        highlighting.add(getDbType(syntaxHighlighting.getType()).getNumber());
+      }
+      if (range.getEndLine() == line) {
+        syntaxHighlightingIterator.remove();
       }
     }
   }
 
-  private static String getCssClass(HighlightingType type) {
-    String cssClass = cssClassByType.get(type);
-    if (cssClass != null) {
-      return cssClass;
+  private static DbFileSources.HighlightingType getDbType(HighlightingType type) {
+    DbFileSources.HighlightingType dbType = dbTypeByType.get(type);
+    if (dbType != null) {
+      return dbType;
     } else {
       throw new IllegalArgumentException(format("Unknown type %s ", type.toString()));
     }
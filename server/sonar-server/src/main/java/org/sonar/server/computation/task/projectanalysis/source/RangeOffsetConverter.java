@@ -25,10 +25,12 @@ import static java.lang.String.format;
 
 public class RangeOffsetConverter {
 
-  static final String OFFSET_SEPARATOR = ",";
-  static final String SYMBOLS_SEPARATOR = ";";
+  private static final int[] NO_OFFSETS = new int[0];
 
-  public String offsetToString(ScannerReport.TextRange range, int lineIndex, int lineLength) {
+  /**
+   * Start and end offsets of the range in the line, or no offsets if the range is empty in the line
+   */
+  public int[] offsets(ScannerReport.TextRange range, int lineIndex, int lineLength) {
     validateOffsetOrder(range, lineIndex);
     validateStartOffsetNotGreaterThanLineLength(range, lineLength, lineIndex);
     validateEndOffsetNotGreaterThanLineLength(range, lineLength, lineIndex);
@@ -36,13 +38,10 @@ public class RangeOffsetConverter {
     int startOffset = range.getStartLine() == lineIndex ? range.getStartOffset() : 0;
     int endOffset = range.getEndLine() == lineIndex ? range.getEndOffset() : lineLength;
 
-    StringBuilder element = new StringBuilder();
     if (startOffset < endOffset) {
-      element.append(startOffset).append(OFFSET_SEPARATOR);
-      element.append(endOffset);
+      return new int[] {startOffset, endOffset};
     }
-
-    return element.toString();
+    return NO_OFFSETS;
   }
 
   private static void validateOffsetOrder(ScannerReport.TextRange range, int line) {
@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.source;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
+import com.google.common.primitives.Ints;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -36,8 +37,6 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
 import static java.lang.String.format;
-import static org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter.OFFSET_SEPARATOR;
-import static org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter.SYMBOLS_SEPARATOR;
 
 public class SymbolsLineReader implements LineReader {
 
@@ -82,30 +81,24 @@ public class SymbolsLineReader implements LineReader {
     // data
     Collections.sort(lineSymbols, SymbolsComparator.INSTANCE);
 
-    StringBuilder symbolString = new StringBuilder();
+    List<Integer> symbolRanges = new ArrayList<>();
     for (ScannerReport.Symbol lineSymbol : lineSymbols) {
       int symbolId = idsBySymbol.get(lineSymbol);
 
-      appendSymbol(symbolString, lineSymbol.getDeclaration(), line, symbolId, lineBuilder.getSource());
+      appendSymbol(symbolRanges, lineSymbol.getDeclaration(), line, symbolId, lineBuilder.getSource());
       for (ScannerReport.TextRange range : lineSymbol.getReferenceList()) {
-        appendSymbol(symbolString, range, line, symbolId, lineBuilder.getSource());
+        appendSymbol(symbolRanges, range, line, symbolId, lineBuilder.getSource());
       }
     }
-    if (symbolString.length() > 0) {
-      lineBuilder.setSymbols(symbolString.toString());
-    }
+    lineBuilder.addAllSymbolRanges(symbolRanges);
   }
 
-  private void appendSymbol(StringBuilder lineSymbol, ScannerReport.TextRange range, int line, int symbolId, String sourceLine) {
+  private void appendSymbol(List<Integer> symbolRanges, ScannerReport.TextRange range, int line, int symbolId, String sourceLine) {
     if (matchLine(range, line)) {
-      String offsets = rangeOffsetConverter.offsetToString(range, line, sourceLine.length());
-      if (!offsets.isEmpty()) {
-        if (lineSymbol.length() > 0) {
-          lineSymbol.append(SYMBOLS_SEPARATOR);
-        }
-        lineSymbol.append(offsets)
-          .append(OFFSET_SEPARATOR)
-          .append(symbolId);
+      int[] offsets = rangeOffsetConverter.offsets(range, line, sourceLine.length());
+      if (offsets.length > 0) {
+        symbolRanges.addAll(Ints.asList(offsets));
+        symbolRanges.add(symbolId);
       }
     }
   }
@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
@@ -35,9 +37,9 @@ import org.sonar.db.issue.IssueMapper;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
-public class PersistIssuesStep implements ComputationStep {
+public class PersistIssuesStep implements ConcurrentComputationStep {
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -120,6 +122,17 @@ public class PersistIssuesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<Class<?>> readDependencies() {
+    return ImmutableSet.of(IssueCache.class);
+  }
+
+  @Override
+  public Set<Class<?>> writeDependencies() {
+    // rules are lazily loaded on first access
+    return ImmutableSet.of(RuleRepository.class);
+  }
+
   @Override
   public String getDescription() {
     return "Persist issues";
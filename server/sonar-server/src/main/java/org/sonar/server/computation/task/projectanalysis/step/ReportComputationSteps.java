@@ -90,10 +90,11 @@ public class ReportComputationSteps extends AbstractComputationSteps {
     PersistComponentsStep.class,
     PersistAnalysisStep.class,
     PersistDevelopersStep.class,
-    PersistMeasuresStep.class,
-    PersistIssuesStep.class,
     PersistProjectLinksStep.class,
     PersistEventsStep.class,
+    // Executed concurrently, see ConcurrentComputationStep
+    PersistMeasuresStep.class,
+    PersistIssuesStep.class,
     PersistFileSourcesStep.class,
     PersistTestsStep.class,
     PersistCrossProjectDuplicationIndexStep.class,
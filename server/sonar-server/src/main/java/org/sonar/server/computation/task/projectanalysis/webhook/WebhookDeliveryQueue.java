@@ -0,0 +1,36 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.util.List;
+
+public interface WebhookDeliveryQueue {
+
+  /**
+   * Queue the delivery of the payload to the webhooks of a CE task. The HTTP(S) requests are sent
+   * asynchronously, so that slow or unreachable endpoints do not delay the
+   * processing of analysis reports.
+   * <br/>
+   * Each attempt is stored by {@link WebhookDeliveryStorage}. All the webhooks of the CE task must be
+   * given at once, as old deliveries of the project are purged when they are all delivered.
+   */
+  void enqueue(List<Webhook> webhooks, WebhookPayload payload);
+
+}
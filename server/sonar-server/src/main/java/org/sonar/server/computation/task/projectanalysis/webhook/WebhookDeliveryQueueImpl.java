@@ -0,0 +1,393 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.process.systeminfo.SystemInfoSection;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+
+import static java.lang.String.format;
+
+/**
+ * Sends webhooks from a dedicated pool of threads, instead of the threads of CE workers.
+ * <ul>
+ *   <li>the number of concurrent requests to the same URL is limited, further deliveries wait in a queue per URL</li>
+ *   <li>connection failures, 429 and 5xx responses are retried with an exponential backoff</li>
+ *   <li>after a number of consecutive failures, the circuit of the URL is opened: deliveries fail without any
+ *   request until a delay elapsed. The next request then decides whether the circuit is closed or re-opened.</li>
+ * </ul>
+ * Deliveries which are still waiting when the Compute Engine stops are lost. The failed attempts are nevertheless
+ * stored by {@link WebhookDeliveryStorage}. Old deliveries of a project are purged once all the deliveries of its
+ * analysis are completed.
+ */
+@ComputeEngineSide
+public class WebhookDeliveryQueueImpl implements WebhookDeliveryQueue, Startable, SystemInfoSection {
+
+  private static final Logger LOGGER = Loggers.get(WebhookDeliveryQueueImpl.class);
+  private static final int SENDER_THREADS = 5;
+  private static final long STOP_TIMEOUT_MS = 10_000L;
+
+  private final WebhookCaller caller;
+  private final WebhookDeliveryStorage deliveryStorage;
+  private final System2 system;
+  private final Policy policy;
+  private final Map<String, Endpoint> endpointsByUrl = new ConcurrentHashMap<>();
+  private final AtomicInteger pending = new AtomicInteger(0);
+  private final AtomicInteger dropped = new AtomicInteger(0);
+  // number of uncompleted deliveries by CE task
+  private final Map<String, Integer> uncompletedByCeTask = new ConcurrentHashMap<>();
+  private ScheduledExecutorService executor;
+
+  public WebhookDeliveryQueueImpl(WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system) {
+    this(caller, deliveryStorage, system, new Policy());
+  }
+
+  @VisibleForTesting
+  WebhookDeliveryQueueImpl(WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system, Policy policy) {
+    this.caller = caller;
+    this.deliveryStorage = deliveryStorage;
+    this.system = system;
+    this.policy = policy;
+  }
+
+  @Override
+  public void start() {
+    ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(SENDER_THREADS, new ThreadFactoryBuilder()
+      .setNameFormat("Webhook-Sender-%d")
+      .setDaemon(true)
+      .build());
+    // waiting retries must not delay the stop of Compute Engine
+    threadPool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    this.executor = threadPool;
+  }
+
+  @Override
+  public void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+    }
+    int lost = pending.get() + dropped.get();
+    if (lost > 0) {
+      LOGGER.warn("{} webhook deliveries are not sent because Compute Engine is stopping", lost);
+    }
+  }
+
+  @Override
+  public void enqueue(List<Webhook> webhooks, WebhookPayload payload) {
+    // all the deliveries of the CE task are counted before the first one can complete, so
+    // that old deliveries are purged only once
+    webhooks.forEach(webhook -> uncompletedByCeTask.merge(webhook.getCeTaskUuid(), 1, Integer::sum));
+    webhooks.forEach(webhook -> enqueue(webhook, payload));
+  }
+
+  private void enqueue(Webhook webhook, WebhookPayload payload) {
+    Endpoint endpoint = endpointsByUrl.computeIfAbsent(webhook.getUrl(), Endpoint::new);
+    if (pending.incrementAndGet() > policy.maxPending) {
+      reject(endpoint, new Attempt(webhook, payload, 1), "queue of webhook deliveries is full");
+      complete(webhook);
+      return;
+    }
+    submit(endpoint, new Attempt(webhook, payload, 1));
+  }
+
+  private void submit(Endpoint endpoint, Attempt attempt) {
+    synchronized (endpoint) {
+      if (endpoint.inFlight >= policy.maxConcurrentCallsPerUrl) {
+        endpoint.waiting.add(attempt);
+        return;
+      }
+      endpoint.inFlight++;
+    }
+    execute(endpoint, attempt);
+  }
+
+  private void execute(Endpoint endpoint, Attempt attempt) {
+    try {
+      executor.execute(() -> send(endpoint, attempt));
+    } catch (RejectedExecutionException e) {
+      // Compute Engine is stopping. The attempt and the ones waiting for the same URL are dropped.
+      for (Attempt droppedAttempt : endpoint.dropAll(attempt)) {
+        dropped.incrementAndGet();
+        complete(droppedAttempt.webhook);
+      }
+    }
+  }
+
+  private void send(Endpoint endpoint, Attempt attempt) {
+    boolean retried = false;
+    try {
+      Optional<String> openCircuit = endpoint.getOpenCircuitCause(system.now());
+      if (openCircuit.isPresent()) {
+        reject(endpoint, attempt, openCircuit.get());
+      } else {
+        WebhookDelivery delivery = caller.call(attempt.webhook, attempt.payload);
+        endpoint.record(delivery, system.now(), policy);
+        log(delivery, attempt.number);
+        persist(delivery);
+        retried = retry(endpoint, attempt, delivery);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error(format("Fail to send webhook '%s' | url=%s", attempt.webhook.getName(), attempt.webhook.getUrl()), e);
+    } finally {
+      if (!retried) {
+        complete(attempt.webhook);
+      }
+      release(endpoint);
+    }
+  }
+
+  private boolean retry(Endpoint endpoint, Attempt attempt, WebhookDelivery delivery) {
+    if (delivery.isSuccess() || attempt.number >= policy.maxAttempts || !isRetriable(delivery)) {
+      return false;
+    }
+    long delayMs = policy.firstRetryDelayMs << (attempt.number - 1);
+    try {
+      executor.schedule(() -> submit(endpoint, attempt.next()), delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // Compute Engine is stopping
+      return false;
+    }
+    endpoint.countRetry();
+    return true;
+  }
+
+  private static boolean isRetriable(WebhookDelivery delivery) {
+    Optional<Integer> httpStatus = delivery.getHttpStatus();
+    return !httpStatus.isPresent() || httpStatus.get() == 429 || httpStatus.get() >= 500;
+  }
+
+  private void release(Endpoint endpoint) {
+    Attempt next;
+    synchronized (endpoint) {
+      next = endpoint.waiting.poll();
+      if (next == null) {
+        endpoint.inFlight--;
+        return;
+      }
+    }
+    // the slot is kept by the next attempt
+    execute(endpoint, next);
+  }
+
+  /**
+   * The delivery of webhook is completed, successfully or not, and won't be retried. Old deliveries of the
+   * project are purged when all the deliveries of the analysis are completed.
+   */
+  private void complete(Webhook webhook) {
+    if (uncompletedByCeTask.computeIfPresent(webhook.getCeTaskUuid(), (ceTaskUuid, count) -> count == 1 ? null : (count - 1)) == null) {
+      purge(webhook.getComponentUuid());
+    }
+    pending.decrementAndGet();
+  }
+
+  private void purge(String componentUuid) {
+    try {
+      deliveryStorage.purge(componentUuid);
+    } catch (RuntimeException e) {
+      LOGGER.error(format("Fail to purge webhook deliveries of component %s", componentUuid), e);
+    }
+  }
+
+  private void reject(Endpoint endpoint, Attempt attempt, String cause) {
+    WebhookDelivery delivery = new WebhookDelivery.Builder()
+      .setAt(system.now())
+      .setWebhook(attempt.webhook)
+      .setPayload(attempt.payload)
+      .setError(new IllegalStateException("Webhook is not sent, " + cause))
+      .build();
+    endpoint.countRejection();
+    log(delivery, attempt.number);
+    persist(delivery);
+  }
+
+  private void persist(WebhookDelivery delivery) {
+    try {
+      deliveryStorage.persist(delivery);
+    } catch (RuntimeException e) {
+      LOGGER.error(format("Fail to persist delivery of webhook '%s' | url=%s", delivery.getWebhook().getName(), delivery.getWebhook().getUrl()), e);
+    }
+  }
+
+  private static void log(WebhookDelivery delivery, int attempt) {
+    Optional<String> error = delivery.getErrorMessage();
+    if (error.isPresent()) {
+      LOGGER.debug("Failed to send webhook '{}' | url={} | attempt={} | message={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), attempt, error.get());
+    } else {
+      LOGGER.debug("Sent webhook '{}' | url={} | attempt={} | time={}ms | status={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), attempt, delivery.getDurationInMs().orElse(-1), delivery.getHttpStatus().orElse(-1));
+    }
+  }
+
+  @VisibleForTesting
+  int countPending() {
+    return pending.get();
+  }
+
+  @Override
+  public ProtobufSystemInfo.Section toProtobuf() {
+    ProtobufSystemInfo.Section.Builder builder = ProtobufSystemInfo.Section.newBuilder();
+    builder.setName("Compute Engine Webhooks");
+    builder.addAttributesBuilder().setKey("Pending Deliveries").setLongValue(pending.get()).build();
+    Map<String, Endpoint> sortedEndpoints = new TreeMap<>(endpointsByUrl);
+    long now = system.now();
+    for (Endpoint endpoint : sortedEndpoints.values()) {
+      builder.addAttributesBuilder().setKey(endpoint.url).setStringValue(endpoint.toStatistics(now)).build();
+    }
+    return builder.build();
+  }
+
+  private static final class Attempt {
+    private final Webhook webhook;
+    private final WebhookPayload payload;
+    private final int number;
+
+    private Attempt(Webhook webhook, WebhookPayload payload, int number) {
+      this.webhook = webhook;
+      this.payload = payload;
+      this.number = number;
+    }
+
+    private Attempt next() {
+      return new Attempt(webhook, payload, number + 1);
+    }
+  }
+
+  /**
+   * State and statistics of the deliveries to an URL. All fields are guarded by the instance lock.
+   */
+  private static final class Endpoint {
+    private final String url;
+    private final Queue<Attempt> waiting = new ArrayDeque<>();
+    private int inFlight = 0;
+    private int consecutiveFailures = 0;
+    private long circuitOpenUntil = 0L;
+    private long firstCallAt = 0L;
+    private long successes = 0L;
+    private long failures = 0L;
+    private long retries = 0L;
+    private long rejections = 0L;
+    private long timedCalls = 0L;
+    private long totalDurationMs = 0L;
+    private long maxDurationMs = 0L;
+
+    private Endpoint(String url) {
+      this.url = url;
+    }
+
+    private synchronized Optional<String> getOpenCircuitCause(long now) {
+      if (now < circuitOpenUntil) {
+        return Optional.of("circuit of URL is open after " + consecutiveFailures + " consecutive failures");
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * Releases the slot of {@code attempt}, which can't be executed, and removes the waiting attempts.
+     *
+     * @return {@code attempt} and the removed attempts
+     */
+    private synchronized List<Attempt> dropAll(Attempt attempt) {
+      List<Attempt> result = new ArrayList<>(waiting.size() + 1);
+      result.add(attempt);
+      result.addAll(waiting);
+      waiting.clear();
+      inFlight--;
+      return result;
+    }
+
+    private synchronized void record(WebhookDelivery delivery, long now, Policy policy) {
+      if (firstCallAt == 0L) {
+        firstCallAt = delivery.getAt();
+      }
+      delivery.getDurationInMs().ifPresent(duration -> {
+        timedCalls++;
+        totalDurationMs += duration;
+        maxDurationMs = Math.max(maxDurationMs, duration);
+      });
+      if (delivery.isSuccess()) {
+        successes++;
+        consecutiveFailures = 0;
+      } else {
+        failures++;
+        consecutiveFailures++;
+        if (consecutiveFailures >= policy.circuitFailureThreshold) {
+          circuitOpenUntil = now + policy.circuitOpenDelayMs;
+        }
+      }
+    }
+
+    private synchronized void countRetry() {
+      retries++;
+    }
+
+    private synchronized void countRejection() {
+      rejections++;
+    }
+
+    private synchronized String toStatistics(long now) {
+      long calls = successes + failures;
+      long elapsedMs = Math.max(1L, now - firstCallAt);
+      return format("succeeded=%d, failed=%d, retried=%d, rejected=%d, waiting=%d, calls/min=%.2f, avg time=%dms, max time=%dms, circuit=%s",
+        successes, failures, retries, rejections, waiting.size(),
+        calls == 0 ? 0d : (calls * 60_000d / elapsedMs),
+        timedCalls == 0 ? 0L : (totalDurationMs / timedCalls), maxDurationMs,
+        now < circuitOpenUntil ? "open" : "closed");
+    }
+  }
+
+  @VisibleForTesting
+  static final class Policy {
+    int maxPending = 10_000;
+    int maxConcurrentCallsPerUrl = 2;
+    int maxAttempts = 3;
+    long firstRetryDelayMs = 10_000L;
+    int circuitFailureThreshold = 5;
+    long circuitOpenDelayMs = 5 * 60_000L;
+  }
+}
@@ -19,14 +19,21 @@
  */
 package org.sonar.server.computation.task.step;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+/**
+ * Executes the steps in the order of {@link ComputationSteps#instances()}. Consecutive {@link ConcurrentComputationStep}
+ * which do not depend on each other are executed concurrently.
+ */
 public final class ComputationStepExecutor {
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
+  private static final int MAX_CONCURRENT_STEPS = 4;
 
   private final ComputationSteps steps;
   @CheckForNull
@@ -59,11 +66,31 @@ public final class ComputationStepExecutor {
   }
 
   private void executeSteps(Profiler stepProfiler) {
+    List<ConcurrentComputationStep> concurrentSteps = new ArrayList<>();
     for (ComputationStep step : steps.instances()) {
-      stepProfiler.start();
-      step.execute();
-      stepProfiler.stopDebug(step.getDescription());
+      if (step instanceof ConcurrentComputationStep) {
+        concurrentSteps.add((ConcurrentComputationStep) step);
+      } else {
+        executeConcurrently(stepProfiler, concurrentSteps);
+        concurrentSteps.clear();
+        executeStep(stepProfiler, step);
+      }
     }
+    executeConcurrently(stepProfiler, concurrentSteps);
+  }
+
+  private static void executeConcurrently(Profiler stepProfiler, List<ConcurrentComputationStep> concurrentSteps) {
+    if (concurrentSteps.size() == 1) {
+      executeStep(stepProfiler, concurrentSteps.get(0));
+    } else if (!concurrentSteps.isEmpty()) {
+      new ConcurrentStepsExecutor(LOGGER, MAX_CONCURRENT_STEPS).execute(concurrentSteps);
+    }
+  }
+
+  private static void executeStep(Profiler stepProfiler, ComputationStep step) {
+    stepProfiler.start();
+    step.execute();
+    stepProfiler.stopDebug(step.getDescription());
   }
 
   private void executeListener(boolean allStepsExecuted) {
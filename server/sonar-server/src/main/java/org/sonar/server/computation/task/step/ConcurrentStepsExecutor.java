@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.slf4j.MDC;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.core.util.logs.Profiler;
+
+import static java.util.Collections.disjoint;
+
+/**
+ * Executes a sequence of {@link ConcurrentComputationStep} on a bounded pool of threads. A step
+ * starts only when all the previous steps it conflicts with are finished:
+ * <ul>
+ *   <li>previous step writes data read or written by the step</li>
+ *   <li>previous step reads data written by the step</li>
+ * </ul>
+ * No more steps are started once a step fails. The first failure is then raised.
+ */
+class ConcurrentStepsExecutor {
+
+  private final Logger logger;
+  private final int maxThreads;
+
+  ConcurrentStepsExecutor(Logger logger, int maxThreads) {
+    this.logger = logger;
+    this.maxThreads = maxThreads;
+  }
+
+  void execute(List<ConcurrentComputationStep> steps) {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxThreads, steps.size()),
+      new ThreadFactoryBuilder().setNameFormat("CE step %d").setDaemon(true).build());
+    try {
+      Map<String, String> mdc = MDC.getCopyOfContextMap();
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      List<CompletableFuture<Void>> futures = new ArrayList<>(steps.size());
+      for (int i = 0; i < steps.size(); i++) {
+        ConcurrentComputationStep step = steps.get(i);
+        futures.add(CompletableFuture.allOf(dependenciesOf(steps, futures, i))
+          .thenRunAsync(() -> executeStep(step, mdc, failure), pool));
+      }
+      // wait for all steps, whatever they succeed or not
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+        .exceptionally(e -> null)
+        .join();
+      propagate(failure.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static CompletableFuture<?>[] dependenciesOf(List<ConcurrentComputationStep> steps, List<CompletableFuture<Void>> futures, int index) {
+    ConcurrentComputationStep step = steps.get(index);
+    List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+    for (int i = 0; i < index; i++) {
+      if (conflict(steps.get(i), step)) {
+        dependencies.add(futures.get(i));
+      }
+    }
+    return dependencies.toArray(new CompletableFuture<?>[dependencies.size()]);
+  }
+
+  static boolean conflict(ConcurrentComputationStep previous, ConcurrentComputationStep step) {
+    return !disjoint(previous.writeDependencies(), step.readDependencies())
+      || !disjoint(previous.writeDependencies(), step.writeDependencies())
+      || !disjoint(previous.readDependencies(), step.writeDependencies());
+  }
+
+  private void executeStep(ConcurrentComputationStep step, @Nullable Map<String, String> mdc, AtomicReference<Throwable> failure) {
+    if (failure.get() != null) {
+      // fail fast, as a sequential execution would do
+      return;
+    }
+    // log context of the Compute Engine task, see CeLogging
+    if (mdc != null) {
+      MDC.setContextMap(mdc);
+    }
+    try {
+      Profiler stepProfiler = Profiler.create(logger).start();
+      step.execute();
+      stepProfiler.stopDebug(step.getDescription());
+    } catch (RuntimeException | Error e) {
+      failure.compareAndSet(null, e);
+      throw e;
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  private static void propagate(@Nullable Throwable failure) {
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+  }
+}
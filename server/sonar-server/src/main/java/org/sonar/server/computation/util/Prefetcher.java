@@ -0,0 +1,188 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+/**
+ * Loads data of components from DB in a background thread, with one query per batch of components, in the order
+ * the components will be requested, typically the order of a traversal of the component tree. Loaded data wait
+ * in a bounded buffer, so that DB latency overlaps with the processing of the previous components.
+ * <p>
+ * {@link #get(String, Function)} must be called from a single thread. Components requested out of order, or which
+ * are not part of the prefetched ones, are loaded by the given fallback. Components skipped by the consumer are
+ * discarded, unless they are retained for a later request.
+ * <p>
+ * The background thread is started by the first call to {@link #get(String, Function)} and stopped by {@link #close()}.
+ */
+public class Prefetcher<T> implements AutoCloseable {
+
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  private final String name;
+  private final DbClient dbClient;
+  private final List<String> uuids;
+  private final Map<String, Integer> positionsByUuid;
+  private final int batchSize;
+  private final BatchLoader<T> loader;
+  private final boolean retainSkipped;
+  private final BlockingQueue<Entry<T>> buffer;
+  private final Map<String, Entry<T>> skipped = new HashMap<>();
+  private ExecutorService executor;
+  // position in uuids of the next entry of the buffer
+  private int next = 0;
+
+  /**
+   * @param name used in the name of the thread and in error messages
+   * @param uuids the uuids of components, in the order they are expected to be requested
+   * @param retainSkipped whether the data of components skipped by the consumer are kept until they are requested
+   */
+  public Prefetcher(String name, DbClient dbClient, List<String> uuids, int batchSize, boolean retainSkipped, BatchLoader<T> loader) {
+    this.name = name;
+    this.dbClient = dbClient;
+    this.uuids = new ArrayList<>(new LinkedHashSet<>(uuids));
+    this.positionsByUuid = new HashMap<>(this.uuids.size());
+    for (int i = 0; i < this.uuids.size(); i++) {
+      positionsByUuid.put(this.uuids.get(i), i);
+    }
+    this.batchSize = batchSize;
+    this.loader = loader;
+    this.retainSkipped = retainSkipped;
+    this.buffer = new ArrayBlockingQueue<>(2 * batchSize);
+  }
+
+  /**
+   * Data of the component, either prefetched or loaded by {@code fallback}.
+   *
+   * @throws IllegalStateException if the loading of the batch containing the component failed
+   */
+  @CheckForNull
+  public T get(String uuid, Function<String, T> fallback) {
+    Entry<T> retained = skipped.remove(uuid);
+    if (retained != null) {
+      return retained.value;
+    }
+    Integer position = positionsByUuid.get(uuid);
+    if (position == null || position < next) {
+      return fallback.apply(uuid);
+    }
+    start();
+    while (true) {
+      Entry<T> entry = take();
+      next++;
+      if (entry.uuid.equals(uuid)) {
+        return entry.value;
+      }
+      if (retainSkipped) {
+        skipped.put(entry.uuid, entry);
+      }
+    }
+  }
+
+  private void start() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("CE_prefetch_" + name)
+        .setDaemon(true)
+        .build());
+      executor.execute(this::load);
+    }
+  }
+
+  private Entry<T> take() {
+    Entry<T> entry;
+    try {
+      entry = buffer.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while prefetching " + name, e);
+    }
+    if (entry.failure != null) {
+      // next requests are loaded by the fallback
+      next = uuids.size();
+      throw new IllegalStateException("Fail to prefetch " + name, entry.failure);
+    }
+    return entry;
+  }
+
+  private void load() {
+    try {
+      for (List<String> batch : Lists.partition(uuids, batchSize)) {
+        Map<String, T> values;
+        try (DbSession dbSession = dbClient.openSession(false)) {
+          values = loader.load(dbSession, batch);
+        } catch (Exception e) {
+          buffer.put(new Entry<>(null, null, e));
+          return;
+        }
+        for (String uuid : batch) {
+          buffer.put(new Entry<>(uuid, values.get(uuid), null));
+        }
+      }
+    } catch (InterruptedException e) {
+      // prefetcher is closed
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    buffer.clear();
+    skipped.clear();
+  }
+
+  @FunctionalInterface
+  public interface BatchLoader<T> {
+    /**
+     * @return the data by uuid of the given components, components without data being absent
+     */
+    Map<String, T> load(DbSession dbSession, List<String> uuids);
+  }
+
+  private static final class Entry<T> {
+    private final String uuid;
+    private final T value;
+    private final Exception failure;
+
+    private Entry(@Nullable String uuid, @Nullable T value, @Nullable Exception failure) {
+      this.uuid = uuid;
+      this.value = value;
+      this.failure = failure;
+    }
+  }
+}
@@ -21,12 +21,20 @@ package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
@@ -36,9 +44,9 @@ import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
-import org.elasticsearch.common.unit.ByteSizeUnit;
-import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -48,42 +56,73 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 
 import static java.lang.String.format;
+import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
 
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than a threshold, which adapts to the
+ *   latency of Elasticsearch (see {@link BulkSize})</li>
+ *   <li>the number of concurrent bulk requests is bounded, so callers are blocked when Elasticsearch
+ *   does not keep up</li>
+ *   <li>documents rejected by Elasticsearch because its queues are full are sent again after a delay</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
  * </ul>
+ * Throughput is logged during indexing and is cumulated in {@link EsClient#getBulkIndexerStatistics()}.
  */
 public class BulkIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
-  private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final TimeValue SCROLL_TIMEOUT = TimeValue.timeValueMinutes(5);
+  static final int MAX_RETRIES = 5;
+  static final long RETRY_INITIAL_DELAY_MS = 100L;
+  private static final long RETRY_THREAD_KEEP_ALIVE_MS = 10_000L;
 
   private final EsClient client;
   private final String indexName;
   private boolean large = false;
-  private long flushByteSize = FLUSH_BYTE_SIZE;
+  private BulkSize bulkSize = BulkSize.adaptive();
+  // guards bulkRequest. Must never be held while waiting for a permit of the semaphore.
+  private final Object bulkRequestLock = new Object();
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
+  private final AtomicLong bytes = new AtomicLong(0L);
+  private final AtomicLong retries = new AtomicLong(0L);
   private final int concurrentRequests;
   private final Semaphore semaphore;
+  private final AtomicLong sentBulks = new AtomicLong(0L);
+  private final SortedSet<Long> pendingBulks = new ConcurrentSkipListSet<>();
+  // lowest id of the bulks which documents have not all been indexed
+  private final AtomicLong firstFailedBulk = new AtomicLong(Long.MAX_VALUE);
   private final ProgressLogger progress;
+  private final BulkIndexerStatistics.IndexStatistics statistics;
+  private final ScheduledThreadPoolExecutor retryExecutor;
+  private long startedAt;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
     this.indexName = indexName;
+    this.statistics = client.getBulkIndexerStatistics().get(indexName);
     this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", indexName), counter, LOGGER)
-      .setPluralLabel("requests");
+      .setPluralLabel("documents")
+      .setDetails(new ProgressDetails());
 
     // see https://jira.sonarsource.com/browse/SONAR-8075
     this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
     this.semaphore = new Semaphore(concurrentRequests);
+
+    // created up front so that response listeners never have to synchronize. The thread
+    // is started on the first retry and ends when idle.
+    this.retryExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+      .setNameFormat(format("BulkIndexer[%s]-retry", indexName))
+      .setDaemon(true)
+      .build());
+    this.retryExecutor.setKeepAliveTime(RETRY_THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+    this.retryExecutor.allowCoreThreadTimeOut(true);
   }
 
   /**
@@ -96,8 +135,11 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Fixes the size of bulk requests. By default size adapts to the latency of Elasticsearch.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
-    this.flushByteSize = flushByteSize;
+    this.bulkSize = BulkSize.fixed(flushByteSize);
     return this;
   }
 
@@ -125,32 +167,87 @@ public class BulkIndexer implements Startable {
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    bytes.set(0L);
+    retries.set(0L);
+    firstFailedBulk.set(Long.MAX_VALUE);
+    startedAt = System.currentTimeMillis();
     progress.start();
   }
 
+  /**
+   * Can be called concurrently by multiple threads
+   */
   public void add(ActionRequest request) {
-    bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
-      executeBulk();
+    PendingBulk full = null;
+    synchronized (bulkRequestLock) {
+      bulkRequest.request().add(request);
+      if (bulkRequest.request().estimatedSizeInBytes() >= bulkSize.get()) {
+        full = takeBulkRequest();
+      }
+    }
+    if (full != null) {
+      executeBulk(full);
     }
   }
 
+  /**
+   * Sends the pending requests without waiting for their completion. Can be called concurrently
+   * by multiple threads.
+   *
+   * @return a marker of all the requests added so far, to be checked with {@link #isAcknowledged(long)}
+   */
+  public long sendPending() {
+    PendingBulk pending = null;
+    long marker;
+    synchronized (bulkRequestLock) {
+      if (bulkRequest.numberOfActions() > 0) {
+        pending = takeBulkRequest();
+      }
+      marker = sentBulks.get();
+    }
+    if (pending != null) {
+      executeBulk(pending);
+    }
+    return marker;
+  }
+
+  /**
+   * Whether all the requests added before the call to {@link #sendPending()} that returned {@code marker}
+   * are completed, including their retries, and have been successfully indexed. It never becomes true if
+   * one of these requests failed. This method does not block.
+   */
+  public boolean isAcknowledged(long marker) {
+    try {
+      if (pendingBulks.first() <= marker) {
+        return false;
+      }
+    } catch (NoSuchElementException e) {
+      // no pending bulks
+    }
+    // read after pending bulks, as failures are recorded before bulks are completed
+    return firstFailedBulk.get() > marker;
+  }
+
   public void addDeletion(SearchRequestBuilder searchRequest) {
     searchRequest
       .addSort("_doc", SortOrder.ASC)
-      .setScroll(TimeValue.timeValueMinutes(5))
+      .setScroll(SCROLL_TIMEOUT)
       .setSize(100)
       // load only doc ids, not _source fields
       .setFetchSource(false);
 
-    // this search is synchronous. An optimization would be to be non-blocking,
-    // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
-    // two locks)
     SearchResponse searchResponse = searchRequest.get();
-
     while (true) {
       SearchHit[] hits = searchResponse.getHits().getHits();
+      String scrollId = searchResponse.getScrollId();
+      if (hits.length == 0) {
+        client.nativeClient().prepareClearScroll().addScrollId(scrollId).get();
+        break;
+      }
+
+      // next page is loaded while deletions of the current page are sent. The scroll
+      // request does not hold a permit of the semaphore, so it can't dead-lock with the bulk requests.
+      ListenableActionFuture<SearchResponse> nextPage = client.nativeClient().prepareSearchScroll(scrollId).setScroll(SCROLL_TIMEOUT).execute();
       for (SearchHit hit : hits) {
         DeleteRequestBuilder deleteRequestBuilder = client.prepareDelete(hit.index(), hit.type(), hit.getId());
         SearchHitField routing = hit.field("_routing");
@@ -159,13 +256,15 @@ public class BulkIndexer implements Startable {
         }
         add(deleteRequestBuilder.request());
       }
+      searchResponse = getNextPage(nextPage, scrollId);
+    }
+  }
 
-      String scrollId = searchResponse.getScrollId();
-      searchResponse = client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(5)).get();
-      if (hits.length == 0) {
-        client.nativeClient().prepareClearScroll().addScrollId(scrollId).get();
-        break;
-      }
+  private static SearchResponse getNextPage(ListenableActionFuture<SearchResponse> nextPage, String scrollId) {
+    try {
+      return nextPage.actionGet();
+    } catch (Exception e) {
+      throw new IllegalStateException(format("Fail to execute ES search scroll request for scroll id '%s'", scrollId), e);
     }
   }
 
@@ -184,10 +283,9 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
-    }
+    sendPending();
     try {
+      // wait for the pending requests, including the ones to be retried
       if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
         semaphore.release(concurrentRequests);
       }
@@ -195,6 +293,7 @@ public class BulkIndexer implements Startable {
       throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
     }
     progress.stop();
+    statistics.onStop(System.currentTimeMillis() - startedAt);
     client.prepareRefresh(indexName).get();
     if (large) {
       // optimize lucene segments and revert index settings
@@ -213,36 +312,142 @@ public class BulkIndexer implements Startable {
     req.get();
   }
 
-  private void executeBulk() {
-    final BulkRequestBuilder req = this.bulkRequest;
+  /**
+   * Must be called with {@link #bulkRequestLock}. The bulk is registered as pending at the
+   * same time, so that markers returned by {@link #sendPending()} cover it.
+   */
+  private PendingBulk takeBulkRequest() {
+    PendingBulk bulk = new PendingBulk(sentBulks.incrementAndGet(), this.bulkRequest);
+    pendingBulks.add(bulk.id);
     this.bulkRequest = client.prepareBulk().setRefresh(false);
+    return bulk;
+  }
+
+  /**
+   * Must not be called with {@link #bulkRequestLock}, as it waits for a permit of semaphore.
+   */
+  private void executeBulk(PendingBulk bulk) {
     semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    execute(bulk.id, bulk.req, 0);
+  }
+
+  /**
+   * The permit of semaphore acquired by caller is released when request is completed, including
+   * its retries.
+   */
+  private void execute(long bulkId, BulkRequestBuilder req, int attempt) {
+    long requestBytes = req.request().estimatedSizeInBytes();
+    bytes.addAndGet(requestBytes);
+    statistics.onBulk(0L, requestBytes);
+    req.execute(new BulkResponseActionListener(bulkId, req, attempt));
+  }
+
+  private void retryLater(long bulkId, BulkRequestBuilder req, int attempt) {
+    bulkSize.onRejection();
+    retries.addAndGet(req.numberOfActions());
+    statistics.onRetries(req.numberOfActions());
+    long delayMs = RETRY_INITIAL_DELAY_MS << (attempt - 1);
+    LOGGER.debug("{} requests rejected by Elasticsearch on index [{}]. Retry #{} in {}ms", req.numberOfActions(), indexName, attempt, delayMs);
+    retryExecutor.schedule(() -> execute(bulkId, req, attempt), delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void recordFailure(long bulkId) {
+    firstFailedBulk.accumulateAndGet(bulkId, Math::min);
+  }
+
+  private void complete(long bulkId) {
+    pendingBulks.remove(bulkId);
+    semaphore.release();
+  }
+
+  private static boolean isRejection(Throwable e) {
+    return ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+  }
+
+  private static boolean isRejection(BulkItemResponse item) {
+    return item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS;
+  }
+
+  private static class PendingBulk {
+    private final long id;
+    private final BulkRequestBuilder req;
+
+    PendingBulk(long id, BulkRequestBuilder req) {
+      this.id = id;
+      this.req = req;
+    }
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
+    private final long bulkId;
     private final BulkRequestBuilder req;
+    private final int attempt;
+    private final long startedAt = System.currentTimeMillis();
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(long bulkId, BulkRequestBuilder req, int attempt) {
+      this.bulkId = bulkId;
       this.req = req;
+      this.attempt = attempt;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
+      BulkRequestBuilder rejected = null;
+      long successes = 0L;
+      long failures = 0L;
       for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
+        if (!item.isFailed()) {
+          successes++;
+        } else if (isRejection(item) && attempt < MAX_RETRIES) {
+          if (rejected == null) {
+            rejected = client.prepareBulk().setRefresh(false);
+          }
+          rejected.request().add(req.request().requests().get(item.getItemId()));
+        } else {
+          failures++;
           LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
         }
       }
+      counter.addAndGet(successes);
+      statistics.onBulk(successes, 0L);
+      statistics.onFailures(failures);
+      if (failures > 0L) {
+        recordFailure(bulkId);
+      }
+
+      if (rejected == null) {
+        bulkSize.onResponse(System.currentTimeMillis() - startedAt);
+        complete(bulkId);
+      } else {
+        retryLater(bulkId, rejected, attempt + 1);
+      }
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      if (isRejection(e) && attempt < MAX_RETRIES) {
+        retryLater(bulkId, req, attempt + 1);
+      } else {
+        recordFailure(bulkId);
+        complete(bulkId);
+        statistics.onFailures(req.numberOfActions());
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+      }
+    }
+  }
+
+  private class ProgressDetails implements Supplier<String> {
+    private long previousBytes = 0L;
+    private long previousTime = System.currentTimeMillis();
+
+    @Override
+    public String get() {
+      long now = System.currentTimeMillis();
+      long currentBytes = bytes.get();
+      long bytesPerSecond = now == previousTime ? 0L : (1000L * (currentBytes - previousBytes) / (now - previousTime));
+      previousBytes = currentBytes;
+      previousTime = now;
+      return format("%s/sec, %d retries, bulk size %s", byteCountToDisplaySize(bytesPerSecond), retries.get(), byteCountToDisplaySize(bulkSize.get()));
     }
   }
 }
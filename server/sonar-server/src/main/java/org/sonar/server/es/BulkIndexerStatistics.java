@@ -0,0 +1,134 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cumulated throughput of the {@link BulkIndexer}s of each index since startup of server.
+ */
+public class BulkIndexerStatistics {
+
+  private final ConcurrentMap<String, IndexStatistics> byIndex = new ConcurrentHashMap<>();
+
+  IndexStatistics get(String indexName) {
+    return byIndex.computeIfAbsent(indexName, k -> new IndexStatistics());
+  }
+
+  /**
+   * Statistics of the indices which have been bulk indexed, sorted by index name
+   */
+  public SortedMap<String, IndexStatistics> getByIndex() {
+    return new TreeMap<>(byIndex);
+  }
+
+  public long getDocuments() {
+    return byIndex.values().stream().mapToLong(IndexStatistics::getDocuments).sum();
+  }
+
+  public long getBytes() {
+    return byIndex.values().stream().mapToLong(IndexStatistics::getBytes).sum();
+  }
+
+  public long getRetries() {
+    return byIndex.values().stream().mapToLong(IndexStatistics::getRetries).sum();
+  }
+
+  public long getFailures() {
+    return byIndex.values().stream().mapToLong(IndexStatistics::getFailures).sum();
+  }
+
+  public static class IndexStatistics {
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong durationMs = new AtomicLong();
+
+    void onBulk(long documents, long bytes) {
+      this.documents.addAndGet(documents);
+      this.bytes.addAndGet(bytes);
+    }
+
+    void onRetries(long documents) {
+      retries.addAndGet(documents);
+    }
+
+    void onFailures(long documents) {
+      failures.addAndGet(documents);
+    }
+
+    void onStop(long durationMs) {
+      this.durationMs.addAndGet(durationMs);
+    }
+
+    /**
+     * Number of documents successfully indexed or deleted
+     */
+    public long getDocuments() {
+      return documents.get();
+    }
+
+    /**
+     * Estimated size of the bulk requests sent to Elasticsearch, including the requests which have been retried
+     */
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    /**
+     * Number of documents rejected by Elasticsearch, then sent again
+     */
+    public long getRetries() {
+      return retries.get();
+    }
+
+    /**
+     * Number of documents which could not be indexed
+     */
+    public long getFailures() {
+      return failures.get();
+    }
+
+    /**
+     * Total time of bulk indexing, from {@link BulkIndexer#start()} to {@link BulkIndexer#stop()}
+     */
+    public long getDurationMs() {
+      return durationMs.get();
+    }
+
+    public long getDocumentsPerSecond() {
+      return perSecond(getDocuments());
+    }
+
+    public long getBytesPerSecond() {
+      return perSecond(getBytes());
+    }
+
+    private long perSecond(long value) {
+      long duration = getDurationMs();
+      return duration == 0L ? 0L : (1000L * value / duration);
+    }
+  }
+}
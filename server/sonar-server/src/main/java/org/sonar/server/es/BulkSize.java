@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+/**
+ * Size in bytes of the bulk requests sent by {@link BulkIndexer}. It increases as long as
+ * Elasticsearch responds quickly, and decreases when requests are slow or rejected
+ * because Elasticsearch is overloaded.
+ */
+class BulkSize {
+
+  static final long MIN_BYTES = 256L * 1024;
+  static final long MAX_BYTES = 16L * 1024 * 1024;
+  static final long INITIAL_BYTES = 1024L * 1024;
+
+  /**
+   * Responses faster than this threshold let size increase. Slower ones
+   * make it decrease.
+   */
+  static final long TARGET_LATENCY_MS = 1_000L;
+
+  private final boolean adaptive;
+  private long bytes;
+
+  private BulkSize(long bytes, boolean adaptive) {
+    this.bytes = bytes;
+    this.adaptive = adaptive;
+  }
+
+  static BulkSize adaptive() {
+    return new BulkSize(INITIAL_BYTES, true);
+  }
+
+  static BulkSize fixed(long bytes) {
+    return new BulkSize(bytes, false);
+  }
+
+  synchronized long get() {
+    return bytes;
+  }
+
+  synchronized void onResponse(long latencyMs) {
+    if (!adaptive) {
+      return;
+    }
+    if (latencyMs < TARGET_LATENCY_MS / 2) {
+      bytes = Math.min(MAX_BYTES, bytes + bytes / 2);
+    } else if (latencyMs > TARGET_LATENCY_MS) {
+      bytes = Math.max(MIN_BYTES, bytes - bytes / 4);
+    }
+  }
+
+  synchronized void onRejection() {
+    if (adaptive) {
+      bytes = Math.max(MIN_BYTES, bytes / 2);
+    }
+  }
+}
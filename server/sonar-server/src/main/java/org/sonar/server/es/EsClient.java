@@ -79,11 +79,16 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final BulkIndexerStatistics bulkIndexerStatistics = new BulkIndexerStatistics();
 
   public EsClient(Client nativeClient) {
     this.nativeClient = requireNonNull(nativeClient);
   }
 
+  public BulkIndexerStatistics getBulkIndexerStatistics() {
+    return bulkIndexerStatistics;
+  }
+
   public RefreshRequestBuilder prepareRefresh(String... indices) {
     return new ProxyRefreshRequestBuilder(nativeClient()).setIndices(indices);
   }
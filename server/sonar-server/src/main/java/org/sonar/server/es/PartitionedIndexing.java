@@ -0,0 +1,274 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.dbutils.DbUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Full indexing of a db table which is split into partitions of consecutive ids. Partitions are
+ * read concurrently, each one on its own DB connection, and are sent to a shared {@link BulkIndexer}.
+ * <p/>
+ * Partitions which have been indexed are recorded in table INTERNAL_PROPERTIES, so that an indexing
+ * interrupted by a crash or a shutdown is resumed without indexing them again. A partition is
+ * recorded only once all its documents are acknowledged by Elasticsearch. Acknowledgements are not
+ * waited for: a partition is recorded at the first checkpoint following them, so that partitions
+ * keep being read while bulk requests are in flight. Partitions which documents may be part of failed
+ * bulk requests are never recorded, so they are indexed again when indexing is resumed.
+ */
+public class PartitionedIndexing {
+
+  static final long DEFAULT_PARTITION_SIZE = 100_000L;
+  private static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+  private static final String PROPERTY_PREFIX = "es.partitions.";
+  private static final Logger LOGGER = Loggers.get(PartitionedIndexing.class);
+
+  private final DbClient dbClient;
+  private final String indexName;
+  private final String table;
+  private final String propertyKey;
+  private long partitionSize = DEFAULT_PARTITION_SIZE;
+  private int threads = DEFAULT_THREADS;
+  private final SortedSet<Long> indexedPartitions = new TreeSet<>();
+  // partitions read but not yet acknowledged, with the marker of their bulk requests
+  private final Map<Long, Long> unacknowledgedPartitions = new LinkedHashMap<>();
+
+  /**
+   * @param table name of db table, which must have the numeric column "id"
+   */
+  public PartitionedIndexing(DbClient dbClient, String indexName, String table) {
+    this.dbClient = dbClient;
+    this.indexName = indexName;
+    this.table = table;
+    this.propertyKey = PROPERTY_PREFIX + indexName;
+  }
+
+  PartitionedIndexing setPartitionSize(long l) {
+    checkArgument(l > 0L, "Partition size must be positive");
+    this.partitionSize = l;
+    return this;
+  }
+
+  public PartitionedIndexing setThreads(int i) {
+    checkArgument(i > 0, "Number of threads must be positive");
+    this.threads = i;
+    return this;
+  }
+
+  /**
+   * Whether a previous indexing has not been completed
+   */
+  public boolean isInterrupted() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.internalPropertiesDao().selectByKey(dbSession, propertyKey).isPresent();
+    }
+  }
+
+  /**
+   * Forgets the partitions indexed by an interrupted indexing, for example
+   * because index has been dropped.
+   */
+  public void reset() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.internalPropertiesDao().delete(dbSession, propertyKey);
+      dbSession.commit();
+    }
+  }
+
+  /**
+   * Indexes all the partitions, except the ones already indexed by an interrupted indexing. The
+   * {@link BulkIndexer} is started and stopped by this method.
+   *
+   * @return the greatest value returned by {@code partitionIndexer}
+   */
+  public long index(BulkIndexer bulk, PartitionIndexer partitionIndexer) {
+    List<Long> partitions = selectPartitionsToIndex();
+    bulk.start();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat(format("PartitionedIndexing[%s]-%%d", indexName))
+      .setDaemon(true)
+      .build());
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (Long partition : partitions) {
+        futures.add(executor.submit(() -> indexPartition(bulk, partitionIndexer, partition)));
+      }
+      long result = 0L;
+      for (Future<Long> future : futures) {
+        result = Math.max(result, future.get());
+      }
+      stop(executor, bulk);
+      int failedPartitions = countUnacknowledgedPartitions();
+      if (failedPartitions == 0) {
+        reset();
+      } else {
+        LOGGER.warn("Fail to index some documents of {} partitions of {}. They will be indexed again at next startup.", failedPartitions, indexName);
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stop(executor, bulk);
+      throw new IllegalStateException(format("Indexing of %s has been interrupted", indexName), e);
+    } catch (ExecutionException e) {
+      stop(executor, bulk);
+      throw new IllegalStateException(format("Fail to index %s", indexName), e.getCause());
+    }
+  }
+
+  /**
+   * Bulk is stopped even on failure, so that the documents of indexed partitions are
+   * refreshed and the settings of index are restored.
+   */
+  private void stop(ExecutorService executor, BulkIndexer bulk) {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    bulk.stop();
+    // all requests are now completed, so the partitions read before a failure can be recorded
+    recordAcknowledgedPartitions(bulk);
+  }
+
+  private synchronized int countUnacknowledgedPartitions() {
+    return unacknowledgedPartitions.size();
+  }
+
+  private List<Long> selectPartitionsToIndex() {
+    List<Long> partitions = new ArrayList<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Optional<String> property = dbClient.internalPropertiesDao().selectByKey(dbSession, propertyKey);
+      indexedPartitions.clear();
+      unacknowledgedPartitions.clear();
+      if (property.isPresent()) {
+        Splitter.on(',').omitEmptyStrings().split(property.get()).forEach(p -> indexedPartitions.add(Long.parseLong(p)));
+        LOGGER.info("Resume indexing of {} ({} partitions already indexed)", indexName, indexedPartitions.size());
+      } else {
+        dbClient.internalPropertiesDao().saveAsEmpty(dbSession, propertyKey);
+        dbSession.commit();
+      }
+
+      long[] ids = selectMinAndMaxIds(dbSession);
+      if (ids != null) {
+        for (long partition = ids[0] / partitionSize; partition <= ids[1] / partitionSize; partition++) {
+          if (!indexedPartitions.contains(partition)) {
+            partitions.add(partition);
+          }
+        }
+      }
+    }
+    return partitions;
+  }
+
+  private long[] selectMinAndMaxIds(DbSession dbSession) {
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = dbSession.getConnection().prepareStatement(format("SELECT MIN(id), MAX(id) FROM %s", table));
+      rs = stmt.executeQuery();
+      if (rs.next()) {
+        long max = rs.getLong(2);
+        if (!rs.wasNull()) {
+          return new long[] {rs.getLong(1), max};
+        }
+      }
+      return null;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select range of ids of table " + table, e);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(stmt);
+    }
+  }
+
+  private long indexPartition(BulkIndexer bulk, PartitionIndexer partitionIndexer, long partition) {
+    long result;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      result = partitionIndexer.index(dbSession, partition * partitionSize, (partition + 1) * partitionSize, bulk);
+    }
+    // documents of the partition may still be in pending bulk requests. They are sent, but
+    // not waited for.
+    long marker = bulk.sendPending();
+    synchronized (this) {
+      unacknowledgedPartitions.put(partition, marker);
+    }
+    recordAcknowledgedPartitions(bulk);
+    return result;
+  }
+
+  /**
+   * Does not wait for Elasticsearch, so the lock is held only during the short update of the property.
+   */
+  private synchronized void recordAcknowledgedPartitions(BulkIndexer bulk) {
+    boolean changed = false;
+    Iterator<Map.Entry<Long, Long>> it = unacknowledgedPartitions.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Long, Long> entry = it.next();
+      if (bulk.isAcknowledged(entry.getValue())) {
+        indexedPartitions.add(entry.getKey());
+        it.remove();
+        changed = true;
+      }
+    }
+    if (changed) {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        dbClient.internalPropertiesDao().save(dbSession, propertyKey, Joiner.on(',').join(indexedPartitions));
+        dbSession.commit();
+      }
+    }
+  }
+
+  @FunctionalInterface
+  public interface PartitionIndexer {
+    /**
+     * Sends to {@code bulk} the documents of the rows which ids are between {@code fromId} (inclusive)
+     * and {@code toId} (exclusive). Bulk must not be started nor stopped.
+     *
+     * @return the greatest update date of the indexed rows, or 0 if none
+     */
+    long index(DbSession dbSession, long fromId, long toId, BulkIndexer bulk);
+  }
+}
@@ -33,6 +33,7 @@ import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
@@ -62,13 +63,36 @@ public class IssueIndexer extends BaseIndexer implements ProjectIndexer, NeedAut
     return AUTHORIZATION_SCOPE;
   }
 
+  /**
+   * Issues are indexed by partitions when index is empty or when previous indexing
+   * of all issues has been interrupted
+   */
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    PartitionedIndexing partitionedIndexing = newPartitionedIndexing();
+    if (lastUpdatedAt <= 0L || partitionedIndexing.isInterrupted()) {
+      return indexAll(partitionedIndexing, lastUpdatedAt <= 0L);
+    }
     return doIndex(createBulkIndexer(false), lastUpdatedAt, null);
   }
 
   public void indexAll() {
-    doIndex(createBulkIndexer(true), 0L, null);
+    indexAll(newPartitionedIndexing(), true);
+  }
+
+  private long indexAll(PartitionedIndexing partitionedIndexing, boolean fromScratch) {
+    if (fromScratch) {
+      partitionedIndexing.reset();
+    }
+    return partitionedIndexing.index(createBulkIndexer(true), (dbSession, fromId, toId, bulk) -> {
+      try (IssueResultSetIterator rowIt = IssueResultSetIterator.createForIdRange(dbClient, dbSession, fromId, toId)) {
+        return addAll(bulk, rowIt);
+      }
+    });
+  }
+
+  private PartitionedIndexing newPartitionedIndexing() {
+    return new PartitionedIndexing(dbClient, INDEX, "issues");
   }
 
   @Override
@@ -104,8 +128,14 @@ public class IssueIndexer extends BaseIndexer implements ProjectIndexer, NeedAut
     }
   }
 
-  private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
+  private static long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     bulk.start();
+    long maxDate = addAll(bulk, issues);
+    bulk.stop();
+    return maxDate;
+  }
+
+  private static long addAll(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     long maxDate = 0L;
     while (issues.hasNext()) {
       IssueDoc issue = issues.next();
@@ -114,7 +144,6 @@ public class IssueIndexer extends BaseIndexer implements ProjectIndexer, NeedAut
       // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
       maxDate = Math.max(maxDate, issue.getTechnicalUpdateDate().getTime());
     }
-    bulk.stop();
     return maxDate;
   }
 
@@ -92,6 +92,8 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
 
   private static final String PROJECT_FILTER = " AND root.uuid=?";
 
+  private static final String SQL_ID_RANGE = SQL_ALL + " where i.id>=? and i.id<?";
+
   private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
   private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
@@ -119,6 +121,20 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
     }
   }
 
+  /**
+   * Issues which ids are between {@code fromId} (inclusive) and {@code toId} (exclusive)
+   */
+  static IssueResultSetIterator createForIdRange(DbClient dbClient, DbSession session, long fromId, long toId) {
+    try {
+      PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, SQL_ID_RANGE);
+      stmt.setLong(1, fromId);
+      stmt.setLong(2, toId);
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues", e);
+    }
+  }
+
   @CheckForNull
   private static String extractDirPath(@Nullable String filePath, String scope) {
     if (filePath != null) {
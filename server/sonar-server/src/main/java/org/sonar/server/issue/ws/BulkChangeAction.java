@@ -19,19 +19,20 @@
  */
 package org.sonar.server.issue.ws;
 
+import com.google.common.collect.Lists;
 import com.google.common.io.Resources;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 import org.sonar.api.issue.DefaultTransitions;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
@@ -101,6 +102,12 @@ public class BulkChangeAction implements IssuesWsAction {
 
   private static final Logger LOG = Loggers.get(BulkChangeAction.class);
 
+  /**
+   * Issues are loaded, changed, saved, indexed and notified by batches of this size, so that memory
+   * does not depend on the number of issues
+   */
+  private static final int BATCH_SIZE = MAX_LIMIT;
+
   private final System2 system2;
   private final UserSession userSession;
   private final DbClient dbClient;
@@ -129,7 +136,7 @@ public class BulkChangeAction implements IssuesWsAction {
       .setPost(true);
 
     action.createParam(PARAM_ISSUES)
-      .setDescription("Comma-separated list of issue keys")
+      .setDescription("Comma-separated list of issue keys. Since 6.4, the number of issues is no more limited to " + MAX_LIMIT)
       .setRequired(true)
       .setExampleValue(UUID_EXAMPLE_01 + "," + UUID_EXAMPLE_02);
     action.createParam(PARAM_ACTIONS)
@@ -179,30 +186,33 @@ public class BulkChangeAction implements IssuesWsAction {
   @Override
   public void handle(Request request, Response response) throws Exception {
     userSession.checkLoggedIn();
+    boolean sendNotification = request.mandatoryParamAsBoolean(PARAM_SEND_NOTIFICATIONS);
+    Map<String, Map<String, Object>> propertiesByActions = toPropertiesByActions(request);
+    List<String> issueKeys = request.mandatoryParamAsStrings(PARAM_ISSUES);
+    IssueChangeContext issueChangeContext = IssueChangeContext.createUser(new Date(system2.now()), userSession.getLogin());
+
+    BulkChangeResult result = new BulkChangeResult();
     try (DbSession dbSession = dbClient.openSession(false)) {
-      Issues.BulkChangeWsResponse wsResponse = Stream.of(request)
-        .map(loadData(dbSession))
-        .map(executeBulkChange())
-        .map(toWsResponse())
-        .collect(Collectors.toOneElement());
-      writeProtobuf(wsResponse, request, response);
+      for (List<String> batch : Lists.partition(new ArrayList<>(new LinkedHashSet<>(issueKeys)), BATCH_SIZE)) {
+        BulkChangeData bulkChangeData = new BulkChangeData(dbSession, batch, propertiesByActions, sendNotification);
+        executeBulkChange(bulkChangeData, issueChangeContext, result);
+      }
     }
+    writeProtobuf(toWsResponse(result), request, response);
   }
 
-  private Function<Request, BulkChangeData> loadData(DbSession dbSession) {
-    return request -> new BulkChangeData(dbSession, request);
-  }
-
-  private Function<BulkChangeData, BulkChangeResult> executeBulkChange() {
-    return bulkChangeData -> {
-      BulkChangeResult result = new BulkChangeResult(bulkChangeData.issues.size());
-      IssueChangeContext issueChangeContext = IssueChangeContext.createUser(new Date(system2.now()), userSession.getLogin());
-      bulkChangeData.issues.stream()
-        .filter(bulkChange(issueChangeContext, bulkChangeData, result))
-        .peek(issueStorage::save)
-        .forEach(sendNotification(issueChangeContext, bulkChangeData));
-      return result;
-    };
+  /**
+   * Changed issues of the batch are saved and indexed at once, then notifications are sent
+   */
+  private void executeBulkChange(BulkChangeData bulkChangeData, IssueChangeContext issueChangeContext, BulkChangeResult result) {
+    result.increaseTotal(bulkChangeData.issues.size());
+    List<DefaultIssue> changedIssues = bulkChangeData.issues.stream()
+      .filter(bulkChange(issueChangeContext, bulkChangeData, result))
+      .collect(Collectors.toList());
+    if (!changedIssues.isEmpty()) {
+      issueStorage.save(changedIssues);
+      changedIssues.forEach(sendNotification(issueChangeContext, bulkChangeData));
+    }
   }
 
   private Predicate<DefaultIssue> bulkChange(IssueChangeContext issueChangeContext, BulkChangeData bulkChangeData, BulkChangeResult result) {
@@ -246,8 +256,8 @@ public class BulkChangeAction implements IssuesWsAction {
     };
   }
 
-  private static Function<BulkChangeResult, Issues.BulkChangeWsResponse> toWsResponse() {
-    return bulkChangeResult -> Issues.BulkChangeWsResponse.newBuilder()
+  private static Issues.BulkChangeWsResponse toWsResponse(BulkChangeResult bulkChangeResult) {
+    return Issues.BulkChangeWsResponse.newBuilder()
       .setTotal(bulkChangeResult.getTotal())
       .setSuccess(bulkChangeResult.getSuccess())
       .setIgnored((long) bulkChangeResult.getTotal() - (bulkChangeResult.getSuccess() + bulkChangeResult.getFailures()))
@@ -255,6 +265,24 @@ public class BulkChangeAction implements IssuesWsAction {
       .build();
   }
 
+  private static Map<String, Map<String, Object>> toPropertiesByActions(Request request) {
+    Map<String, Map<String, Object>> properties = new HashMap<>();
+    request.getParam(PARAM_ASSIGN, value -> properties.put(AssignAction.ASSIGN_KEY, new HashMap<>(of(ASSIGNEE_PARAMETER, value))));
+    request.getParam(PARAM_SET_SEVERITY, value -> properties.put(SET_SEVERITY_KEY, new HashMap<>(of(SEVERITY_PARAMETER, value))));
+    request.getParam(PARAM_SET_TYPE, value -> properties.put(SET_TYPE_KEY, new HashMap<>(of(TYPE_PARAMETER, value))));
+    request.getParam(PARAM_DO_TRANSITION, value -> properties.put(DO_TRANSITION_KEY, new HashMap<>(of(TRANSITION_PARAMETER, value))));
+    request.getParam(PARAM_ADD_TAGS, value -> properties.put(AddTagsAction.KEY, new HashMap<>(of(TAGS_PARAMETER, value))));
+    request.getParam(PARAM_REMOVE_TAGS, value -> properties.put(RemoveTagsAction.KEY, new HashMap<>(of(TAGS_PARAMETER, value))));
+    request.getParam(PARAM_COMMENT, value -> properties.put(COMMENT_KEY, new HashMap<>(of(COMMENT_PROPERTY, value))));
+    checkAtLeastOneActionIsDefined(properties.keySet());
+    return properties;
+  }
+
+  private static void checkAtLeastOneActionIsDefined(Set<String> actions) {
+    long actionsDefined = actions.stream().filter(action -> !action.equals(COMMENT_KEY)).count();
+    checkArgument(actionsDefined > 0, "At least one action must be provided");
+  }
+
   public static class ActionContext implements Action.Context {
     private final DefaultIssue issue;
     private final IssueChangeContext changeContext;
@@ -284,12 +312,10 @@ public class BulkChangeAction implements IssuesWsAction {
     private final Map<RuleKey, RuleDto> rulesByKey;
     private final List<Action> availableActions;
 
-    BulkChangeData(DbSession dbSession, Request request) {
-      this.sendNotification = request.mandatoryParamAsBoolean(PARAM_SEND_NOTIFICATIONS);
-      this.propertiesByActions = toPropertiesByActions(request);
+    BulkChangeData(DbSession dbSession, List<String> issueKeys, Map<String, Map<String, Object>> propertiesByActions, boolean sendNotification) {
+      this.sendNotification = sendNotification;
+      this.propertiesByActions = propertiesByActions;
 
-      List<String> issueKeys = request.mandatoryParamAsStrings(PARAM_ISSUES);
-      checkArgument(issueKeys.size() <= MAX_LIMIT, "Number of issues is limited to %s", MAX_LIMIT);
       List<IssueDto> allIssues = dbClient.issueDao().selectByKeys(dbSession, issueKeys);
 
       List<ComponentDto> allProjects = getComponents(dbSession, allIssues.stream().map(IssueDto::getProjectUuid).collect(Collectors.toSet()));
@@ -341,33 +367,15 @@ public class BulkChangeAction implements IssuesWsAction {
     Optional<Action> getCommentAction() {
       return availableActions.stream().filter(action -> action.key().equals(COMMENT_KEY)).findFirst();
     }
-
-    private Map<String, Map<String, Object>> toPropertiesByActions(Request request) {
-      Map<String, Map<String, Object>> properties = new HashMap<>();
-      request.getParam(PARAM_ASSIGN, value -> properties.put(AssignAction.ASSIGN_KEY, new HashMap<>(of(ASSIGNEE_PARAMETER, value))));
-      request.getParam(PARAM_SET_SEVERITY, value -> properties.put(SET_SEVERITY_KEY, new HashMap<>(of(SEVERITY_PARAMETER, value))));
-      request.getParam(PARAM_SET_TYPE, value -> properties.put(SET_TYPE_KEY, new HashMap<>(of(TYPE_PARAMETER, value))));
-      request.getParam(PARAM_DO_TRANSITION, value -> properties.put(DO_TRANSITION_KEY, new HashMap<>(of(TRANSITION_PARAMETER, value))));
-      request.getParam(PARAM_ADD_TAGS, value -> properties.put(AddTagsAction.KEY, new HashMap<>(of(TAGS_PARAMETER, value))));
-      request.getParam(PARAM_REMOVE_TAGS, value -> properties.put(RemoveTagsAction.KEY, new HashMap<>(of(TAGS_PARAMETER, value))));
-      request.getParam(PARAM_COMMENT, value -> properties.put(COMMENT_KEY, new HashMap<>(of(COMMENT_PROPERTY, value))));
-      checkAtLeastOneActionIsDefined(properties.keySet());
-      return properties;
-    }
-
-    private void checkAtLeastOneActionIsDefined(Set<String> actions) {
-      long actionsDefined = actions.stream().filter(action -> !action.equals(COMMENT_KEY)).count();
-      checkArgument(actionsDefined > 0, "At least one action must be provided");
-    }
   }
 
   private static class BulkChangeResult {
-    private final int total;
+    private int total = 0;
     private Set<String> success = new HashSet<>();
     private int failures = 0;
 
-    BulkChangeResult(int total) {
-      this.total = total;
+    void increaseTotal(int count) {
+      this.total += count;
     }
 
     void increaseSuccess(DefaultIssue issue) {
@@ -33,6 +33,7 @@ import org.sonar.api.utils.Paging;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery.Strategy;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.ws.ProtobufStreamWriter;
 import org.sonarqube.ws.WsMeasures;
 import org.sonarqube.ws.WsMeasures.ComponentTreeWsResponse;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
@@ -185,26 +186,34 @@ public class ComponentTreeAction implements MeasuresWsAction {
 
   @Override
   public void handle(Request request, Response response) throws Exception {
-    ComponentTreeWsResponse componentTreeWsResponse = doHandle(toComponentTreeWsRequest(request));
-    writeProtobuf(componentTreeWsResponse, request, response);
-  }
-
-  private ComponentTreeWsResponse doHandle(ComponentTreeWsRequest request) {
-    ComponentTreeData data = dataLoader.load(request);
+    ComponentTreeWsRequest wsRequest = toComponentTreeWsRequest(request);
+    ComponentTreeData data = dataLoader.load(wsRequest);
     if (data.getComponents() == null) {
-      return emptyResponse(data.getBaseComponent(), request);
+      writeProtobuf(emptyResponse(data.getBaseComponent(), wsRequest), request, response);
+      return;
     }
 
-    return buildResponse(
-      request,
-      data,
-      Paging.forPageIndex(
-        request.getPage())
-        .withPageSize(request.getPageSize())
-        .andTotal(data.getComponentCount()));
+    Paging paging = Paging.forPageIndex(
+      wsRequest.getPage())
+      .withPageSize(wsRequest.getPageSize())
+      .andTotal(data.getComponentCount());
+    // components are streamed, so that the page is not held twice in memory
+    try (ProtobufStreamWriter<WsMeasures.Component> writer = ProtobufStreamWriter.of(buildResponseHead(wsRequest, data, paging),
+      ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER, request, response)) {
+      for (ComponentDto componentDto : data.getComponents()) {
+        writer.write(componentDtoToWsComponent(
+          componentDto,
+          data.getMeasuresByComponentUuidAndMetric().row(componentDto.uuid()),
+          data.getReferenceComponentsByUuid()).build());
+      }
+      writer.complete();
+    }
   }
 
-  private static ComponentTreeWsResponse buildResponse(ComponentTreeWsRequest request, ComponentTreeData data, Paging paging) {
+  /**
+   * Response without the field "components"
+   */
+  private static ComponentTreeWsResponse buildResponseHead(ComponentTreeWsRequest request, ComponentTreeData data, Paging paging) {
     ComponentTreeWsResponse.Builder response = ComponentTreeWsResponse.newBuilder();
     response.getPagingBuilder()
       .setPageIndex(paging.pageIndex())
@@ -218,13 +227,6 @@ public class ComponentTreeAction implements MeasuresWsAction {
         data.getMeasuresByComponentUuidAndMetric().row(data.getBaseComponent().uuid()),
         data.getReferenceComponentsByUuid()));
 
-    for (ComponentDto componentDto : data.getComponents()) {
-      response.addComponents(componentDtoToWsComponent(
-        componentDto,
-        data.getMeasuresByComponentUuidAndMetric().row(componentDto.uuid()),
-        data.getReferenceComponentsByUuid()));
-    }
-
     if (areMetricsInResponse(request)) {
       WsMeasures.Metrics.Builder metricsBuilder = response.getMetricsBuilder();
       for (MetricDto metricDto : data.getMetrics()) {
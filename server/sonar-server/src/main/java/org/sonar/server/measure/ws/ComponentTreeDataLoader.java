@@ -52,6 +52,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -64,11 +65,14 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.String.format;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.api.utils.Paging.offset;
 import static org.sonar.server.component.ComponentFinder.ParamNames.BASE_COMPONENT_ID_AND_KEY;
 import static org.sonar.server.component.ComponentFinder.ParamNames.DEVELOPER_ID_AND_KEY;
 import static org.sonar.server.measure.ws.ComponentTreeAction.LEAVES_STRATEGY;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.STRATEGIES;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
@@ -102,16 +106,19 @@ public class ComponentTreeDataLoader {
       Long developerId = searchDeveloperId(dbSession, wsRequest);
 
       ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
-      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components,
-        metrics, developerId);
 
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+      // only the fields used to filter and sort are loaded for the whole tree, other data are loaded for the requested page
+      List<ComponentDto> sortedComponents = searchComponentSortFields(dbSession, componentTreeQuery);
+      Table<String, MetricDto, MeasureDto> measuresToSort = searchMeasuresToSort(dbSession, baseComponent, componentTreeQuery, sortedComponents, metrics, wsRequest,
+        developerId);
+      sortedComponents = filterComponents(sortedComponents, measuresToSort, metrics, wsRequest);
+      sortedComponents = sortComponents(sortedComponents, wsRequest, metrics, measuresToSort);
 
-      int componentCount = components.size();
-      components = paginateComponents(components, wsRequest);
+      int componentCount = sortedComponents.size();
+      List<ComponentDto> components = searchComponentsOfPage(dbSession, paginateComponents(sortedComponents, wsRequest));
+      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, components, metrics,
+        developerId);
 
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
@@ -149,12 +156,24 @@ public class ComponentTreeDataLoader {
       .uniqueIndex(ComponentDto::uuid);
   }
 
-  private List<ComponentDto> searchComponents(DbSession dbSession, ComponentTreeQuery componentTreeQuery) {
+  private List<ComponentDto> searchComponentSortFields(DbSession dbSession, ComponentTreeQuery componentTreeQuery) {
     Collection<String> qualifiers = componentTreeQuery.getQualifiers();
     if (qualifiers != null && qualifiers.isEmpty()) {
       return Collections.emptyList();
     }
-    return dbClient.componentDao().selectDescendants(dbSession, componentTreeQuery);
+    return dbClient.componentDao().selectDescendantsSortFields(dbSession, componentTreeQuery);
+  }
+
+  private List<ComponentDto> searchComponentsOfPage(DbSession dbSession, List<ComponentDto> sortedComponentsOfPage) {
+    if (sortedComponentsOfPage.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> uuids = sortedComponentsOfPage.stream().map(ComponentDto::uuid).collect(Collectors.toList(sortedComponentsOfPage.size()));
+    Map<String, ComponentDto> componentsByUuid = Maps.uniqueIndex(dbClient.componentDao().selectByUuids(dbSession, uuids), ComponentDto::uuid);
+    return uuids.stream()
+      .map(componentsByUuid::get)
+      .filter(Objects::nonNull)
+      .collect(Collectors.toList(uuids.size()));
   }
 
   private List<MetricDto> searchMetrics(DbSession dbSession, ComponentTreeWsRequest request) {
@@ -172,20 +191,59 @@ public class ComponentTreeDataLoader {
     return metrics;
   }
 
-  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
-    List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
-
-    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
+  /**
+   * Measures of the tree on the metric used to filter or sort components, if any
+   */
+  private Table<String, MetricDto, MeasureDto> searchMeasuresToSort(DbSession dbSession, ComponentDto baseComponent, ComponentTreeQuery componentTreeQuery,
+    List<ComponentDto> components, List<MetricDto> metrics, ComponentTreeWsRequest wsRequest, @Nullable Long developerId) {
+    Optional<MetricDto> metricToSort = metricToSort(metrics, wsRequest);
+    if (!metricToSort.isPresent()) {
+      return HashBasedTable.create();
+    }
+    MetricDto metric = metricToSort.get();
     MeasureTreeQuery measureQuery = MeasureTreeQuery.builder()
       .setStrategy(MeasureTreeQuery.Strategy.valueOf(componentTreeQuery.getStrategy().name()))
       .setNameOrKeyQuery(componentTreeQuery.getNameOrKeyQuery())
       .setQualifiers(componentTreeQuery.getQualifiers())
       .setPersonId(developerId)
+      .setMetricIds(singletonList(metric.getId()))
+      .build();
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), 1);
+    for (MeasureDto measureDto : dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery)) {
+      measuresByComponentUuidAndMetric.put(measureDto.getComponentUuid(), metric, measureDto);
+    }
+    addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, singletonList(metric));
+    return measuresByComponentUuidAndMetric;
+  }
+
+  private static Optional<MetricDto> metricToSort(List<MetricDto> metrics, ComponentTreeWsRequest wsRequest) {
+    String metricKeyToSort = wsRequest.getMetricSort();
+    List<String> sort = wsRequest.getSort();
+    boolean sortedByMetric = sort != null && (sort.contains(METRIC_SORT) || sort.contains(METRIC_PERIOD_SORT));
+    if (metricKeyToSort == null || !(sortedByMetric || componentWithMeasuresOnly(wsRequest))) {
+      return Optional.empty();
+    }
+    return metrics.stream().filter(m -> metricKeyToSort.equals(m.getKey())).findFirst();
+  }
+
+  /**
+   * Measures of the base component and of the given components
+   */
+  private Table<String, MetricDto, MeasureDto> searchMeasuresByComponentUuidAndMetric(DbSession dbSession, ComponentDto baseComponent,
+    List<ComponentDto> components, List<MetricDto> metrics, @Nullable Long developerId) {
+
+    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
+    List<String> componentUuids = new ArrayList<>(components.size() + 1);
+    componentUuids.add(baseComponent.uuid());
+    components.forEach(component -> componentUuids.add(component.uuid()));
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setComponentUuids(baseComponent.projectUuid(), componentUuids)
+      .setPersonId(developerId)
       .setMetricIds(new ArrayList<>(metricsById.keySet()))
       .build();
-    List<MeasureDto> measureDtos = dbClient.measureDao().selectTreeByQuery(dbSession, baseComponent, measureQuery);
+    List<MeasureDto> measureDtos = dbClient.measureDao().selectByQuery(dbSession, measureQuery);
 
-    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size(), metrics.size());
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(components.size() + 1, metrics.size());
     for (MeasureDto measureDto : measureDtos) {
       measuresByComponentUuidAndMetric.put(
         measureDto.getComponentUuid(),
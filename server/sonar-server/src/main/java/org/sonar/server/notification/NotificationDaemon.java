@@ -21,6 +21,8 @@ package org.sonar.server.notification;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +50,13 @@ import org.sonar.api.utils.log.Loggers;
 @ServerSide
 public class NotificationDaemon implements Startable {
   private static final String THREAD_NAME_PREFIX = "sq-notification-service-";
+  private static final String WORKER_THREAD_NAME_PREFIX = "sq-notification-worker-";
+  private static final int WORKER_THREADS = 4;
+  /**
+   * Number of notifications popped from queue at once. Notifications of a batch which are sent to the same
+   * recipient can be grouped by channels into a digest.
+   */
+  private static final int BATCH_SIZE = 500;
 
   private static final Logger LOG = Loggers.get(NotificationDaemon.class);
 
@@ -60,6 +69,7 @@ public class NotificationDaemon implements Startable {
   private final NotificationService service;
 
   private ScheduledExecutorService executorService;
+  private ExecutorService workers;
   private boolean stopping = false;
 
   public NotificationDaemon(Settings settings, DefaultNotificationManager manager, NotificationService service) {
@@ -71,6 +81,11 @@ public class NotificationDaemon implements Startable {
 
   @Override
   public void start() {
+    workers = Executors.newFixedThreadPool(WORKER_THREADS,
+      new ThreadFactoryBuilder()
+        .setNameFormat(WORKER_THREAD_NAME_PREFIX + "%d")
+        .setPriority(Thread.MIN_PRIORITY)
+        .build());
     executorService = Executors.newSingleThreadScheduledExecutor(
       new ThreadFactoryBuilder()
         .setNameFormat(THREAD_NAME_PREFIX + "%d")
@@ -92,6 +107,8 @@ public class NotificationDaemon implements Startable {
       stopping = true;
       executorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      workers.shutdown();
+      workers.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
       Thread.currentThread().interrupt();
@@ -105,10 +122,10 @@ public class NotificationDaemon implements Startable {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      service.deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(BATCH_SIZE);
+    while (!notifsToSend.isEmpty()) {
+      service.deliver(notifsToSend, workers);
+      notifSentCount += notifsToSend.size();
       if (stopping) {
         break;
       }
@@ -119,7 +136,7 @@ public class NotificationDaemon implements Startable {
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(BATCH_SIZE);
     }
   }
 
@@ -20,15 +20,23 @@
 package org.sonar.server.notification;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.notifications.Notification;
@@ -65,7 +73,39 @@ public class NotificationService {
   }
 
   public void deliver(Notification notification) {
-    final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
+    deliver(Collections.singletonList(notification), MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Delivers the notifications by running on {@code executor} the dispatchers of each notification, then the
+   * delivery to each recipient. The notifications delivered to the same recipient through the same channel are
+   * given together to {@link NotificationChannel#deliver(Collection, String)}, so that the channel can send a digest.
+   * Returns when all the notifications are delivered.
+   */
+  public void deliver(Collection<Notification> notifications, Executor executor) {
+    List<CompletableFuture<SetMultimap<String, NotificationChannel>>> recipientsOfNotifications = new ArrayList<>(notifications.size());
+    for (Notification notification : notifications) {
+      recipientsOfNotifications.add(CompletableFuture.supplyAsync(() -> findRecipients(notification), executor));
+    }
+
+    // notifications by channel for each recipient, in the order they were given
+    Map<String, ListMultimap<NotificationChannel, Notification>> notificationsByRecipient = new LinkedHashMap<>();
+    Iterator<Notification> notificationIt = notifications.iterator();
+    for (CompletableFuture<SetMultimap<String, NotificationChannel>> recipients : recipientsOfNotifications) {
+      Notification notification = notificationIt.next();
+      for (Map.Entry<String, NotificationChannel> recipient : recipients.join().entries()) {
+        notificationsByRecipient.computeIfAbsent(recipient.getKey(), username -> ArrayListMultimap.create()).put(recipient.getValue(), notification);
+      }
+    }
+
+    CompletableFuture<?>[] deliveries = notificationsByRecipient.entrySet().stream()
+      .map(entry -> CompletableFuture.runAsync(() -> dispatch(entry.getKey(), entry.getValue()), executor))
+      .toArray(CompletableFuture<?>[]::new);
+    CompletableFuture.allOf(deliveries).join();
+  }
+
+  private SetMultimap<String, NotificationChannel> findRecipients(Notification notification) {
+    SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new ContextImpl(recipients);
       try {
@@ -75,21 +115,23 @@ public class NotificationService {
         LOG.warn(String.format("Unable to dispatch notification %s using %s", notification, dispatcher), e);
       }
     }
-    dispatch(notification, recipients);
+    return recipients;
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
-    for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
-      LOG.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+  private static void dispatch(String username, ListMultimap<NotificationChannel, Notification> notificationsByChannel) {
+    LOG.debug("For user {} via {}", username, notificationsByChannel.keySet());
+    for (Map.Entry<NotificationChannel, Collection<Notification>> entry : notificationsByChannel.asMap().entrySet()) {
+      NotificationChannel channel = entry.getKey();
+      Collection<Notification> userNotifications = entry.getValue();
+      try {
+        if (userNotifications.size() == 1) {
+          channel.deliver(userNotifications.iterator().next(), username);
+        } else {
+          channel.deliver(userNotifications, username);
         }
+      } catch (Exception e) {
+        // catch all exceptions in order to deliver via other channels
+        LOG.warn("Unable to deliver notifications " + userNotifications + " for user " + username + " via " + channel, e);
       }
     }
   }
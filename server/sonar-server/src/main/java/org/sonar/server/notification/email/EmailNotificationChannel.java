@@ -21,6 +21,10 @@ package org.sonar.server.notification.email;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
@@ -82,6 +86,12 @@ public class EmailNotificationChannel extends NotificationChannel {
   private static final String FROM_NAME_DEFAULT = "SonarQube";
   private static final String SUBJECT_DEFAULT = "Notification";
 
+  /**
+   * Maximum number of notifications detailed in a digest
+   */
+  private static final int MAX_MESSAGES_IN_DIGEST = 100;
+  private static final String DIGEST_SEPARATOR = "----------";
+
   private EmailSettings configuration;
   private EmailTemplate[] templates;
   private UserFinder userFinder;
@@ -94,18 +104,66 @@ public class EmailNotificationChannel extends NotificationChannel {
 
   @Override
   public void deliver(Notification notification, String username) {
-    User user = userFinder.findByLogin(username);
-    if (user == null || StringUtils.isBlank(user.email())) {
-      LOG.debug("User does not exist or has no email: {}", username);
+    String email = findEmail(username);
+    if (email == null) {
       return;
     }
     EmailMessage emailMessage = format(notification);
     if (emailMessage != null) {
-      emailMessage.setTo(user.email());
+      emailMessage.setTo(email);
       deliver(emailMessage);
     }
   }
 
+  /**
+   * Sends a single email, the digest of the notifications, if more than one can be formatted.
+   */
+  @Override
+  public void deliver(Collection<Notification> notifications, String username) {
+    String email = findEmail(username);
+    if (email == null) {
+      return;
+    }
+    List<EmailMessage> emailMessages = new ArrayList<>(notifications.size());
+    for (Notification notification : notifications) {
+      EmailMessage emailMessage = format(notification);
+      if (emailMessage != null) {
+        emailMessages.add(emailMessage);
+      }
+    }
+    if (emailMessages.isEmpty()) {
+      return;
+    }
+    EmailMessage emailMessage = emailMessages.size() == 1 ? emailMessages.get(0) : toDigest(emailMessages);
+    emailMessage.setTo(email);
+    deliver(emailMessage);
+  }
+
+  @CheckForNull
+  private String findEmail(String username) {
+    User user = userFinder.findByLogin(username);
+    if (user == null || StringUtils.isBlank(user.email())) {
+      LOG.debug("User does not exist or has no email: {}", username);
+      return null;
+    }
+    return user.email();
+  }
+
+  private static EmailMessage toDigest(List<EmailMessage> emailMessages) {
+    StringBuilder message = new StringBuilder();
+    for (EmailMessage emailMessage : emailMessages.subList(0, Math.min(emailMessages.size(), MAX_MESSAGES_IN_DIGEST))) {
+      message.append(StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT)).append("\n\n")
+        .append(StringUtils.defaultString(emailMessage.getMessage())).append("\n\n")
+        .append(DIGEST_SEPARATOR).append("\n\n");
+    }
+    if (emailMessages.size() > MAX_MESSAGES_IN_DIGEST) {
+      message.append("And ").append(emailMessages.size() - MAX_MESSAGES_IN_DIGEST).append(" more notifications.\n");
+    }
+    return new EmailMessage()
+      .setSubject(emailMessages.size() + " notifications")
+      .setMessage(message.toString());
+  }
+
   private EmailMessage format(Notification notification) {
     for (EmailTemplate template : templates) {
       EmailMessage email = template.format(notification);
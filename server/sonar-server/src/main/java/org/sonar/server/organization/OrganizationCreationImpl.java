@@ -40,6 +40,7 @@ import org.sonar.db.permission.template.PermissionTemplateDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.user.UserSessionCache;
 
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
@@ -53,14 +54,16 @@ public class OrganizationCreationImpl implements OrganizationCreation {
   private final UuidFactory uuidFactory;
   private final OrganizationValidation organizationValidation;
   private final Settings settings;
+  private final UserSessionCache userSessionCache;
 
   public OrganizationCreationImpl(DbClient dbClient, System2 system2, UuidFactory uuidFactory,
-    OrganizationValidation organizationValidation, Settings settings) {
+    OrganizationValidation organizationValidation, Settings settings, UserSessionCache userSessionCache) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.uuidFactory = uuidFactory;
     this.organizationValidation = organizationValidation;
     this.settings = settings;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -78,6 +81,10 @@ public class OrganizationCreationImpl implements OrganizationCreation {
     addCurrentUserToGroup(dbSession, group, creatorUserId);
 
     dbSession.commit();
+    UserDto creator = dbClient.userDao().selectUserById(dbSession, creatorUserId);
+    if (creator != null) {
+      userSessionCache.invalidateUser(creator.getLogin());
+    }
 
     return organization;
   }
@@ -105,6 +112,7 @@ public class OrganizationCreationImpl implements OrganizationCreation {
     insertPersonalOrgDefaultTemplate(dbSession, organization);
 
     dbSession.commit();
+    userSessionCache.invalidateUser(newUser.getLogin());
 
     return Optional.of(organization);
   }
@@ -32,6 +32,7 @@ import org.sonar.server.organization.DefaultOrganization;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationFlags;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.sonar.core.permission.GlobalPermissions.SYSTEM_ADMIN;
@@ -46,14 +47,16 @@ public class DeleteAction implements OrganizationsAction {
   private final DefaultOrganizationProvider defaultOrganizationProvider;
   private final ComponentCleanerService componentCleanerService;
   private final OrganizationFlags organizationFlags;
+  private final UserSessionCache userSessionCache;
 
   public DeleteAction(UserSession userSession, DbClient dbClient, DefaultOrganizationProvider defaultOrganizationProvider,
-    ComponentCleanerService componentCleanerService, OrganizationFlags organizationFlags) {
+    ComponentCleanerService componentCleanerService, OrganizationFlags organizationFlags, UserSessionCache userSessionCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
     this.componentCleanerService = componentCleanerService;
     this.organizationFlags = organizationFlags;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -97,6 +100,7 @@ public class DeleteAction implements OrganizationsAction {
       deletePermissions(dbSession, organizationDto.getUuid());
       deleteGroups(dbSession, organizationDto.getUuid());
       deleteOrganization(key, dbSession);
+      userSessionCache.invalidateAll();
 
       response.noContent();
     }
@@ -27,6 +27,7 @@ import org.sonar.db.DbSession;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationFlags;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 
 import static java.util.Objects.requireNonNull;
 import static org.sonar.core.permission.GlobalPermissions.SYSTEM_ADMIN;
@@ -38,13 +39,15 @@ public class EnableSupportAction implements OrganizationsAction {
   private final DbClient dbClient;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
   private final OrganizationFlags organizationFlags;
+  private final UserSessionCache userSessionCache;
 
   public EnableSupportAction(UserSession userSession, DbClient dbClient, DefaultOrganizationProvider defaultOrganizationProvider,
-    OrganizationFlags organizationFlags) {
+    OrganizationFlags organizationFlags, UserSessionCache userSessionCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
     this.organizationFlags = organizationFlags;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -64,9 +67,11 @@ public class EnableSupportAction implements OrganizationsAction {
     try (DbSession dbSession = dbClient.openSession(false)) {
       verifySystemAdministrator();
       if (isSupportDisabled(dbSession)) {
-        flagCurrentUserAsRoot(dbSession);
+        String login = requireNonNull(userSession.getLogin());
+        flagCurrentUserAsRoot(dbSession, login);
         enableFeature(dbSession);
         dbSession.commit();
+        userSessionCache.invalidateUser(login);
       }
     }
     response.noContent();
@@ -80,8 +85,8 @@ public class EnableSupportAction implements OrganizationsAction {
     return !organizationFlags.isEnabled(dbSession);
   }
 
-  private void flagCurrentUserAsRoot(DbSession dbSession) {
-    dbClient.userDao().setRoot(dbSession, requireNonNull(userSession.getLogin()), true);
+  private void flagCurrentUserAsRoot(DbSession dbSession, String login) {
+    dbClient.userDao().setRoot(dbSession, login, true);
   }
 
   private void enableFeature(DbSession dbSession) {
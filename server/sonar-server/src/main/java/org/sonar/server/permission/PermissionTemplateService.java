@@ -46,6 +46,7 @@ import org.sonar.server.permission.index.PermissionIndexer;
 import org.sonar.server.permission.ws.template.DefaultTemplatesResolver;
 import org.sonar.server.permission.ws.template.DefaultTemplatesResolverImpl;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
@@ -60,13 +61,15 @@ public class PermissionTemplateService {
   private final PermissionIndexer permissionIndexer;
   private final UserSession userSession;
   private final DefaultTemplatesResolver defaultTemplatesResolver;
+  private final UserSessionCache userSessionCache;
 
   public PermissionTemplateService(DbClient dbClient, PermissionIndexer permissionIndexer, UserSession userSession,
-    DefaultTemplatesResolver defaultTemplatesResolver) {
+    DefaultTemplatesResolver defaultTemplatesResolver, UserSessionCache userSessionCache) {
     this.dbClient = dbClient;
     this.permissionIndexer = permissionIndexer;
     this.userSession = userSession;
     this.defaultTemplatesResolver = defaultTemplatesResolver;
+    this.userSessionCache = userSessionCache;
   }
   
   public boolean wouldUserHavePermissionWithDefaultTemplate(DbSession dbSession,
@@ -101,6 +104,7 @@ public class PermissionTemplateService {
       copyPermissions(dbSession, template, project, null);
     }
     dbSession.commit();
+    userSessionCache.invalidateAll();
     indexProjectPermissions(dbSession, projects.stream().map(ComponentDto::uuid).collect(Collectors.toList()));
   }
 
@@ -114,6 +118,7 @@ public class PermissionTemplateService {
     checkArgument(template != null, "Cannot retrieve default permission template");
     copyPermissions(dbSession, template, component, projectCreatorUserId);
     dbSession.commit();
+    userSessionCache.invalidateAll();
     indexProjectPermissions(dbSession, asList(component.uuid()));
   }
 
@@ -0,0 +1,80 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.es.BulkIndexerStatistics;
+import org.sonar.server.es.EsClient;
+
+import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
+
+/**
+ * Throughput of bulk indexing of Elasticsearch indices
+ */
+public class EsIndexingMonitor extends BaseMonitorMBean implements EsIndexingMonitorMBean {
+
+  private final BulkIndexerStatistics statistics;
+
+  public EsIndexingMonitor(EsClient esClient) {
+    this.statistics = esClient.getBulkIndexerStatistics();
+  }
+
+  @Override
+  public String name() {
+    return "ElasticsearchIndexing";
+  }
+
+  @Override
+  public long getDocuments() {
+    return statistics.getDocuments();
+  }
+
+  @Override
+  public long getBytes() {
+    return statistics.getBytes();
+  }
+
+  @Override
+  public long getRetries() {
+    return statistics.getRetries();
+  }
+
+  @Override
+  public long getFailures() {
+    return statistics.getFailures();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    statistics.getByIndex().forEach((indexName, index) -> {
+      Map<String, Object> indexAttributes = new LinkedHashMap<>();
+      indexAttributes.put("Documents", index.getDocuments());
+      indexAttributes.put("Documents/sec", index.getDocumentsPerSecond());
+      indexAttributes.put("Size", byteCountToDisplaySize(index.getBytes()));
+      indexAttributes.put("Size/sec", byteCountToDisplaySize(index.getBytesPerSecond()));
+      indexAttributes.put("Retries", index.getRetries());
+      indexAttributes.put("Failures", index.getFailures());
+      attributes.put(indexName, indexAttributes);
+    });
+    return attributes;
+  }
+}
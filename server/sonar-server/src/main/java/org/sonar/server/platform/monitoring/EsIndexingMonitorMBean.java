@@ -0,0 +1,46 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+/**
+ * The public attributes of {@link EsIndexingMonitor} to be exported in JMX bean.
+ */
+public interface EsIndexingMonitorMBean {
+
+  /**
+   * Number of documents indexed or deleted since startup
+   */
+  long getDocuments();
+
+  /**
+   * Estimated size of the bulk requests sent to Elasticsearch since startup
+   */
+  long getBytes();
+
+  /**
+   * Number of documents rejected by Elasticsearch, then sent again
+   */
+  long getRetries();
+
+  /**
+   * Number of documents which could not be indexed
+   */
+  long getFailures();
+}
@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.source.SourceCache;
+
+import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
+
+/**
+ * Usage of the cache of sources used by web services
+ */
+public class SourceCacheMonitor extends BaseMonitorMBean implements SourceCacheMonitorMBean {
+
+  private final SourceCache sourceCache;
+
+  public SourceCacheMonitor(SourceCache sourceCache) {
+    this.sourceCache = sourceCache;
+  }
+
+  @Override
+  public String name() {
+    return "SourceCache";
+  }
+
+  @Override
+  public long getHits() {
+    return sourceCache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return sourceCache.getMisses();
+  }
+
+  @Override
+  public long getEvictions() {
+    return sourceCache.getEvictions();
+  }
+
+  @Override
+  public long getEntries() {
+    return sourceCache.getEntries();
+  }
+
+  @Override
+  public long getSizeInBytes() {
+    return sourceCache.getSize();
+  }
+
+  @Override
+  public long getMaxSizeInBytes() {
+    return sourceCache.getMaxSize();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Enabled", sourceCache.isEnabled());
+    attributes.put("Hits", getHits());
+    attributes.put("Misses", getMisses());
+    attributes.put("Evictions", getEvictions());
+    attributes.put("Entries", getEntries());
+    attributes.put("Size", byteCountToDisplaySize(getSizeInBytes()));
+    attributes.put("Max Size", byteCountToDisplaySize(getMaxSizeInBytes()));
+    return attributes;
+  }
+}
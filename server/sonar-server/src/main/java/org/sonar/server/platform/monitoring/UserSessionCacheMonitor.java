@@ -0,0 +1,78 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.user.UserSessionCache;
+
+/**
+ * Usage of the cache of users, tokens, groups and permissions used to authenticate requests
+ */
+public class UserSessionCacheMonitor extends BaseMonitorMBean implements UserSessionCacheMonitorMBean {
+
+  private final UserSessionCache userSessionCache;
+
+  public UserSessionCacheMonitor(UserSessionCache userSessionCache) {
+    this.userSessionCache = userSessionCache;
+  }
+
+  @Override
+  public String name() {
+    return "UserSessionCache";
+  }
+
+  @Override
+  public long getHits() {
+    return userSessionCache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return userSessionCache.getMisses();
+  }
+
+  @Override
+  public double getHitRatio() {
+    return userSessionCache.getHitRatio();
+  }
+
+  @Override
+  public long getEvictions() {
+    return userSessionCache.getEvictions();
+  }
+
+  @Override
+  public long getEntries() {
+    return userSessionCache.getEntries();
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Enabled", userSessionCache.isEnabled());
+    attributes.put("Hits", getHits());
+    attributes.put("Misses", getMisses());
+    attributes.put("Hit Ratio", getHitRatio());
+    attributes.put("Evictions", getEvictions());
+    attributes.put("Entries", getEntries());
+    return attributes;
+  }
+}
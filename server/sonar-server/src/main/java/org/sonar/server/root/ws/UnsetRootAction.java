@@ -28,6 +28,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 
 import static java.lang.String.format;
 import static org.sonar.server.user.AbstractUserSession.insufficientPrivilegesException;
@@ -37,10 +38,12 @@ public class UnsetRootAction implements RootsWsAction {
 
   private final UserSession userSession;
   private final DbClient dbClient;
+  private final UserSessionCache userSessionCache;
 
-  public UnsetRootAction(UserSession userSession, DbClient dbClient) {
+  public UnsetRootAction(UserSession userSession, DbClient dbClient, UserSessionCache userSessionCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -77,6 +80,7 @@ public class UnsetRootAction implements RootsWsAction {
       if (userDto.isRoot()) {
         dbClient.userDao().setRoot(dbSession, login, false);
         dbSession.commit();
+        userSessionCache.invalidateUser(login);
       }
     }
     response.noContent();
@@ -20,16 +20,19 @@
 package org.sonar.server.rule;
 
 import com.google.common.base.Function;
-import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ListMultimap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ObjectUtils;
@@ -89,32 +92,45 @@ public class RegisterRules implements Startable {
     this.system2 = system2;
   }
 
+  /**
+   * Existing rules and parameters are loaded at once, then compared in memory to the definitions. Only
+   * the differences are written to DB: updates and deletions through a batch session, inserts through
+   * a regular session because generated ids are required. Sessions are committed one after the other,
+   * so that they never wait for each other's locks.
+   * <p>
+   * Only the rules which have been changed are re-indexed, as {@link RuleIndexer#index()} indexes the rules
+   * updated since the last indexing.
+   */
   @Override
   public void start() {
     Profiler profiler = Profiler.create(LOG).startInfo("Register rules");
-    DbSession session = dbClient.openSession(false);
-    try {
-      Map<RuleKey, RuleDto> allRules = loadRules(session);
+    try (DbSession session = dbClient.openSession(false);
+      DbSession batchSession = dbClient.openSession(true)) {
+      List<RuleDto> dbRules = dbClient.ruleDao().selectAll(session);
+      Map<RuleKey, RuleDto> allRules = new HashMap<>(dbRules.stream().collect(Collectors.uniqueIndex(RuleDto::getKey)));
+      RegistrationChanges registration = new RegistrationChanges();
 
       RulesDefinition.Context context = defLoader.load();
       for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
         if (languages.get(repoDef.language()) != null) {
           for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
-            registerRule(ruleDef, allRules, session);
+            registerRule(ruleDef, allRules, registration);
           }
-          session.commit();
         }
       }
-      List<RuleDto> activeRules = processRemainingDbRules(allRules.values(), session);
-      List<ActiveRuleChange> changes = removeActiveRulesOnStillExistingRepositories(session, activeRules, context);
+      persistRules(session, batchSession, registration);
+      mergeParams(session, batchSession, registration);
+
+      Map<Integer, RuleDto> allRulesById = dbRules.stream().collect(Collectors.uniqueIndex(RuleDto::getId));
+      List<RuleDto> removedRules = processRemainingDbRules(allRules.values(), allRulesById, batchSession);
+      List<ActiveRuleChange> changes = removeActiveRulesOnStillExistingRepositories(session, removedRules, context);
       session.commit();
 
       persistRepositories(session, context.repositories());
       ruleIndexer.index();
       activeRuleIndexer.index(changes);
+      LOG.debug("{} rules inserted, {} rules updated, {} rules removed", registration.insertedRules.size(), registration.updatedRules.size(), removedRules.size());
       profiler.stopDebug();
-    } finally {
-      session.close();
     }
   }
 
@@ -133,10 +149,14 @@ public class RegisterRules implements Startable {
     // nothing
   }
 
-  private void registerRule(RulesDefinition.Rule ruleDef, Map<RuleKey, RuleDto> allRules, DbSession session) {
+  private void registerRule(RulesDefinition.Rule ruleDef, Map<RuleKey, RuleDto> allRules, RegistrationChanges registration) {
     RuleKey ruleKey = RuleKey.of(ruleDef.repository().key(), ruleDef.key());
 
-    RuleDto rule = allRules.containsKey(ruleKey) ? allRules.remove(ruleKey) : createRuleDto(ruleDef, session);
+    RuleDto rule = allRules.remove(ruleKey);
+    boolean isNew = rule == null;
+    if (isNew) {
+      rule = createRuleDto(ruleDef);
+    }
 
     boolean executeUpdate = false;
     if (mergeRule(ruleDef, rule)) {
@@ -151,19 +171,19 @@ public class RegisterRules implements Startable {
       executeUpdate = true;
     }
 
-    if (executeUpdate) {
-      update(session, rule);
+    if (isNew) {
+      registration.insertedRules.add(rule);
+    } else if (executeUpdate) {
+      registration.updatedRules.add(rule);
     }
-
-    mergeParams(ruleDef, rule, session);
+    registration.definitions.put(rule, ruleDef);
   }
 
-  private Map<RuleKey, RuleDto> loadRules(DbSession session) {
-    Map<RuleKey, RuleDto> rules = new HashMap<>();
-    for (RuleDto rule : dbClient.ruleDao().selectAll(session)) {
-      rules.put(rule.getKey(), rule);
-    }
-    return rules;
+  private void persistRules(DbSession session, DbSession batchSession, RegistrationChanges registration) {
+    registration.insertedRules.forEach(rule -> dbClient.ruleDao().insert(session, rule));
+    session.commit();
+    registration.updatedRules.forEach(rule -> update(batchSession, rule));
+    batchSession.commit();
   }
 
   private List<RulesDefinition.ExtendedRepository> getRepositories(RulesDefinition.Context context) {
@@ -181,7 +201,7 @@ public class RegisterRules implements Startable {
     return repositories;
   }
 
-  private RuleDto createRuleDto(RulesDefinition.Rule ruleDef, DbSession session) {
+  private RuleDto createRuleDto(RulesDefinition.Rule ruleDef) {
     RuleDto ruleDto = RuleDto.createFor(RuleKey.of(ruleDef.repository().key(), ruleDef.key()))
       .setIsTemplate(ruleDef.template())
       .setConfigKey(ruleDef.internalKey())
@@ -201,8 +221,6 @@ public class RegisterRules implements Startable {
       ruleDto.setDescription(ruleDef.markdownDescription());
       ruleDto.setDescriptionFormat(Format.MARKDOWN);
     }
-
-    dbClient.ruleDao().insert(session, ruleDto);
     return ruleDto;
   }
 
@@ -296,44 +314,58 @@ public class RegisterRules implements Startable {
     return changed;
   }
 
-  private void mergeParams(RulesDefinition.Rule ruleDef, RuleDto rule, DbSession session) {
-    List<RuleParamDto> paramDtos = dbClient.ruleDao().selectRuleParamsByRuleKey(session, rule.getKey());
-    Map<String, RuleParamDto> existingParamsByName = Maps.newHashMap();
-
-    for (RuleParamDto paramDto : paramDtos) {
-      RulesDefinition.Param paramDef = ruleDef.param(paramDto.getName());
-      if (paramDef == null) {
-        dbClient.activeRuleDao().deleteParamsByRuleParam(session, rule.getId(), paramDto.getName());
-        dbClient.ruleDao().deleteRuleParam(session, paramDto.getId());
-      } else {
-        if (mergeParam(paramDto, paramDef)) {
-          dbClient.ruleDao().updateRuleParam(session, rule, paramDto);
+  private void mergeParams(DbSession session, DbSession batchSession, RegistrationChanges registration) {
+    ListMultimap<Integer, RuleParamDto> paramsByRuleId = dbClient.ruleDao().selectAllRuleParams(session).stream()
+      .collect(Collectors.index(RuleParamDto::getRuleId));
+    Map<RuleParamDto, RuleDto> insertedParams = new LinkedHashMap<>();
+
+    // Updates and deletions first, as inserts must not wait for the locks of the batch session
+    registration.definitions.forEach((rule, ruleDef) -> {
+      Set<String> existingParamNames = new HashSet<>();
+      for (RuleParamDto paramDto : paramsByRuleId.get(rule.getId())) {
+        RulesDefinition.Param paramDef = ruleDef.param(paramDto.getName());
+        if (paramDef == null) {
+          dbClient.activeRuleDao().deleteParamsByRuleParam(batchSession, rule.getId(), paramDto.getName());
+          dbClient.ruleDao().deleteRuleParam(batchSession, paramDto.getId());
+        } else {
+          if (mergeParam(paramDto, paramDef)) {
+            dbClient.ruleDao().updateRuleParam(batchSession, rule, paramDto);
+          }
+          existingParamNames.add(paramDto.getName());
         }
-        existingParamsByName.put(paramDto.getName(), paramDto);
       }
-    }
 
-    // Create newly parameters
-    for (RulesDefinition.Param param : ruleDef.params()) {
-      RuleParamDto paramDto = existingParamsByName.get(param.key());
-      if (paramDto != null) {
-        continue;
+      // Create newly parameters
+      for (RulesDefinition.Param param : ruleDef.params()) {
+        if (!existingParamNames.contains(param.key())) {
+          RuleParamDto paramDto = RuleParamDto.createFor(rule)
+            .setName(param.key())
+            .setDescription(param.description())
+            .setDefaultValue(param.defaultValue())
+            .setType(param.type().toString());
+          insertedParams.put(paramDto, rule);
+        }
       }
-      paramDto = RuleParamDto.createFor(rule)
-        .setName(param.key())
-        .setDescription(param.description())
-        .setDefaultValue(param.defaultValue())
-        .setType(param.type().toString());
+    });
+    batchSession.commit();
+
+    // new parameters with a default value, which must be propagated to existing active rules
+    ListMultimap<Integer, RuleParamDto> paramsToPropagate = ArrayListMultimap.create();
+    insertedParams.forEach((paramDto, rule) -> {
       dbClient.ruleDao().insertRuleParam(session, rule, paramDto);
-      if (StringUtils.isEmpty(param.defaultValue())) {
-        continue;
+      if (!StringUtils.isEmpty(paramDto.getDefaultValue()) && !registration.insertedRules.contains(rule)) {
+        paramsToPropagate.put(rule.getId(), paramDto);
       }
-      // Propagate the default value to existing active rule parameters
-      for (ActiveRuleDto activeRule : dbClient.activeRuleDao().selectByRuleId(session, rule.getId())) {
-        ActiveRuleParamDto activeParam = ActiveRuleParamDto.createFor(paramDto).setValue(param.defaultValue());
-        dbClient.activeRuleDao().insertParam(session, activeRule, activeParam);
+    });
+    if (!paramsToPropagate.isEmpty()) {
+      for (ActiveRuleDto activeRule : dbClient.activeRuleDao().selectByRuleIds(session, new ArrayList<>(paramsToPropagate.keySet()))) {
+        for (RuleParamDto paramDto : paramsToPropagate.get(activeRule.getRuleId())) {
+          ActiveRuleParamDto activeParam = ActiveRuleParamDto.createFor(paramDto).setValue(paramDto.getDefaultValue());
+          dbClient.activeRuleDao().insertParam(session, activeRule, activeParam);
+        }
       }
     }
+    session.commit();
   }
 
   private boolean mergeParam(RuleParamDto paramDto, RulesDefinition.Param paramDef) {
@@ -370,7 +402,7 @@ public class RegisterRules implements Startable {
     return changed;
   }
 
-  private List<RuleDto> processRemainingDbRules(Collection<RuleDto> existingRules, DbSession session) {
+  private List<RuleDto> processRemainingDbRules(Collection<RuleDto> existingRules, Map<Integer, RuleDto> allRulesById, DbSession session) {
     // custom rules check status of template, so they must be processed at the end
     List<RuleDto> customRules = newArrayList();
     List<RuleDto> removedRules = newArrayList();
@@ -386,9 +418,9 @@ public class RegisterRules implements Startable {
     for (RuleDto customRule : customRules) {
       Integer templateId = customRule.getTemplateId();
       checkNotNull(templateId, "Template id of the custom rule '%s' is null", customRule);
-      Optional<RuleDto> template = dbClient.ruleDao().selectById(templateId, session);
-      if (template.isPresent() && template.get().getStatus() != RuleStatus.REMOVED) {
-        if (updateCustomRuleFromTemplateRule(customRule, template.get())) {
+      RuleDto template = allRulesById.get(templateId);
+      if (template != null && template.getStatus() != RuleStatus.REMOVED) {
+        if (updateCustomRuleFromTemplateRule(customRule, template)) {
           update(session, customRule);
         }
       } else {
@@ -482,4 +514,11 @@ public class RegisterRules implements Startable {
     rule.setUpdatedAt(system2.now());
     dbClient.ruleDao().update(session, rule);
   }
+
+  private static class RegistrationChanges {
+    private final Set<RuleDto> insertedRules = new HashSet<>();
+    private final List<RuleDto> updatedRules = new ArrayList<>();
+    // rules which are still defined, in the order of definitions
+    private final Map<RuleDto, RulesDefinition.Rule> definitions = new LinkedHashMap<>();
+  }
 }
@@ -19,36 +19,91 @@
  */
 package org.sonar.server.setting;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.property.PropertyDto;
+import org.sonar.db.property.GlobalPropertiesVersionDto;
 
 import static org.apache.commons.lang.StringUtils.defaultString;
 
+/**
+ * Global properties of the db table "properties", shared by all threads of the process as an immutable
+ * snapshot. The snapshot is reloaded only when the version of the global properties in db changed, this
+ * version being checked at most every {@link #VERSION_CHECK_INTERVAL_MS} milliseconds. {@link #refresh()}
+ * drops the snapshot, so that it is reloaded on next access whatever the version. As the check relies on the db only, it also detects changes made by other
+ * processes, for example the web server for the Compute Engine.
+ */
 public class DatabaseSettingLoader implements SettingLoader {
 
+  @VisibleForTesting
+  static final long VERSION_CHECK_INTERVAL_MS = 5_000L;
+
   private final DbClient dbClient;
+  private final System2 system2;
+  private volatile Snapshot snapshot;
+  private volatile long nextVersionCheck = 0L;
 
-  public DatabaseSettingLoader(DbClient dbClient) {
+  public DatabaseSettingLoader(DbClient dbClient, System2 system2) {
     this.dbClient = dbClient;
+    this.system2 = system2;
   }
 
   @Override
   public String load(String key) {
-    PropertyDto dto = dbClient.propertiesDao().selectGlobalProperty(key);
-    if (dto != null) {
-      return defaultString(dto.getValue());
-    }
-    return null;
+    return getSnapshot().properties.get(key);
   }
 
   @Override
   public void loadAll(ImmutableMap.Builder<String, String> appendTo) {
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      dbClient.propertiesDao().selectGlobalProperties(dbSession)
-        .forEach(p -> appendTo.put(p.getKey(), defaultString(p.getValue())));
+    appendTo.putAll(getSnapshot().properties);
+  }
+
+  /**
+   * Forces global properties to be reloaded on next access. To be called once changes
+   * of global properties are committed.
+   */
+  public synchronized void refresh() {
+    snapshot = null;
+    nextVersionCheck = 0L;
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if (current != null && system2.now() < nextVersionCheck) {
+      return current;
+    }
+    synchronized (this) {
+      current = snapshot;
+      long now = system2.now();
+      if (current != null && now < nextVersionCheck) {
+        return current;
+      }
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        GlobalPropertiesVersionDto version = dbClient.propertiesDao().selectGlobalPropertiesVersion(dbSession);
+        if (current == null || !current.version.equals(version)) {
+          // version is loaded before properties, so that a concurrent change is detected by next check
+          ImmutableMap.Builder<String, String> properties = ImmutableMap.builder();
+          dbClient.propertiesDao().selectGlobalProperties(dbSession)
+            .forEach(p -> properties.put(p.getKey(), defaultString(p.getValue())));
+          current = new Snapshot(version, properties.build());
+          snapshot = current;
+        }
+      }
+      nextVersionCheck = now + VERSION_CHECK_INTERVAL_MS;
+      return current;
     }
   }
 
+  private static final class Snapshot {
+    private final GlobalPropertiesVersionDto version;
+    private final Map<String, String> properties;
+
+    private Snapshot(GlobalPropertiesVersionDto version, Map<String, String> properties) {
+      this.version = version;
+      this.properties = properties;
+    }
+  }
 }
@@ -0,0 +1,40 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.setting;
+
+import org.sonar.api.config.GlobalPropertyChangeHandler;
+
+/**
+ * Makes the global settings of the web server up-to-date as soon as they are changed,
+ * without waiting for the next periodic check of {@link DatabaseSettingLoader}.
+ */
+public class DatabaseSettingsRefresher extends GlobalPropertyChangeHandler {
+
+  private final DatabaseSettingLoader loader;
+
+  public DatabaseSettingsRefresher(DatabaseSettingLoader loader) {
+    this.loader = loader;
+  }
+
+  @Override
+  public void onChange(PropertyChange change) {
+    loader.refresh();
+  }
+}
@@ -85,7 +85,7 @@ public class ThreadLocalSettings extends Settings {
     // search for the first value available in
     // 1. system properties
     // 2. thread local cache (if enabled)
-    // 3. db
+    // 3. global properties of db, see DatabaseSettingLoader
 
     String value = systemProps.getProperty(key);
     if (value != null) {
@@ -0,0 +1,91 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.List;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.lang.String.format;
+
+/**
+ * Highlighting and symbols of a line are stored as triples of integers in {@link DbFileSources.Line#getHighlightingRangesList()}
+ * and {@link DbFileSources.Line#getSymbolRangesList()}. The former format, strings like "0,4,k;6,10,cd" and "0,4,1;6,10,2", is
+ * still stored in the rows of files which have not been analyzed since then.
+ */
+public final class DecorationRanges {
+
+  public static final int RANGE_SIZE = 3;
+
+  private static final String ENTITY_SEPARATOR = ";";
+  private static final String FIELD_SEPARATOR = ",";
+  private static final String[] CSS_CLASSES = new String[DbFileSources.HighlightingType.values().length];
+
+  static {
+    CSS_CLASSES[DbFileSources.HighlightingType.ANNOTATION_VALUE] = "a";
+    CSS_CLASSES[DbFileSources.HighlightingType.CONSTANT_VALUE] = "c";
+    CSS_CLASSES[DbFileSources.HighlightingType.COMMENT_VALUE] = "cd";
+    CSS_CLASSES[DbFileSources.HighlightingType.CPP_DOC_VALUE] = "cppd";
+    CSS_CLASSES[DbFileSources.HighlightingType.STRUCTURED_COMMENT_VALUE] = "j";
+    CSS_CLASSES[DbFileSources.HighlightingType.KEYWORD_VALUE] = "k";
+    CSS_CLASSES[DbFileSources.HighlightingType.KEYWORD_LIGHT_VALUE] = "h";
+    CSS_CLASSES[DbFileSources.HighlightingType.HIGHLIGHTING_STRING_VALUE] = "s";
+    CSS_CLASSES[DbFileSources.HighlightingType.PREPROCESS_DIRECTIVE_VALUE] = "p";
+  }
+
+  private DecorationRanges() {
+    // only static stuff
+  }
+
+  public static String cssClass(int highlightingType) {
+    if (highlightingType < 0 || highlightingType >= CSS_CLASSES.length) {
+      throw new IllegalArgumentException(format("Unknown highlighting type %d", highlightingType));
+    }
+    return CSS_CLASSES[highlightingType];
+  }
+
+  /**
+   * Highlighting ranges in the former format
+   */
+  public static String toHighlightingString(List<Integer> highlightingRanges) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i + RANGE_SIZE <= highlightingRanges.size(); i += RANGE_SIZE) {
+      appendRange(sb, highlightingRanges.get(i), highlightingRanges.get(i + 1)).append(cssClass(highlightingRanges.get(i + 2)));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Symbol ranges in the former format
+   */
+  public static String toSymbolsString(List<Integer> symbolRanges) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i + RANGE_SIZE <= symbolRanges.size(); i += RANGE_SIZE) {
+      appendRange(sb, symbolRanges.get(i), symbolRanges.get(i + 1)).append(symbolRanges.get(i + 2));
+    }
+    return sb.toString();
+  }
+
+  private static StringBuilder appendRange(StringBuilder sb, int startOffset, int endOffset) {
+    if (sb.length() > 0) {
+      sb.append(ENTITY_SEPARATOR);
+    }
+    return sb.append(startOffset).append(FIELD_SEPARATOR).append(endOffset).append(FIELD_SEPARATOR);
+  }
+}
@@ -19,13 +19,37 @@
  */
 package org.sonar.server.source;
 
+import java.util.Arrays;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static org.sonar.server.source.DecorationRanges.RANGE_SIZE;
 
 public class HtmlSourceDecorator {
 
+  private static final String CLOSING_TAG = "</span>";
+
+  /**
+   * Decorates the source of the line in a single pass over its characters, driven by its highlighting and symbol
+   * ranges. Lines stored in the former format are decorated by {@link #getDecoratedSourceAsHtml(String, String, String)}.
+   */
+  @CheckForNull
+  public String getDecoratedSourceAsHtml(DbFileSources.Line line) {
+    if (line.hasHighlighting() || line.hasSymbols()) {
+      return getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+    }
+    String source = line.getSource();
+    if (source.indexOf(HtmlTextDecorator.CR_END_OF_LINE) >= 0 || source.indexOf(HtmlTextDecorator.LF_END_OF_LINE) >= 0) {
+      // end of lines are not expected in a line, keep the behavior of the former decorator
+      return getDecoratedSourceAsHtml(source, DecorationRanges.toHighlightingString(line.getHighlightingRangesList()),
+        DecorationRanges.toSymbolsString(line.getSymbolRangesList()));
+    }
+    return decorate(line, source);
+  }
+
   @CheckForNull
   public String getDecoratedSourceAsHtml(@Nullable String sourceLine, @Nullable String highlighting, @Nullable String symbols) {
     if (sourceLine == null) {
@@ -51,4 +75,78 @@ public class HtmlSourceDecorator {
     }
   }
 
+  private static String decorate(DbFileSources.Line line, String source) {
+    int highlightings = line.getHighlightingRangesCount() / RANGE_SIZE;
+    int symbols = line.getSymbolRangesCount() / RANGE_SIZE;
+    // start offset in high bits and index of range in low bits, so that sorting keeps highlightings before
+    // symbols and the order of the ranges when start offsets are equal. Empty ranges are ignored, as their
+    // closing tag would be written before their opening tag.
+    long[] openings = new long[highlightings + symbols];
+    int[] closings = new int[highlightings + symbols];
+    int tags = 0;
+    for (int i = 0; i < highlightings; i++) {
+      int startOffset = line.getHighlightingRanges(i * RANGE_SIZE);
+      int endOffset = line.getHighlightingRanges(i * RANGE_SIZE + 1);
+      if (startOffset < endOffset) {
+        openings[tags] = ((long) startOffset << 32) | i;
+        closings[tags] = endOffset;
+        tags++;
+      }
+    }
+    for (int i = 0; i < symbols; i++) {
+      int startOffset = line.getSymbolRanges(i * RANGE_SIZE);
+      int endOffset = line.getSymbolRanges(i * RANGE_SIZE + 1);
+      if (startOffset < endOffset) {
+        openings[tags] = ((long) startOffset << 32) | (highlightings + i);
+        closings[tags] = endOffset;
+        tags++;
+      }
+    }
+    Arrays.sort(openings, 0, tags);
+    Arrays.sort(closings, 0, tags);
+
+    StringBuilder html = new StringBuilder(source.length() + tags * 32);
+    int nextOpening = 0;
+    int nextClosing = 0;
+    int openTags = 0;
+    for (int index = 0; index < source.length(); index++) {
+      while (nextClosing < tags && closings[nextClosing] == index) {
+        html.append(CLOSING_TAG);
+        openTags--;
+        nextClosing++;
+      }
+      while (nextOpening < tags && (int) (openings[nextOpening] >>> 32) == index) {
+        appendOpeningTag(html, line, (int) openings[nextOpening], highlightings);
+        openTags++;
+        nextOpening++;
+      }
+      appendEscaped(html, source.charAt(index));
+    }
+    for (int i = 0; i < openTags; i++) {
+      html.append(CLOSING_TAG);
+    }
+    return html.toString();
+  }
+
+  private static void appendOpeningTag(StringBuilder html, DbFileSources.Line line, int range, int highlightings) {
+    html.append("<span class=\"");
+    if (range < highlightings) {
+      html.append(DecorationRanges.cssClass(line.getHighlightingRanges(range * RANGE_SIZE + 2)));
+    } else {
+      html.append("sym-").append(line.getSymbolRanges((range - highlightings) * RANGE_SIZE + 2)).append(" sym");
+    }
+    html.append("\">");
+  }
+
+  private static void appendEscaped(StringBuilder html, char c) {
+    if (c == HtmlTextDecorator.HTML_OPENING) {
+      html.append(HtmlTextDecorator.ENCODED_HTML_OPENING);
+    } else if (c == HtmlTextDecorator.HTML_CLOSING) {
+      html.append(HtmlTextDecorator.ENCODED_HTML_CLOSING);
+    } else if (c == HtmlTextDecorator.AMPERSAND) {
+      html.append(HtmlTextDecorator.ENCODED_AMPERSAND);
+    } else {
+      html.append(c);
+    }
+  }
 }
@@ -0,0 +1,130 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import org.sonar.api.config.Settings;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Bounded cache of the decoded sources of files, shared by the web services which display sources.
+ * Sources are cached by chunks of {@link org.sonar.db.source.FileSourceDto#LINES_PER_CHUNK} lines, so
+ * that only the requested lines are decoded. Entries are keyed by file, {@link org.sonar.db.source.FileSourceDto#getDataHash()
+ * hash of data} and index of chunk, so sources updated by the Compute Engine, which runs in a separate
+ * process, are never served from the cache. Outdated entries are simply evicted as they are not accessed anymore.
+ * <p/>
+ * Size is bounded by the sum of the serialized sizes of cached sources, as defined by
+ * the property {@link #MAX_SIZE_PROPERTY}. Zero disables the cache. The cache is split in
+ * {@link #CONCURRENCY_LEVEL} segments which share this size, so chunks larger than the size of
+ * a segment are not cached.
+ */
+public class SourceCache {
+
+  public static final String MAX_SIZE_PROPERTY = "sonar.web.sourceCache.maxSizeInMb";
+  private static final int DEFAULT_MAX_SIZE_IN_MB = 50;
+  static final int CONCURRENCY_LEVEL = 4;
+
+  private final long maxWeight;
+  private final long maxEntryWeight;
+  private final AtomicLong weight = new AtomicLong();
+  @CheckForNull
+  private final Cache<String, DbFileSources.Data> cache;
+
+  public SourceCache(Settings settings) {
+    int maxSizeInMb = settings.hasKey(MAX_SIZE_PROPERTY) ? settings.getInt(MAX_SIZE_PROPERTY) : DEFAULT_MAX_SIZE_IN_MB;
+    this.maxWeight = Math.max(0, maxSizeInMb) * 1024L * 1024L;
+    this.maxEntryWeight = maxWeight / CONCURRENCY_LEVEL;
+    if (maxWeight == 0) {
+      this.cache = null;
+    } else {
+      this.cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(CONCURRENCY_LEVEL)
+        .maximumWeight(maxWeight)
+        .weigher((String key, DbFileSources.Data data) -> weigh(data))
+        .removalListener((RemovalNotification<String, DbFileSources.Data> notification) -> weight.addAndGet(-weigh(notification.getValue())))
+        .recordStats()
+        .build();
+    }
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  /**
+   * @param chunk index of chunk of lines, starting from 0
+   */
+  @CheckForNull
+  public DbFileSources.Data get(String fileUuid, String dataHash, int chunk) {
+    if (cache == null) {
+      return null;
+    }
+    return cache.getIfPresent(key(fileUuid, dataHash, chunk));
+  }
+
+  /**
+   * Chunks larger than a segment of cache are ignored, as they would be evicted immediately.
+   */
+  public void put(String fileUuid, String dataHash, int chunk, DbFileSources.Data data) {
+    if (cache != null && weigh(data) <= maxEntryWeight) {
+      weight.addAndGet(weigh(data));
+      cache.put(key(fileUuid, dataHash, chunk), data);
+    }
+  }
+
+  public long getHits() {
+    return cache == null ? 0L : cache.stats().hitCount();
+  }
+
+  public long getMisses() {
+    return cache == null ? 0L : cache.stats().missCount();
+  }
+
+  public long getEvictions() {
+    return cache == null ? 0L : cache.stats().evictionCount();
+  }
+
+  public long getEntries() {
+    return cache == null ? 0L : cache.size();
+  }
+
+  /**
+   * Sum of the serialized sizes of cached sources, in bytes
+   */
+  public long getSize() {
+    return weight.get();
+  }
+
+  public long getMaxSize() {
+    return maxWeight;
+  }
+
+  private static String key(String fileUuid, String dataHash, int chunk) {
+    return fileUuid + ':' + dataHash + ':' + chunk;
+  }
+
+  private static int weigh(DbFileSources.Data data) {
+    return data.getSerializedSize();
+  }
+}
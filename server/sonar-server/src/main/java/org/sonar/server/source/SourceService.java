@@ -19,7 +19,9 @@
  */
 package org.sonar.server.source;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.function.Function;
 import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.DbClient;
@@ -28,15 +30,18 @@ import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.sonar.db.source.FileSourceDto.LINES_PER_CHUNK;
 
 public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final SourceCache sourceCache;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, SourceCache sourceCache) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.sourceCache = sourceCache;
   }
 
   /**
@@ -63,23 +68,83 @@ public class SourceService {
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
     verifyLine(from);
     checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
-    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
-    if (dto == null) {
+    Optional<DbFileSources.Data> data = getSourceData(dbSession, fileUuid, from, toInclusive);
+    if (!data.isPresent()) {
       return Optional.empty();
     }
-    return Optional.of(dto.getSourceData().getLinesList().stream()
+    return Optional.of(data.get().getLinesList().stream()
       .filter(line -> line.hasLine() && line.getLine() >= from)
       .limit((toInclusive - from) + 1L)
       .map(function)
       .collect(Collectors.toList()));
   }
 
+  /**
+   * When cache is enabled, sources are read from cache by chunks of lines. The first missing chunk and the next
+   * ones of the range are decoded at once, then cached. Only the chunks containing the range are decoded.
+   */
+  private Optional<DbFileSources.Data> getSourceData(DbSession dbSession, String fileUuid, int from, int toInclusive) {
+    String dataHash = sourceCache.isEnabled() ? dbClient.fileSourceDao().selectSourceDataHashByFileUuid(dbSession, fileUuid) : null;
+    if (dataHash == null) {
+      return selectSourceData(dbSession, fileUuid, from, toInclusive);
+    }
+    DbFileSources.Data.Builder result = DbFileSources.Data.newBuilder();
+    for (int chunk = chunkOf(from); chunk <= chunkOf(toInclusive); chunk++) {
+      DbFileSources.Data cached = sourceCache.get(fileUuid, dataHash, chunk);
+      if (cached == null) {
+        FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+        if (dto == null || !dataHash.equals(dto.getDataHash())) {
+          // sources have just been updated or deleted by Compute Engine
+          return selectSourceData(dbSession, fileUuid, from, toInclusive);
+        }
+        int firstLine = chunk * LINES_PER_CHUNK + 1;
+        DbFileSources.Data decoded = dto.getSourceData(firstLine, toInclusive);
+        cacheChunks(fileUuid, dataHash, chunk, decoded);
+        decoded.getLinesList().stream().filter(line -> line.getLine() >= firstLine).forEach(result::addLines);
+        break;
+      }
+      result.addAllLines(cached.getLinesList());
+      if (cached.getLinesCount() < LINES_PER_CHUNK) {
+        // last chunk of file
+        break;
+      }
+    }
+    return Optional.of(result.build());
+  }
+
+  private Optional<DbFileSources.Data> selectSourceData(DbSession dbSession, String fileUuid, int from, int toInclusive) {
+    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+    if (dto == null) {
+      return Optional.empty();
+    }
+    return Optional.of(dto.getSourceData(from, toInclusive));
+  }
+
+  /**
+   * Decoded data contain only complete chunks. A chunk without lines is cached too, as it marks the end of file.
+   */
+  private void cacheChunks(String fileUuid, String dataHash, int firstChunk, DbFileSources.Data decoded) {
+    Map<Integer, DbFileSources.Data.Builder> chunks = new TreeMap<>();
+    chunks.put(firstChunk, DbFileSources.Data.newBuilder());
+    for (DbFileSources.Line line : decoded.getLinesList()) {
+      int chunk = chunkOf(line.getLine());
+      if (chunk >= firstChunk) {
+        chunks.computeIfAbsent(chunk, c -> DbFileSources.Data.newBuilder()).addLines(line);
+      }
+    }
+    chunks.forEach((chunk, data) -> sourceCache.put(fileUuid, dataHash, chunk, data.build()));
+  }
+
+  private static int chunkOf(int line) {
+    return (line - 1) / LINES_PER_CHUNK;
+  }
+
   private static void verifyLine(int line) {
     checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
 
   private Function<DbFileSources.Line, String> lineToHtml() {
-    return line -> htmlDecorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+    return htmlDecorator::getDecoratedSourceAsHtml;
   }
 
 }
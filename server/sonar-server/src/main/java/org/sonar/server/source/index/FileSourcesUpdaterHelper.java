@@ -35,6 +35,7 @@ public class FileSourcesUpdaterHelper {
   private static final String SQL_ALL = "SELECT %s FROM file_sources WHERE data_type='%s' ";
   private static final String AFTER_DATE_FILTER = " AND updated_at>?";
   private static final String PROJECT_FILTER = " AND project_uuid=?";
+  private static final String ID_RANGE_FILTER = " AND id>=? AND id<?";
 
   private static final String[] FIELDS = {
     "project_uuid",
@@ -64,6 +65,18 @@ public class FileSourcesUpdaterHelper {
     return stmt;
   }
 
+  /**
+   * Rows which ids are between {@code fromId} (inclusive) and {@code toId} (exclusive)
+   */
+  public static PreparedStatement preparedStatementToSelectFileSourcesInIdRange(DbClient dbClient, DbSession session, String dataType, long fromId, long toId)
+    throws SQLException {
+    String sql = String.format(SQL_ALL, FIELDS_ONE_LINE, dataType) + ID_RANGE_FILTER;
+    PreparedStatement stmt = dbClient.getMyBatis().newScrollingSingleRowSelectStatement(session, sql);
+    stmt.setLong(1, fromId);
+    stmt.setLong(2, toId);
+    return stmt;
+  }
+
   private static String createSQL(String dataType, long afterDate, @Nullable String projectUuid) {
     StringBuilder sql = new StringBuilder(String.format(SQL_ALL, FIELDS_ONE_LINE, dataType));
     if (afterDate > 0L || projectUuid != null) {
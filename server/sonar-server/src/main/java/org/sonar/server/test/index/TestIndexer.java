@@ -29,6 +29,7 @@ import org.sonar.db.DbSession;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
 
@@ -73,14 +74,28 @@ public class TestIndexer extends BaseIndexer implements ProjectIndexer {
     return doIndex(bulk, dbRows);
   }
 
+  /**
+   * Tests are indexed by partitions when index is empty or when previous indexing
+   * of all tests has been interrupted
+   */
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    PartitionedIndexing partitionedIndexing = new PartitionedIndexing(dbClient, INDEX, "file_sources");
+    if (lastUpdatedAt <= 0L || partitionedIndexing.isInterrupted()) {
+      if (lastUpdatedAt <= 0L) {
+        partitionedIndexing.reset();
+      }
+      return partitionedIndexing.index(new BulkIndexer(esClient, INDEX).setLarge(true), (dbSession, fromId, toId, bulk) -> {
+        try (TestResultSetIterator rowIt = TestResultSetIterator.createForIdRange(dbClient, dbSession, fromId, toId)) {
+          return addAll(bulk, rowIt);
+        }
+      });
+    }
     return doIndex(lastUpdatedAt, null);
   }
 
   private long doIndex(long lastUpdatedAt, @Nullable String projectUuid) {
     final BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
-    bulk.setLarge(lastUpdatedAt == 0L);
 
     DbSession dbSession = dbClient.openSession(false);
     try {
@@ -95,14 +110,19 @@ public class TestIndexer extends BaseIndexer implements ProjectIndexer {
   }
 
   private static long doIndex(BulkIndexer bulk, Iterator<FileSourcesUpdaterHelper.Row> dbRows) {
-    long maxUpdatedAt = 0L;
     bulk.start();
+    long maxUpdatedAt = addAll(bulk, dbRows);
+    bulk.stop();
+    return maxUpdatedAt;
+  }
+
+  private static long addAll(BulkIndexer bulk, Iterator<FileSourcesUpdaterHelper.Row> dbRows) {
+    long maxUpdatedAt = 0L;
     while (dbRows.hasNext()) {
       FileSourcesUpdaterHelper.Row row = dbRows.next();
       row.getUpdateRequests().forEach(bulk::add);
       maxUpdatedAt = Math.max(maxUpdatedAt, row.getUpdatedAt());
     }
-    bulk.stop();
     return maxUpdatedAt;
   }
 
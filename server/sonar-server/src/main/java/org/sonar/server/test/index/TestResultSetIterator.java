@@ -75,6 +75,14 @@ public class TestResultSetIterator extends ResultSetIterator<Row> {
     }
   }
 
+  public static TestResultSetIterator createForIdRange(DbClient dbClient, DbSession session, long fromId, long toId) {
+    try {
+      return new TestResultSetIterator(FileSourcesUpdaterHelper.preparedStatementToSelectFileSourcesInIdRange(dbClient, session, FileSourceDto.Type.TEST, fromId, toId));
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select tests", e);
+    }
+  }
+
   @Override
   protected Row read(ResultSet rs) throws SQLException {
     String projectUuid = rs.getString(1);
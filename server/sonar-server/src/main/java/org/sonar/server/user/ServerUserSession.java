@@ -49,6 +49,7 @@ public class ServerUserSession extends AbstractUserSession {
   private final DbClient dbClient;
   private final OrganizationFlags organizationFlags;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final UserSessionCache cache;
   private final Supplier<Collection<GroupDto>> groups = Suppliers.memoize(this::loadGroups);
   private final Supplier<Boolean> isSystemAdministratorSupplier = Suppliers.memoize(this::loadIsSystemAdministrator);
   private final Map<String, String> projectUuidByComponentUuid = newHashMap();
@@ -56,10 +57,11 @@ public class ServerUserSession extends AbstractUserSession {
   private Map<String, Set<String>> permissionsByProjectUuid;
 
   ServerUserSession(DbClient dbClient, OrganizationFlags organizationFlags,
-    DefaultOrganizationProvider defaultOrganizationProvider, @Nullable UserDto userDto) {
+    DefaultOrganizationProvider defaultOrganizationProvider, UserSessionCache cache, @Nullable UserDto userDto) {
     this.dbClient = dbClient;
     this.organizationFlags = organizationFlags;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.cache = cache;
     this.userDto = userDto;
   }
 
@@ -67,9 +69,11 @@ public class ServerUserSession extends AbstractUserSession {
     if (this.userDto == null) {
       return Collections.emptyList();
     }
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      return dbClient.groupDao().selectByUserLogin(dbSession, userDto.getLogin());
-    }
+    return cache.getGroups(userDto.getLogin(), login -> {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        return dbClient.groupDao().selectByUserLogin(dbSession, login);
+      }
+    });
   }
 
   @Override
@@ -115,6 +119,10 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<String> loadOrganizationPermissions(String organizationUuid) {
+    return cache.getOrganizationPermissions(getLogin(), organizationUuid, () -> selectOrganizationPermissions(organizationUuid));
+  }
+
+  private Set<String> selectOrganizationPermissions(String organizationUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       if (userDto != null && userDto.getId() != null) {
         return dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId());
@@ -150,6 +158,10 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<String> loadProjectPermissions(String projectUuid) {
+    return cache.getProjectPermissions(getLogin(), projectUuid, () -> selectProjectPermissions(projectUuid));
+  }
+
+  private Set<String> selectProjectPermissions(String projectUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       if (userDto != null && userDto.getId() != null) {
         return dbClient.authorizationDao().selectProjectPermissions(dbSession, projectUuid, userDto.getId());
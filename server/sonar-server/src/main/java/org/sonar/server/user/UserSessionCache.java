@@ -0,0 +1,215 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Settings;
+import org.sonar.db.user.GroupDto;
+import org.sonar.db.user.UserDto;
+
+/**
+ * Short-lived cache of the data loaded from DB to authenticate requests and to verify permissions:
+ * active users, logins of user tokens, groups of users and permissions of users (or of anonymous)
+ * on organizations and projects. It is shared by all the requests, so that clients which call
+ * web services many times a minute (for example with a user token) do not hit the DB for each of them.
+ * <p/>
+ * Entries expire after {@link #TTL_PROPERTY} seconds, zero disabling the cache. The web services
+ * which change users, groups, tokens or permissions evict the related entries, so that the expiration
+ * only bounds the staleness of changes made by other means, for example directly in DB or by the
+ * Compute Engine, which has its own instance of the cache.
+ * <p/>
+ * Cached {@link UserDto} and {@link GroupDto} are shared and must not be modified.
+ */
+public class UserSessionCache {
+
+  public static final String TTL_PROPERTY = "sonar.web.userSessionCache.ttlInSeconds";
+  public static final String MAX_ENTRIES_PROPERTY = "sonar.web.userSessionCache.maxEntries";
+  private static final int DEFAULT_TTL_IN_SECONDS = 30;
+  private static final int DEFAULT_MAX_ENTRIES = 10_000;
+  // key of permissions of anonymous, as logins can't be empty
+  private static final String ANONYMOUS = "";
+
+  private final boolean enabled;
+  private final Cache<String, UserDto> activeUsersByLogin;
+  private final Cache<String, String> loginsByTokenHash;
+  private final Cache<String, Collection<GroupDto>> groupsByLogin;
+  private final Cache<PermissionKey, Set<String>> organizationPermissions;
+  private final Cache<PermissionKey, Set<String>> projectPermissions;
+
+  public UserSessionCache(Settings settings) {
+    int ttlInSeconds = settings.hasKey(TTL_PROPERTY) ? settings.getInt(TTL_PROPERTY) : DEFAULT_TTL_IN_SECONDS;
+    int maxEntries = settings.hasKey(MAX_ENTRIES_PROPERTY) ? settings.getInt(MAX_ENTRIES_PROPERTY) : DEFAULT_MAX_ENTRIES;
+    this.enabled = ttlInSeconds > 0 && maxEntries > 0;
+    this.activeUsersByLogin = newCache(ttlInSeconds, maxEntries);
+    this.loginsByTokenHash = newCache(ttlInSeconds, maxEntries);
+    this.groupsByLogin = newCache(ttlInSeconds, maxEntries);
+    this.organizationPermissions = newCache(ttlInSeconds, maxEntries);
+    this.projectPermissions = newCache(ttlInSeconds, maxEntries);
+  }
+
+  private static <K, V> Cache<K, V> newCache(int ttlInSeconds, int maxEntries) {
+    return CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(0, ttlInSeconds), TimeUnit.SECONDS)
+      .maximumSize(Math.max(0, maxEntries))
+      .recordStats()
+      .build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param loader loads the active user from DB, returns {@code null} if the user does not exist or is not active.
+   *               Missing users are not cached.
+   */
+  @CheckForNull
+  public UserDto getActiveUser(String login, Function<String, UserDto> loader) {
+    return get(activeUsersByLogin, login, () -> loader.apply(login));
+  }
+
+  /**
+   * @param loader loads the login of the token from DB, returns {@code null} if the token does not exist.
+   *               Unknown tokens are not cached.
+   */
+  @CheckForNull
+  public String getLoginByTokenHash(String tokenHash, Function<String, String> loader) {
+    return get(loginsByTokenHash, tokenHash, () -> loader.apply(tokenHash));
+  }
+
+  public Collection<GroupDto> getGroups(String login, Function<String, Collection<GroupDto>> loader) {
+    return get(groupsByLogin, login, () -> loader.apply(login));
+  }
+
+  /**
+   * @param login {@code null} for anonymous
+   */
+  public Set<String> getOrganizationPermissions(@Nullable String login, String organizationUuid, Supplier<Set<String>> loader) {
+    return get(organizationPermissions, new PermissionKey(login, organizationUuid), loader);
+  }
+
+  /**
+   * @param login {@code null} for anonymous
+   */
+  public Set<String> getProjectPermissions(@Nullable String login, String projectUuid, Supplier<Set<String>> loader) {
+    return get(projectPermissions, new PermissionKey(login, projectUuid), loader);
+  }
+
+  @CheckForNull
+  private <K, V> V get(Cache<K, V> cache, K key, Supplier<V> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    V value = cache.getIfPresent(key);
+    if (value == null) {
+      value = loader.get();
+      if (value != null) {
+        cache.put(key, value);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Evicts the user, its tokens, its groups and its permissions. To be called when any of them is changed.
+   */
+  public void invalidateUser(String login) {
+    activeUsersByLogin.invalidate(login);
+    loginsByTokenHash.asMap().values().removeIf(login::equals);
+    groupsByLogin.invalidate(login);
+    organizationPermissions.asMap().keySet().removeIf(key -> key.login.equals(login));
+    projectPermissions.asMap().keySet().removeIf(key -> key.login.equals(login));
+  }
+
+  /**
+   * Evicts all the entries. To be called when a change can impact many users, for example when the
+   * permissions of a group or of a project are changed.
+   */
+  public void invalidateAll() {
+    caches().forEach(Cache::invalidateAll);
+  }
+
+  public long getHits() {
+    return caches().stream().map(Cache::stats).mapToLong(CacheStats::hitCount).sum();
+  }
+
+  public long getMisses() {
+    return caches().stream().map(Cache::stats).mapToLong(CacheStats::missCount).sum();
+  }
+
+  /**
+   * Ratio of the lookups served by the cache, between 0 and 1. It's 1 when there are no lookups yet.
+   */
+  public double getHitRatio() {
+    long hits = getHits();
+    long lookups = hits + getMisses();
+    return lookups == 0L ? 1.0 : ((double) hits / lookups);
+  }
+
+  public long getEvictions() {
+    return caches().stream().map(Cache::stats).mapToLong(CacheStats::evictionCount).sum();
+  }
+
+  public long getEntries() {
+    return caches().stream().mapToLong(Cache::size).sum();
+  }
+
+  private List<Cache<?, ?>> caches() {
+    return Arrays.asList(activeUsersByLogin, loginsByTokenHash, groupsByLogin, organizationPermissions, projectPermissions);
+  }
+
+  private static final class PermissionKey {
+    private final String login;
+    private final String uuid;
+
+    private PermissionKey(@Nullable String login, String uuid) {
+      this.login = login == null ? ANONYMOUS : login;
+      this.uuid = uuid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      PermissionKey that = (PermissionKey) o;
+      return login.equals(that.login) && uuid.equals(that.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * login.hashCode() + uuid.hashCode();
+    }
+  }
+}
@@ -77,9 +77,10 @@ public class UserUpdater {
   private final System2 system2;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
   private final OrganizationCreation organizationCreation;
+  private final UserSessionCache userSessionCache;
 
   public UserUpdater(NewUserNotifier newUserNotifier, Settings settings, DbClient dbClient, UserIndexer userIndexer, System2 system2,
-    DefaultOrganizationProvider defaultOrganizationProvider, OrganizationCreation organizationCreation) {
+    DefaultOrganizationProvider defaultOrganizationProvider, OrganizationCreation organizationCreation, UserSessionCache userSessionCache) {
     this.newUserNotifier = newUserNotifier;
     this.settings = settings;
     this.dbClient = dbClient;
@@ -87,6 +88,7 @@ public class UserUpdater {
     this.system2 = system2;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
     this.organizationCreation = organizationCreation;
+    this.userSessionCache = userSessionCache;
   }
 
   public UserDto create(NewUser newUser) {
@@ -362,6 +364,7 @@ public class UserUpdater {
     addDefaultGroup(dbSession, userDto);
     organizationCreation.createForUser(dbSession, userDto);
     dbSession.commit();
+    userSessionCache.invalidateUser(userDto.getLogin());
     userIndexer.index();
     return res;
   }
@@ -371,6 +374,7 @@ public class UserUpdater {
     userDto.setActive(true).setUpdatedAt(now);
     dbClient.userDao().update(dbSession, userDto);
     dbSession.commit();
+    userSessionCache.invalidateUser(userDto.getLogin());
     userIndexer.index();
   }
 
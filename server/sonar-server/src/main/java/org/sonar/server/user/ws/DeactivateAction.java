@@ -36,6 +36,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.user.index.UserIndexer;
 
 import static java.lang.String.format;
@@ -53,14 +54,16 @@ public class DeactivateAction implements UsersWsAction {
   private final UserSession userSession;
   private final UserJsonWriter userWriter;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final UserSessionCache userSessionCache;
 
   public DeactivateAction(DbClient dbClient, UserIndexer userIndexer, UserSession userSession, UserJsonWriter userWriter,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, UserSessionCache userSessionCache) {
     this.dbClient = dbClient;
     this.userIndexer = userIndexer;
     this.userSession = userSession;
     this.userWriter = userWriter;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -94,6 +97,7 @@ public class DeactivateAction implements UsersWsAction {
       dbClient.userTokenDao().deleteByLogin(dbSession, login);
       dbClient.userDao().deactivateUserByLogin(dbSession, login);
       dbSession.commit();
+      userSessionCache.invalidateUser(login);
     }
 
     userIndexer.index();
@@ -29,6 +29,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 
 import static java.lang.String.format;
 import static org.sonar.server.usergroups.ws.GroupWsSupport.PARAM_GROUP_ID;
@@ -43,11 +44,13 @@ public class AddUserAction implements UserGroupsWsAction {
   private final DbClient dbClient;
   private final UserSession userSession;
   private final GroupWsSupport support;
+  private final UserSessionCache userSessionCache;
 
-  public AddUserAction(DbClient dbClient, UserSession userSession, GroupWsSupport support) {
+  public AddUserAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, UserSessionCache userSessionCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -79,6 +82,7 @@ public class AddUserAction implements UserGroupsWsAction {
         UserGroupDto membershipDto = new UserGroupDto().setGroupId(groupId.getId()).setUserId(user.getId());
         dbClient.userGroupDao().insert(dbSession, membershipDto);
         dbSession.commit();
+        userSessionCache.invalidateUser(login);
       }
 
       response.noContent();
@@ -36,6 +36,7 @@ import org.sonar.db.user.UserMembershipQuery;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.platform.PersistentSettings;
 import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionCache;
 import org.sonarqube.ws.WsUserGroups;
 
 import static org.sonar.api.CoreProperties.CORE_DEFAULT_GROUP;
@@ -56,14 +57,16 @@ public class UpdateAction implements UserGroupsWsAction {
   private final GroupWsSupport support;
   private final PersistentSettings persistentSettings;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final UserSessionCache userSessionCache;
 
   public UpdateAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, PersistentSettings persistentSettings,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, UserSessionCache userSessionCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
     this.persistentSettings = persistentSettings;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.userSessionCache = userSessionCache;
   }
 
   @Override
@@ -123,6 +126,7 @@ public class UpdateAction implements UserGroupsWsAction {
       if (changed) {
         dbClient.groupDao().update(dbSession, group);
         dbSession.commit();
+        userSessionCache.invalidateAll();
       }
 
       writeResponse(dbSession, request, response, org.get(), group);
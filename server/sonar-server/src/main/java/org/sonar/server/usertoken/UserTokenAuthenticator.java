@@ -20,17 +20,21 @@
 package org.sonar.server.usertoken;
 
 import com.google.common.base.Optional;
+import javax.annotation.CheckForNull;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.user.UserTokenDto;
+import org.sonar.server.user.UserSessionCache;
 
 public class UserTokenAuthenticator {
   private final TokenGenerator tokenGenerator;
   private final DbClient dbClient;
+  private final UserSessionCache userSessionCache;
 
-  public UserTokenAuthenticator(TokenGenerator tokenGenerator, DbClient dbClient) {
+  public UserTokenAuthenticator(TokenGenerator tokenGenerator, DbClient dbClient, UserSessionCache userSessionCache) {
     this.tokenGenerator = tokenGenerator;
     this.dbClient = dbClient;
+    this.userSessionCache = userSessionCache;
   }
 
   /**
@@ -40,15 +44,14 @@ public class UserTokenAuthenticator {
    */
   public java.util.Optional<String> authenticate(String token) {
     String tokenHash = tokenGenerator.hash(token);
-    DbSession dbSession = dbClient.openSession(false);
-    try {
+    return java.util.Optional.ofNullable(userSessionCache.getLoginByTokenHash(tokenHash, this::selectLoginByTokenHash));
+  }
+
+  @CheckForNull
+  private String selectLoginByTokenHash(String tokenHash) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<UserTokenDto> userToken = dbClient.userTokenDao().selectByTokenHash(dbSession, tokenHash);
-      if (userToken.isPresent()) {
-        return java.util.Optional.of(userToken.get().getLogin());
-      }
-      return java.util.Optional.empty();
-    } finally {
-      dbClient.closeSession(dbSession);
+      return userToken.isPresent() ? userToken.get().getLogin() : null;
     }
   }
 }
@@ -75,7 +75,7 @@ public class DiskCache<O extends Serializable> {
     }
   }
 
-  public class DiskAppender implements AutoCloseable {
+  public class DiskAppender implements CacheAppender<O> {
     private final ObjectOutputStream output;
 
     private DiskAppender() {
@@ -91,6 +91,7 @@ public class DiskCache<O extends Serializable> {
       }
     }
 
+    @Override
     public DiskAppender append(O object) {
       try {
         output.writeObject(object);
@@ -0,0 +1,172 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.util.ProtobufJsonFormat;
+import org.sonarqube.ws.MediaTypes;
+
+import static java.lang.String.format;
+
+/**
+ * Writes a protobuf response whose repeated field is too large to be built in memory. The other fields
+ * of the response are given by a "head" message, then the elements of the repeated field are encoded
+ * one at a time to the output stream, either in protobuf or in JSON depending on the requested media type.
+ * <p>
+ * Protobuf output is the head message followed by the elements, which is the wire format of the
+ * complete message. JSON output is the same as {@link WsUtils#writeProtobuf(Message, Request, Response)},
+ * except that the repeated field is the last one of the object.
+ * <p>
+ * The response is ended by {@link #complete()}. If the writer is closed without being completed, for example
+ * because an exception has been raised while building an element, it is considered as failed: the end of the
+ * response is not written and the stream is not closed, so that the error can be returned instead of a
+ * truncated response which looks valid.
+ * <p>
+ * Example:
+ * <pre>
+ *   try (ProtobufStreamWriter&lt;Component&gt; writer = ProtobufStreamWriter.of(head, ComponentTreeWsResponse.COMPONENTS_FIELD_NUMBER, request, response)) {
+ *     components.forEach(c -&gt; writer.write(toWsComponent(c)));
+ *     writer.complete();
+ *   }
+ * </pre>
+ */
+public abstract class ProtobufStreamWriter<E extends Message> implements AutoCloseable {
+
+  protected final OutputStream output;
+  protected final Descriptors.FieldDescriptor repeatedField;
+  private boolean completed = false;
+
+  private ProtobufStreamWriter(OutputStream output, Descriptors.FieldDescriptor repeatedField) {
+    this.output = output;
+    this.repeatedField = repeatedField;
+  }
+
+  /**
+   * Writes {@code head}, without the values of the field {@code repeatedFieldNumber} if any, and returns
+   * the writer of the elements of this field.
+   *
+   * @param repeatedFieldNumber number of a repeated field of messages of {@code head}
+   */
+  public static <E extends Message> ProtobufStreamWriter<E> of(Message head, int repeatedFieldNumber, Request request, Response response) {
+    Descriptors.FieldDescriptor repeatedField = head.getDescriptorForType().findFieldByNumber(repeatedFieldNumber);
+    if (repeatedField == null || !repeatedField.isRepeated() || repeatedField.isMapField() || repeatedField.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+      throw new IllegalArgumentException(format("Field %d is not a repeated field of messages of %s", repeatedFieldNumber, head.getDescriptorForType().getFullName()));
+    }
+    Message headWithoutElements = head.toBuilder().clearField(repeatedField).build();
+    OutputStream output = response.stream().output();
+    try {
+      if (request.getMediaType().equals(MediaTypes.PROTOBUF)) {
+        response.stream().setMediaType(MediaTypes.PROTOBUF);
+        return new ProtobufWriter<>(output, repeatedField, headWithoutElements);
+      }
+      response.stream().setMediaType(MediaTypes.JSON);
+      return new JsonProtobufWriter<>(output, repeatedField, headWithoutElements);
+    } catch (IOException e) {
+      IOUtils.closeQuietly(output);
+      throw new IllegalStateException(format("Fail to write protobuf message %s", head.getDescriptorForType().getFullName()), e);
+    }
+  }
+
+  public abstract void write(E element);
+
+  /**
+   * Must be called once all the elements are written
+   */
+  public void complete() {
+    this.completed = true;
+  }
+
+  /**
+   * Ends the response if the writer is {@link #complete() completed}, otherwise does nothing
+   */
+  @Override
+  public void close() {
+    if (completed) {
+      end();
+    }
+  }
+
+  protected abstract void end();
+
+  private static class ProtobufWriter<E extends Message> extends ProtobufStreamWriter<E> {
+    private final CodedOutputStream codedOutput;
+
+    private ProtobufWriter(OutputStream output, Descriptors.FieldDescriptor repeatedField, Message head) throws IOException {
+      super(output, repeatedField);
+      this.codedOutput = CodedOutputStream.newInstance(output);
+      head.writeTo(codedOutput);
+    }
+
+    @Override
+    public void write(E element) {
+      try {
+        codedOutput.writeMessage(repeatedField.getNumber(), element);
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to write element of field %s", repeatedField.getFullName()), e);
+      }
+    }
+
+    @Override
+    protected void end() {
+      try {
+        codedOutput.flush();
+      } catch (IOException e) {
+        throw new IllegalStateException(format("Fail to write element of field %s", repeatedField.getFullName()), e);
+      } finally {
+        IOUtils.closeQuietly(output);
+      }
+    }
+  }
+
+  private static class JsonProtobufWriter<E extends Message> extends ProtobufStreamWriter<E> {
+    private final JsonWriter jsonWriter;
+
+    private JsonProtobufWriter(OutputStream output, Descriptors.FieldDescriptor repeatedField, Message head) {
+      super(output, repeatedField);
+      this.jsonWriter = JsonWriter.of(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+      ProtobufJsonFormat.beginStream(head, repeatedField, jsonWriter);
+    }
+
+    @Override
+    public void write(E element) {
+      ProtobufJsonFormat.writeStreamElement(repeatedField, element, jsonWriter);
+    }
+
+    @Override
+    protected void end() {
+      try {
+        ProtobufJsonFormat.endStream(jsonWriter);
+        jsonWriter.close();
+      } finally {
+        IOUtils.closeQuietly(output);
+      }
+    }
+  }
+}
@@ -40,6 +40,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.user.UserSessionCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -85,7 +86,7 @@ public class JwtHttpHandlerTest {
   private JwtCsrfVerifier jwtCsrfVerifier = mock(JwtCsrfVerifier.class);
   private UserDto userDto = newUserDto().setLogin(USER_LOGIN);
 
-  private JwtHttpHandler underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+  private JwtHttpHandler underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, new UserSessionCache(new MapSettings()));
 
   @Before
   public void setUp() throws Exception {
@@ -125,7 +126,7 @@ public class JwtHttpHandlerTest {
     int sessionTimeoutInMinutes = 10;
     settings.setProperty("sonar.web.sessionTimeoutInMinutes", sessionTimeoutInMinutes);
 
-    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, new UserSessionCache(new MapSettings()));
     underTest.generateToken(userDto, request, response);
 
     verify(jwtSerializer).encode(jwtArgumentCaptor.capture());
@@ -137,7 +138,7 @@ public class JwtHttpHandlerTest {
     int firstSessionTimeoutInMinutes = 10;
     settings.setProperty("sonar.web.sessionTimeoutInMinutes", firstSessionTimeoutInMinutes);
 
-    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, new UserSessionCache(new MapSettings()));
     underTest.generateToken(userDto, request, response);
 
     // The property is updated, but it won't be taking into account
@@ -155,7 +156,7 @@ public class JwtHttpHandlerTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Property sonar.web.sessionTimeoutInMinutes must be strictly positive. Got 0.");
 
-    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, new UserSessionCache(new MapSettings()));
   }
 
   @Test
@@ -165,7 +166,7 @@ public class JwtHttpHandlerTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Property sonar.web.sessionTimeoutInMinutes must be strictly positive. Got -10.");
 
-    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, new UserSessionCache(new MapSettings()));
   }
 
   @Test
@@ -175,7 +176,7 @@ public class JwtHttpHandlerTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Property sonar.web.sessionTimeoutInMinutes must not be greater than 129600. Got 172800.");
 
-    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, new UserSessionCache(new MapSettings()));
   }
 
   @Test
@@ -39,6 +39,7 @@ import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationCreation;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.user.NewUserNotifier;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndexer;
 
@@ -84,8 +85,8 @@ public class UserIdentityAuthenticatorTest {
     mock(UserIndexer.class),
     System2.INSTANCE,
     defaultOrganizationProvider,
-      organizationCreation);
-  private UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(db.getDbClient(), userUpdater, defaultOrganizationProvider);
+      organizationCreation, new UserSessionCache(new MapSettings()));
+  private UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(db.getDbClient(), userUpdater, defaultOrganizationProvider, new UserSessionCache(new MapSettings()));
   private GroupDto defaultGroup;
 
   @Before
@@ -65,6 +65,29 @@ public class ProjectActionTest {
     assertThat(queryArgumentCaptor.getValue().getModuleKey()).isEqualTo(projectKey);
     assertThat(queryArgumentCaptor.getValue().getProfileName()).isEqualTo("Default");
     assertThat(queryArgumentCaptor.getValue().isIssuesMode()).isFalse();
+    assertThat(queryArgumentCaptor.getValue().getSinceVersion()).isNull();
+  }
+
+  @Test
+  public void return_version_of_incremental_project_repositories() throws Exception {
+    ProjectRepositories projectRepositories = new ProjectRepositories()
+      .setVersion("ANALYSIS_2")
+      .setIncremental(true)
+      .addFileData("module-1", "src/Foo.java", new FileData("hash", "123456789"));
+    ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
+    when(projectDataLoader.load(queryArgumentCaptor.capture())).thenReturn(projectRepositories);
+
+    TestResponse result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "org.codehaus.sonar:sonar")
+      .setParam("version", "ANALYSIS_1")
+      .execute();
+
+    WsProjectResponse wsProjectResponse = WsProjectResponse.parseFrom(result.getInputStream());
+    assertThat(queryArgumentCaptor.getValue().getSinceVersion()).isEqualTo("ANALYSIS_1");
+    assertThat(wsProjectResponse.getVersion()).isEqualTo("ANALYSIS_2");
+    assertThat(wsProjectResponse.getIncremental()).isTrue();
+    assertThat(wsProjectResponse.getFileDataByModuleAndPath().get("module-1").getFileDataByPath()).containsOnlyKeys("src/Foo.java");
   }
 
   /**
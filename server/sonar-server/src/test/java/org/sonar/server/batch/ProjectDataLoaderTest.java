@@ -32,7 +32,9 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -42,6 +44,7 @@ import org.sonar.server.tester.UserSessionRule;
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
 
 public class ProjectDataLoaderTest {
   @Rule
@@ -178,4 +181,96 @@ public class ProjectDataLoaderTest {
 
     assertThat(repositories).isNotNull();
   }
+
+  @Test
+  public void return_version_of_project_and_all_file_data_if_no_version_is_requested() {
+    ComponentDto project = dbTester.components().insertProject();
+    SnapshotDto analysis = dbTester.components().insertSnapshot(project);
+    insertFileWithSourceUpdatedAt(project, 1_000L);
+    insertFileWithSourceUpdatedAt(project, 2_000L);
+    userSession.logIn().addProjectUuidPermissions(GlobalPermissions.SCAN_EXECUTION, project.uuid());
+
+    ProjectRepositories repositories = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()));
+
+    assertThat(repositories.version()).isEqualTo(analysis.getUuid());
+    assertThat(repositories.isIncremental()).isFalse();
+    assertThat(repositories.fileDataByPath(project.key())).hasSize(2);
+  }
+
+  @Test
+  public void return_only_file_data_updated_since_requested_version() {
+    ComponentDto project = dbTester.components().insertProject();
+    SnapshotDto previousAnalysis = dbTester.components().insertSnapshot(project, a -> a.setCreatedAt(1_400L).setBuildDate(1_500L).setLast(false));
+    SnapshotDto lastAnalysis = dbTester.components().insertSnapshot(project, a -> a.setCreatedAt(2_400L).setBuildDate(2_500L).setLast(true));
+    insertFileWithSourceUpdatedAt(project, 1_000L);
+    ComponentDto updatedFile = insertFileWithSourceUpdatedAt(project, 2_000L);
+    userSession.logIn().addProjectUuidPermissions(GlobalPermissions.SCAN_EXECUTION, project.uuid());
+
+    ProjectRepositories repositories = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setSinceVersion(previousAnalysis.getUuid()));
+
+    assertThat(repositories.version()).isEqualTo(lastAnalysis.getUuid());
+    assertThat(repositories.isIncremental()).isTrue();
+    assertThat(repositories.fileDataByPath(project.key())).containsOnlyKeys(updatedFile.path());
+  }
+
+  @Test
+  public void compare_file_data_with_processing_date_of_requested_version_rather_than_analysis_date() {
+    ComponentDto project = dbTester.components().insertProject();
+    // clock of scanner is ahead of the one of Compute Engine
+    SnapshotDto previousAnalysis = dbTester.components().insertSnapshot(project, a -> a.setCreatedAt(5_000L).setBuildDate(1_500L).setLast(false));
+    dbTester.components().insertSnapshot(project, a -> a.setCreatedAt(6_000L).setBuildDate(2_500L).setLast(true));
+    insertFileWithSourceUpdatedAt(project, 1_000L);
+    ComponentDto updatedFile = insertFileWithSourceUpdatedAt(project, 2_000L);
+    userSession.logIn().addProjectUuidPermissions(GlobalPermissions.SCAN_EXECUTION, project.uuid());
+
+    ProjectRepositories repositories = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setSinceVersion(previousAnalysis.getUuid()));
+
+    assertThat(repositories.isIncremental()).isTrue();
+    assertThat(repositories.fileDataByPath(project.key())).containsOnlyKeys(updatedFile.path());
+  }
+
+  @Test
+  public void return_no_file_data_if_requested_version_is_the_last_one() {
+    ComponentDto project = dbTester.components().insertProject();
+    SnapshotDto analysis = dbTester.components().insertSnapshot(project, a -> a.setCreatedAt(1_500L));
+    insertFileWithSourceUpdatedAt(project, 2_000L);
+    userSession.logIn().addProjectUuidPermissions(GlobalPermissions.SCAN_EXECUTION, project.uuid());
+
+    ProjectRepositories repositories = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setSinceVersion(analysis.getUuid()));
+
+    assertThat(repositories.version()).isEqualTo(analysis.getUuid());
+    assertThat(repositories.isIncremental()).isTrue();
+    assertThat(repositories.fileDataByModuleAndPath()).isEmpty();
+  }
+
+  @Test
+  public void return_all_file_data_if_requested_version_is_not_an_analysis_of_the_project() {
+    ComponentDto project = dbTester.components().insertProject();
+    dbTester.components().insertSnapshot(project, a -> a.setCreatedAt(1_500L));
+    SnapshotDto analysisOfOtherProject = dbTester.components().insertSnapshot(dbTester.components().insertProject(), a -> a.setCreatedAt(1_500L));
+    insertFileWithSourceUpdatedAt(project, 1_000L);
+    userSession.logIn().addProjectUuidPermissions(GlobalPermissions.SCAN_EXECUTION, project.uuid());
+
+    ProjectRepositories unknown = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setSinceVersion("unknown"));
+    ProjectRepositories otherProject = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setSinceVersion(analysisOfOtherProject.getUuid()));
+
+    assertThat(unknown.isIncremental()).isFalse();
+    assertThat(unknown.fileDataByPath(project.key())).hasSize(1);
+    assertThat(otherProject.isIncremental()).isFalse();
+    assertThat(otherProject.fileDataByPath(project.key())).hasSize(1);
+  }
+
+  private ComponentDto insertFileWithSourceUpdatedAt(ComponentDto project, long updatedAt) {
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project).setPath("src/File" + updatedAt + ".xoo"));
+    dbClient.fileSourceDao().insert(dbSession, new FileSourceDto()
+      .setFileUuid(file.uuid())
+      .setProjectUuid(project.uuid())
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setSrcHash("hash of " + file.uuid())
+      .setRevision("123456789")
+      .setCreatedAt(updatedAt)
+      .setUpdatedAt(updatedAt));
+    dbSession.commit();
+    return file;
+  }
 }
@@ -288,6 +288,25 @@ public class BatchReportReaderImplTest {
     res.close();
   }
 
+  @Test
+  public void read_packed_report() throws IOException {
+    writer.writeComponent(COMPONENT);
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    File packedDir = tempFolder.newDir();
+    writer.pack(packedDir);
+    BatchReportReaderImpl packedReader = new BatchReportReaderImpl(new ImmutableBatchReportDirectoryHolder(packedDir));
+
+    assertThat(packedReader.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    try (CloseableIterator<String> lines = packedReader.readFileSource(COMPONENT_REF).get()) {
+      assertThat(lines).containsExactly("1", "2", "3");
+    }
+    try (CloseableIterator<ScannerReport.Test> tests = packedReader.readTests(COMPONENT_REF)) {
+      assertThat(tests).containsExactly(TEST_1, TEST_2);
+    }
+    assertThat(packedReader.readCoverageDetails(COMPONENT_REF)).isEmpty();
+  }
+
   @Test
   public void readTests_returns_empty_CloseableIterator_when_file_does_not_exist() {
     assertThat(underTest.readTests(COMPONENT_REF)).isEmpty();
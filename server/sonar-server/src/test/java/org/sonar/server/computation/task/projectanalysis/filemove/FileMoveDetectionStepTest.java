@@ -24,17 +24,21 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.db.DbClient;
@@ -56,6 +60,7 @@ import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -224,12 +229,15 @@ public class FileMoveDetectionStepTest {
   public SourceLinesRepositoryRule sourceLinesRepository = new SourceLinesRepositoryRule();
   @Rule
   public MutableMovedFilesRepositoryRule movedFilesRepository = new MutableMovedFilesRepositoryRule();
+  @Rule
+  public LogTester logTester = new LogTester();
 
   private DbClient dbClient = mock(DbClient.class);
   private DbSession dbSession = mock(DbSession.class);
   private ComponentDao componentDao = mock(ComponentDao.class);
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
   private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+  private Map<String, FileSourceDto> fileSourcesInDb = new HashMap<>();
   private long dbIdGenerator = 0;
 
   private FileMoveDetectionStep underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
@@ -240,6 +248,11 @@ public class FileMoveDetectionStepTest {
     when(dbClient.openSession(false)).thenReturn(dbSession);
     when(dbClient.componentDao()).thenReturn(componentDao);
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
+    when(fileSourceDao.selectLineHashesByFileUuids(eq(dbSession), anyCollectionOf(String.class)))
+      .thenAnswer(invocation -> ((Collection<String>) invocation.getArguments()[1]).stream()
+        .map(fileSourcesInDb::get)
+        .filter(Objects::nonNull)
+        .collect(toList()));
     treeRootHolder.setRoot(PROJECT);
   }
 
@@ -444,6 +457,22 @@ public class FileMoveDetectionStepTest {
     assertThat(originalFile5.getUuid()).isEqualTo(dtos[3].uuid());
   }
 
+  @Test
+  public void execute_scores_only_files_with_similar_lines() {
+    analysisMetadataHolder.setBaseAnalysis(ANALYSIS);
+    mockComponents(FILE_1.getKey(), FILE_2.getKey());
+    mockContentOfFileInDb(FILE_1.getKey(), CONTENT1);
+    mockContentOfFileInDb(FILE_2.getKey(), CONTENT2);
+    setFilesInReport(FILE_3);
+    setFileContentInReport(FILE_3_REF, CONTENT1);
+
+    underTest.execute();
+
+    assertThat(movedFilesRepository.getComponentsWithOriginal()).containsExactly(FILE_3);
+    assertThat(movedFilesRepository.getOriginalFile(FILE_3).get().getKey()).isEqualTo(FILE_1.getKey());
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("1 pairs of files scored, 1 pruned");
+  }
+
   /**
    * JH: A bug was encountered in the algorithm and I didn't manage to forge a simpler test case.
    */
@@ -507,10 +536,10 @@ public class FileMoveDetectionStepTest {
       sourceHashComputer.addLine(line, lineIterator.hasNext());
     }
 
-    when(fileSourceDao.selectSourceByFileUuid(dbSession, componentUuidOf(key)))
-      .thenReturn(new FileSourceDto()
-        .setLineHashes(on('\n').join(linesHashesComputer.getLineHashes()))
-        .setSrcHash(sourceHashComputer.getHash()));
+    fileSourcesInDb.put(componentUuidOf(key), new FileSourceDto()
+      .setFileUuid(componentUuidOf(key))
+      .setLineHashes(on('\n').join(linesHashesComputer.getLineHashes()))
+      .setSrcHash(sourceHashComputer.getHash()));
   }
 
   private void setFilesInReport(Component... files) {
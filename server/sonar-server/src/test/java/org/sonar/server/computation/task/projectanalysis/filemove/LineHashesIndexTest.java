@@ -0,0 +1,101 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineHashesIndexTest {
+
+  @Test
+  public void identical_files_are_candidates() {
+    LineHashesIndex underTest = new LineHashesIndex(Arrays.asList(lines("a", 100), lines("b", 100)));
+
+    assertThat(underTest.candidates(lines("a", 100)).stream().toArray()).containsExactly(0);
+    assertThat(underTest.candidates(lines("b", 100)).stream().toArray()).containsExactly(1);
+  }
+
+  @Test
+  public void files_with_a_few_different_lines_are_candidates() {
+    List<String> modified = lines("a", 100);
+    for (int i = 0; i < 10; i++) {
+      modified.set(i * 10, "modified" + i);
+    }
+    LineHashesIndex underTest = new LineHashesIndex(Arrays.asList(lines("a", 100), lines("b", 100)));
+
+    assertThat(underTest.candidates(modified).stream().toArray()).containsExactly(0);
+  }
+
+  @Test
+  public void files_with_many_repeated_lines_are_candidates() {
+    // 85 blank lines and closing braces, plus 15 distinct lines which are all modified
+    List<String> original = new ArrayList<>();
+    List<String> modified = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      if (i % 5 == 0 && i < 75) {
+        original.add("a" + i);
+        modified.add("modified" + i);
+      } else {
+        String line = i % 2 == 0 ? "}" : "";
+        original.add(line);
+        modified.add(line);
+      }
+    }
+    assertThat(new SourceSimilarityImpl().score(original, modified)).isEqualTo(FileMoveDetectionStep.MIN_REQUIRED_SCORE);
+    LineHashesIndex underTest = new LineHashesIndex(Arrays.asList(original, lines("b", 100)));
+
+    assertThat(underTest.candidates(modified).stream().toArray()).containsExactly(0);
+  }
+
+  @Test
+  public void files_without_common_lines_are_not_candidates() {
+    LineHashesIndex underTest = new LineHashesIndex(Arrays.asList(lines("a", 100), lines("b", 100)));
+
+    assertThat(underTest.candidates(lines("c", 100)).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void files_with_too_different_sizes_are_not_candidates() {
+    LineHashesIndex underTest = new LineHashesIndex(Arrays.asList(lines("a", 100), lines("a", 80)));
+
+    assertThat(underTest.candidates(lines("a", 90)).stream().toArray()).containsExactly(0, 1);
+    assertThat(underTest.candidates(lines("a", 100)).stream().toArray()).containsExactly(0);
+  }
+
+  @Test
+  public void files_without_line_hashes_are_not_candidates() {
+    LineHashesIndex underTest = new LineHashesIndex(Arrays.asList(lines("a", 100), null));
+
+    assertThat(underTest.candidates(null).isEmpty()).isTrue();
+    assertThat(underTest.candidates(lines("a", 100)).stream().toArray()).containsExactly(0);
+  }
+
+  private static List<String> lines(String prefix, int count) {
+    List<String> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(prefix + i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.CacheAppender;
+import org.sonar.server.util.cache.DiskCache;
+
+/**
+ * Compares {@link IssueCache} with the Java serialization of {@link DiskCache}. Run with
+ * the method {@link #main(String[])}. Sizes of files are logged during setup of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IssueCacheBenchmark {
+
+  private static final int FILES = 500;
+
+  @Param({"10000", "100000"})
+  private int issues;
+
+  private List<DefaultIssue> input;
+  private File dir;
+  private IssueCache issueCache;
+  private DiskCache<DefaultIssue> diskCache;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    input = generateIssues(issues);
+    dir = Files.createTempDirectory("issue-cache-benchmark").toFile();
+    issueCache = new IssueCache(new File(dir, "issues.dat"), System2.INSTANCE);
+    write(issueCache.newAppender());
+    diskCache = new DiskCache<>(new File(dir, "issues.ser"), System2.INSTANCE);
+    write(diskCache.newAppender());
+    System.out.printf("Bytes on disk for %d issues: binary=%d, java serialization=%d%n", issues, new File(dir, "issues.dat").length(), new File(dir, "issues.ser").length());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtils.deleteQuietly(dir);
+  }
+
+  @Benchmark
+  public void write_binary() {
+    write(new IssueCache(new File(dir, "write.dat"), System2.INSTANCE).newAppender());
+  }
+
+  @Benchmark
+  public void write_java_serialization() {
+    write(new DiskCache<DefaultIssue>(new File(dir, "write.ser"), System2.INSTANCE).newAppender());
+  }
+
+  @Benchmark
+  public void read_binary(Blackhole blackhole) {
+    read(issueCache.traverse(), blackhole);
+  }
+
+  @Benchmark
+  public void read_java_serialization(Blackhole blackhole) {
+    read(diskCache.traverse(), blackhole);
+  }
+
+  private void write(CacheAppender<DefaultIssue> appender) {
+    try {
+      for (DefaultIssue issue : input) {
+        appender.append(issue);
+      }
+    } finally {
+      appender.close();
+    }
+  }
+
+  private static void read(CloseableIterator<DefaultIssue> it, Blackhole blackhole) {
+    try {
+      while (it.hasNext()) {
+        blackhole.consume(it.next());
+      }
+    } finally {
+      it.close();
+    }
+  }
+
+  /**
+   * Issues close to the ones of a real analysis: a few hundreds of rules and files, some
+   * changelog and locations.
+   */
+  private static List<DefaultIssue> generateIssues(int count) {
+    List<DefaultIssue> result = new ArrayList<>(count);
+    Date now = new Date();
+    for (int i = 0; i < count; i++) {
+      int file = i * FILES / count;
+      int rule = i % 300;
+      DefaultIssue issue = new DefaultIssue()
+        .setKey("AVxM3S7-kP0dfaHtyZ" + i)
+        .setType(RuleType.CODE_SMELL)
+        .setComponentUuid("AVxM3S7-kP0dfaHtyZ-file-" + file)
+        .setComponentKey("org.sonarsource:project:src/main/java/org/sonar/File" + file + ".java")
+        .setModuleUuid("AVxM3S7-kP0dfaHtyZ-module")
+        .setModuleUuidPath(".AVxM3S7-kP0dfaHtyZ-module.")
+        .setProjectUuid("AVxM3S7-kP0dfaHtyZ-module")
+        .setProjectKey("org.sonarsource:project")
+        .setRuleKey(RuleKey.of("squid", "S" + rule))
+        .setLanguage("java")
+        .setSeverity(Severity.MAJOR)
+        .setMessage("Remove this unused private field \"field" + rule + "\".")
+        .setLine(1 + i % 1000)
+        .setGap(1.0)
+        .setEffort(Duration.create(5L))
+        .setStatus("OPEN")
+        .setChecksum("f62a0f5b8c0c3e7b3a1d" + i)
+        .setCreationDate(now)
+        .setUpdateDate(now)
+        .setLocations(DbIssues.Locations.newBuilder()
+          .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1 + i % 1000).setEndLine(1 + i % 1000).setStartOffset(4).setEndOffset(20))
+          .build())
+        .setNew(i % 2 == 0)
+        .setChanged(true);
+      if (i % 10 == 0) {
+        issue.setChanges(new ArrayList<>());
+        issue.addChange(new FieldDiffs().setUserLogin("john").setCreationDate(now).setDiff("severity", Severity.MINOR, Severity.MAJOR));
+      }
+      result.add(issue);
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(IssueCacheBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class IssueCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void write_and_read() throws Exception {
+    IssueCache underTest = new IssueCache(temp.newFile(), System2.INSTANCE);
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    underTest.newAppender()
+      .append(newIssue("I1", "FILE1"))
+      .append(newIssue("I2", "FILE1"))
+      .close();
+    underTest.newAppender()
+      .append(newIssue("I3", "FILE2"))
+      .close();
+
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      assertThat(newArrayList(traverse)).extracting(DefaultIssue::key).containsExactly("I1", "I2", "I3");
+    }
+  }
+
+  @Test
+  public void write_and_read_all_fields() throws Exception {
+    IssueCache underTest = new IssueCache(temp.newFile(), System2.INSTANCE);
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(5))
+      .build();
+    DefaultIssue issue = newIssue("I1", "FILE1")
+      .setType(RuleType.BUG)
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".PROJECT1.MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("project")
+      .setLanguage("java")
+      .setManualSeverity(true)
+      .setLine(12)
+      .setGap(3.5)
+      .setEffort(Duration.create(20L))
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("c4ecksum")
+      .setAuthorLogin("jane")
+      .setCreationDate(new Date(1_500_000_000_000L))
+      .setUpdateDate(new Date(1_500_000_100_000L))
+      .setCloseDate(new Date(1_500_000_200_000L))
+      .setSelectedAt(1_500_000_300_000L)
+      .setAttributes(ImmutableMap.of("JIRA", "FOO-123"))
+      .setTags(Arrays.asList("security", "cwe"))
+      .setLocations(locations)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true);
+    issue.addComment(DefaultIssueComment.create("I1", "john", "a comment"));
+    issue.setChanges(newArrayList(new FieldDiffs().setUserLogin("john").setCreationDate(new Date(1_400_000_000_000L)).setDiff("severity", "MINOR", "MAJOR")));
+    IssueChangeContext context = IssueChangeContext.createUser(new Date(1_500_000_000_000L), "jane");
+    issue.setFieldChange(context, "type", RuleType.CODE_SMELL, RuleType.BUG);
+    issue.setFieldChange(context, "effort", 10L, 20L);
+
+    underTest.newAppender().append(issue).close();
+
+    DefaultIssue read = underTest.traverse().next();
+    assertThat(read.key()).isEqualTo("I1");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE1");
+    assertThat(read.componentKey()).isEqualTo("project:src/FILE1");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(read.moduleUuidPath()).isEqualTo(".PROJECT1.MODULE1.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(read.projectKey()).isEqualTo("project");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("squid", "S001"));
+    assertThat(read.language()).isEqualTo("java");
+    assertThat(read.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("message of squid:S001");
+    assertThat(read.line()).isEqualTo(12);
+    assertThat(read.gap()).isEqualTo(3.5);
+    assertThat(read.effort()).isEqualTo(Duration.create(20L));
+    assertThat(read.status()).isEqualTo("OPEN");
+    assertThat(read.resolution()).isEqualTo("FIXED");
+    assertThat(read.assignee()).isEqualTo("john");
+    assertThat(read.checksum()).isEqualTo("c4ecksum");
+    assertThat(read.authorLogin()).isEqualTo("jane");
+    assertThat(read.creationDate()).isEqualTo(issue.creationDate());
+    assertThat(read.updateDate()).isEqualTo(issue.updateDate());
+    assertThat(read.closeDate()).isEqualTo(issue.closeDate());
+    assertThat(read.selectedAt()).isEqualTo(1_500_000_300_000L);
+    assertThat(read.attributes()).containsOnly(entry("JIRA", "FOO-123"));
+    assertThat(read.tags()).containsExactly("security", "cwe");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(locations);
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.key()).isEqualTo(issue.comments().get(0).key());
+    assertThat(comment.isNew()).isTrue();
+
+    // same instances as in the original issue
+    List<FieldDiffs> changes = read.changes();
+    assertThat(changes).hasSize(issue.changes().size());
+    assertThat(changes.get(0).get("severity").newValue()).isEqualTo("MAJOR");
+    assertThat(changes.get(1)).isSameAs(read.currentChange());
+    assertThat(changes.get(2)).isSameAs(read.currentChange());
+    assertThat(read.currentChange().userLogin()).isEqualTo("jane");
+    assertThat(read.currentChange().get("type").oldValue()).isEqualTo(RuleType.CODE_SMELL);
+    assertThat(read.currentChange().get("effort").newValueLong()).isEqualTo(20L);
+  }
+
+  @Test
+  public void intern_strings_shared_by_issues() throws Exception {
+    File file = temp.newFile();
+    IssueCache underTest = new IssueCache(file, System2.INSTANCE);
+    underTest.newAppender().append(newIssue("I1", "FILE1")).close();
+    long sizeOfFirstIssue = file.length();
+
+    underTest.newAppender().append(newIssue("I2", "FILE1")).close();
+
+    assertThat(file.length() - sizeOfFirstIssue).isLessThan(sizeOfFirstIssue / 2);
+    try (CloseableIterator<DefaultIssue> traverse = underTest.traverse()) {
+      assertThat(newArrayList(traverse)).extracting(DefaultIssue::componentKey).containsExactly("project:src/FILE1", "project:src/FILE1");
+    }
+  }
+
+  @Test
+  public void traverse_issues_of_component() throws Exception {
+    IssueCache underTest = new IssueCache(temp.newFile(), System2.INSTANCE, true);
+    underTest.newAppender()
+      .append(newIssue("I1", "FILE1"))
+      .append(newIssue("I2", "FILE2"))
+      .append(newIssue("I3", "FILE2"))
+      .close();
+    underTest.newAppender()
+      .append(newIssue("I4", "FILE3"))
+      .append(newIssue("I5", "FILE1"))
+      .close();
+
+    assertThat(newArrayList(underTest.traverse("FILE1"))).extracting(DefaultIssue::key).containsExactly("I1", "I5");
+    assertThat(newArrayList(underTest.traverse("FILE2"))).extracting(DefaultIssue::key).containsExactly("I2", "I3");
+    assertThat(newArrayList(underTest.traverse("FILE3"))).extracting(DefaultIssue::componentKey).containsExactly("project:src/FILE3");
+    assertThat(underTest.traverse("UNKNOWN")).isEmpty();
+  }
+
+  @Test
+  public void fail_to_traverse_component_if_components_are_not_indexed() throws Exception {
+    IssueCache underTest = new IssueCache(temp.newFile(), System2.INSTANCE);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Issues are not indexed by component");
+
+    underTest.traverse("FILE1");
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable() throws Exception {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to write into file");
+
+    new IssueCache(temp.newFolder(), System2.INSTANCE);
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setComponentUuid(componentUuid)
+      .setComponentKey("project:src/" + componentUuid)
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setMessage("message of squid:S001")
+      .setSeverity(Severity.MAJOR)
+      .setStatus("OPEN");
+  }
+}
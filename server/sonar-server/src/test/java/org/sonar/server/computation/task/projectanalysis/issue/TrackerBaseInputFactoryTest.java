@@ -20,17 +20,30 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.core.issue.DefaultIssue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDao;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -38,6 +51,11 @@ import static org.mockito.Mockito.when;
 public class TrackerBaseInputFactoryTest {
   private static final String FILE_UUID = "uuid";
   private static final ReportComponent FILE = ReportComponent.builder(Component.Type.FILE, 1).setUuid(FILE_UUID).build();
+  private static final ReportComponent FILE_2 = ReportComponent.builder(Component.Type.FILE, 2).setUuid("uuid2").build();
+  private static final ReportComponent EMPTY_PROJECT = ReportComponent.builder(Component.Type.PROJECT, 3).setUuid("project").build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(EMPTY_PROJECT);
 
   private BaseIssuesLoader baseIssuesLoader = mock(BaseIssuesLoader.class);
   private DbClient dbClient = mock(DbClient.class);
@@ -46,7 +64,7 @@ public class TrackerBaseInputFactoryTest {
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository, treeRootHolder);
 
   @Before
   public void setUp() throws Exception {
@@ -56,6 +74,11 @@ public class TrackerBaseInputFactoryTest {
       .thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
   }
 
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
   @Test
   public void create_returns_Input_which_retrieves_lines_hashes_of_specified_file_component_when_it_has_no_original_file() {
     underTest.create(FILE).getLineHashSequence();
@@ -97,4 +120,24 @@ public class TrackerBaseInputFactoryTest {
     verify(baseIssuesLoader).loadForComponentUuid(originalUuid);
     verify(baseIssuesLoader, times(0)).loadForComponentUuid(FILE_UUID);
   }
+
+  @Test
+  public void create_returns_Input_which_retrieves_issues_and_line_hashes_of_the_files_of_the_tree_in_batch() {
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 3).setUuid("project").addChildren(FILE, FILE_2).build());
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE");
+    when(baseIssuesLoader.loadUuidsOfComponentsWithOpenIssues()).thenReturn(ImmutableSet.of(FILE_UUID));
+    when(baseIssuesLoader.loadForComponentUuids(eq(dbSession), any())).thenReturn(ImmutableMap.of(FILE_UUID, asList(issue)));
+    when(fileSourceDao.selectLineHashesByFileUuids(eq(dbSession), any())).thenReturn(asList(new FileSourceDto().setFileUuid(FILE_UUID).setLineHashes("h1\nh2")));
+
+    assertThat(underTest.create(FILE).getIssues()).containsExactly(issue);
+    assertThat(underTest.create(FILE).getLineHashSequence().getHashForLine(2)).isEqualTo("h2");
+    assertThat(underTest.create(FILE_2).getIssues()).isEmpty();
+    assertThat(underTest.create(FILE_2).getLineHashSequence().length()).isEqualTo(0);
+
+    verify(baseIssuesLoader).loadForComponentUuids(dbSession, asList(FILE_UUID, FILE_2.getUuid(), "project"));
+    // no need of line hashes of files without issues
+    verify(fileSourceDao).selectLineHashesByFileUuids(dbSession, Collections.singletonList(FILE_UUID));
+    verify(baseIssuesLoader, never()).loadForComponentUuid(anyString());
+    verify(fileSourceDao, never()).selectLineHashes(any(DbSession.class), anyString());
+  }
 }
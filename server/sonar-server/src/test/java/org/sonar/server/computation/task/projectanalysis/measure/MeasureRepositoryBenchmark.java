@@ -0,0 +1,155 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+/**
+ * Compares {@link MapBasedRawMeasureRepository} with {@link ColumnarRawMeasureRepository}, on heap and off heap, on a
+ * flat tree of files with measures of 40 metrics, a few of them being data measures. Run with the method
+ * {@link #main(String[])}. Heap used by each repository is logged during setup of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class MeasureRepositoryBenchmark {
+
+  private static final int METRICS = 40;
+  private static final int DATA_METRICS = 3;
+
+  @Param({"10000", "100000"})
+  private int files;
+
+  private List<Component> components;
+  private List<Metric> metrics;
+  private MeasureRepository mapBased;
+  private MeasureRepository columnar;
+  private MeasureRepository columnarOffHeap;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    components = new ArrayList<>(files);
+    for (int ref = 1; ref <= files; ref++) {
+      components.add(ReportComponent.builder(Component.Type.FILE, ref).setKey("project:src/File" + ref + ".java").build());
+    }
+    metrics = new ArrayList<>(METRICS);
+    for (int i = 0; i < METRICS; i++) {
+      metrics.add(new MetricImpl(i + 1, "metric" + i, "Metric " + i, i < DATA_METRICS ? Metric.MetricType.DATA : Metric.MetricType.INT));
+    }
+    mapBased = fill("map based", () -> new MapBasedRawMeasureRepository<>(component -> component.getReportAttributes().getRef()));
+    columnar = fill("columnar", () -> new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef(), false));
+    columnarOffHeap = fill("columnar off heap", () -> new ColumnarRawMeasureRepository(component -> component.getReportAttributes().getRef(), true));
+  }
+
+  @Benchmark
+  public void visit_map_based(Blackhole blackhole) {
+    visit(mapBased, blackhole);
+  }
+
+  @Benchmark
+  public void visit_columnar(Blackhole blackhole) {
+    visit(columnar, blackhole);
+  }
+
+  @Benchmark
+  public void visit_columnar_off_heap(Blackhole blackhole) {
+    visit(columnarOffHeap, blackhole);
+  }
+
+  @Benchmark
+  public void get_all_measures_map_based(Blackhole blackhole) {
+    for (Component component : components) {
+      blackhole.consume(mapBased.getRawMeasures(component));
+    }
+  }
+
+  @Benchmark
+  public void get_all_measures_columnar(Blackhole blackhole) {
+    for (Component component : components) {
+      blackhole.consume(columnar.getRawMeasures(component));
+    }
+  }
+
+  /**
+   * Reads the measures of each file, as a formula of the tree of components does
+   */
+  private void visit(MeasureRepository repository, Blackhole blackhole) {
+    for (Component component : components) {
+      for (int i = DATA_METRICS; i < METRICS; i++) {
+        blackhole.consume(repository.getRawMeasure(component, metrics.get(i)).get().getIntValue());
+      }
+    }
+  }
+
+  private MeasureRepository fill(String name, Supplier<MeasureRepository> factory) {
+    long before = usedHeap();
+    MeasureRepository repository = factory.get();
+    for (Component component : components) {
+      for (int i = 0; i < METRICS; i++) {
+        Measure measure = i < DATA_METRICS
+          ? Measure.newMeasureBuilder().create("1=2;3=4;5=6;" + component.getReportAttributes().getRef())
+          : Measure.newMeasureBuilder().create(component.getReportAttributes().getRef() * i);
+        repository.add(component, metrics.get(i), measure);
+      }
+    }
+    System.out.printf("Heap used by %s repository for %d files: %d MB%n", name, files, (usedHeap() - before) / 1024 / 1024);
+    return repository;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(MeasureRepositoryBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
@@ -34,6 +34,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -89,11 +90,12 @@ public class MeasureRepositoryImplTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator, new MapSettings());
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator,
+    new MapSettings());
 
   private DbSession dbSession = dbTester.getSession();
 
@@ -285,7 +287,7 @@ public class MeasureRepositoryImplTest {
     underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
     underTest.update(FILE_COMPONENT, metric1, newMeasure);
 
-    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isSameAs(newMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isEqualToComparingFieldByField(newMeasure);
   }
 
   @Test
@@ -315,7 +317,7 @@ public class MeasureRepositoryImplTest {
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
     assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(SOME_MEASURE);
+    assertThat(res.get()).isEqualToComparingFieldByField(SOME_MEASURE);
 
     // make sure we really match on the specified component and metric
     assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric1)).isAbsent();
@@ -366,7 +368,7 @@ public class MeasureRepositoryImplTest {
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
     assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(addedMeasure);
+    assertThat(res.get()).isEqualToComparingFieldByField(addedMeasure);
   }
 
   @Test
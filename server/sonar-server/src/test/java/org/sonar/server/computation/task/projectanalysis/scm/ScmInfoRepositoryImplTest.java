@@ -27,6 +27,7 @@ import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -46,6 +47,8 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
@@ -54,6 +57,8 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepos
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.sonar.api.utils.log.LoggerLevel.TRACE;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
@@ -63,6 +68,9 @@ public class ScmInfoRepositoryImplTest {
 
   static final int FILE_REF = 1;
   static final Component FILE = builder(Component.Type.FILE, FILE_REF).setKey("FILE_KEY").setUuid("FILE_UUID").build();
+  static final int FILE_2_REF = 2;
+  static final Component FILE_2 = builder(Component.Type.FILE, FILE_2_REF).setKey("FILE_2_KEY").setUuid("FILE_2_UUID").build();
+  static final Component PROJECT = builder(Component.Type.PROJECT, 3).setKey("PROJECT_KEY").setUuid("PROJECT_UUID").addChildren(FILE, FILE_2).build();
   static final long DATE_1 = 123456789L;
   static final long DATE_2 = 1234567810L;
 
@@ -82,11 +90,18 @@ public class ScmInfoRepositoryImplTest {
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
 
   DbClient dbClient = dbTester.getDbClient();
 
   ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
-    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
+    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), treeRootHolder);
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
 
   @Test
   public void read_from_report() throws Exception {
@@ -122,6 +137,39 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from db for file 'FILE_KEY'");
   }
 
+  @Test
+  public void getScmInfo_returns_ScmInfo_from_DB_of_files_requested_in_any_order() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    addFileSourceInDb(FILE, "henry", DATE_1, "rev-1", computeSourceHash(1));
+    addFileSourceInDb(FILE_2, "paul", DATE_2, "rev-2", computeSourceHash(1));
+    addFileSourceInReport(FILE_REF, 1);
+    addFileSourceInReport(FILE_2_REF, 1);
+    addCopyFromPreviousChangesetInReport(FILE_REF);
+    addCopyFromPreviousChangesetInReport(FILE_2_REF);
+
+    assertThat(underTest.getScmInfo(FILE_2).get().getChangesetForLine(1).getAuthor()).isEqualTo("paul");
+    assertThat(underTest.getScmInfo(FILE).get().getChangesetForLine(1).getAuthor()).isEqualTo("henry");
+  }
+
+  @Test
+  public void read_changesets_of_report_only_once_per_file() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    addFileSourceInDb(FILE_2, "paul", DATE_2, "rev-2", computeSourceHash(1));
+    addFileSourceInReport(FILE_2_REF, 1);
+    addCopyFromPreviousChangesetInReport(FILE_2_REF);
+    addChangesetInReport("john", DATE_1, "rev-1");
+    BatchReportReader spiedReportReader = spy(reportReader);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(spiedReportReader, analysisMetadataHolder, dbClient,
+      new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), treeRootHolder);
+
+    // changesets of FILE are read when listing the files to prefetch
+    assertThat(underTest.getScmInfo(FILE_2).get().getChangesetForLine(1).getAuthor()).isEqualTo("paul");
+    assertThat(underTest.getScmInfo(FILE).get().getChangesetForLine(1).getAuthor()).isEqualTo("john");
+    underTest.stop();
+
+    verify(spiedReportReader).readChangesets(FILE_REF);
+  }
+
   @Test
   public void getScmInfo_returns_absent_when_CopyFromPrevious_is_true_but_hashes_are_not_the_same() throws Exception {
     analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
@@ -210,11 +258,12 @@ public class ScmInfoRepositoryImplTest {
     AnalysisMetadataHolder analysisMetadataHolder = mock(AnalysisMetadataHolder.class);
     DbClient dbClient = mock(DbClient.class);
     SourceHashRepository sourceHashRepository = mock(SourceHashRepository.class);
-    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    TreeRootHolder treeRootHolder = mock(TreeRootHolder.class);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, treeRootHolder);
 
     assertThat(underTest.getScmInfo(component)).isAbsent();
 
-    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, treeRootHolder);
   }
 
   @Test
@@ -243,6 +292,10 @@ public class ScmInfoRepositoryImplTest {
   }
 
   private void addFileSourceInDb(@Nullable String author, @Nullable Long date, @Nullable String revision, String srcHash) {
+    addFileSourceInDb(FILE, author, date, revision, srcHash);
+  }
+
+  private void addFileSourceInDb(Component file, @Nullable String author, @Nullable Long date, @Nullable String revision, String srcHash) {
     DbFileSources.Data.Builder fileDataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder builder = fileDataBuilder.addLinesBuilder()
       .setLine(1);
@@ -256,15 +309,19 @@ public class ScmInfoRepositoryImplTest {
       builder.setScmRevision(revision);
     }
     dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
-      .setFileUuid(FILE.getUuid())
+      .setFileUuid(file.getUuid())
       .setProjectUuid("PROJECT_UUID")
       .setSourceData(fileDataBuilder.build())
       .setSrcHash(srcHash));
   }
 
   private void addCopyFromPreviousChangesetInReport() {
+    addCopyFromPreviousChangesetInReport(FILE_REF);
+  }
+
+  private void addCopyFromPreviousChangesetInReport(int fileRef) {
     reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
-      .setComponentRef(FILE_REF)
+      .setComponentRef(fileRef)
       .setCopyFromPrevious(true)
       .build());
   }
@@ -287,9 +344,13 @@ public class ScmInfoRepositoryImplTest {
   }
 
   private void addFileSourceInReport(int lineCount) {
-    reportReader.putFileSourceLines(FILE_REF, generateLines(lineCount));
+    addFileSourceInReport(FILE_REF, lineCount);
+  }
+
+  private void addFileSourceInReport(int fileRef, int lineCount) {
+    reportReader.putFileSourceLines(fileRef, generateLines(lineCount));
     reportReader.putComponent(ScannerReport.Component.newBuilder()
-      .setRef(FILE_REF)
+      .setRef(fileRef)
       .setLines(lineCount)
       .build());
   }
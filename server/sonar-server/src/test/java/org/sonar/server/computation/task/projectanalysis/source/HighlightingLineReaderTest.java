@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.source;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.Hi
 import org.sonar.scanner.protocol.output.ScannerReport.TextRange;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter.RangeOffsetConverterException;
+import org.sonar.server.source.DecorationRanges;
 
 import static com.google.common.collect.ImmutableMap.of;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -84,7 +86,7 @@ public class HighlightingLineReaderTest {
     DbFileSources.Line.Builder lineBuilder = newBuilder().addLinesBuilder().setLine(1);
     highlightingLineReader.read(lineBuilder);
 
-    assertThat(lineBuilder.hasHighlighting()).isFalse();
+    assertThat(lineBuilder.getHighlightingRangesCount() > 0).isFalse();
   }
 
   @Test
@@ -94,7 +96,7 @@ public class HighlightingLineReaderTest {
 
     highlightingLineReader.read(line1);
 
-    assertThat(line1.getHighlighting()).isEqualTo(RANGE_LABEL_1 + ",a");
+    assertThat(highlighting(line1)).isEqualTo(RANGE_LABEL_1 + ",a");
   }
 
   @Test
@@ -109,9 +111,9 @@ public class HighlightingLineReaderTest {
     highlightingLineReader.read(line3);
     highlightingLineReader.read(line4);
 
-    assertThat(line1.getHighlighting()).isEqualTo(RANGE_LABEL_1 + ",a");
-    assertThat(line2.getHighlighting()).isEqualTo(RANGE_LABEL_2 + ",cd");
-    assertThat(line4.getHighlighting()).isEqualTo(RANGE_LABEL_3 + ",c");
+    assertThat(highlighting(line1)).isEqualTo(RANGE_LABEL_1 + ",a");
+    assertThat(highlighting(line2)).isEqualTo(RANGE_LABEL_2 + ",cd");
+    assertThat(highlighting(line4)).isEqualTo(RANGE_LABEL_3 + ",c");
   }
 
   @Test
@@ -133,7 +135,7 @@ public class HighlightingLineReaderTest {
     };
 
     assertThat(builders)
-      .extracting("highlighting")
+      .extracting(HighlightingLineReaderTest::highlighting)
       .containsExactly(
         "0,7,k",
         "0,2,cppd",
@@ -172,16 +174,16 @@ public class HighlightingLineReaderTest {
 
     highlightingLineReader.read(line1);
 
-    assertThat(line1.getHighlighting()).isEqualTo(RANGE_LABEL_1 + ",a;" + RANGE_LABEL_2 + ",cd");
+    assertThat(highlighting(line1)).isEqualTo(RANGE_LABEL_1 + ",a;" + RANGE_LABEL_2 + ",cd");
   }
 
   @Test
   public void read_one_syntax_highlighting_on_many_lines() {
     // This highlighting begin on line 1 and finish on line 3
     TextRange textRange = newTextRange(LINE_1, LINE_3);
-    when(rangeOffsetConverter.offsetToString(textRange, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_1);
-    when(rangeOffsetConverter.offsetToString(textRange, LINE_2, 6)).thenReturn(RANGE_LABEL_2);
-    when(rangeOffsetConverter.offsetToString(textRange, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_3);
+    when(rangeOffsetConverter.offsets(textRange, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_1));
+    when(rangeOffsetConverter.offsets(textRange, LINE_2, 6)).thenReturn(offsets(RANGE_LABEL_2));
+    when(rangeOffsetConverter.offsets(textRange, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_3));
 
     HighlightingLineReader highlightingLineReader = newReader(of(textRange, ANNOTATION));
 
@@ -190,25 +192,25 @@ public class HighlightingLineReaderTest {
     highlightingLineReader.read(line2);
     highlightingLineReader.read(line3);
 
-    assertThat(line1.getHighlighting()).isEqualTo(RANGE_LABEL_1 + ",a");
-    assertThat(line2.getHighlighting()).isEqualTo(RANGE_LABEL_2 + ",a");
-    assertThat(line3.getHighlighting()).isEqualTo(RANGE_LABEL_3 + ",a");
+    assertThat(highlighting(line1)).isEqualTo(RANGE_LABEL_1 + ",a");
+    assertThat(highlighting(line2)).isEqualTo(RANGE_LABEL_2 + ",a");
+    assertThat(highlighting(line3)).isEqualTo(RANGE_LABEL_3 + ",a");
   }
 
   @Test
   public void read_many_syntax_highlighting_on_many_lines() {
     TextRange textRange1 = newTextRange(LINE_1, LINE_3);
-    when(rangeOffsetConverter.offsetToString(textRange1, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_1);
-    when(rangeOffsetConverter.offsetToString(textRange1, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_2);
-    when(rangeOffsetConverter.offsetToString(textRange1, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_3);
+    when(rangeOffsetConverter.offsets(textRange1, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_1));
+    when(rangeOffsetConverter.offsets(textRange1, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_2));
+    when(rangeOffsetConverter.offsets(textRange1, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_3));
 
     TextRange textRange2 = newTextRange(LINE_2, LINE_4);
-    when(rangeOffsetConverter.offsetToString(textRange2, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_2);
-    when(rangeOffsetConverter.offsetToString(textRange2, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_2);
-    when(rangeOffsetConverter.offsetToString(textRange2, LINE_4, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_4);
+    when(rangeOffsetConverter.offsets(textRange2, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_2));
+    when(rangeOffsetConverter.offsets(textRange2, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_2));
+    when(rangeOffsetConverter.offsets(textRange2, LINE_4, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_4));
 
     TextRange textRange3 = newTextRange(LINE_2, LINE_2);
-    when(rangeOffsetConverter.offsetToString(textRange3, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_5);
+    when(rangeOffsetConverter.offsets(textRange3, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_5));
 
     HighlightingLineReader highlightingLineReader = newReader(of(
       textRange1, ANNOTATION,
@@ -220,17 +222,17 @@ public class HighlightingLineReaderTest {
     highlightingLineReader.read(line3);
     highlightingLineReader.read(line4);
 
-    assertThat(line1.getHighlighting()).isEqualTo(RANGE_LABEL_1 + ",a");
-    assertThat(line2.getHighlighting()).isEqualTo(RANGE_LABEL_2 + ",a;" + RANGE_LABEL_2 + ",s;" + RANGE_LABEL_5 + ",cd");
-    assertThat(line3.getHighlighting()).isEqualTo(RANGE_LABEL_3 + ",a;" + RANGE_LABEL_2 + ",s");
-    assertThat(line4.getHighlighting()).isEqualTo(RANGE_LABEL_4 + ",s");
+    assertThat(highlighting(line1)).isEqualTo(RANGE_LABEL_1 + ",a");
+    assertThat(highlighting(line2)).isEqualTo(RANGE_LABEL_2 + ",a;" + RANGE_LABEL_2 + ",s;" + RANGE_LABEL_5 + ",cd");
+    assertThat(highlighting(line3)).isEqualTo(RANGE_LABEL_3 + ",a;" + RANGE_LABEL_2 + ",s");
+    assertThat(highlighting(line4)).isEqualTo(RANGE_LABEL_4 + ",s");
   }
 
   @Test
   public void read_highlighting_declared_on_a_whole_line() {
     TextRange textRange = newTextRange(LINE_1, LINE_2);
-    when(rangeOffsetConverter.offsetToString(textRange, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_1);
-    when(rangeOffsetConverter.offsetToString(textRange, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn("");
+    when(rangeOffsetConverter.offsets(textRange, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_1));
+    when(rangeOffsetConverter.offsets(textRange, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(new int[0]);
 
     HighlightingLineReader highlightingLineReader = newReader(of(textRange, ANNOTATION));
 
@@ -238,16 +240,16 @@ public class HighlightingLineReaderTest {
     highlightingLineReader.read(line2);
     highlightingLineReader.read(line3);
 
-    assertThat(line1.getHighlighting()).isEqualTo(RANGE_LABEL_1 + ",a");
+    assertThat(highlighting(line1)).isEqualTo(RANGE_LABEL_1 + ",a");
     // Nothing should be set on line 2
-    assertThat(line2.getHighlighting()).isEmpty();
-    assertThat(line3.getHighlighting()).isEmpty();
+    assertThat(highlighting(line2)).isEmpty();
+    assertThat(highlighting(line3)).isEmpty();
   }
 
   @Test
   public void not_fail_and_stop_processing_when_range_offset_converter_throw_RangeOffsetConverterException() {
     TextRange textRange1 = newTextRange(LINE_1, LINE_1);
-    doThrow(RangeOffsetConverterException.class).when(rangeOffsetConverter).offsetToString(textRange1, LINE_1, DEFAULT_LINE_LENGTH);
+    doThrow(RangeOffsetConverterException.class).when(rangeOffsetConverter).offsets(textRange1, LINE_1, DEFAULT_LINE_LENGTH);
 
     HighlightingLineReader highlightingLineReader = newReader(of(
       textRange1, HighlightingType.ANNOTATION,
@@ -263,7 +265,7 @@ public class HighlightingLineReaderTest {
   @Test
   public void keep_existing_processed_highlighting_when_range_offset_converter_throw_RangeOffsetConverterException() {
     TextRange textRange2 = newTextRange(LINE_2, LINE_2);
-    doThrow(RangeOffsetConverterException.class).when(rangeOffsetConverter).offsetToString(textRange2, LINE_2, DEFAULT_LINE_LENGTH);
+    doThrow(RangeOffsetConverterException.class).when(rangeOffsetConverter).offsets(textRange2, LINE_2, DEFAULT_LINE_LENGTH);
 
     HighlightingLineReader highlightingLineReader = newReader(of(
       newSingleLineTextRangeWithExpectingLabel(LINE_1, RANGE_LABEL_1), ANNOTATION,
@@ -272,15 +274,15 @@ public class HighlightingLineReaderTest {
     highlightingLineReader.read(line1);
     highlightingLineReader.read(line2);
 
-    assertThat(line1.hasHighlighting()).isTrue();
-    assertThat(line2.hasHighlighting()).isFalse();
+    assertThat(line1.getHighlightingRangesCount() > 0).isTrue();
+    assertThat(line2.getHighlightingRangesCount() > 0).isFalse();
     assertThat(logTester.logs(WARN)).isNotEmpty();
   }
 
   @Test
   public void display_file_key_in_warning_when_range_offset_converter_throw_RangeOffsetConverterException() {
     TextRange textRange1 = newTextRange(LINE_1, LINE_1);
-    doThrow(RangeOffsetConverterException.class).when(rangeOffsetConverter).offsetToString(textRange1, LINE_1, DEFAULT_LINE_LENGTH);
+    doThrow(RangeOffsetConverterException.class).when(rangeOffsetConverter).offsets(textRange1, LINE_1, DEFAULT_LINE_LENGTH);
     HighlightingLineReader highlightingLineReader = newReader(of(textRange1, ANNOTATION));
 
     highlightingLineReader.read(line1);
@@ -310,15 +312,22 @@ public class HighlightingLineReaderTest {
 
   private TextRange newSingleLineTextRangeWithExpectingLabel(int line, String rangeLabel) {
     TextRange textRange = newTextRange(line, line);
-    when(rangeOffsetConverter.offsetToString(textRange, line, DEFAULT_LINE_LENGTH)).thenReturn(rangeLabel);
+    when(rangeOffsetConverter.offsets(textRange, line, DEFAULT_LINE_LENGTH)).thenReturn(offsets(rangeLabel));
     return textRange;
   }
 
   private void assertNoHighlighting() {
-    assertThat(line1.hasHighlighting()).isFalse();
-    assertThat(line2.hasHighlighting()).isFalse();
-    assertThat(line3.hasHighlighting()).isFalse();
-    assertThat(line4.hasHighlighting()).isFalse();
+    assertThat(line1.getHighlightingRangesCount() > 0).isFalse();
+    assertThat(line2.getHighlightingRangesCount() > 0).isFalse();
+    assertThat(line3.getHighlightingRangesCount() > 0).isFalse();
+    assertThat(line4.getHighlightingRangesCount() > 0).isFalse();
   }
 
+  private static int[] offsets(String rangeLabel) {
+    return Arrays.stream(rangeLabel.split(",")).mapToInt(Integer::parseInt).toArray();
+  }
+
+  private static String highlighting(DbFileSources.Line.Builder line) {
+    return DecorationRanges.toHighlightingString(line.getHighlightingRangesList());
+  }
 }
@@ -27,6 +27,7 @@ import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.TextRange;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.source.DecorationRanges;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doThrow;
@@ -74,7 +75,7 @@ public class SymbolsLineReaderTest {
 
     symbolsLineReader.read(line1);
 
-    assertThat(line1.getSymbols()).isEmpty();
+    assertThat(symbols(line1)).isEmpty();
   }
 
   @Test
@@ -88,9 +89,9 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line2);
     symbolsLineReader.read(line3);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line2.getSymbols()).isEmpty();
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line2)).isEmpty();
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_2 + ",1");
   }
 
   @Test
@@ -102,7 +103,7 @@ public class SymbolsLineReaderTest {
 
     symbolsLineReader.read(line1);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1;" + RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1;" + RANGE_LABEL_2 + ",1");
   }
 
   @Test
@@ -117,9 +118,9 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line2);
     symbolsLineReader.read(line3);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line2.getSymbols()).isEqualTo(RANGE_LABEL_3 + ",1");
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line2)).isEqualTo(RANGE_LABEL_3 + ",1");
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_2 + ",1");
   }
 
   @Test
@@ -133,8 +134,8 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line1);
     symbolsLineReader.read(line2);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line2.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_3 + ",1");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line2)).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_3 + ",1");
   }
 
   @Test
@@ -147,8 +148,8 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line1);
     symbolsLineReader.read(line2);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1");
-    assertThat(line2.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line2)).isEqualTo(RANGE_LABEL_1 + ",1");
   }
 
   @Test
@@ -166,9 +167,9 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line2);
     symbolsLineReader.read(line3);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1;" + RANGE_LABEL_3 + ",2");
-    assertThat(line2.getSymbols()).isEmpty();
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_4 + ",2");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1;" + RANGE_LABEL_3 + ",2");
+    assertThat(symbols(line2)).isEmpty();
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_4 + ",2");
   }
 
   @Test
@@ -187,9 +188,9 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line2);
     symbolsLineReader.read(line3);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_1 + ",2");
-    assertThat(line2.getSymbols()).isEmpty();
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_1 + ",2");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_1 + ",2");
+    assertThat(symbols(line2)).isEmpty();
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_2 + ",1;" + RANGE_LABEL_1 + ",2");
   }
 
   @Test
@@ -207,20 +208,20 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line2);
     symbolsLineReader.read(line3);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line2.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",2");
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1;" + RANGE_LABEL_2 + ",2");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line2)).isEqualTo(RANGE_LABEL_1 + ",2");
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_1 + ",1;" + RANGE_LABEL_2 + ",2");
   }
 
   @Test
   public void read_symbols_defined_on_many_lines() {
     TextRange declaration = newTextRange(LINE_1, LINE_2, OFFSET_1, OFFSET_3);
-    when(rangeOffsetConverter.offsetToString(declaration, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_1);
-    when(rangeOffsetConverter.offsetToString(declaration, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_2);
+    when(rangeOffsetConverter.offsets(declaration, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_1));
+    when(rangeOffsetConverter.offsets(declaration, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_2));
 
     TextRange reference = newTextRange(LINE_3, LINE_4, OFFSET_1, OFFSET_3);
-    when(rangeOffsetConverter.offsetToString(reference, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_1);
-    when(rangeOffsetConverter.offsetToString(reference, LINE_4, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_2);
+    when(rangeOffsetConverter.offsets(reference, LINE_3, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_1));
+    when(rangeOffsetConverter.offsets(reference, LINE_4, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_2));
 
     SymbolsLineReader symbolsLineReader = newReader(newSymbol(declaration, reference));
 
@@ -229,17 +230,17 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line3);
     symbolsLineReader.read(line4);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line2.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1");
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line4.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line2)).isEqualTo(RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line4)).isEqualTo(RANGE_LABEL_2 + ",1");
   }
 
   @Test
   public void read_symbols_declared_on_a_whole_line() {
     TextRange declaration = newTextRange(LINE_1, LINE_2, OFFSET_0, OFFSET_0);
-    when(rangeOffsetConverter.offsetToString(declaration, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(RANGE_LABEL_1);
-    when(rangeOffsetConverter.offsetToString(declaration, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn("");
+    when(rangeOffsetConverter.offsets(declaration, LINE_1, DEFAULT_LINE_LENGTH)).thenReturn(offsets(RANGE_LABEL_1));
+    when(rangeOffsetConverter.offsets(declaration, LINE_2, DEFAULT_LINE_LENGTH)).thenReturn(new int[0]);
     TextRange reference = newSingleLineTextRangeWithExpectedLabel(LINE_3, OFFSET_1, OFFSET_3, RANGE_LABEL_2);
 
     SymbolsLineReader symbolsLineReader = newReader(newSymbol(declaration, reference));
@@ -249,16 +250,16 @@ public class SymbolsLineReaderTest {
     symbolsLineReader.read(line3);
     symbolsLineReader.read(line4);
 
-    assertThat(line1.getSymbols()).isEqualTo(RANGE_LABEL_1 + ",1");
-    assertThat(line2.getSymbols()).isEmpty();
-    assertThat(line3.getSymbols()).isEqualTo(RANGE_LABEL_2 + ",1");
-    assertThat(line4.getSymbols()).isEmpty();
+    assertThat(symbols(line1)).isEqualTo(RANGE_LABEL_1 + ",1");
+    assertThat(symbols(line2)).isEmpty();
+    assertThat(symbols(line3)).isEqualTo(RANGE_LABEL_2 + ",1");
+    assertThat(symbols(line4)).isEmpty();
   }
 
   @Test
   public void not_fail_and_stop_processing_when_range_offset_converter_throw_RangeOffsetConverterException() {
     TextRange declaration = newTextRange(LINE_1, LINE_1, OFFSET_1, OFFSET_3);
-    doThrow(RangeOffsetConverter.RangeOffsetConverterException.class).when(rangeOffsetConverter).offsetToString(declaration, LINE_1, DEFAULT_LINE_LENGTH);
+    doThrow(RangeOffsetConverter.RangeOffsetConverterException.class).when(rangeOffsetConverter).offsets(declaration, LINE_1, DEFAULT_LINE_LENGTH);
 
     TextRange reference = newSingleLineTextRangeWithExpectedLabel(LINE_2, OFFSET_1, OFFSET_3, RANGE_LABEL_2);
 
@@ -276,22 +277,22 @@ public class SymbolsLineReaderTest {
     TextRange declaration = newSingleLineTextRangeWithExpectedLabel(LINE_1, OFFSET_1, OFFSET_3, RANGE_LABEL_2);
 
     TextRange reference = newTextRange(LINE_2, LINE_2, OFFSET_1, OFFSET_3);
-    doThrow(RangeOffsetConverter.RangeOffsetConverterException.class).when(rangeOffsetConverter).offsetToString(reference, LINE_2, DEFAULT_LINE_LENGTH);
+    doThrow(RangeOffsetConverter.RangeOffsetConverterException.class).when(rangeOffsetConverter).offsets(reference, LINE_2, DEFAULT_LINE_LENGTH);
 
     SymbolsLineReader symbolsLineReader = newReader(newSymbol(declaration, reference));
 
     symbolsLineReader.read(line1);
     symbolsLineReader.read(line2);
 
-    assertThat(line1.hasSymbols()).isTrue();
-    assertThat(line2.hasSymbols()).isFalse();
+    assertThat(line1.getSymbolRangesCount() > 0).isTrue();
+    assertThat(line2.getSymbolRangesCount() > 0).isFalse();
     assertThat(logTester.logs(WARN)).isNotEmpty();
   }
 
   @Test
   public void display_file_key_in_warning_when_range_offset_converter_throw_RangeOffsetConverterException() {
     TextRange declaration = newTextRange(LINE_1, LINE_1, OFFSET_1, OFFSET_3);
-    doThrow(RangeOffsetConverter.RangeOffsetConverterException.class).when(rangeOffsetConverter).offsetToString(declaration, LINE_1, DEFAULT_LINE_LENGTH);
+    doThrow(RangeOffsetConverter.RangeOffsetConverterException.class).when(rangeOffsetConverter).offsets(declaration, LINE_1, DEFAULT_LINE_LENGTH);
     SymbolsLineReader symbolsLineReader = newReader(newSymbol(declaration, newSingleLineTextRangeWithExpectedLabel(LINE_2, OFFSET_1, OFFSET_3, RANGE_LABEL_2)));
 
     symbolsLineReader.read(line1);
@@ -314,7 +315,7 @@ public class SymbolsLineReaderTest {
 
   private TextRange newSingleLineTextRangeWithExpectedLabel(int line, int startOffset, int endOffset, String rangeLabel) {
     TextRange textRange = newTextRange(line, line, startOffset, endOffset);
-    when(rangeOffsetConverter.offsetToString(textRange, line, DEFAULT_LINE_LENGTH)).thenReturn(rangeLabel);
+    when(rangeOffsetConverter.offsets(textRange, line, DEFAULT_LINE_LENGTH)).thenReturn(offsets(rangeLabel));
     return textRange;
   }
 
@@ -326,10 +327,17 @@ public class SymbolsLineReaderTest {
   }
 
   private void assertNoSymbol() {
-    assertThat(line1.hasSymbols()).isFalse();
-    assertThat(line2.hasSymbols()).isFalse();
-    assertThat(line3.hasSymbols()).isFalse();
-    assertThat(line4.hasSymbols()).isFalse();
+    assertThat(line1.getSymbolRangesCount() > 0).isFalse();
+    assertThat(line2.getSymbolRangesCount() > 0).isFalse();
+    assertThat(line3.getSymbolRangesCount() > 0).isFalse();
+    assertThat(line4.getSymbolRangesCount() > 0).isFalse();
   }
 
+  private static int[] offsets(String rangeLabel) {
+    return Arrays.stream(rangeLabel.split(",")).mapToInt(Integer::parseInt).toArray();
+  }
+
+  private static String symbols(DbFileSources.Line.Builder line) {
+    return DecorationRanges.toSymbolsString(line.getSymbolRangesList());
+  }
 }
@@ -201,7 +201,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
     assertThat(data.getLinesList()).hasSize(1);
 
-    assertThat(data.getLines(0).getHighlighting()).isEqualTo("2,4,a");
+    assertThat(data.getLines(0).getHighlightingRangesList()).containsExactly(2, 4, DbFileSources.HighlightingType.ANNOTATION_VALUE);
   }
 
   @Test
@@ -226,9 +226,9 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
     assertThat(data.getLinesList()).hasSize(3);
 
-    assertThat(data.getLines(0).getSymbols()).isEqualTo("2,4,1");
-    assertThat(data.getLines(1).getSymbols()).isEmpty();
-    assertThat(data.getLines(2).getSymbols()).isEqualTo("1,3,1");
+    assertThat(data.getLines(0).getSymbolRangesList()).containsExactly(2, 4, 1);
+    assertThat(data.getLines(1).getSymbolRangesList()).isEmpty();
+    assertThat(data.getLines(2).getSymbolRangesList()).containsExactly(1, 3, 1);
   }
 
   @Test
@@ -281,7 +281,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
     String lineHashes = "137f72c3708c6bd0de00a0e5a69c699b";
-    String dataHash = "29f25900140c94db38035128cb6de6a2";
+    String dataHash = "c92439c34430d8017cfe5694d8884cad";
 
     dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
       .setProjectUuid(PROJECT_UUID)
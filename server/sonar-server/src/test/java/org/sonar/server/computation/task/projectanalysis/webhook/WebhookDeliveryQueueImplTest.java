@@ -0,0 +1,289 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WebhookDeliveryQueueImplTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+  private static final WebhookPayload PAYLOAD = new WebhookPayload("P1", "{\"payload\": true}");
+
+  @Rule
+  public LogTester logTester = new LogTester().setLevel(LoggerLevel.DEBUG);
+
+  private final System2 system = mock(System2.class);
+  private final TestWebhookCaller caller = new TestWebhookCaller();
+  private final WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
+  private final WebhookDeliveryQueueImpl.Policy policy = new WebhookDeliveryQueueImpl.Policy();
+  private WebhookDeliveryQueueImpl underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.stop();
+    }
+  }
+
+  @Test
+  public void send_and_persist_delivery() {
+    caller.enqueueSuccess(NOW, 200, 1_234);
+
+    start(caller);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(1);
+    assertThat(persistedDeliveries(1)).extracting(WebhookDelivery::isSuccess).containsExactly(true);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | attempt=1 | time=1234ms | status=200");
+  }
+
+  @Test
+  public void retry_connection_failures_and_server_errors() {
+    caller.enqueueFailure(NOW, new IOException("Fail to connect"));
+    caller.enqueueSuccess(NOW, 503, 10);
+    caller.enqueueSuccess(NOW, 200, 10);
+
+    start(caller);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(3);
+    assertThat(persistedDeliveries(3)).extracting(WebhookDelivery::isSuccess).containsExactly(false, false, true);
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'First' | url=http://url1 | attempt=1 | message=Fail to connect");
+  }
+
+  @Test
+  public void do_not_retry_client_errors() {
+    caller.enqueueSuccess(NOW, 404, 10);
+
+    start(caller);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(1);
+    persistedDeliveries(1);
+  }
+
+  @Test
+  public void give_up_after_max_attempts() {
+    policy.maxAttempts = 2;
+    caller.enqueueSuccess(NOW, 500, 10);
+    caller.enqueueSuccess(NOW, 500, 10);
+
+    start(caller);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(persistedDeliveries(2)).extracting(WebhookDelivery::isSuccess).containsExactly(false, false);
+  }
+
+  @Test
+  public void open_circuit_of_url_after_consecutive_failures() {
+    policy.maxAttempts = 1;
+    policy.circuitFailureThreshold = 2;
+    when(system.now()).thenReturn(NOW);
+    caller.enqueueSuccess(NOW, 500, 10);
+    caller.enqueueSuccess(NOW, 500, 10);
+
+    start(caller);
+    for (int i = 0; i < 3; i++) {
+      underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+      waitForDeliveries();
+    }
+
+    assertThat(caller.countSent()).isEqualTo(2);
+    assertThat(persistedDeliveries(3).get(2).getErrorMessage()).contains("Webhook is not sent, circuit of URL is open after 2 consecutive failures");
+    assertThat(toStatistics("http://url1")).contains("failed=2", "rejected=1", "circuit=open");
+
+    // circuit is half-opened when delay is elapsed
+    when(system.now()).thenReturn(NOW + policy.circuitOpenDelayMs);
+    caller.enqueueSuccess(NOW, 200, 10);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    waitForDeliveries();
+
+    assertThat(caller.countSent()).isEqualTo(3);
+    assertThat(toStatistics("http://url1")).contains("succeeded=1", "circuit=closed");
+  }
+
+  @Test
+  public void limit_concurrent_calls_to_the_same_url() {
+    policy.maxConcurrentCallsPerUrl = 1;
+    ConcurrencyRecordingCaller recordingCaller = new ConcurrencyRecordingCaller();
+
+    start(recordingCaller);
+    for (int i = 0; i < 5; i++) {
+      underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+      underTest.enqueue(singletonList(newWebhook("Second", "http://url2")), PAYLOAD);
+    }
+    waitForDeliveries();
+
+    assertThat(recordingCaller.maxConcurrentCallsByUrl).containsOnlyKeys("http://url1", "http://url2");
+    assertThat(recordingCaller.maxConcurrentCallsByUrl.values()).containsOnly(1);
+    persistedDeliveries(10);
+  }
+
+  @Test
+  public void reject_delivery_if_queue_is_full() {
+    policy.maxPending = 0;
+
+    start(caller);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+
+    assertThat(caller.countSent()).isEqualTo(0);
+    assertThat(persistedDeliveries(1).get(0).getErrorMessage()).contains("Webhook is not sent, queue of webhook deliveries is full");
+    assertThat(underTest.countPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void purge_old_deliveries_when_deliveries_of_analysis_are_completed() {
+    policy.maxAttempts = 2;
+    caller.enqueueSuccess(NOW, 500, 10);
+    caller.enqueueSuccess(NOW, 200, 10);
+    caller.enqueueSuccess(NOW, 200, 10);
+
+    start(caller);
+    underTest.enqueue(asList(newWebhook("First", "http://url1"), newWebhook("Second", "http://url2")), PAYLOAD);
+    waitForDeliveries();
+
+    InOrder inOrder = inOrder(deliveryStorage);
+    inOrder.verify(deliveryStorage, times(3)).persist(any(WebhookDelivery.class));
+    inOrder.verify(deliveryStorage).purge("P1_UUID");
+  }
+
+  @Test
+  public void release_pending_deliveries_when_compute_engine_is_stopping() {
+    policy.maxConcurrentCallsPerUrl = 1;
+
+    start(caller);
+    underTest.stop();
+    underTest.enqueue(asList(newWebhook("First", "http://url1"), newWebhook("First", "http://url1")), PAYLOAD);
+
+    assertThat(caller.countSent()).isEqualTo(0);
+    assertThat(underTest.countPending()).isEqualTo(0);
+    verify(deliveryStorage).purge("P1_UUID");
+  }
+
+  @Test
+  public void system_info_contains_statistics_of_urls() {
+    when(system.now()).thenReturn(NOW);
+    caller.enqueueSuccess(NOW, 200, 100);
+    caller.enqueueSuccess(NOW, 200, 300);
+
+    start(caller);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    underTest.enqueue(singletonList(newWebhook("First", "http://url1")), PAYLOAD);
+    waitForDeliveries();
+
+    ProtobufSystemInfo.Section section = underTest.toProtobuf();
+    assertThat(section.getName()).isEqualTo("Compute Engine Webhooks");
+    assertThat(section.getAttributesList()).extracting("key").containsExactly("Pending Deliveries", "http://url1");
+    assertThat(toStatistics("http://url1")).startsWith("succeeded=2, failed=0, retried=0, rejected=0, waiting=0").contains("avg time=200ms, max time=300ms");
+  }
+
+  private void start(WebhookCaller webhookCaller) {
+    policy.firstRetryDelayMs = 1L;
+    underTest = new WebhookDeliveryQueueImpl(webhookCaller, deliveryStorage, system, policy);
+    underTest.start();
+  }
+
+  private void waitForDeliveries() {
+    long timeout = System.currentTimeMillis() + 10_000L;
+    while (underTest.countPending() > 0) {
+      if (System.currentTimeMillis() > timeout) {
+        fail("Webhooks are not delivered");
+      }
+      try {
+        Thread.sleep(5L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private List<WebhookDelivery> persistedDeliveries(int count) {
+    ArgumentCaptor<WebhookDelivery> captor = ArgumentCaptor.forClass(WebhookDelivery.class);
+    verify(deliveryStorage, times(count)).persist(captor.capture());
+    return captor.getAllValues();
+  }
+
+  private String toStatistics(String url) {
+    return underTest.toProtobuf().getAttributesList().stream()
+      .filter(attribute -> attribute.getKey().equals(url))
+      .map(ProtobufSystemInfo.Attribute::getStringValue)
+      .findFirst()
+      .orElseThrow(() -> new IllegalStateException("No statistics for " + url));
+  }
+
+  private static Webhook newWebhook(String name, String url) {
+    return new Webhook("P1_UUID", "#1", name, url);
+  }
+
+  private static class ConcurrencyRecordingCaller implements WebhookCaller {
+    private final Map<String, AtomicInteger> concurrentCallsByUrl = new ConcurrentHashMap<>();
+    private final Map<String, Integer> maxConcurrentCallsByUrl = new ConcurrentHashMap<>();
+
+    @Override
+    public WebhookDelivery call(Webhook webhook, WebhookPayload payload) {
+      AtomicInteger concurrentCalls = concurrentCallsByUrl.computeIfAbsent(webhook.getUrl(), url -> new AtomicInteger());
+      maxConcurrentCallsByUrl.merge(webhook.getUrl(), concurrentCalls.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(10L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        concurrentCalls.decrementAndGet();
+      }
+      return new WebhookDelivery.Builder()
+        .setAt(NOW)
+        .setHttpStatus(200)
+        .setDurationInMs(10)
+        .setWebhook(webhook)
+        .setPayload(payload)
+        .build();
+    }
+  }
+}
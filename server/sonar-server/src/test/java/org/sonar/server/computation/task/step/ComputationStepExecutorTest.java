@@ -19,8 +19,14 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -152,6 +158,88 @@ public class ComputationStepExecutorTest {
     new ComputationStepExecutor(mockComputationSteps(computationStep1), listener).execute();
   }
 
+  @Test
+  public void execute_concurrently_the_ConcurrentComputationSteps_which_do_not_depend_on_each_other() {
+    CountDownLatch latch = new CountDownLatch(2);
+    // would time out if steps were executed sequentially
+    Runnable waitForOtherStep = () -> {
+      latch.countDown();
+      await(latch);
+    };
+    ConcurrentStep step1 = new ConcurrentStep("step1", waitForOtherStep, ImmutableSet.of(String.class), Collections.emptySet());
+    ConcurrentStep step2 = new ConcurrentStep("step2", waitForOtherStep, ImmutableSet.of(String.class), Collections.emptySet());
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2)).execute();
+
+    assertThat(latch.getCount()).isZero();
+  }
+
+  @Test
+  public void execute_ConcurrentComputationSteps_in_order_if_they_depend_on_each_other() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    ConcurrentStep writer = new ConcurrentStep("writer", () -> sleepAndAdd(executed, "writer"), Collections.emptySet(), ImmutableSet.of(String.class));
+    ConcurrentStep reader = new ConcurrentStep("reader", () -> executed.add("reader"), ImmutableSet.of(String.class), Collections.emptySet());
+    ConcurrentStep other = new ConcurrentStep("other", () -> executed.add("other"), ImmutableSet.of(Integer.class), Collections.emptySet());
+
+    new ComputationStepExecutor(mockComputationSteps(writer, reader, computationStep1, other)).execute();
+
+    assertThat(executed).containsExactly("writer", "reader", "other");
+    verify(computationStep1).execute();
+  }
+
+  @Test
+  public void execute_let_exception_thrown_by_ConcurrentComputationStep_go_up_as_is() {
+    RuntimeException toBeThrown = new RuntimeException("simulating failing execute Step method");
+    ConcurrentStep step1 = new ConcurrentStep("step1", () -> {
+      throw toBeThrown;
+    }, Collections.emptySet(), ImmutableSet.of(String.class));
+    ConcurrentStep step2 = new ConcurrentStep("step2", () -> fail("step2 must not be executed"), ImmutableSet.of(String.class), Collections.emptySet());
+
+    try {
+      new ComputationStepExecutor(mockComputationSteps(step1, step2, computationStep1), listener).execute();
+      fail("exception toBeThrown should have been raised");
+    } catch (RuntimeException e) {
+      assertThat(e).isSameAs(toBeThrown);
+      verify(listener).finished(false);
+      verifyNoMoreInteractions(computationStep1);
+    }
+  }
+
+  @Test
+  public void execute_logs_end_timing_for_each_ConcurrentComputationStep_when_level_is_DEBUG() {
+    ConcurrentStep step1 = new ConcurrentStep("step1", () -> {
+    }, ImmutableSet.of(String.class), Collections.emptySet());
+    ConcurrentStep step2 = new ConcurrentStep("step2", () -> {
+    }, ImmutableSet.of(String.class), Collections.emptySet());
+
+    try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, LoggerLevel.DEBUG)) {
+      new ComputationStepExecutor(mockComputationSteps(step1, step2)).execute();
+    }
+
+    List<String> debugLogs = logTester.logs(LoggerLevel.DEBUG);
+    assertThat(debugLogs).hasSize(2);
+    assertThat(debugLogs.stream().filter(log -> log.contains("step1 | time="))).hasSize(1);
+    assertThat(debugLogs.stream().filter(log -> log.contains("step2 | time="))).hasSize(1);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleepAndAdd(List<String> executed, String name) {
+    try {
+      Thread.sleep(100L);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executed.add(name);
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
@@ -163,4 +251,38 @@ public class ComputationStepExecutorTest {
     when(mock.getDescription()).thenReturn(desc);
     return mock;
   }
+
+  private static class ConcurrentStep implements ConcurrentComputationStep {
+    private final String description;
+    private final Runnable runnable;
+    private final Set<Class<?>> reads;
+    private final Set<Class<?>> writes;
+
+    private ConcurrentStep(String description, Runnable runnable, Set<Class<?>> reads, Set<Class<?>> writes) {
+      this.description = description;
+      this.runnable = runnable;
+      this.reads = reads;
+      this.writes = writes;
+    }
+
+    @Override
+    public void execute() {
+      runnable.run();
+    }
+
+    @Override
+    public Set<Class<?>> readDependencies() {
+      return reads;
+    }
+
+    @Override
+    public Set<Class<?>> writeDependencies() {
+      return writes;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
 }
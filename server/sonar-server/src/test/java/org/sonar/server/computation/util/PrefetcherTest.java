@@ -0,0 +1,127 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.util;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PrefetcherTest {
+
+  private static final List<String> UUIDS = asList("A", "B", "C", "D", "E");
+
+  private DbClient dbClient = mock(DbClient.class);
+  private List<List<String>> loadedBatches = new ArrayList<>();
+  private Prefetcher<String> underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.close();
+    }
+  }
+
+  @Test
+  public void load_values_by_batches_in_order() {
+    underTest = newPrefetcher(false);
+
+    for (String uuid : UUIDS) {
+      assertThat(underTest.get(uuid, PrefetcherTest::fallback)).isEqualTo("value of " + uuid);
+    }
+    assertThat(loadedBatches).containsExactly(asList("A", "B"), asList("C", "D"), asList("E"));
+  }
+
+  @Test
+  public void return_null_if_component_has_no_data() {
+    underTest = new Prefetcher<>("test", dbClient, UUIDS, 2, false, (dbSession, uuids) -> ImmutableMap.of("A", "value of A"));
+
+    assertThat(underTest.get("A", PrefetcherTest::fallback)).isEqualTo("value of A");
+    assertThat(underTest.get("B", PrefetcherTest::fallback)).isNull();
+  }
+
+  @Test
+  public void use_fallback_for_unknown_component() {
+    underTest = newPrefetcher(false);
+
+    assertThat(underTest.get("Z", PrefetcherTest::fallback)).isEqualTo("fallback of Z");
+    assertThat(loadedBatches).isEmpty();
+  }
+
+  @Test
+  public void discard_skipped_components() {
+    underTest = newPrefetcher(false);
+
+    assertThat(underTest.get("C", PrefetcherTest::fallback)).isEqualTo("value of C");
+    assertThat(underTest.get("A", PrefetcherTest::fallback)).isEqualTo("fallback of A");
+    assertThat(underTest.get("C", PrefetcherTest::fallback)).isEqualTo("fallback of C");
+    assertThat(underTest.get("D", PrefetcherTest::fallback)).isEqualTo("value of D");
+  }
+
+  @Test
+  public void retain_skipped_components() {
+    underTest = newPrefetcher(true);
+
+    assertThat(underTest.get("C", PrefetcherTest::fallback)).isEqualTo("value of C");
+    assertThat(underTest.get("A", PrefetcherTest::fallback)).isEqualTo("value of A");
+    assertThat(underTest.get("B", PrefetcherTest::fallback)).isEqualTo("value of B");
+    assertThat(underTest.get("A", PrefetcherTest::fallback)).isEqualTo("fallback of A");
+  }
+
+  @Test
+  public void fail_if_batch_can_not_be_loaded_then_use_fallback() {
+    underTest = new Prefetcher<>("test", dbClient, UUIDS, 2, false, (dbSession, uuids) -> {
+      throw new IllegalArgumentException("boom");
+    });
+
+    try {
+      underTest.get("A", PrefetcherTest::fallback);
+      fail("An IllegalStateException should be thrown");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to prefetch test").hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+    assertThat(underTest.get("B", PrefetcherTest::fallback)).isEqualTo("fallback of B");
+  }
+
+  private Prefetcher<String> newPrefetcher(boolean retainSkipped) {
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+    return new Prefetcher<>("test", dbClient, UUIDS, 2, retainSkipped, (dbSession, uuids) -> {
+      loadedBatches.add(new ArrayList<>(uuids));
+      Map<String, String> result = new HashMap<>();
+      uuids.forEach(uuid -> result.put(uuid, "value of " + uuid));
+      return result;
+    });
+  }
+
+  private static String fallback(String uuid) {
+    return "fallback of " + uuid;
+  }
+}
@@ -59,6 +59,43 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void send_pending_requests_without_waiting_for_them() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    assertThat(indexer.isAcknowledged(indexer.sendPending())).isTrue();
+
+    indexer.add(newIndexRequest(42));
+    long marker = indexer.sendPending();
+    for (int i = 0; i < 100 && !indexer.isAcknowledged(marker); i++) {
+      Thread.sleep(50L);
+    }
+
+    assertThat(indexer.isAcknowledged(marker)).isTrue();
+    indexer.stop();
+    assertThat(count()).isEqualTo(1);
+  }
+
+  @Test
+  public void never_acknowledge_failed_requests() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    long acknowledgedMarker = indexer.sendPending();
+    // value is not an integer
+    indexer.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)
+      .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, "foo")));
+    long failedMarker = indexer.sendPending();
+    indexer.add(newIndexRequest(43));
+    long nextMarker = indexer.sendPending();
+    indexer.stop();
+
+    assertThat(indexer.isAcknowledged(acknowledgedMarker)).isTrue();
+    assertThat(indexer.isAcknowledged(failedMarker)).isFalse();
+    assertThat(indexer.isAcknowledged(nextMarker)).isFalse();
+    assertThat(count()).isEqualTo(2);
+  }
+
   @Test
   public void large_indexing() {
     // index has one replica
@@ -102,6 +139,40 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(removeFrom);
   }
 
+  @Test
+  public void bulk_delete_documents_of_multiple_scroll_pages() throws Exception {
+    FakeDoc[] docs = new FakeDoc[1_000];
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = FakeIndexDefinition.newDoc(i);
+    }
+    esTester.putDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, docs);
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX).setFlushByteSize(500);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch(FakeIndexDefinition.INDEX).setTypes(FakeIndexDefinition.TYPE)
+      .setQuery(QueryBuilders.rangeQuery(FakeIndexDefinition.INT_FIELD).gte(10)));
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(10);
+  }
+
+  @Test
+  public void record_statistics_of_index() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX).setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    BulkIndexerStatistics.IndexStatistics statistics = esTester.client().getBulkIndexerStatistics().getByIndex().get(FakeIndexDefinition.INDEX);
+    assertThat(statistics.getDocuments()).isEqualTo(10);
+    assertThat(statistics.getBytes()).isGreaterThan(0);
+    assertThat(statistics.getRetries()).isEqualTo(0);
+    assertThat(statistics.getFailures()).isEqualTo(0);
+    assertThat(esTester.client().getBulkIndexerStatistics().getDocuments()).isEqualTo(10);
+  }
+
   private long count() {
     return esTester.countDocuments("fakes", "fake");
   }
@@ -0,0 +1,87 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkSizeTest {
+
+  @Test
+  public void increase_size_when_responses_are_fast() {
+    BulkSize underTest = BulkSize.adaptive();
+    assertThat(underTest.get()).isEqualTo(BulkSize.INITIAL_BYTES);
+
+    underTest.onResponse(10L);
+    assertThat(underTest.get()).isEqualTo(BulkSize.INITIAL_BYTES * 3 / 2);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.onResponse(10L);
+    }
+    assertThat(underTest.get()).isEqualTo(BulkSize.MAX_BYTES);
+  }
+
+  @Test
+  public void keep_size_when_responses_are_close_to_target_latency() {
+    BulkSize underTest = BulkSize.adaptive();
+
+    underTest.onResponse(BulkSize.TARGET_LATENCY_MS);
+
+    assertThat(underTest.get()).isEqualTo(BulkSize.INITIAL_BYTES);
+  }
+
+  @Test
+  public void decrease_size_when_responses_are_slow() {
+    BulkSize underTest = BulkSize.adaptive();
+
+    underTest.onResponse(BulkSize.TARGET_LATENCY_MS + 1);
+    assertThat(underTest.get()).isEqualTo(BulkSize.INITIAL_BYTES * 3 / 4);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.onResponse(10_000L);
+    }
+    assertThat(underTest.get()).isEqualTo(BulkSize.MIN_BYTES);
+  }
+
+  @Test
+  public void halve_size_when_requests_are_rejected() {
+    BulkSize underTest = BulkSize.adaptive();
+
+    underTest.onRejection();
+    assertThat(underTest.get()).isEqualTo(BulkSize.INITIAL_BYTES / 2);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.onRejection();
+    }
+    assertThat(underTest.get()).isEqualTo(BulkSize.MIN_BYTES);
+  }
+
+  @Test
+  public void fixed_size_does_not_change() {
+    BulkSize underTest = BulkSize.fixed(500L);
+
+    underTest.onResponse(10L);
+    underTest.onRejection();
+    underTest.onResponse(10_000L);
+
+    assertThat(underTest.get()).isEqualTo(500L);
+  }
+}
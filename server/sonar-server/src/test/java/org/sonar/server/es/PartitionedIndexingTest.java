@@ -0,0 +1,180 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.sonar.db.user.UserTesting.newUserDto;
+
+public class PartitionedIndexingTest {
+
+  private static final String PROPERTY = "es.partitions." + FakeIndexDefinition.INDEX;
+  private static final long PARTITION_SIZE = 2L;
+
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private DbClient dbClient = dbTester.getDbClient();
+  private List<Long> indexedPartitions = Collections.synchronizedList(new ArrayList<>());
+  private long firstPartition;
+  private long lastId;
+  private PartitionedIndexing underTest = new PartitionedIndexing(dbClient, FakeIndexDefinition.INDEX, "users")
+    .setPartitionSize(PARTITION_SIZE)
+    .setThreads(2);
+
+  @Before
+  public void setUp() {
+    // ids are not reset between tests, but 5 consecutive ids are always in 3 partitions of size 2
+    long firstId = dbTester.users().insertUser(newUserDto()).getId();
+    for (int i = 1; i < 5; i++) {
+      lastId = dbTester.users().insertUser(newUserDto()).getId();
+    }
+    firstPartition = firstId / PARTITION_SIZE;
+  }
+
+  @Test
+  public void index_all_partitions() {
+    long result = underTest.index(new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX), this::indexIds);
+
+    assertThat(indexedPartitions).containsOnly(firstPartition, firstPartition + 1, firstPartition + 2);
+    assertThat(result).isEqualTo(lastId);
+    assertThat(esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)).isEqualTo(5);
+    assertThat(underTest.isInterrupted()).isFalse();
+    assertThat(dbClient.internalPropertiesDao().selectByKey(dbTester.getSession(), PROPERTY)).isEmpty();
+  }
+
+  @Test
+  public void resume_interrupted_indexing() {
+    dbClient.internalPropertiesDao().save(dbTester.getSession(), PROPERTY, firstPartition + "," + (firstPartition + 2));
+    dbTester.commit();
+    assertThat(underTest.isInterrupted()).isTrue();
+
+    underTest.index(new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX), this::indexIds);
+
+    assertThat(indexedPartitions).containsOnly(firstPartition + 1);
+    assertThat(esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)).isEqualTo(2);
+    assertThat(underTest.isInterrupted()).isFalse();
+  }
+
+  @Test
+  public void reset_forgets_interrupted_indexing() {
+    dbClient.internalPropertiesDao().save(dbTester.getSession(), PROPERTY, firstPartition + "," + (firstPartition + 2));
+    dbTester.commit();
+
+    underTest.reset();
+    assertThat(underTest.isInterrupted()).isFalse();
+
+    underTest.index(new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX), this::indexIds);
+    assertThat(indexedPartitions).containsOnly(firstPartition, firstPartition + 1, firstPartition + 2);
+  }
+
+  @Test
+  public void record_indexed_partitions_when_a_partition_fails() {
+    underTest.setThreads(1);
+    try {
+      underTest.index(new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX), (dbSession, fromId, toId, bulk) -> {
+        if (fromId == (firstPartition + 2) * PARTITION_SIZE) {
+          throw new IllegalStateException("BOOM");
+        }
+        return indexIds(dbSession, fromId, toId, bulk);
+      });
+      fail("An exception should be raised");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index " + FakeIndexDefinition.INDEX);
+      assertThat(e.getCause()).hasMessage("BOOM");
+    }
+
+    assertThat(underTest.isInterrupted()).isTrue();
+    assertThat(dbClient.internalPropertiesDao().selectByKey(dbTester.getSession(), PROPERTY)).contains(firstPartition + "," + (firstPartition + 1));
+    // users of the two first partitions
+    assertThat(esTester.countDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE)).isEqualTo(5 - (lastId % PARTITION_SIZE + 1));
+  }
+
+  @Test
+  public void do_not_record_partitions_of_failed_documents() {
+    underTest.setThreads(1);
+    underTest.index(new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX), (dbSession, fromId, toId, bulk) -> {
+      if (fromId == (firstPartition + 1) * PARTITION_SIZE) {
+        // value is not an integer
+        bulk.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, "failed")
+          .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, "foo")));
+      }
+      return indexIds(dbSession, fromId, toId, bulk);
+    });
+
+    // partitions are indexed sequentially, so the bulk requests of the last partition follow the failed one
+    assertThat(underTest.isInterrupted()).isTrue();
+    assertThat(dbClient.internalPropertiesDao().selectByKey(dbTester.getSession(), PROPERTY)).contains(String.valueOf(firstPartition));
+  }
+
+  @Test
+  public void do_nothing_if_table_is_empty() {
+    PartitionedIndexing underTest = new PartitionedIndexing(dbClient, FakeIndexDefinition.INDEX, "rules");
+
+    long result = underTest.index(new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX), this::indexIds);
+
+    assertThat(result).isEqualTo(0L);
+    assertThat(indexedPartitions).isEmpty();
+    assertThat(underTest.isInterrupted()).isFalse();
+  }
+
+  @Test
+  public void fail_if_number_of_threads_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of threads must be positive");
+
+    underTest.setThreads(0);
+  }
+
+  /**
+   * Indexes one document per user, which value is the id of user
+   */
+  private long indexIds(DbSession dbSession, long fromId, long toId, BulkIndexer bulk) {
+    indexedPartitions.add(fromId / PARTITION_SIZE);
+    long max = 0L;
+    List<Map<String, Object>> rows = dbTester.select(dbSession, "select id as \"id\" from users where id>=" + fromId + " and id<" + toId);
+    for (Map<String, Object> row : rows) {
+      long id = (Long) row.get("id");
+      bulk.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, String.valueOf(id))
+        .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, id)));
+      max = Math.max(max, id);
+    }
+    return max;
+  }
+}
@@ -81,6 +81,18 @@ public class IssueIndexerTest {
     assertThat(doc.getTechnicalUpdateDate().getTime()).isEqualTo(1550000000000L);
   }
 
+  @Test
+  public void index_all_issues_if_index_is_empty_even_if_previous_indexing_has_been_interrupted() {
+    dbTester.prepareDbUnit(getClass(), "index.xml");
+    dbTester.getDbClient().internalPropertiesDao().save(dbTester.getSession(), "es.partitions.issues", "0");
+    dbTester.commit();
+
+    underTest.index();
+
+    verifyIssueKeys("ABCDE");
+    assertThat(dbTester.getDbClient().internalPropertiesDao().selectByKey(dbTester.getSession(), "es.partitions.issues")).isEmpty();
+  }
+
   @Test
   public void indexProject_creates_docs_of_specific_project() {
     dbTester.prepareDbUnit(getClass(), "index_project.xml");
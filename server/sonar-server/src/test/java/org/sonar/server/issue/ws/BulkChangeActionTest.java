@@ -23,7 +23,6 @@ import com.google.common.base.Throwables;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.junit.Before;
 import org.junit.Rule;
@@ -430,15 +429,25 @@ public class BulkChangeActionTest {
   }
 
   @Test
-  public void fail_when_number_of_issues_is_more_than_500() throws Exception {
-    userSession.logIn("john");
-    expectedException.expectMessage("Number of issues is limited to 500");
-    expectedException.expect(IllegalArgumentException.class);
+  public void bulk_change_more_than_500_issues_by_batches() throws Exception {
+    setUserProjectPermissions(USER, ISSUE_ADMIN);
+    IssueDto issue1 = db.issues().insertIssue(newUnresolvedIssue().setSeverity(MAJOR));
+    IssueDto issue2 = db.issues().insertIssue(newUnresolvedIssue().setSeverity(MAJOR));
+    List<String> issueKeys = new ArrayList<>();
+    issueKeys.add(issue1.getKey());
+    IntStream.range(0, 510).mapToObj(String::valueOf).forEach(issueKeys::add);
+    // in second batch
+    issueKeys.add(issue2.getKey());
 
-    call(BulkChangeRequest.builder()
-      .setIssues(IntStream.range(0, 510).mapToObj(String::valueOf).collect(Collectors.toList()))
+    BulkChangeWsResponse response = call(BulkChangeRequest.builder()
+      .setIssues(issueKeys)
       .setSetSeverity(MINOR)
       .build());
+
+    checkResponse(response, 2, 2, 0, 0);
+    assertThat(getIssueByKeys(issue1.getKey(), issue2.getKey()))
+      .extracting(IssueDto::getKey, IssueDto::getSeverity)
+      .containsOnly(tuple(issue1.getKey(), MINOR), tuple(issue2.getKey(), MINOR));
   }
 
   @Test
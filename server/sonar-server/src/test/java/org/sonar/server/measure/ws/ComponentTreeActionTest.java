@@ -55,6 +55,7 @@ import org.sonarqube.ws.WsMeasures;
 import org.sonarqube.ws.WsMeasures.ComponentTreeWsResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.measures.CoreMetrics.NEW_SECURITY_RATING_KEY;
 import static org.sonar.api.utils.DateUtils.parseDateTime;
 import static org.sonar.db.component.ComponentTesting.newDevProjectCopy;
@@ -290,6 +291,40 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(9);
   }
 
+  @Test
+  public void load_all_measures_of_components_of_page_sorted_by_metric() {
+    ComponentDto projectDto = newProjectDto(db.getDefaultOrganization(), "project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3"));
+    MetricDto ncloc = newMetricDtoWithoutOptimization().setKey("ncloc").setValueType(ValueType.INT.name()).setDirection(1);
+    MetricDto complexity = newMetricDtoWithoutOptimization().setKey("complexity").setValueType(ValueType.INT.name()).setDirection(1);
+    dbClient.metricDao().insert(dbSession, ncloc, complexity);
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(ncloc, projectDto, projectSnapshot).setValue(60.0d),
+      newMeasureDto(ncloc, file1, projectSnapshot).setValue(30.0d),
+      newMeasureDto(ncloc, file2, projectSnapshot).setValue(10.0d),
+      newMeasureDto(ncloc, file3, projectSnapshot).setValue(20.0d),
+      newMeasureDto(complexity, file1, projectSnapshot).setValue(3.0d),
+      newMeasureDto(complexity, file2, projectSnapshot).setValue(1.0d),
+      newMeasureDto(complexity, file3, projectSnapshot).setValue(2.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "ncloc")
+      .setParam(PARAM_METRIC_KEYS, "ncloc,complexity")
+      .setParam(Param.PAGE, "2")
+      .setParam(Param.PAGE_SIZE, "1"));
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-3");
+    assertThat(response.getComponents(0).getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "20"), tuple("complexity", "2"));
+    assertThat(response.getBaseComponent().getMeasuresList()).extracting("metric", "value").containsOnly(tuple("ncloc", "60"));
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+  }
+
   @Test
   public void sort_by_metric_value() {
     ComponentDto projectDto = newProjectDto(db.getDefaultOrganization(), "project-uuid");
@@ -24,6 +24,7 @@ import com.google.common.collect.Multimap;
 import java.io.InvalidClassException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.junit.Before;
@@ -41,6 +42,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -94,29 +96,39 @@ public class DefaultNotificationManagerTest {
 
   @Test
   public void shouldGetFromQueueAndDelete() {
-    Notification notification = new Notification("test");
-    NotificationQueueDto dto = NotificationQueueDto.toNotificationQueueDto(notification);
-    List<NotificationQueueDto> dtos = Arrays.asList(dto);
-    when(notificationQueueDao.selectOldest(1)).thenReturn(dtos);
+    Notification notification1 = new Notification("test").setFieldValue("key", "1");
+    Notification notification2 = new Notification("test").setFieldValue("key", "2");
+    List<NotificationQueueDto> dtos = Arrays.asList(NotificationQueueDto.toNotificationQueueDto(notification1), NotificationQueueDto.toNotificationQueueDto(notification2));
+    when(notificationQueueDao.selectOldest(10)).thenReturn(dtos);
 
-    assertThat(manager.getFromQueue()).isNotNull();
+    assertThat(manager.getFromQueue(10)).containsExactly(notification1, notification2);
 
     InOrder inOrder = inOrder(notificationQueueDao);
-    inOrder.verify(notificationQueueDao).selectOldest(1);
+    inOrder.verify(notificationQueueDao).selectOldest(10);
     inOrder.verify(notificationQueueDao).delete(dtos);
   }
 
+  @Test
+  public void shouldGetEmptyListFromEmptyQueue() {
+    when(notificationQueueDao.selectOldest(10)).thenReturn(Collections.emptyList());
+
+    assertThat(manager.getFromQueue(10)).isEmpty();
+
+    verify(notificationQueueDao, never()).delete(any(List.class));
+  }
+
   // SONAR-4739
   @Test
   public void shouldNotFailWhenUnableToDeserialize() throws Exception {
     NotificationQueueDto dto1 = mock(NotificationQueueDto.class);
     when(dto1.toNotification()).thenThrow(new InvalidClassException("Pouet"));
-    List<NotificationQueueDto> dtos = Arrays.asList(dto1);
-    when(notificationQueueDao.selectOldest(1)).thenReturn(dtos);
+    Notification notification = new Notification("test");
+    List<NotificationQueueDto> dtos = Arrays.asList(dto1, NotificationQueueDto.toNotificationQueueDto(notification));
+    when(notificationQueueDao.selectOldest(10)).thenReturn(dtos);
 
     manager = spy(manager);
-    assertThat(manager.getFromQueue()).isNull();
-    assertThat(manager.getFromQueue()).isNull();
+    assertThat(manager.getFromQueue(10)).containsExactly(notification);
+    assertThat(manager.getFromQueue(10)).containsExactly(notification);
 
     verify(manager, times(1)).logDeserializationIssue();
   }
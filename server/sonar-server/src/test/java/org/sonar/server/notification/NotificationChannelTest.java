@@ -19,10 +19,13 @@
  */
 package org.sonar.server.notification;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class NotificationChannelTest {
@@ -34,9 +37,23 @@ public class NotificationChannelTest {
     assertThat(channel.toString()).isEqualTo("FakeNotificationChannel");
   }
 
+  @Test
+  public void deliver_notifications_one_by_one_by_default() {
+    FakeNotificationChannel channel = new FakeNotificationChannel();
+    Notification first = new Notification("first");
+    Notification second = new Notification("second");
+
+    channel.deliver(asList(first, second), "simon");
+
+    assertThat(channel.delivered).containsExactly(first, second);
+  }
+
   private class FakeNotificationChannel extends NotificationChannel {
+    private final List<Notification> delivered = new ArrayList<>();
+
     @Override
     public void deliver(Notification notification, String username) {
+      delivered.add(notification);
     }
   }
 
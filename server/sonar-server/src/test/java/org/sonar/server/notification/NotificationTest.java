@@ -24,6 +24,7 @@ import org.junit.Test;
 import org.sonar.api.notifications.Notification;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 public class NotificationTest {
 
@@ -61,6 +62,11 @@ public class NotificationTest {
     assertThat(notification.getFieldValue("default_message")).isEqualTo("There are new alerts");
   }
 
+  @Test
+  public void shouldReturnAllFields() {
+    assertThat(notification.getFieldValues()).containsOnly(entry("alertCount", "42"), entry("default_message", "There are new alerts"));
+  }
+
   @Test
   public void shouldEqual() {
     assertThat(notification.equals("")).isFalse();
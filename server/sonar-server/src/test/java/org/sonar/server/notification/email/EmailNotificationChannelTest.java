@@ -28,10 +28,15 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.EmailSettings;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.user.UserFinder;
+import org.sonar.core.user.DefaultUser;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
+import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 import org.subethamail.wiser.Wiser;
 import org.subethamail.wiser.WiserMessage;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.fail;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -169,6 +174,43 @@ public class EmailNotificationChannelTest {
     underTest.deliver(emailMessage);
   }
 
+  @Test
+  public void shouldSendDigestOfNotifications() throws Exception {
+    configure();
+    underTest = newChannelWithTemplateAndUser();
+
+    underTest.deliver(asList(new Notification("test").setFieldValue("key", "1"), new Notification("unknown"), new Notification("test").setFieldValue("key", "2")), "simon");
+
+    List<WiserMessage> messages = smtpServer.getMessages();
+    assertThat(messages).hasSize(1);
+    MimeMessage email = messages.get(0).getMimeMessage();
+    assertThat(email.getHeader("To", null)).isEqualTo("<simon@nowhere>");
+    assertThat(email.getHeader("Subject", null)).isEqualTo("[SONARQUBE] 2 notifications");
+    assertThat((String) email.getContent()).contains("Issue 1", "Content of 1", "Issue 2", "Content of 2");
+  }
+
+  @Test
+  public void shouldSendSingleNotificationWithoutDigest() throws Exception {
+    configure();
+    underTest = newChannelWithTemplateAndUser();
+
+    underTest.deliver(asList(new Notification("test").setFieldValue("key", "1"), new Notification("unknown")), "simon");
+
+    List<WiserMessage> messages = smtpServer.getMessages();
+    assertThat(messages).hasSize(1);
+    assertThat(messages.get(0).getMimeMessage().getHeader("Subject", null)).isEqualTo("[SONARQUBE] Issue 1");
+  }
+
+  @Test
+  public void shouldNotSendDigestToUserWithoutEmail() {
+    configure();
+    underTest = newChannelWithTemplateAndUser();
+
+    underTest.deliver(asList(new Notification("test").setFieldValue("key", "1"), new Notification("test").setFieldValue("key", "2")), "unknown");
+
+    assertThat(smtpServer.getMessages()).isEmpty();
+  }
+
   @Test
   public void shouldSendTestEmailWithSTARTTLS() {
     smtpServer.getServer().setEnableTLS(true);
@@ -185,6 +227,22 @@ public class EmailNotificationChannelTest {
     }
   }
 
+  private EmailNotificationChannel newChannelWithTemplateAndUser() {
+    EmailTemplate template = new EmailTemplate() {
+      @Override
+      public EmailMessage format(Notification notification) {
+        if (!"test".equals(notification.getType())) {
+          return null;
+        }
+        String key = notification.getFieldValue("key");
+        return new EmailMessage().setSubject("Issue " + key).setMessage("Content of " + key);
+      }
+    };
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("simon")).thenReturn(new DefaultUser().setLogin("simon").setEmail("simon@nowhere"));
+    return new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+  }
+
   private void configure() {
     when(configuration.getSmtpHost()).thenReturn("localhost");
     when(configuration.getSmtpPort()).thenReturn(smtpServer.getServer().getPort());
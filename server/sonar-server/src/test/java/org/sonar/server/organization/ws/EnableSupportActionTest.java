@@ -34,10 +34,13 @@ import org.sonar.server.organization.OrganizationFlags;
 import org.sonar.server.organization.OrganizationFlagsImpl;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.sonar.core.permission.GlobalPermissions.SYSTEM_ADMIN;
 
 public class EnableSupportActionTest {
@@ -51,7 +54,8 @@ public class EnableSupportActionTest {
 
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
   private OrganizationFlags organizationFlags = new OrganizationFlagsImpl(db.getDbClient());
-  private EnableSupportAction underTest = new EnableSupportAction(userSession, db.getDbClient(), defaultOrganizationProvider, organizationFlags);
+  private UserSessionCache userSessionCache = mock(UserSessionCache.class);
+  private EnableSupportAction underTest = new EnableSupportAction(userSession, db.getDbClient(), defaultOrganizationProvider, organizationFlags, userSessionCache);
   private WsActionTester tester = new WsActionTester(underTest);
 
   @Test
@@ -68,6 +72,7 @@ public class EnableSupportActionTest {
     verifyFeatureEnabled(true);
     verifyRoot(user, true);
     verifyRoot(otherUser, false);
+    verify(userSessionCache).invalidateUser(user.getLogin());
   }
 
   @Test
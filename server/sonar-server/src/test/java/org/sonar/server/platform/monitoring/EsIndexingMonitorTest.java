@@ -0,0 +1,66 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.server.es.BulkIndexer;
+import org.sonar.server.es.EsTester;
+import org.sonar.server.es.FakeIndexDefinition;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EsIndexingMonitorTest {
+
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+
+  private EsIndexingMonitor underTest = new EsIndexingMonitor(esTester.client());
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("ElasticsearchIndexing");
+  }
+
+  @Test
+  public void no_attributes_if_nothing_has_been_indexed() {
+    assertThat(underTest.attributes()).isEmpty();
+    assertThat(underTest.getDocuments()).isEqualTo(0);
+  }
+
+  @Test
+  public void attributes_of_indexed_indices() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(new IndexRequest(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE).source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, 42)));
+    indexer.stop();
+
+    assertThat(underTest.getDocuments()).isEqualTo(1);
+    assertThat(underTest.getBytes()).isGreaterThan(0);
+    assertThat(underTest.getRetries()).isEqualTo(0);
+    assertThat(underTest.getFailures()).isEqualTo(0);
+    Map indexAttributes = (Map) underTest.attributes().get(FakeIndexDefinition.INDEX);
+    assertThat(indexAttributes.get("Documents")).isEqualTo(1L);
+    assertThat(indexAttributes).containsKeys("Documents/sec", "Size", "Size/sec", "Retries", "Failures");
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.server.source.SourceCache;
+import org.sonar.server.source.index.FileSourceTesting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class SourceCacheMonitorTest {
+
+  private SourceCache sourceCache = new SourceCache(new MapSettings());
+  private SourceCacheMonitor underTest = new SourceCacheMonitor(sourceCache);
+
+  @Test
+  public void name() throws Exception {
+    assertThat(underTest.name()).isEqualTo("SourceCache");
+  }
+
+  @Test
+  public void attributes() throws Exception {
+    sourceCache.put("FILE1", "HASH1", FileSourceTesting.newFakeData(3).build());
+    sourceCache.get("FILE1", "HASH1");
+    sourceCache.get("FILE2", "HASH1");
+
+    assertThat(underTest.getHits()).isEqualTo(1);
+    assertThat(underTest.getMisses()).isEqualTo(1);
+    assertThat(underTest.getEvictions()).isEqualTo(0);
+    assertThat(underTest.getEntries()).isEqualTo(1);
+    assertThat(underTest.getSizeInBytes()).isGreaterThan(0);
+    assertThat(underTest.attributes()).contains(
+      entry("Enabled", true),
+      entry("Hits", 1L),
+      entry("Misses", 1L),
+      entry("Entries", 1L),
+      entry("Max Size", "50 MB"));
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.server.user.UserSessionCache;
+
+import static java.util.Collections.emptySet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class UserSessionCacheMonitorTest {
+
+  private UserSessionCache userSessionCache = new UserSessionCache(new MapSettings());
+  private UserSessionCacheMonitor underTest = new UserSessionCacheMonitor(userSessionCache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("UserSessionCache");
+  }
+
+  @Test
+  public void attributes() {
+    userSessionCache.getProjectPermissions("ada", "PROJECT1", () -> emptySet());
+    userSessionCache.getProjectPermissions("ada", "PROJECT1", () -> emptySet());
+    userSessionCache.getProjectPermissions("ada", "PROJECT1", () -> emptySet());
+    userSessionCache.getProjectPermissions("ada", "PROJECT2", () -> emptySet());
+
+    assertThat(underTest.getHits()).isEqualTo(2);
+    assertThat(underTest.getMisses()).isEqualTo(2);
+    assertThat(underTest.getHitRatio()).isEqualTo(0.5);
+    assertThat(underTest.getEvictions()).isEqualTo(0);
+    assertThat(underTest.getEntries()).isEqualTo(2);
+    assertThat(underTest.attributes()).contains(
+      entry("Enabled", true),
+      entry("Hits", 2L),
+      entry("Misses", 2L),
+      entry("Hit Ratio", 0.5),
+      entry("Entries", 2L));
+  }
+}
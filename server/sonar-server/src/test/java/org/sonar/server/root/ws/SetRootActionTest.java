@@ -23,6 +23,7 @@ import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
@@ -33,6 +34,7 @@ import org.sonar.db.user.UserTesting;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 
@@ -50,7 +52,7 @@ public class SetRootActionTest {
 
   private UserDao userDao = dbTester.getDbClient().userDao();
   private DbSession dbSession = dbTester.getSession();
-  private SetRootAction underTest = new SetRootAction(userSessionRule, dbTester.getDbClient());
+  private SetRootAction underTest = new SetRootAction(userSessionRule, dbTester.getDbClient(), new UserSessionCache(new MapSettings()));
   private WsActionTester wsTester = new WsActionTester(underTest);
 
   @Test
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableMap;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.db.DbTester;
 import org.sonar.db.property.PropertyDto;
 
@@ -36,7 +37,8 @@ public class DatabaseSettingLoaderTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
-  private DatabaseSettingLoader underTest = new DatabaseSettingLoader(dbTester.getDbClient());
+  private TestSystem2 system2 = new TestSystem2().setNow(1_000L);
+  private DatabaseSettingLoader underTest = new DatabaseSettingLoader(dbTester.getDbClient(), system2);
 
   @Test
   public void test_load() {
@@ -65,14 +67,66 @@ public class DatabaseSettingLoaderTest {
    assertThat(map.build().isEmpty()).isTrue();
   }
 
- @Test
- public void test_loadAll() {
-  insertPropertyIntoDb("foo", "1");
-  insertPropertyIntoDb("bar", "2");
-  ImmutableMap.Builder<String, String> map = ImmutableMap.builder();
-  underTest.loadAll(map);
-  assertThat(map.build()).containsOnly(entry("foo", "1"), entry("bar", "2"));
- }
+  @Test
+  public void test_loadAll() {
+    insertPropertyIntoDb("foo", "1");
+    insertPropertyIntoDb("bar", "2");
+    ImmutableMap.Builder<String, String> map = ImmutableMap.builder();
+    underTest.loadAll(map);
+    assertThat(map.build()).containsOnly(entry("foo", "1"), entry("bar", "2"));
+  }
+
+  @Test
+  public void changes_are_loaded_once_version_is_checked() {
+    insertPropertyIntoDb(A_KEY, "foo");
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+
+    insertPropertyIntoDb(A_KEY, "bar");
+    insertPropertyIntoDb("other", "baz");
+    // snapshot is kept until next check of version
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+    assertThat(underTest.load("other")).isNull();
+
+    system2.setNow(1_000L + DatabaseSettingLoader.VERSION_CHECK_INTERVAL_MS);
+    assertThat(underTest.load(A_KEY)).isEqualTo("bar");
+    assertThat(underTest.load("other")).isEqualTo("baz");
+  }
+
+  @Test
+  public void refresh_forces_check_of_version() {
+    insertPropertyIntoDb(A_KEY, "foo");
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+
+    dbTester.getDbClient().propertiesDao().deleteGlobalProperty(A_KEY);
+    underTest.refresh();
+
+    assertThat(underTest.load(A_KEY)).isNull();
+  }
+
+  @Test
+  public void refresh_reloads_properties_even_if_version_did_not_change() {
+    insertPropertyIntoDb(A_KEY, "foo");
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+
+    dbTester.executeUpdateSql("update properties set text_value='bar' where prop_key='" + A_KEY + "'");
+    dbTester.commit();
+    underTest.refresh();
+
+    assertThat(underTest.load(A_KEY)).isEqualTo("bar");
+  }
+
+  @Test
+  public void renamed_properties_are_loaded_once_version_is_checked() {
+    insertPropertyIntoDb(A_KEY, "foo");
+    assertThat(underTest.load(A_KEY)).isEqualTo("foo");
+
+    dbTester.executeUpdateSql("update properties set prop_key='new_key', created_at=created_at+1 where prop_key='" + A_KEY + "'");
+    dbTester.commit();
+    system2.setNow(1_000L + DatabaseSettingLoader.VERSION_CHECK_INTERVAL_MS);
+
+    assertThat(underTest.load(A_KEY)).isNull();
+    assertThat(underTest.load("new_key")).isEqualTo("foo");
+  }
 
   private void insertPropertyIntoDb(String key, String value) {
     dbTester.getDbClient().propertiesDao().saveProperty(new PropertyDto().setKey(key).setValue(value));
@@ -41,6 +41,7 @@ import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.i18n.I18nRule;
+import org.sonar.server.platform.SettingsChangeNotifier;
 import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.TestResponse;
@@ -49,6 +50,9 @@ import org.sonarqube.ws.MediaTypes;
 
 import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.sonar.api.resources.Qualifiers.PROJECT;
 import static org.sonar.api.resources.Qualifiers.VIEW;
 import static org.sonar.api.web.UserRole.ADMIN;
@@ -78,8 +82,9 @@ public class ResetActionTest {
   private PropertyDefinitions definitions = new PropertyDefinitions();
   private SettingsUpdater settingsUpdater = new SettingsUpdater(dbClient, definitions);
   private SettingValidations settingValidations = new SettingValidations(definitions, dbClient, i18n);
+  private SettingsChangeNotifier settingsChangeNotifier = mock(SettingsChangeNotifier.class);
   private ComponentDto project;
-  private ResetAction underTest = new ResetAction(dbClient, componentFinder, settingsUpdater, userSession, definitions, settingValidations);
+  private ResetAction underTest = new ResetAction(dbClient, componentFinder, settingsUpdater, userSession, definitions, settingValidations, settingsChangeNotifier);
   private WsActionTester ws = new WsActionTester(underTest);
 
   @Before
@@ -95,6 +100,7 @@ public class ResetActionTest {
 
     executeRequestOnGlobalSetting("foo");
     assertGlobalPropertyDoesNotExist("foo");
+    verify(settingsChangeNotifier).onGlobalPropertyChange("foo", null);
   }
 
   @Test
@@ -114,6 +120,7 @@ public class ResetActionTest {
 
     executeRequestOnProjectSetting("foo");
     assertProjectPropertyDoesNotExist("foo");
+    verifyZeroInteractions(settingsChangeNotifier);
   }
 
   @Test
@@ -0,0 +1,64 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.protobuf.DbFileSources.HighlightingType;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecorationRangesTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void css_class_of_highlighting_types() {
+    assertThat(DecorationRanges.cssClass(HighlightingType.ANNOTATION_VALUE)).isEqualTo("a");
+    assertThat(DecorationRanges.cssClass(HighlightingType.CONSTANT_VALUE)).isEqualTo("c");
+    assertThat(DecorationRanges.cssClass(HighlightingType.COMMENT_VALUE)).isEqualTo("cd");
+    assertThat(DecorationRanges.cssClass(HighlightingType.CPP_DOC_VALUE)).isEqualTo("cppd");
+    assertThat(DecorationRanges.cssClass(HighlightingType.STRUCTURED_COMMENT_VALUE)).isEqualTo("j");
+    assertThat(DecorationRanges.cssClass(HighlightingType.KEYWORD_VALUE)).isEqualTo("k");
+    assertThat(DecorationRanges.cssClass(HighlightingType.KEYWORD_LIGHT_VALUE)).isEqualTo("h");
+    assertThat(DecorationRanges.cssClass(HighlightingType.HIGHLIGHTING_STRING_VALUE)).isEqualTo("s");
+    assertThat(DecorationRanges.cssClass(HighlightingType.PREPROCESS_DIRECTIVE_VALUE)).isEqualTo("p");
+  }
+
+  @Test
+  public void fail_on_unknown_highlighting_type() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unknown highlighting type 42");
+
+    DecorationRanges.cssClass(42);
+  }
+
+  @Test
+  public void convert_ranges_to_former_format() {
+    assertThat(DecorationRanges.toHighlightingString(asList(0, 7, HighlightingType.KEYWORD_VALUE, 8, 12, HighlightingType.COMMENT_VALUE))).isEqualTo("0,7,k;8,12,cd");
+    assertThat(DecorationRanges.toSymbolsString(asList(8, 17, 42, 20, 22, 1))).isEqualTo("8,17,42;20,22,1");
+    assertThat(DecorationRanges.toHighlightingString(emptyList())).isEmpty();
+    assertThat(DecorationRanges.toSymbolsString(emptyList())).isEmpty();
+  }
+}
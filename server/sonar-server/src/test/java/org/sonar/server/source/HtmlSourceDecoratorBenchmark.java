@@ -0,0 +1,153 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.protobuf.DbFileSources.HighlightingType;
+
+/**
+ * Compares the decoration of lines stored with highlighting and symbol ranges with the decoration of lines
+ * stored in the former string format. Run with the method {@link #main(String[])} from the directory of the
+ * module. Source is the file of the project tests/perf/projects/huge-file, highlighted with a simplified Java
+ * lexer. Sizes of serialized data are logged during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HtmlSourceDecoratorBenchmark {
+
+  private static final File SOURCE_FILE = new File("../../tests/perf/projects/huge-file/src/main/java/huge/HugeFile.java");
+  private static final Pattern TOKEN = Pattern.compile("(//.*)|(/\\*.*?(?:\\*/|$))|(\"[^\"]*\")|(\\b[A-Za-z_]\\w*\\b)");
+  private static final Pattern KEYWORD = Pattern.compile("package|public|private|class|static|int|while|for|if|else|return|null|new|void");
+
+  private HtmlSourceDecorator decorator = new HtmlSourceDecorator();
+  private DbFileSources.Data ranges;
+  private DbFileSources.Data strings;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    ranges = highlight(Files.readAllLines(SOURCE_FILE.toPath(), StandardCharsets.UTF_8));
+    DbFileSources.Data.Builder stringsBuilder = DbFileSources.Data.newBuilder();
+    for (DbFileSources.Line line : ranges.getLinesList()) {
+      stringsBuilder.addLinesBuilder()
+        .setLine(line.getLine())
+        .setSource(line.getSource())
+        .setHighlighting(DecorationRanges.toHighlightingString(line.getHighlightingRangesList()))
+        .setSymbols(DecorationRanges.toSymbolsString(line.getSymbolRangesList()));
+    }
+    strings = stringsBuilder.build();
+    System.out.printf("Bytes of serialized data for %d lines: ranges=%d, strings=%d%n", ranges.getLinesCount(), ranges.getSerializedSize(),
+      strings.getSerializedSize());
+  }
+
+  @Benchmark
+  public void decorate_ranges(Blackhole blackhole) {
+    decorate(ranges, blackhole);
+  }
+
+  @Benchmark
+  public void decorate_strings(Blackhole blackhole) {
+    decorate(strings, blackhole);
+  }
+
+  private void decorate(DbFileSources.Data data, Blackhole blackhole) {
+    for (DbFileSources.Line line : data.getLinesList()) {
+      blackhole.consume(decorator.getDecoratedSourceAsHtml(line));
+    }
+  }
+
+  /**
+   * Keywords, comments and strings are highlighted, each identifier is a symbol
+   */
+  private static DbFileSources.Data highlight(List<String> lines) {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    Map<String, Integer> symbolIds = new HashMap<>();
+    boolean inComment = false;
+    for (int i = 0; i < lines.size(); i++) {
+      String source = lines.get(i);
+      DbFileSources.Line.Builder line = data.addLinesBuilder().setLine(i + 1).setSource(source);
+      int from = 0;
+      if (inComment) {
+        int end = source.indexOf("*/");
+        from = end < 0 ? source.length() : (end + 2);
+        addRange(line, 0, from, HighlightingType.COMMENT_VALUE);
+        inComment = end < 0;
+      }
+      Matcher matcher = TOKEN.matcher(source);
+      while (from < source.length() && matcher.find(from)) {
+        if (matcher.group(2) != null) {
+          inComment = !matcher.group(2).endsWith("*/");
+          addRange(line, matcher.start(), matcher.end(), HighlightingType.COMMENT_VALUE);
+        } else if (matcher.group(1) != null) {
+          addRange(line, matcher.start(), matcher.end(), HighlightingType.COMMENT_VALUE);
+        } else if (matcher.group(3) != null) {
+          addRange(line, matcher.start(), matcher.end(), HighlightingType.HIGHLIGHTING_STRING_VALUE);
+        } else if (KEYWORD.matcher(matcher.group(4)).matches()) {
+          addRange(line, matcher.start(), matcher.end(), HighlightingType.KEYWORD_VALUE);
+        } else {
+          int symbolId = symbolIds.computeIfAbsent(matcher.group(4), k -> symbolIds.size() + 1);
+          line.addSymbolRanges(matcher.start()).addSymbolRanges(matcher.end()).addSymbolRanges(symbolId);
+        }
+        from = matcher.end();
+      }
+    }
+    return data.build();
+  }
+
+  private static void addRange(DbFileSources.Line.Builder line, int startOffset, int endOffset, int type) {
+    if (startOffset < endOffset) {
+      line.addHighlightingRanges(startOffset).addHighlightingRanges(endOffset).addHighlightingRanges(type);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(HtmlSourceDecoratorBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
@@ -19,10 +19,16 @@
  */
 package org.sonar.server.source;
 
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.protobuf.DbFileSources.HighlightingType.ANNOTATION_VALUE;
+import static org.sonar.db.protobuf.DbFileSources.HighlightingType.CONSTANT_VALUE;
+import static org.sonar.db.protobuf.DbFileSources.HighlightingType.CPP_DOC_VALUE;
+import static org.sonar.db.protobuf.DbFileSources.HighlightingType.KEYWORD_VALUE;
 
 public class HtmlSourceDecoratorTest {
 
@@ -75,4 +81,91 @@ public class HtmlSourceDecoratorTest {
     assertThat(sourceDecorator.getDecoratedSourceAsHtml(sourceLine, highlighting, symbols)).isEqualTo("<span class=\"a\">@<span class=\"sym-1 sym\">Deprecated</span></span>");
   }
 
+  @Test
+  public void decorate_line_with_ranges() {
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("package org.polop;", new int[] {0, 7, KEYWORD_VALUE}, new int[] {8, 17, 42})))
+      .isEqualTo("<span class=\"k\">package</span> <span class=\"sym-42 sym\">org.polop</span>;");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("abc", new int[] {0, 5, CONSTANT_VALUE}, new int[0])))
+      .isEqualTo("<span class=\"c\">abc</span>");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("    if (toto < 42) {", new int[0], new int[0])))
+      .isEqualTo("    if (toto &lt; 42) {");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("", new int[] {0, 1, CPP_DOC_VALUE}, new int[0])))
+      .isEqualTo("");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("@Deprecated", new int[] {0, 0, ANNOTATION_VALUE, 0, 11, ANNOTATION_VALUE}, new int[] {1, 11, 1})))
+      .isEqualTo("<span class=\"a\">@<span class=\"sym-1 sym\">Deprecated</span></span>");
+  }
+
+  @Test
+  public void decorate_line_with_empty_and_adjacent_ranges() {
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("abc", new int[0], new int[] {1, 1, 5})))
+      .isEqualTo("abc");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("abc", new int[] {1, 1, KEYWORD_VALUE}, new int[] {0, 0, 5, 3, 3, 6})))
+      .isEqualTo("abc");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("abcdef", new int[] {0, 3, KEYWORD_VALUE, 3, 6, CONSTANT_VALUE}, new int[] {2, 2, 7, 3, 3, 8, 0, 3, 9})))
+      .isEqualTo("<span class=\"k\"><span class=\"sym-9 sym\">abc</span></span><span class=\"c\">def</span>");
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line("abcdef", new int[0], new int[] {0, 2, 1, 2, 4, 2, 4, 6, 3})))
+      .isEqualTo("<span class=\"sym-1 sym\">ab</span><span class=\"sym-2 sym\">cd</span><span class=\"sym-3 sym\">ef</span>");
+  }
+
+  @Test
+  public void decorate_line_in_former_format() {
+    DbFileSources.Line line = DbFileSources.Line.newBuilder()
+      .setSource("package org.polop;")
+      .setHighlighting("0,7,k")
+      .setSymbols("8,17,42")
+      .build();
+
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line))
+      .isEqualTo("<span class=\"k\">package</span> <span class=\"sym-42 sym\">org.polop</span>;");
+  }
+
+  @Test
+  public void decorate_line_with_ranges_like_former_format() {
+    Random random = new Random(42);
+    String source = "a < b && c > d || \"e\" // f";
+    for (int i = 0; i < 1_000; i++) {
+      int[] highlighting = randomRanges(random, source.length(), DbFileSources.HighlightingType.values().length);
+      int[] symbols = randomRanges(random, source.length(), 100);
+      DbFileSources.Line line = line(source, highlighting, symbols);
+
+      assertThat(sourceDecorator.getDecoratedSourceAsHtml(line)).isEqualTo(sourceDecorator.getDecoratedSourceAsHtml(source,
+        DecorationRanges.toHighlightingString(line.getHighlightingRangesList()), DecorationRanges.toSymbolsString(line.getSymbolRangesList())));
+    }
+  }
+
+  @Test
+  public void decorate_line_with_ranges_and_end_of_line_like_former_format() {
+    DbFileSources.Line line = line("abc\rdef", new int[] {0, 6, KEYWORD_VALUE}, new int[0]);
+
+    assertThat(sourceDecorator.getDecoratedSourceAsHtml(line)).isEqualTo(sourceDecorator.getDecoratedSourceAsHtml("abc\rdef", "0,6,k", ""));
+  }
+
+  /**
+   * Nested ranges, as produced by the analyzers
+   */
+  private static int[] randomRanges(Random random, int lineLength, int maxValue) {
+    int count = random.nextInt(4);
+    int[] ranges = new int[count * DecorationRanges.RANGE_SIZE];
+    int start = 0;
+    int end = lineLength;
+    for (int i = 0; i < count && start < end; i++) {
+      start = start + random.nextInt(end - start);
+      end = start + 1 + random.nextInt(end - start);
+      ranges[i * 3] = start;
+      ranges[i * 3 + 1] = end;
+      ranges[i * 3 + 2] = random.nextInt(maxValue);
+    }
+    return ranges;
+  }
+
+  private static DbFileSources.Line line(String source, int[] highlighting, int[] symbols) {
+    DbFileSources.Line.Builder line = DbFileSources.Line.newBuilder().setSource(source);
+    for (int value : highlighting) {
+      line.addHighlightingRanges(value);
+    }
+    for (int value : symbols) {
+      line.addSymbolRanges(value);
+    }
+    return line.build();
+  }
 }
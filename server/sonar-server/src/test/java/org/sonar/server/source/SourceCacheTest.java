@@ -0,0 +1,101 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.server.source.index.FileSourceTesting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceCacheTest {
+
+  private MapSettings settings = new MapSettings();
+
+  @Test
+  public void cache_is_enabled_by_default() throws Exception {
+    SourceCache underTest = new SourceCache(settings);
+
+    assertThat(underTest.isEnabled()).isTrue();
+    assertThat(underTest.getMaxSize()).isEqualTo(50L * 1024 * 1024);
+  }
+
+  @Test
+  public void get_and_put() throws Exception {
+    SourceCache underTest = new SourceCache(settings);
+    DbFileSources.Data data = FileSourceTesting.newFakeData(3).build();
+
+    assertThat(underTest.get("FILE1", "HASH1", 0)).isNull();
+    underTest.put("FILE1", "HASH1", 0, data);
+
+    assertThat(underTest.get("FILE1", "HASH1", 0)).isSameAs(data);
+    assertThat(underTest.get("FILE1", "HASH1", 1)).isNull();
+    assertThat(underTest.get("FILE1", "HASH2", 0)).isNull();
+    assertThat(underTest.get("FILE2", "HASH1", 0)).isNull();
+    assertThat(underTest.getHits()).isEqualTo(1);
+    assertThat(underTest.getMisses()).isEqualTo(4);
+    assertThat(underTest.getEntries()).isEqualTo(1);
+    assertThat(underTest.getSize()).isEqualTo(data.getSerializedSize());
+  }
+
+  @Test
+  public void evict_sources_when_max_size_is_reached() throws Exception {
+    settings.setProperty(SourceCache.MAX_SIZE_PROPERTY, 1);
+    SourceCache underTest = new SourceCache(settings);
+    DbFileSources.Data data = FileSourceTesting.newFakeData(1_000).build();
+    int count = (int) (4 * underTest.getMaxSize() / data.getSerializedSize());
+
+    for (int i = 0; i < count; i++) {
+      underTest.put("FILE" + i, "HASH", 0, data);
+    }
+
+    assertThat(underTest.getEvictions()).isGreaterThan(0);
+    assertThat(underTest.getEntries()).isLessThan(count);
+    assertThat(underTest.getSize()).isLessThanOrEqualTo(underTest.getMaxSize()).isEqualTo(underTest.getEntries() * data.getSerializedSize());
+  }
+
+  @Test
+  public void do_not_cache_chunks_larger_than_a_segment() throws Exception {
+    settings.setProperty(SourceCache.MAX_SIZE_PROPERTY, 1);
+    SourceCache underTest = new SourceCache(settings);
+    DbFileSources.Data data = FileSourceTesting.newFakeData(50_000).build();
+    assertThat((long) data.getSerializedSize()).isGreaterThan(underTest.getMaxSize() / SourceCache.CONCURRENCY_LEVEL);
+
+    underTest.put("FILE1", "HASH1", 0, data);
+
+    assertThat(underTest.get("FILE1", "HASH1", 0)).isNull();
+    assertThat(underTest.getEntries()).isEqualTo(0);
+    assertThat(underTest.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void cache_is_disabled_if_max_size_is_zero() throws Exception {
+    settings.setProperty(SourceCache.MAX_SIZE_PROPERTY, 0);
+    SourceCache underTest = new SourceCache(settings);
+
+    underTest.put("FILE1", "HASH1", 0, FileSourceTesting.newFakeData(3).build());
+
+    assertThat(underTest.isEnabled()).isFalse();
+    assertThat(underTest.get("FILE1", "HASH1", 0)).isNull();
+    assertThat(underTest.getEntries()).isEqualTo(0);
+    assertThat(underTest.getSize()).isEqualTo(0);
+  }
+}
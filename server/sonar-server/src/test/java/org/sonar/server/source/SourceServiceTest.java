@@ -27,6 +27,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.protobuf.DbFileSources;
@@ -34,6 +35,7 @@ import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.source.index.FileSourceTesting;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -49,7 +51,10 @@ public class SourceServiceTest {
 
   HtmlSourceDecorator htmlDecorator = mock(HtmlSourceDecorator.class);
 
-  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator);
+  MapSettings settings = new MapSettings();
+  SourceCache sourceCache = new SourceCache(settings);
+
+  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, sourceCache);
 
   @Before
   public void injectFakeLines() throws IOException {
@@ -80,9 +85,8 @@ public class SourceServiceTest {
 
   @Test
   public void get_range_of_lines_as_html() throws Exception {
-    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_5", "HIGHLIGHTING_5", "SYMBOLS_5")).thenReturn("HTML_5");
-    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_6", "HIGHLIGHTING_6", "SYMBOLS_6")).thenReturn("HTML_6");
-    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_7", "HIGHLIGHTING_7", "SYMBOLS_7")).thenReturn("HTML_7");
+    when(htmlDecorator.getDecoratedSourceAsHtml(any(DbFileSources.Line.class)))
+      .then(invocation -> invocation.getArgumentAt(0, DbFileSources.Line.class).getSource().replace("SOURCE", "HTML"));
 
     Optional<Iterable<String>> linesOpt = underTest.getLinesAsHtml(dbTester.getSession(), FILE_UUID, 5, 7);
     assertThat(linesOpt.isPresent()).isTrue();
@@ -119,4 +123,66 @@ public class SourceServiceTest {
     assertThat(lines.isPresent()).isFalse();
   }
 
+  @Test
+  public void read_sources_from_cache() throws Exception {
+    insertFileWithDataHash("FILE2_UUID", "HASH1", 10);
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "FILE2_UUID", 1, 2).get()).containsExactly("SOURCE_1", "SOURCE_2");
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "FILE2_UUID", 9, 20).get()).containsExactly("SOURCE_9", "SOURCE_10");
+
+    assertThat(sourceCache.getEntries()).isEqualTo(1);
+    assertThat(sourceCache.getMisses()).isEqualTo(1);
+    assertThat(sourceCache.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void cache_sources_by_chunks_of_lines() throws Exception {
+    insertFileWithDataHash("FILE2_UUID", "HASH1", 2 * FileSourceDto.LINES_PER_CHUNK + 10);
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "FILE2_UUID", 1, 2).get()).containsExactly("SOURCE_1", "SOURCE_2");
+    assertThat(sourceCache.getEntries()).isEqualTo(1);
+
+    int lastLine = 2 * FileSourceDto.LINES_PER_CHUNK + 10;
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "FILE2_UUID", lastLine - 1, Integer.MAX_VALUE).get())
+      .containsExactly("SOURCE_" + (lastLine - 1), "SOURCE_" + lastLine);
+    assertThat(sourceCache.getEntries()).isEqualTo(2);
+
+    assertThat(underTest.getLines(dbTester.getSession(), "FILE2_UUID", 1, Integer.MAX_VALUE).get()).hasSize(lastLine);
+    assertThat(sourceCache.getEntries()).isEqualTo(3);
+    assertThat(sourceCache.getHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_read_outdated_sources_from_cache() throws Exception {
+    insertFileWithDataHash("FILE2_UUID", "HASH1", 10);
+    underTest.getLines(dbTester.getSession(), "FILE2_UUID", 1, 100);
+
+    FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "FILE2_UUID");
+    dto.setSourceData(FileSourceTesting.newFakeData(3).build()).setDataHash("HASH2");
+    dbTester.getDbClient().fileSourceDao().update(dto);
+
+    assertThat(underTest.getLines(dbTester.getSession(), "FILE2_UUID", 1, 100).get()).hasSize(3);
+    assertThat(sourceCache.getHits()).isEqualTo(0);
+  }
+
+  @Test
+  public void do_not_cache_sources_if_cache_is_disabled() throws Exception {
+    settings.setProperty(SourceCache.MAX_SIZE_PROPERTY, 0);
+    sourceCache = new SourceCache(settings);
+    underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, sourceCache);
+    insertFileWithDataHash("FILE2_UUID", "HASH1", 10);
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "FILE2_UUID", 2, 3).get()).containsExactly("SOURCE_2", "SOURCE_3");
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), "FILE2_UUID", 2, 3).get()).containsExactly("SOURCE_2", "SOURCE_3");
+
+    assertThat(sourceCache.isEnabled()).isFalse();
+    assertThat(sourceCache.getEntries()).isEqualTo(0);
+  }
+
+  private void insertFileWithDataHash(String fileUuid, String dataHash, int lines) throws IOException {
+    FileSourceDto dto = new FileSourceDto();
+    dto.setFileUuid(fileUuid).setProjectUuid("PROJECT_UUID").setDataHash(dataHash);
+    dto.setSourceData(FileSourceTesting.newFakeData(lines).build());
+    dbTester.getDbClient().fileSourceDao().insert(dto);
+  }
 }
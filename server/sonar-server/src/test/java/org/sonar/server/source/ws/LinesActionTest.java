@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.db.DbTester;
@@ -38,12 +39,13 @@ import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.SourceCache;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.index.FileSourceTesting;
 import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.ws.WsTester;
 
-import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -73,13 +75,13 @@ public class LinesActionTest {
   @Before
   public void setUp() {
     htmlSourceDecorator = mock(HtmlSourceDecorator.class);
-    when(htmlSourceDecorator.getDecoratedSourceAsHtml(anyString(), anyString(), anyString())).then(new Answer<String>() {
+    when(htmlSourceDecorator.getDecoratedSourceAsHtml(any(DbFileSources.Line.class))).then(new Answer<String>() {
       @Override
       public String answer(InvocationOnMock invocationOnMock) throws Throwable {
-        return "<p>" + invocationOnMock.getArguments()[0] + "</p>";
+        return "<p>" + ((DbFileSources.Line) invocationOnMock.getArguments()[0]).getSource() + "</p>";
       }
     });
-    sourceService = new SourceService(dbTester.getDbClient(), htmlSourceDecorator);
+    sourceService = new SourceService(dbTester.getDbClient(), htmlSourceDecorator, new SourceCache(new MapSettings()));
     componentDao = new ComponentDao();
     wsTester = new WsTester(new SourcesWs(
       new LinesAction(new ComponentFinder(dbTester.getDbClient()), dbTester.getDbClient(), sourceService, htmlSourceDecorator, userSessionRule)));
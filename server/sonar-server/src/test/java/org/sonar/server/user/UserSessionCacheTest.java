@@ -0,0 +1,161 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.user.GroupDto;
+import org.sonar.db.user.UserDto;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.user.GroupTesting.newGroupDto;
+import static org.sonar.db.user.UserTesting.newUserDto;
+
+public class UserSessionCacheTest {
+
+  private MapSettings settings = new MapSettings();
+  private AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void cache_is_enabled_by_default() {
+    UserSessionCache underTest = new UserSessionCache(settings);
+
+    assertThat(underTest.isEnabled()).isTrue();
+  }
+
+  @Test
+  public void load_active_user_only_once() {
+    UserSessionCache underTest = new UserSessionCache(settings);
+    UserDto user = newUserDto();
+
+    assertThat(underTest.getActiveUser(user.getLogin(), login -> load(user))).isSameAs(user);
+    assertThat(underTest.getActiveUser(user.getLogin(), login -> load(user))).isSameAs(user);
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(underTest.getHits()).isEqualTo(1);
+    assertThat(underTest.getMisses()).isEqualTo(1);
+    assertThat(underTest.getHitRatio()).isEqualTo(0.5);
+    assertThat(underTest.getEntries()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_cache_missing_users_and_tokens() {
+    UserSessionCache underTest = new UserSessionCache(settings);
+
+    assertThat(underTest.getActiveUser("missing", login -> load(null))).isNull();
+    assertThat(underTest.getActiveUser("missing", login -> load(null))).isNull();
+    assertThat(underTest.getLoginByTokenHash("unknown", hash -> load(null))).isNull();
+
+    assertThat(loads.get()).isEqualTo(3);
+    assertThat(underTest.getEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void permissions_of_users_and_anonymous_are_distinct() {
+    UserSessionCache underTest = new UserSessionCache(settings);
+
+    assertThat(underTest.getProjectPermissions("ada", "PROJECT1", () -> load(ImmutableSet.of("user", "admin")))).containsOnly("user", "admin");
+    assertThat(underTest.getProjectPermissions(null, "PROJECT1", () -> load(ImmutableSet.of("user")))).containsOnly("user");
+    assertThat(underTest.getOrganizationPermissions("ada", "PROJECT1", () -> load(ImmutableSet.of("scan")))).containsOnly("scan");
+    assertThat(underTest.getProjectPermissions("ada", "PROJECT1", this::failToLoad)).containsOnly("user", "admin");
+    assertThat(underTest.getProjectPermissions(null, "PROJECT1", this::failToLoad)).containsOnly("user");
+
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void invalidate_user_evicts_its_token_groups_and_permissions() {
+    UserSessionCache underTest = new UserSessionCache(settings);
+    UserDto ada = newUserDto().setLogin("ada");
+    UserDto grace = newUserDto().setLogin("grace");
+    Collection<GroupDto> groups = singletonList(newGroupDto());
+    underTest.getActiveUser("ada", login -> ada);
+    underTest.getActiveUser("grace", login -> grace);
+    underTest.getLoginByTokenHash("HASH_ADA", hash -> "ada");
+    underTest.getLoginByTokenHash("HASH_GRACE", hash -> "grace");
+    underTest.getGroups("ada", login -> groups);
+    underTest.getOrganizationPermissions("ada", "ORG1", () -> ImmutableSet.of("admin"));
+    underTest.getProjectPermissions("ada", "PROJECT1", () -> ImmutableSet.of("user"));
+    underTest.getProjectPermissions(null, "PROJECT1", () -> ImmutableSet.of("user"));
+
+    underTest.invalidateUser("ada");
+
+    assertThat(underTest.getEntries()).isEqualTo(3);
+    assertThat(underTest.getActiveUser("grace", login -> load(null))).isSameAs(grace);
+    assertThat(underTest.getLoginByTokenHash("HASH_GRACE", hash -> load(null))).isEqualTo("grace");
+    assertThat(underTest.getProjectPermissions(null, "PROJECT1", this::failToLoad)).containsOnly("user");
+    assertThat(underTest.getLoginByTokenHash("HASH_ADA", hash -> load(null))).isNull();
+    assertThat(underTest.getActiveUser("ada", login -> load(null))).isNull();
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidate_all() {
+    UserSessionCache underTest = new UserSessionCache(settings);
+    underTest.getActiveUser("ada", login -> newUserDto());
+    underTest.getProjectPermissions(null, "PROJECT1", () -> ImmutableSet.of("user"));
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.getEntries()).isEqualTo(0);
+  }
+
+  @Test
+  public void cache_is_disabled_if_ttl_is_zero() {
+    settings.setProperty(UserSessionCache.TTL_PROPERTY, 0);
+    UserSessionCache underTest = new UserSessionCache(settings);
+    UserDto user = newUserDto();
+
+    underTest.getActiveUser(user.getLogin(), login -> load(user));
+    underTest.getActiveUser(user.getLogin(), login -> load(user));
+
+    assertThat(underTest.isEnabled()).isFalse();
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.getEntries()).isEqualTo(0);
+    assertThat(underTest.getHitRatio()).isEqualTo(1.0);
+  }
+
+  @Test
+  public void evict_entries_when_max_entries_is_reached() {
+    settings.setProperty(UserSessionCache.MAX_ENTRIES_PROPERTY, 10);
+    UserSessionCache underTest = new UserSessionCache(settings);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.getLoginByTokenHash("HASH" + i, hash -> "ada");
+    }
+
+    assertThat(underTest.getEntries()).isLessThanOrEqualTo(10);
+    assertThat(underTest.getEvictions()).isGreaterThan(0);
+  }
+
+  private <T> T load(T value) {
+    loads.incrementAndGet();
+    return value;
+  }
+
+  private Set<String> failToLoad() {
+    throw new IllegalStateException("Should be read from cache");
+  }
+}
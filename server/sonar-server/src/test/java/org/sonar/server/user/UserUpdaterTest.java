@@ -88,7 +88,7 @@ public class UserUpdaterTest {
   private DbSession session = db.getSession();
   private UserIndexer userIndexer = new UserIndexer(system2, dbClient, es.client());
   private OrganizationCreation organizationCreation = mock(OrganizationCreation.class);
-  private UserUpdater underTest = new UserUpdater(newUserNotifier, settings, dbClient, userIndexer, system2, TestDefaultOrganizationProvider.from(db), organizationCreation);
+  private UserUpdater underTest = new UserUpdater(newUserNotifier, settings, dbClient, userIndexer, system2, TestDefaultOrganizationProvider.from(db), organizationCreation, new UserSessionCache(new MapSettings()));
 
   @Before
   public void setUp() {
@@ -37,6 +37,7 @@ import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.user.ExternalIdentity;
 import org.sonar.server.user.NewUser;
 import org.sonar.server.user.NewUserNotifier;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.user.UserUpdater;
 import org.sonar.server.user.index.UserIndexDefinition;
 import org.sonar.server.user.index.UserIndexer;
@@ -60,7 +61,7 @@ public class ChangePasswordActionTest {
     new UserIndexer(System2.INSTANCE, db.getDbClient(), esTester.client()),
     System2.INSTANCE,
     TestDefaultOrganizationProvider.from(db),
-    mock(OrganizationCreation.class));
+    mock(OrganizationCreation.class), new UserSessionCache(new MapSettings()));
 
   private WsTester tester = new WsTester(new UsersWs(new ChangePasswordAction(db.getDbClient(), userUpdater, userSessionRule)));
 
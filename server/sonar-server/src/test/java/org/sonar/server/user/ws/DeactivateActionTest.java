@@ -41,6 +41,7 @@ import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexDefinition;
 import org.sonar.server.user.index.UserIndexer;
@@ -84,7 +85,7 @@ public class DeactivateActionTest {
     index = new UserIndex(esTester.client());
     userIndexer = new UserIndexer(system2, dbClient, esTester.client());
     ws = new WsActionTester(new DeactivateAction(
-      dbClient, userIndexer, userSession, new UserJsonWriter(userSession), defaultOrganizationProvider));
+      dbClient, userIndexer, userSession, new UserJsonWriter(userSession), defaultOrganizationProvider, new UserSessionCache(new MapSettings())));
   }
 
   @Test
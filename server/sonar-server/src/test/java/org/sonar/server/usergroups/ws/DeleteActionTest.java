@@ -41,6 +41,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -73,7 +74,7 @@ public class DeleteActionTest {
         db.getDbClient(),
         userSession,
         newGroupWsSupport(),
-        settings, defaultOrganizationProvider)));
+        settings, defaultOrganizationProvider, new UserSessionCache(new MapSettings()))));
   }
 
   @Test
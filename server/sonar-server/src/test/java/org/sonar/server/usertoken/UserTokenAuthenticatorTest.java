@@ -28,10 +28,12 @@ import java.util.Optional;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.server.user.UserSessionCache;
 
 public class UserTokenAuthenticatorTest {
   static final String GRACE_HOPPER = "grace.hopper";
@@ -46,7 +48,7 @@ public class UserTokenAuthenticatorTest {
   DbSession dbSession = db.getSession();
   TokenGenerator tokenGenerator = mock(TokenGenerator.class);
 
-  UserTokenAuthenticator underTest = new UserTokenAuthenticator(tokenGenerator, db.getDbClient());
+  UserTokenAuthenticator underTest = new UserTokenAuthenticator(tokenGenerator, db.getDbClient(), new UserSessionCache(new MapSettings()));
 
   @Test
   public void return_login_when_token_hash_found_in_db() {
@@ -65,7 +67,24 @@ public class UserTokenAuthenticatorTest {
 
   @Test
   public void return_absent_if_token_hash_is_not_found() {
+    when(tokenGenerator.hash("unknown-token")).thenReturn("unknown-token-hash");
+
     Optional<String> login = underTest.authenticate("unknown-token");
     assertThat(login.isPresent()).isFalse();
   }
+
+  @Test
+  public void login_of_token_is_cached() {
+    String token = "known-token";
+    String tokenHash = "123456789";
+    when(tokenGenerator.hash(token)).thenReturn(tokenHash);
+    dbClient.userTokenDao().insert(dbSession, newUserToken().setLogin(GRACE_HOPPER).setTokenHash(tokenHash));
+    db.commit();
+    underTest.authenticate(token);
+
+    dbClient.userTokenDao().deleteByLogin(dbSession, GRACE_HOPPER);
+    db.commit();
+
+    assertThat(underTest.authenticate(token)).contains(GRACE_HOPPER);
+  }
 }
@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -32,6 +33,7 @@ import org.sonar.db.user.UserTokenDto;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSessionCache;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 
@@ -55,12 +57,13 @@ public class RevokeActionTest {
 
   private DbClient dbClient = db.getDbClient();
   private final DbSession dbSession = db.getSession();
+  private UserSessionCache userSessionCache = new UserSessionCache(new MapSettings());
   private WsActionTester ws;
 
   @Before
   public void setUp() {
     ws = new WsActionTester(
-      new RevokeAction(dbClient, userSession));
+      new RevokeAction(dbClient, userSession, userSessionCache));
   }
 
   @Test
@@ -78,6 +81,20 @@ public class RevokeActionTest {
     assertThat(dbClient.userTokenDao().selectByLogin(dbSession, ADA_LOVELACE)).extracting("name").containsOnly("token-to-delete");
   }
 
+  @Test
+  public void evict_tokens_of_user_from_cache() {
+    logInAsSystemAdministrator();
+    UserTokenDto token = newUserToken().setLogin(GRACE_HOPPER).setName("token-to-delete");
+    insertUserToken(token);
+    userSessionCache.getLoginByTokenHash(token.getTokenHash(), hash -> GRACE_HOPPER);
+    userSessionCache.getLoginByTokenHash("other-hash", hash -> ADA_LOVELACE);
+
+    newRequest(GRACE_HOPPER, "token-to-delete");
+
+    assertThat(userSessionCache.getLoginByTokenHash(token.getTokenHash(), hash -> null)).isNull();
+    assertThat(userSessionCache.getLoginByTokenHash("other-hash", hash -> null)).isEqualTo(ADA_LOVELACE);
+  }
+
   @Test
   public void user_can_delete_its_own_tokens() {
     userSession.logIn(GRACE_HOPPER);
@@ -0,0 +1,154 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonarqube.ws.Issues;
+import org.sonarqube.ws.MediaTypes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.test.JsonAssert.assertJson;
+
+public class ProtobufStreamWriterTest {
+
+  private static final Issues.SearchWsResponse HEAD = Issues.SearchWsResponse.newBuilder()
+    .setTotal(2)
+    .addComponents(Issues.Component.newBuilder().setKey("C1"))
+    .build();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private TestRequest request = new TestRequest();
+  private DumbResponse response = new DumbResponse();
+
+  @Test
+  public void stream_elements_as_protobuf() throws Exception {
+    request.setMediaType(MediaTypes.PROTOBUF);
+
+    writeIssues("I1", "I2");
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.PROTOBUF);
+    Issues.SearchWsResponse parsed = Issues.SearchWsResponse.parseFrom(response.getFlushedOutput());
+    assertThat(parsed.getTotal()).isEqualTo(2);
+    assertThat(parsed.getComponentsList()).extracting(Issues.Component::getKey).containsExactly("C1");
+    assertThat(parsed.getIssuesList()).extracting(Issues.Issue::getKey).containsExactly("I1", "I2");
+  }
+
+  @Test
+  public void stream_elements_as_json_by_default() {
+    writeIssues("I1", "I2");
+
+    assertThat(response.stream().mediaType()).isEqualTo(MediaTypes.JSON);
+    assertThat(response.outputAsString())
+      .startsWith("{\"total\":2,\"components\":[{\"key\":\"C1\"")
+      .contains("\"issues\":[{\"key\":\"I1\"")
+      .contains("{\"key\":\"I2\"")
+      .endsWith("}]}");
+  }
+
+  @Test
+  public void output_is_the_same_as_the_complete_message() throws Exception {
+    request.setMediaType(MediaTypes.PROTOBUF);
+
+    writeIssues("I1", "I2");
+
+    assertThat(Issues.SearchWsResponse.parseFrom(response.getFlushedOutput())).isEqualTo(newCompleteMessage());
+  }
+
+  @Test
+  public void json_is_similar_to_the_complete_message() {
+    DumbResponse expected = new DumbResponse();
+    WsUtils.writeProtobuf(newCompleteMessage(), request, expected);
+
+    writeIssues("I1", "I2");
+
+    assertJson(response.outputAsString()).isSimilarTo(expected.outputAsString());
+  }
+
+  @Test
+  public void write_empty_array_if_no_elements() {
+    writeIssues();
+
+    assertThat(response.outputAsString()).contains("\"issues\":[]");
+  }
+
+  @Test
+  public void elements_of_head_are_ignored() {
+    Issues.SearchWsResponse head = HEAD.toBuilder().addIssues(Issues.Issue.newBuilder().setKey("ignored")).build();
+
+    try (ProtobufStreamWriter<Issues.Issue> writer = ProtobufStreamWriter.of(head, Issues.SearchWsResponse.ISSUES_FIELD_NUMBER, request, response)) {
+      writer.write(Issues.Issue.newBuilder().setKey("I1").build());
+      writer.complete();
+    }
+
+    assertThat(response.outputAsString()).doesNotContain("ignored").contains("\"issues\":[{\"key\":\"I1\"");
+  }
+
+  @Test
+  public void do_not_end_json_response_if_writer_is_not_completed() {
+    try (ProtobufStreamWriter<Issues.Issue> writer = ProtobufStreamWriter.of(HEAD, Issues.SearchWsResponse.ISSUES_FIELD_NUMBER, request, response)) {
+      writer.write(Issues.Issue.newBuilder().setKey("I1").build());
+      throw new IllegalStateException("BOOM");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("BOOM");
+    }
+
+    assertThat(response.outputAsString()).doesNotEndWith("}]}");
+  }
+
+  @Test
+  public void do_not_end_protobuf_response_if_writer_is_not_completed() {
+    request.setMediaType(MediaTypes.PROTOBUF);
+
+    try (ProtobufStreamWriter<Issues.Issue> writer = ProtobufStreamWriter.of(HEAD, Issues.SearchWsResponse.ISSUES_FIELD_NUMBER, request, response)) {
+      writer.write(Issues.Issue.newBuilder().setKey("I1").build());
+    }
+
+    // buffered head and elements are not flushed
+    assertThat(response.getFlushedOutput()).isEmpty();
+  }
+
+  @Test
+  public void fail_if_field_is_not_repeated() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Field 1 is not a repeated field of messages of sonarqube.ws.issues.SearchWsResponse");
+
+    ProtobufStreamWriter.of(HEAD, Issues.SearchWsResponse.TOTAL_FIELD_NUMBER, request, response);
+  }
+
+  private static Issues.SearchWsResponse newCompleteMessage() {
+    return HEAD.toBuilder()
+      .addIssues(Issues.Issue.newBuilder().setKey("I1"))
+      .addIssues(Issues.Issue.newBuilder().setKey("I2"))
+      .build();
+  }
+
+  private void writeIssues(String... keys) {
+    try (ProtobufStreamWriter<Issues.Issue> writer = ProtobufStreamWriter.of(HEAD, Issues.SearchWsResponse.ISSUES_FIELD_NUMBER, request, response)) {
+      for (String key : keys) {
+        writer.write(Issues.Issue.newBuilder().setKey(key).build());
+      }
+      writer.complete();
+    }
+  }
+}
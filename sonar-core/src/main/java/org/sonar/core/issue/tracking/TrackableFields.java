@@ -0,0 +1,106 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.Collection;
+import java.util.Objects;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Fields of {@link Trackable} involved in the matching of issues, extracted once so that the
+ * successive passes of {@link Tracker} neither call the getters nor allocate search keys.
+ */
+final class TrackableFields<T extends Trackable> {
+
+  /**
+   * Value of {@link #line(int)} when the issue does not relate to a line
+   */
+  static final int NO_LINE = Integer.MIN_VALUE;
+
+  private final Object[] trackables;
+  private final RuleKey[] ruleKeys;
+  private final int[] ruleKeyHashes;
+  private final int[] lines;
+  private final String[] lineHashes;
+  private final int[] lineHashHashes;
+  private final String[] messages;
+  private final int[] messageHashes;
+
+  TrackableFields(Collection<T> trackables) {
+    int size = trackables.size();
+    this.trackables = trackables.toArray(new Object[size]);
+    this.ruleKeys = new RuleKey[size];
+    this.ruleKeyHashes = new int[size];
+    this.lines = new int[size];
+    this.lineHashes = new String[size];
+    this.lineHashHashes = new int[size];
+    this.messages = new String[size];
+    this.messageHashes = new int[size];
+    for (int i = 0; i < size; i++) {
+      Trackable trackable = (Trackable) this.trackables[i];
+      ruleKeys[i] = trackable.getRuleKey();
+      ruleKeyHashes[i] = ruleKeys[i].hashCode();
+      Integer line = trackable.getLine();
+      lines[i] = line == null ? NO_LINE : line;
+      lineHashes[i] = StringUtils.defaultString(trackable.getLineHash(), "");
+      lineHashHashes[i] = lineHashes[i].hashCode();
+      messages[i] = trackable.getMessage();
+      messageHashes[i] = Objects.hashCode(messages[i]);
+    }
+  }
+
+  int size() {
+    return trackables.length;
+  }
+
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    return (T) trackables[index];
+  }
+
+  RuleKey ruleKey(int index) {
+    return ruleKeys[index];
+  }
+
+  int ruleKeyHash(int index) {
+    return ruleKeyHashes[index];
+  }
+
+  int line(int index) {
+    return lines[index];
+  }
+
+  String lineHash(int index) {
+    return lineHashes[index];
+  }
+
+  int lineHashHash(int index) {
+    return lineHashHashes[index];
+  }
+
+  String message(int index) {
+    return messages[index];
+  }
+
+  int messageHash(int index) {
+    return messageHashes[index];
+  }
+}
@@ -19,15 +19,10 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Objects;
-import javax.annotation.Nonnull;
-import org.apache.commons.lang.StringUtils;
-import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.InstantiationStrategy;
-import org.sonar.api.rule.RuleKey;
+import org.sonar.api.batch.ScannerSide;
 
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 @ScannerSide
@@ -35,22 +30,27 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput, baseInput);
+    if (tracking.isComplete()) {
+      return tracking;
+    }
+    TrackableFields<RAW> raws = new TrackableFields<>(rawInput.getIssues());
+    BaseIndex<BASE> baseIndex = new BaseIndex<>(new TrackableFields<>(baseInput.getIssues()));
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKeyFactory.INSTANCE);
+    match(tracking, raws, baseIndex, SearchKey.LINE_AND_LINE_HASH);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, baseIndex, SearchKey.LINE_HASH_AND_MESSAGE);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKeyFactory.INSTANCE);
+    match(tracking, raws, baseIndex, SearchKey.LINE_AND_MESSAGE);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKeyFactory.INSTANCE);
+    match(tracking, raws, baseIndex, SearchKey.LINE_HASH);
 
     return tracking;
   }
@@ -61,189 +61,130 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private void match(Tracking<RAW, BASE> tracking, SearchKeyFactory factory) {
+  private void match(Tracking<RAW, BASE> tracking, TrackableFields<RAW> raws, BaseIndex<BASE> baseIndex, SearchKey key) {
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
-    for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(factory.create(base), base);
-    }
-
-    for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = factory.create(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      if (!bases.isEmpty()) {
-        // TODO taking the first one. Could be improved if there are more than 2 issues on the same line.
-        // Message could be checked to take the best one.
-        BASE match = bases.iterator().next();
-        tracking.match(raw, match);
-        baseSearch.remove(rawKey, match);
+    baseIndex.build(tracking, key);
+    for (int r = 0; r < raws.size(); r++) {
+      RAW raw = raws.get(r);
+      if (tracking.baseFor(raw) == null) {
+        int b = baseIndex.find(key, raws, r);
+        if (b >= 0) {
+          tracking.match(raw, baseIndex.bases.get(b));
+          baseIndex.matched[b] = true;
+        }
       }
     }
   }
 
-  private interface SearchKey {
-  }
-
-  private interface SearchKeyFactory {
-    SearchKey create(Trackable trackable);
-  }
-
-  private static class LineAndLineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-    private final Integer line;
-
-    LineAndLineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.line = trackable.getLine();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * The criteria of the successive matching passes. Hashes are computed from the fields extracted
+   * by {@link TrackableFields}, so no object is allocated when searching for a base issue.
+   */
+  private enum SearchKey {
+    LINE_AND_LINE_HASH(true, true, false),
+    LINE_HASH_AND_MESSAGE(false, true, true),
+    LINE_AND_MESSAGE(true, false, true),
+    LINE_HASH(false, true, false);
+
+    private final boolean line;
+    private final boolean lineHash;
+    private final boolean message;
+
+    SearchKey(boolean line, boolean lineHash, boolean message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.message = message;
+    }
+
+    int hash(TrackableFields<?> fields, int index) {
+      int result = fields.ruleKeyHash(index);
+      if (lineHash) {
+        result = 31 * result + fields.lineHashHash(index);
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
-      return result;
-    }
-  }
-
-  private enum LineAndLineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndLineHashKey(t);
-    }
-  }
-
-  private static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
-
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      if (message) {
+        result = 31 * result + fields.messageHash(index);
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
-    }
-  }
-
-  private enum LineHashAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashAndMessageKey(t);
-    }
-  }
-
-  private static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
-
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+      if (line) {
+        result = 31 * result + fields.line(index);
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
-      // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
-    }
-
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + message.hashCode();
-      result = 31 * result + (line != null ? line.hashCode() : 0);
       return result;
     }
-  }
 
-  private enum LineAndMessageKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineAndMessageKey(t);
+    boolean matches(TrackableFields<?> raws, int raw, TrackableFields<?> bases, int base) {
+      // start with most discriminant fields
+      return (!line || raws.line(raw) == bases.line(base))
+        && (!lineHash || raws.lineHash(raw).equals(bases.lineHash(base)))
+        && (!message || Objects.equals(raws.message(raw), bases.message(base)))
+        && raws.ruleKey(raw).equals(bases.ruleKey(base));
     }
   }
 
-  private static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
-
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
-    }
-
-    @Override
-    public boolean equals(@Nonnull Object o) {
-      if (this == o) {
-        return true;
+  /**
+   * Hash table of the unmatched base issues, with buckets implemented as linked lists of indices
+   * in primitive arrays. The arrays are allocated once and re-used by all the passes.
+   */
+  private static class BaseIndex<BASE extends Trackable> {
+    private static final int EMPTY = -1;
+
+    private final TrackableFields<BASE> bases;
+    private final boolean[] matched;
+    private final int[] hashes;
+    private final int[] next;
+    private final int[] buckets;
+    private final int mask;
+
+    private BaseIndex(TrackableFields<BASE> bases) {
+      this.bases = bases;
+      int size = bases.size();
+      this.matched = new boolean[size];
+      this.hashes = new int[size];
+      this.next = new int[size];
+      // power of two with a load factor lower than 0.5
+      int capacity = Integer.highestOneBit(Math.max(1, size) * 2) * 2;
+      this.buckets = new int[capacity];
+      this.mask = capacity - 1;
+    }
+
+    private void build(Tracking<?, BASE> tracking, SearchKey key) {
+      Arrays.fill(buckets, EMPTY);
+      // reverse order, so that buckets list the bases in their original order
+      for (int b = bases.size() - 1; b >= 0; b--) {
+        matched[b] = !tracking.containsUnmatchedBase(bases.get(b));
+        if (!matched[b]) {
+          int hash = key.hash(bases, b);
+          int bucket = bucket(hash);
+          hashes[b] = hash;
+          next[b] = buckets[bucket];
+          buckets[bucket] = b;
+        }
       }
-      LineHashKey that = (LineHashKey) o;
-      // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
     }
 
-    @Override
-    public int hashCode() {
-      int result = ruleKey.hashCode();
-      result = 31 * result + lineHash.hashCode();
-      return result;
+    /**
+     * Index of the unmatched base issue matching the raw issue, or {@link #EMPTY} if none. When several base
+     * issues match, the first one with the same message is preferred, else the first one.
+     */
+    private int find(SearchKey key, TrackableFields<?> raws, int raw) {
+      int hash = key.hash(raws, raw);
+      int candidate = EMPTY;
+      for (int b = buckets[bucket(hash)]; b != EMPTY; b = next[b]) {
+        if (!matched[b] && hashes[b] == hash && key.matches(raws, raw, bases, b)) {
+          if (key.message || Objects.equals(raws.message(raw), bases.message(b))) {
+            return b;
+          }
+          if (candidate == EMPTY) {
+            candidate = b;
+          }
+        }
+      }
+      return candidate;
     }
-  }
 
-  private enum LineHashKeyFactory implements SearchKeyFactory {
-    INSTANCE;
-    @Override
-    public SearchKey create(Trackable t) {
-      return new LineHashKey(t);
+    private int bucket(int hash) {
+      return (hash ^ (hash >>> 16)) & mask;
     }
   }
 }
@@ -22,6 +22,8 @@ package org.sonar.core.util;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
@@ -84,6 +86,14 @@ public class ProgressLogger {
     return task.pluralLabel;
   }
 
+  /**
+   * Optional details appended to each log, for example "5 MB/sec". Default is none.
+   */
+  public ProgressLogger setDetails(Supplier<String> s) {
+    task.details = s;
+    return this;
+  }
+
   public void log() {
     task.log();
   }
@@ -92,6 +102,8 @@ public class ProgressLogger {
     private final AtomicLong counter;
     private final Logger logger;
     private String pluralLabel = "rows";
+    @CheckForNull
+    private Supplier<String> details = null;
     private long previousCounter = 0L;
 
     private LoggerTimerTask(AtomicLong counter, Logger logger) {
@@ -106,7 +118,11 @@ public class ProgressLogger {
 
     private void log() {
       long current = counter.get();
-      logger.info(String.format("%d %s processed (%d items/sec)", current, pluralLabel, 1000 * (current - previousCounter) / periodMs));
+      String message = String.format("%d %s processed (%d items/sec)", current, pluralLabel, 1000 * (current - previousCounter) / periodMs);
+      if (details != null) {
+        message += " - " + details.get();
+      }
+      logger.info(message);
       previousCounter = current;
     }
   }
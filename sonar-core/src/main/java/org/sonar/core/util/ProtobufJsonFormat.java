@@ -26,6 +26,8 @@ import java.io.StringWriter;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.text.JsonWriter;
 
 /**
@@ -124,6 +126,13 @@ import org.sonar.api.utils.text.JsonWriter;
  *     }
  *   }
  * </pre>
+ *
+ * <h3>Streaming</h3>
+ * <p>
+ * Large responses do not need to be fully built in memory. The elements of a repeated field
+ * can be written one at a time with {@link #beginStream(Message, Descriptors.FieldDescriptor, JsonWriter)},
+ * {@link #writeStreamElement(Descriptors.FieldDescriptor, Message, JsonWriter)} and {@link #endStream(JsonWriter)}.
+ * </p>
  */
 public class ProtobufJsonFormat {
 
@@ -131,24 +140,30 @@ public class ProtobufJsonFormat {
     // only statics
   }
 
+  /**
+   * Fields of a message type, computed once per class as messages are written concurrently
+   * by web services.
+   */
   static class MessageType {
-    private static final Map<Class<? extends Message>, MessageType> TYPES_BY_CLASS = new HashMap<>();
+    private static final Map<Class<? extends Message>, MessageType> TYPES_BY_CLASS = new ConcurrentHashMap<>();
 
     private final Descriptors.FieldDescriptor[] fieldDescriptors;
     private final boolean doesWrapRepeated;
+    // descriptors of field "value" of map entries, by descriptor of map field
+    private final Map<Descriptors.FieldDescriptor, Descriptors.FieldDescriptor> mapValueDescriptors = new HashMap<>();
 
     private MessageType(Descriptors.Descriptor descriptor) {
       this.fieldDescriptors = descriptor.getFields().toArray(new Descriptors.FieldDescriptor[descriptor.getFields().size()]);
       this.doesWrapRepeated = fieldDescriptors.length == 1 && fieldDescriptors[0].isRepeated() && descriptor.getName().equalsIgnoreCase(fieldDescriptors[0].getName());
+      for (Descriptors.FieldDescriptor fieldDescriptor : fieldDescriptors) {
+        if (fieldDescriptor.isMapField()) {
+          mapValueDescriptors.put(fieldDescriptor, fieldDescriptor.getMessageType().findFieldByName("value"));
+        }
+      }
     }
 
     static MessageType of(Message message) {
-      MessageType type = TYPES_BY_CLASS.get(message.getClass());
-      if (type == null) {
-        type = new MessageType(message.getDescriptorForType());
-        TYPES_BY_CLASS.put(message.getClass(), type);
-      }
-      return type;
+      return TYPES_BY_CLASS.computeIfAbsent(message.getClass(), c -> new MessageType(message.getDescriptorForType()));
     }
   }
 
@@ -167,13 +182,49 @@ public class ProtobufJsonFormat {
     return json.toString();
   }
 
+  /**
+   * Starts the JSON object of {@code head}, then the array of {@code repeatedField}. Elements
+   * of the array must then be written with {@link #writeStreamElement(Descriptors.FieldDescriptor, Message, JsonWriter)},
+   * and the object be closed by {@link #endStream(JsonWriter)}. Values of {@code repeatedField} in {@code head}, if any,
+   * are ignored.
+   *
+   * @param repeatedField a repeated field of messages of {@code head}. Maps are not supported.
+   */
+  public static void beginStream(Message head, Descriptors.FieldDescriptor repeatedField, JsonWriter writer) {
+    if (!repeatedField.isRepeated() || repeatedField.isMapField() || repeatedField.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE
+      || !repeatedField.getContainingType().equals(head.getDescriptorForType())) {
+      throw new IllegalArgumentException(String.format("Field '%s' is not a repeated field of messages of %s", repeatedField.getFullName(), head.getDescriptorForType().getFullName()));
+    }
+    writer.setSerializeNulls(false).setSerializeEmptys(true);
+    writer.beginObject();
+    writeMessage(head, repeatedField, writer);
+    writer.name(repeatedField.getName());
+    writer.beginArray();
+  }
+
+  public static void writeStreamElement(Descriptors.FieldDescriptor repeatedField, Message element, JsonWriter writer) {
+    writeFieldValue(repeatedField, element, writer);
+  }
+
+  public static void endStream(JsonWriter writer) {
+    writer.endArray();
+    writer.endObject();
+  }
+
   private static void writeMessage(Message message, JsonWriter writer) {
+    writeMessage(message, null, writer);
+  }
+
+  private static void writeMessage(Message message, @Nullable Descriptors.FieldDescriptor excludedField, JsonWriter writer) {
     MessageType type = MessageType.of(message);
     for (Descriptors.FieldDescriptor fieldDescriptor : type.fieldDescriptors) {
+      if (fieldDescriptor.equals(excludedField)) {
+        continue;
+      }
       if (fieldDescriptor.isRepeated()) {
         writer.name(fieldDescriptor.getName());
         if (fieldDescriptor.isMapField()) {
-          writeMap((Collection<MapEntry>) message.getField(fieldDescriptor), writer);
+          writeMap(type.mapValueDescriptors.get(fieldDescriptor), (Collection<MapEntry>) message.getField(fieldDescriptor), writer);
         } else {
           writeArray(writer, fieldDescriptor, (Collection) message.getField(fieldDescriptor));
         }
@@ -193,12 +244,11 @@ public class ProtobufJsonFormat {
     writer.endArray();
   }
 
-  private static void writeMap(Collection<MapEntry> mapEntries, JsonWriter writer) {
+  private static void writeMap(Descriptors.FieldDescriptor valueDescriptor, Collection<MapEntry> mapEntries, JsonWriter writer) {
     writer.beginObject();
     for (MapEntry mapEntry : mapEntries) {
       // Key fields are always double-quoted in json
       writer.name(mapEntry.getKey().toString());
-      Descriptors.FieldDescriptor valueDescriptor = mapEntry.getDescriptorForType().findFieldByName("value");
       writeFieldValue(valueDescriptor, mapEntry.getValue(), writer);
     }
     writer.endObject();
@@ -237,7 +287,7 @@ public class ProtobufJsonFormat {
     if (messageType.doesWrapRepeated) {
       Descriptors.FieldDescriptor repeatedDescriptor = messageType.fieldDescriptors[0];
       if (repeatedDescriptor.isMapField()) {
-        writeMap((Collection<MapEntry>) message.getField(repeatedDescriptor), writer);
+        writeMap(messageType.mapValueDescriptors.get(repeatedDescriptor), (Collection<MapEntry>) message.getField(repeatedDescriptor), writer);
       } else {
         writeArray(writer, repeatedDescriptor, (Collection) message.getField(repeatedDescriptor));
       }
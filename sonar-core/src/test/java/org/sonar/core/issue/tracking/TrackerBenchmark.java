@@ -0,0 +1,177 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Tracking of a single file with many issues. The raw issues are the base issues with some lines inserted
+ * before them, some messages changed, some issues removed and some issues added. Run with the method
+ * {@link #main(String[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrackerBenchmark {
+
+  private static final int RULES = 20;
+
+  @Param({"100", "1000", "10000"})
+  private int issues;
+
+  private final Tracker<FakeIssue, FakeIssue> tracker = new Tracker<>();
+  private FakeInput rawInput;
+  private FakeInput baseInput;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42L);
+    int lines = issues / 2;
+    List<String> baseHashes = new ArrayList<>();
+    for (int i = 0; i < lines; i++) {
+      baseHashes.add("h" + i);
+    }
+    // 10 lines inserted at the beginning of the file
+    List<String> rawHashes = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      rawHashes.add("new" + i);
+    }
+    rawHashes.addAll(baseHashes);
+
+    baseInput = new FakeInput(baseHashes);
+    rawInput = new FakeInput(rawHashes);
+    for (int i = 0; i < issues; i++) {
+      int line = 1 + random.nextInt(lines);
+      RuleKey ruleKey = RuleKey.of("squid", "S" + random.nextInt(RULES));
+      String message = "Message of issue " + random.nextInt(issues);
+      baseInput.add(new FakeIssue(line, baseHashes.get(line - 1), ruleKey, message));
+      int dice = random.nextInt(10);
+      if (dice == 0) {
+        // issue is fixed
+        continue;
+      }
+      if (dice == 1) {
+        message = "Changed message " + i;
+      }
+      rawInput.add(new FakeIssue(line + 10, rawHashes.get(line + 9), ruleKey, message));
+    }
+    for (int i = 0; i < issues / 10; i++) {
+      int line = 1 + random.nextInt(rawHashes.size());
+      rawInput.add(new FakeIssue(line, rawHashes.get(line - 1), RuleKey.of("squid", "S" + random.nextInt(RULES)), "New issue " + i));
+    }
+  }
+
+  @Benchmark
+  public Tracking<FakeIssue, FakeIssue> track() {
+    return tracker.track(rawInput, baseInput);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(TrackerBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+
+  private static class FakeIssue implements Trackable {
+    private final Integer line;
+    private final String lineHash;
+    private final RuleKey ruleKey;
+    private final String message;
+
+    private FakeIssue(Integer line, String lineHash, RuleKey ruleKey, String message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.ruleKey = ruleKey;
+      this.message = message;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return ruleKey;
+    }
+  }
+
+  private static class FakeInput implements Input<FakeIssue> {
+    private final List<FakeIssue> issues = new ArrayList<>();
+    private final LineHashSequence lineHashes;
+    private final BlockHashSequence blockHashes;
+
+    private FakeInput(List<String> lineHashes) {
+      this.lineHashes = new LineHashSequence(lineHashes);
+      this.blockHashes = new BlockHashSequence(this.lineHashes, 5);
+    }
+
+    private void add(FakeIssue issue) {
+      issues.add(issue);
+    }
+
+    @Override
+    public LineHashSequence getLineHashSequence() {
+      return lineHashes;
+    }
+
+    @Override
+    public BlockHashSequence getBlockHashSequence() {
+      return blockHashes;
+    }
+
+    @Override
+    public Collection<FakeIssue> getIssues() {
+      return issues;
+    }
+  }
+}
@@ -76,6 +76,35 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw2)).isSameAs(base2);
   }
 
+  @Test
+  public void prefer_base_issue_with_same_message_when_several_are_on_same_line() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg1");
+    Issue base2 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg2");
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg2");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw)).isSameAs(base2);
+    assertThat(tracking.getUnmatchedBases()).containsOnly(base1);
+  }
+
+  @Test
+  public void match_base_issues_in_order_when_messages_differ() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue base1 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg1");
+    Issue base2 = baseInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg2");
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg3");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg4");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(base1);
+    assertThat(tracking.baseFor(raw2)).isSameAs(base2);
+  }
+
   /**
    * SONAR-2928
    */
@@ -53,6 +53,17 @@ public class ProgressLoggerTest {
     assertThat(hasInfoLog("43 rows processed")).isTrue();
   }
 
+  @Test
+  public void log_details() {
+    ProgressLogger progress = new ProgressLogger("ProgressLoggerTest", new AtomicLong(42L), Loggers.get(getClass()))
+      .setPluralLabel("documents")
+      .setDetails(() -> "3 retries");
+
+    progress.log();
+
+    assertThat(hasInfoLog("42 documents processed (0 items/sec) - 3 retries")).isTrue();
+  }
+
   @Test
   public void create() {
     ProgressLogger progress = ProgressLogger.create(getClass(), new AtomicLong());
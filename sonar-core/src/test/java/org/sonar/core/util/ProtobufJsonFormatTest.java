@@ -20,6 +20,7 @@
 package org.sonar.core.util;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
 import java.io.StringWriter;
 import org.junit.Rule;
 import org.junit.Test;
@@ -210,6 +211,46 @@ public class ProtobufJsonFormatTest {
     assertThat(toJson(msg.build())).isEqualTo("{\"catalogs\":{\"numbers\":{\"one\":\"un\",\"two\":\"deux\"}}}");
   }
 
+  @Test
+  public void stream_elements_of_repeated_field() {
+    TestArray head = TestArray.newBuilder().addStrings("one").addStrings("two").build();
+    Descriptors.FieldDescriptor nesteds = TestArray.getDescriptor().findFieldByNumber(TestArray.NESTEDS_FIELD_NUMBER);
+    StringWriter json = new StringWriter();
+
+    try (JsonWriter writer = JsonWriter.of(json)) {
+      ProtobufJsonFormat.beginStream(head, nesteds, writer);
+      ProtobufJsonFormat.writeStreamElement(nesteds, NestedMsg.newBuilder().setLabel("nestedOne").build(), writer);
+      ProtobufJsonFormat.writeStreamElement(nesteds, NestedMsg.newBuilder().setLabel("nestedTwo").build(), writer);
+      ProtobufJsonFormat.endStream(writer);
+    }
+
+    assertThat(json.toString())
+      .isEqualTo("{\"strings\":[\"one\",\"two\"],\"nesteds\":[{\"label\":\"nestedOne\"},{\"label\":\"nestedTwo\"}]}");
+  }
+
+  @Test
+  public void stream_empty_repeated_field() {
+    Descriptors.FieldDescriptor nesteds = TestArray.getDescriptor().findFieldByNumber(TestArray.NESTEDS_FIELD_NUMBER);
+    StringWriter json = new StringWriter();
+
+    try (JsonWriter writer = JsonWriter.of(json)) {
+      ProtobufJsonFormat.beginStream(TestArray.getDefaultInstance(), nesteds, writer);
+      ProtobufJsonFormat.endStream(writer);
+    }
+
+    assertThat(json.toString()).isEqualTo("{\"strings\":[],\"nesteds\":[]}");
+  }
+
+  @Test
+  public void fail_to_stream_field_which_is_not_repeated() {
+    Descriptors.FieldDescriptor label = NestedMsg.getDescriptor().findFieldByNumber(NestedMsg.LABEL_FIELD_NUMBER);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Field 'NestedMsg.label' is not a repeated field of messages of NestedMsg");
+
+    ProtobufJsonFormat.beginStream(NestedMsg.getDefaultInstance(), label, JsonWriter.of(new StringWriter()));
+  }
+
   @Test
   public void constructor_is_private() throws Exception {
     assertThat(TestUtils.hasOnlyPrivateConstructors(ProtobufJsonFormat.class)).isTrue();
@@ -139,6 +139,7 @@ public class DuplicationsCollector extends Search.Collector {
    */
   private void filter(CloneGroup current) {
     for (CloneGroup earlier : filtered) {
+      Search.checkNotInterrupted();
       if (containsIn(current, earlier)) {
         return;
       }
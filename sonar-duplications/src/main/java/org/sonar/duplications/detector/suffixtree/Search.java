@@ -101,12 +101,23 @@ public final class Search {
    */
   private void visitInnerNodes() {
     for (Node node : innerNodes) {
+      checkNotInterrupted();
       if (containsOrigin(node)) {
         report(node);
       }
     }
   }
 
+  /**
+   * Search can be very long on files with a lot of duplications, so it stops as soon as
+   * the detection is cancelled.
+   */
+  static void checkNotInterrupted() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new IllegalStateException("Detection of duplications is interrupted");
+    }
+  }
+
   /**
    * TODO Godin: in fact computations here are the same as in {@link #report(Node)},
    * so maybe would be better to remove this duplication,
@@ -44,6 +44,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Queries do not modify the index once it is sorted, so they can be executed concurrently after a first query
+ * (for example {@link #iterator()}) has been executed, as long as no block is inserted anymore.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -70,8 +74,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -100,24 +102,27 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    // binary search without sentinel, so that concurrent queries do not write into the index
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
 
+    Block.Builder blockBuilder = Block.builder();
     List<Block> result = new ArrayList<>();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
-      result.add(getBlock(realIndex, resourceId));
-
-      index++;
-      realIndex = resourceIdsIndex[index];
+    for (int index = lower; index < size && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0; index++) {
+      result.add(createBlock(blockBuilder, resourceIdsIndex[index], resourceId, null));
     }
     return result;
   }
 
-  private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
+  private Block createBlock(Block.Builder blockBuilder, int index, String resourceId, @Nullable ByteArray byteHash) {
     int offset = index * blockInts;
     ByteArray blockHash;
 
@@ -147,11 +152,8 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
       .build();
   }
 
-  private Block getBlock(int index, String resourceId) {
-    return createBlock(index, resourceId, null);
-  }
-
   private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private final Block.Builder blockBuilder = Block.builder();
     private int index = 0;
 
     @Override
@@ -170,7 +172,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
       // while we are at the same resource, keep going
       do {
-        blocks.add(getBlock(resourceIdsIndex[index], resourceId));
+        blocks.add(createBlock(blockBuilder, resourceIdsIndex[index], resourceId, null));
         index++;
       } while (hasNext() && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0);
 
@@ -217,24 +219,28 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    // binary search without sentinel, so that concurrent queries do not write into the index
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
 
+    Block.Builder blockBuilder = Block.builder();
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    for (int index = lower; index < size && compareHash(index, hash) == 0; index++) {
       // extract block (note that there is no need to extract hash)
-      String resourceId = resourceIds[index];
-      result.add(createBlock(index, resourceId, sequenceHash));
-      index++;
+      result.add(createBlock(blockBuilder, index, resourceIds[index], sequenceHash));
     }
     return result;
   }
@@ -323,6 +329,16 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     return false;
   }
 
+  private int compareHash(int i, int[] hash) {
+    int i2 = i * blockInts;
+    for (int k = 0; k < hashInts; k++, i2++) {
+      if (blockData[i2] != hash[k]) {
+        return blockData[i2] < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
   private final DataUtils.Sortable byBlockHash = new DataUtils.Sortable() {
     @Override
     public void swap(int i, int j) {
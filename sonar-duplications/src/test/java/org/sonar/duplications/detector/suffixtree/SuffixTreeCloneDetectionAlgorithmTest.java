@@ -73,6 +73,22 @@ public class SuffixTreeCloneDetectionAlgorithmTest extends DetectorTestCase {
     assertEquals(1, result.size());
   }
 
+  /**
+   * Given: interrupted thread, for example on timeout
+   * Expected: detection is stopped
+   */
+  @Test(expected = IllegalStateException.class)
+  public void stopWhenInterrupted() {
+    CloneIndex index = createIndex();
+    Block[] fileBlocks = newBlocks("x", "a 2 b 2 c 2 2 2");
+    Thread.currentThread().interrupt();
+    try {
+      detect(index, fileBlocks);
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
   /**
    * Given:
    * <pre>
@@ -28,6 +28,10 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -110,6 +114,28 @@ public class PackedMemoryCloneIndexTest {
     
   }
 
+  @Test
+  public void concurrent_queries_return_same_results_as_sequential_ones() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("r" + (i % 10), i % 100));
+    }
+    assertThat(index.noResources()).isEqualTo(10);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        long hash = i;
+        futures.add(executor.submit(() -> index.getBySequenceHash(new ByteArray(hash)).size() + index.getByResourceId("r" + (hash % 10)).size()));
+      }
+      for (Future<Integer> future : futures) {
+        assertThat(future.get()).isEqualTo(10 + 100);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
@@ -25,6 +25,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -117,6 +118,16 @@ public class Notification implements Serializable {
     return fields.get(field);
   }
 
+  /**
+   * Returns the values of all the fields, by field name.
+   *
+   * @return an unmodifiable view of the fields
+   * @since 6.4
+   */
+  public Map<String, String> getFieldValues() {
+    return Collections.unmodifiableMap(fields);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof Notification)) {
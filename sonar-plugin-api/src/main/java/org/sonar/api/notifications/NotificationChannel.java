@@ -19,6 +19,7 @@
  */
 package org.sonar.api.notifications;
 
+import java.util.Collection;
 import org.sonar.api.ExtensionPoint;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.server.ServerSide;
@@ -58,6 +59,21 @@ public abstract class NotificationChannel {
    */
   public abstract void deliver(Notification notification, String userlogin);
 
+  /**
+   * Implements the delivery of several notifications to the given user. Channels can override this method
+   * to send a digest of the notifications instead of delivering them one by one, which is what
+   * the default implementation does.
+   *
+   * @param notifications the notifications to deliver, in the order they were sent
+   * @param userlogin the login of the user who should receive the notifications
+   * @since 6.4
+   */
+  public void deliver(Collection<Notification> notifications, String userlogin) {
+    for (Notification notification : notifications) {
+      deliver(notification, userlogin);
+    }
+  }
+
   @Override
   public String toString() {
     return getKey();
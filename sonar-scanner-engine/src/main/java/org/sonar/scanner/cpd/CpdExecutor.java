@@ -22,15 +22,22 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -63,6 +70,9 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60 * 1000;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+  // number of files waiting to be saved, per thread
+  private static final int PENDING_FILES_PER_THREAD = 4;
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
@@ -84,50 +94,104 @@ public class CpdExecutor {
     execute(TIMEOUT);
   }
 
+  /**
+   * Detection is executed concurrently on files, but duplications are saved in the order of the index,
+   * so that the report does not depend on the scheduling of threads.
+   */
   @VisibleForTesting
   void execute(long timeout) {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    LOG.debug("Detection of duplications with {} threads", threads);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CPD %d").setDaemon(true).build());
+    ScheduledExecutorService timeoutService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("CPD timeout").setDaemon(true).build());
     try {
+      Deque<FileDetection> pending = new ArrayDeque<>();
       Iterator<ResourceBlocks> it = index.iterator();
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
-        count++;
+        FileDetection detection = submit(executorService, timeoutService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        if (detection == null) {
+          count++;
+        } else {
+          pending.add(detection);
+        }
+        if (pending.size() >= threads * PENDING_FILES_PER_THREAD) {
+          save(pending.remove());
+        }
+      }
+      while (!pending.isEmpty()) {
+        save(pending.remove());
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
+      timeoutService.shutdownNow();
     }
   }
 
   @VisibleForTesting
-  void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return threads;
+  }
+
+  /**
+   * Starts the detection of duplications of a file. The timeout applies from the start of the detection, not
+   * from the submission of the file.
+   *
+   * @return {@code null} if the file is not in the component store
+   */
+  @CheckForNull
+  @VisibleForTesting
+  FileDetection submit(ExecutorService executorService, ScheduledExecutorService timeoutService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component;
-    LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
+    FutureTask<List<CloneGroup>> task = new FutureTask<>(() -> {
+      LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    });
+    executorService.execute(() -> {
+      ScheduledFuture<?> timeoutFuture = timeoutService.schedule(() -> task.cancel(true), timeout, TimeUnit.MILLISECONDS);
+      try {
+        task.run();
+      } finally {
+        timeoutFuture.cancel(false);
+      }
+    });
+    return new FileDetection(component, task);
+  }
+
+  private void save(FileDetection detection) {
+    DefaultInputComponent component = detection.component;
+    InputFile inputFile = (InputFile) component;
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
+    count++;
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
-    } catch (TimeoutException e) {
+      duplications = detection.task.get();
+    } catch (CancellationException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
       return;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during detection of duplication for " + inputFile.absolutePath(), e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e.getCause());
     }
 
     List<CloneGroup> filtered;
@@ -141,6 +205,16 @@ public class CpdExecutor {
     saveDuplications(component, filtered);
   }
 
+  static class FileDetection {
+    private final DefaultInputComponent component;
+    private final Future<List<CloneGroup>> task;
+
+    private FileDetection(DefaultInputComponent component, Future<List<CloneGroup>> task) {
+      this.component = component;
+      this.task = task;
+    }
+  }
+
   @VisibleForTesting
   /**
    * Not applicable to Java, as the {@link BlockChunker} that it uses does not record start and end units of each block. 
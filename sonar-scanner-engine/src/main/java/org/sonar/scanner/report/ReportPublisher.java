@@ -148,8 +148,12 @@ public class ReportPublisher implements Startable {
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
       startTime = System.currentTimeMillis();
+      // data of components are packed into a single file, instead of zipping thousands of small files
+      File packedDir = temp.newDir("batch-report-packed");
+      writer.pack(packedDir);
       File reportZip = temp.newFile("batch-report", ".zip");
-      ZipUtils.zipDir(reportDir, reportZip);
+      ZipUtils.zipDir(packedDir, reportZip);
+      deleteQuietly(packedDir);
       stopTime = System.currentTimeMillis();
       LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
       return reportZip;
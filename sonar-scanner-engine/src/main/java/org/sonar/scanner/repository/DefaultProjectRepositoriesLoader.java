@@ -22,15 +22,24 @@ package org.sonar.scanner.repository;
 import com.google.common.base.Throwables;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.MessageException;
+import org.sonar.home.cache.FileCache;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.WsBatch;
@@ -41,21 +50,32 @@ import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsResponse;
 
+/**
+ * Loads the project repositories from the server. The file data of the last response are kept on disk, in the
+ * user cache, so that the next analysis of the project only downloads the files updated since then.
+ */
 public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoader {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultProjectRepositoriesLoader.class);
   private static final String BATCH_PROJECT_URL = "/batch/project.protobuf";
+  private static final String CACHE_DIR = "_projects";
   private ScannerWsClient wsClient;
+  private FileCache fileCache;
 
-  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient) {
+  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient, FileCache fileCache) {
     this.wsClient = wsClient;
+    this.fileCache = fileCache;
   }
 
   @Override
   public ProjectRepositories load(String projectKey, boolean issuesMode) {
-    GetRequest request = new GetRequest(getUrl(projectKey, issuesMode));
+    File cacheFile = cacheFile(projectKey);
+    WsProjectResponse cached = readCache(cacheFile);
+    GetRequest request = new GetRequest(getUrl(projectKey, issuesMode, cached == null ? null : cached.getVersion()));
     try (WsResponse response = wsClient.call(request)) {
       InputStream is = response.contentStream();
-      return processStream(is, projectKey);
+      WsProjectResponse projectResponse = merge(cached, parse(is, projectKey));
+      writeCache(cacheFile, projectResponse);
+      return toProjectRepositories(projectResponse);
     } catch (RuntimeException e) {
       if (shouldThrow(e)) {
         throw e;
@@ -66,7 +86,7 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     }
   }
 
-  private static String getUrl(String projectKey, boolean issuesMode) {
+  private static String getUrl(String projectKey, boolean issuesMode, @Nullable String version) {
     StringBuilder builder = new StringBuilder();
 
     builder.append(BATCH_PROJECT_URL)
@@ -74,6 +94,9 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     if (issuesMode) {
       builder.append("&issues_mode=true");
     }
+    if (version != null) {
+      builder.append("&version=").append(ScannerUtils.encodeForUrl(version));
+    }
     return builder.toString();
   }
 
@@ -91,33 +114,98 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     return false;
   }
 
-  private static ProjectRepositories processStream(InputStream is, String projectKey) {
+  private static WsProjectResponse parse(InputStream is, String projectKey) {
     try {
-      WsProjectResponse response = WsProjectResponse.parseFrom(is);
+      return WsProjectResponse.parseFrom(is);
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  /**
+   * An incremental response contains only the files updated since the version sent by the request, which is the
+   * one of the cached file data. Files which are not part of the project anymore are kept, as they are never
+   * looked up.
+   */
+  private static WsProjectResponse merge(@Nullable WsProjectResponse cached, WsProjectResponse response) {
+    if (!response.getIncremental() || cached == null) {
+      return response;
+    }
+    WsProjectResponse.Builder merged = response.toBuilder().setIncremental(false);
+    Map<String, FileDataByPath> fileDataByModuleAndPath = merged.getMutableFileDataByModuleAndPath();
+    for (Map.Entry<String, FileDataByPath> cachedModule : cached.getFileDataByModuleAndPath().entrySet()) {
+      FileDataByPath.Builder module = cachedModule.getValue().toBuilder();
+      FileDataByPath updated = fileDataByModuleAndPath.get(cachedModule.getKey());
+      if (updated != null) {
+        module.getMutableFileDataByPath().putAll(updated.getFileDataByPath());
+      }
+      fileDataByModuleAndPath.put(cachedModule.getKey(), module.build());
+    }
+    return merged.build();
+  }
+
+  private File cacheFile(String projectKey) {
+    String key = DigestUtils.sha1Hex(wsClient.baseUrl() + "|" + projectKey);
+    return new File(new File(fileCache.getDir(), CACHE_DIR), key + ".protobuf");
+  }
 
-      Table<String, String, FileData> fileDataTable = HashBasedTable.create();
-      Table<String, String, String> settings = HashBasedTable.create();
+  @CheckForNull
+  private static WsProjectResponse readCache(File cacheFile) {
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try (InputStream is = Files.newInputStream(cacheFile.toPath())) {
+      WsProjectResponse cached = WsProjectResponse.parseFrom(is);
+      return cached.hasVersion() ? cached : null;
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Fail to read local copy of project repository {} - ignoring it", cacheFile, e);
+      return null;
+    }
+  }
 
-      Map<String, Settings> settingsByModule = response.getSettingsByModule();
-      for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
-        for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
-          settings.put(e1.getKey(), e2.getKey(), e2.getValue());
-        }
+  /**
+   * Only the file data are kept, settings are always loaded from server as they depend on the permissions of the user.
+   * The file is written then moved, so that concurrent analyses never read a partial copy.
+   */
+  private static void writeCache(File cacheFile, WsProjectResponse response) {
+    if (!response.hasVersion()) {
+      return;
+    }
+    WsProjectResponse.Builder copy = WsProjectResponse.newBuilder().setVersion(response.getVersion());
+    copy.getMutableFileDataByModuleAndPath().putAll(response.getFileDataByModuleAndPath());
+    try {
+      Path dir = Files.createDirectories(cacheFile.getParentFile().toPath());
+      Path tmp = Files.createTempFile(dir, cacheFile.getName(), ".tmp");
+      try (OutputStream os = Files.newOutputStream(tmp)) {
+        copy.build().writeTo(os);
       }
+      Files.move(tmp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Fail to write local copy of project repository {}", cacheFile, e);
+    }
+  }
+
+  private static ProjectRepositories toProjectRepositories(WsProjectResponse response) {
+    Table<String, String, FileData> fileDataTable = HashBasedTable.create();
+    Table<String, String, String> settings = HashBasedTable.create();
 
-      Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
-      for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
-        for (Map.Entry<String, WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
-          FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
-          fileDataTable.put(e1.getKey(), e2.getKey(), fd);
-        }
+    Map<String, Settings> settingsByModule = response.getSettingsByModule();
+    for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
+      for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
+        settings.put(e1.getKey(), e2.getKey(), e2.getValue());
       }
+    }
 
-      return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
-    } catch (IOException e) {
-      throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
-    } finally {
-      IOUtils.closeQuietly(is);
+    Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
+    for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
+      for (Map.Entry<String, WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
+        FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
+        fileDataTable.put(e1.getKey(), e2.getKey(), fd);
+      }
     }
+
+    return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Storage which keeps its values in heap as long as they are less than a maximum number, then moves
+ * them to a disk-based storage. Small projects do not pay the cost of serialization, while the
+ * heap used by large projects is bounded.
+ */
+class AdaptiveStorage<V> implements Storage<V> {
+
+  private static final Logger LOG = Loggers.get(AdaptiveStorage.class);
+
+  private final String name;
+  private final int maxHeapEntries;
+  private final Supplier<Storage<V>> diskStorageFactory;
+  private HeapStorage<V> heapStorage = new HeapStorage<>();
+  private Storage<V> delegate = heapStorage;
+
+  AdaptiveStorage(String name, int maxHeapEntries, Supplier<Storage<V>> diskStorageFactory) {
+    this.name = name;
+    this.maxHeapEntries = maxHeapEntries;
+    this.diskStorageFactory = diskStorageFactory;
+  }
+
+  boolean isOnDisk() {
+    return heapStorage == null;
+  }
+
+  @Override
+  public Storage<V> put(Object[] key, V value) {
+    delegate.put(key, value);
+    if (heapStorage != null && heapStorage.size() > maxHeapEntries) {
+      moveToDisk();
+    }
+    return this;
+  }
+
+  private void moveToDisk() {
+    LOG.debug("Storage '{}' exceeds {} entries in memory, moving it to disk", name, maxHeapEntries);
+    Storage<V> diskStorage = diskStorageFactory.get();
+    for (Entry<V> entry : heapStorage.entries()) {
+      diskStorage.put(entry.key(), entry.value());
+    }
+    delegate = diskStorage;
+    heapStorage = null;
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object[] key) {
+    return delegate.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return delegate.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return delegate.remove(key);
+  }
+
+  @Override
+  public Storage<V> clear(Object[] key) {
+    delegate.clear(key);
+    return this;
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    return delegate.keySet(prefix);
+  }
+
+  /**
+   * The storage which is traversed is the one in use when {@link Iterable#iterator()} is called.
+   */
+  @Override
+  public Iterable<V> values(Object[] prefix) {
+    Object[] copy = prefix.clone();
+    return () -> delegate.values(copy).iterator();
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries(Object[] prefix) {
+    Object[] copy = prefix.clone();
+    return () -> delegate.entries(copy).iterator();
+  }
+}
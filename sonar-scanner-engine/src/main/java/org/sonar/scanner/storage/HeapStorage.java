@@ -0,0 +1,335 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static java.lang.String.format;
+
+/**
+ * Storage of values in heap, as a tree with one level per part of keys. Parts are looked up by hash, while
+ * the children of a node are sorted only when they are traversed: by natural order, null first, then
+ * numbers before strings, as in {@link PersistitStorage}. Values are not copied, so they must not be
+ * modified once stored.
+ * <p>
+ * As with {@link PersistitStorage}, the storage can be modified while its values are traversed.
+ * </p>
+ */
+class HeapStorage<V> implements Storage<V> {
+
+  // marker of nodes without value, as null values are supported
+  private static final Object ABSENT = new Object();
+
+  private Node root = new Node();
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  @Override
+  public Storage<V> put(Object[] key, @Nullable V value) {
+    Node node = root;
+    for (Object part : key) {
+      node = node.getOrCreateChild(part);
+    }
+    if (node.value == ABSENT) {
+      size++;
+    }
+    node.value = value;
+    return this;
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object[] key) {
+    Node node = find(key);
+    return node == null || node.value == ABSENT ? null : cast(node.value);
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    Node node = find(key);
+    return node != null && node.value != ABSENT;
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    Node node = find(key);
+    if (node == null || node.value == ABSENT) {
+      return false;
+    }
+    node.value = ABSENT;
+    size--;
+    prune(key);
+    return true;
+  }
+
+  @Override
+  public Storage<V> clear(Object[] key) {
+    if (key.length == 0) {
+      clear();
+      return this;
+    }
+    Node node = find(key);
+    if (node != null) {
+      size -= node.countValues();
+      node.value = ABSENT;
+      node.children = null;
+      prune(key);
+    }
+    return this;
+  }
+
+  @Override
+  public void clear() {
+    root = new Node();
+    size = 0;
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    Node node = find(prefix);
+    if (node == null || node.children == null) {
+      return new LinkedHashSet<>();
+    }
+    return new LinkedHashSet<>(Arrays.asList(node.sortedChildKeys()));
+  }
+
+  @Override
+  public Iterable<V> values(Object[] prefix) {
+    Object[] copy = prefix.clone();
+    return () -> new DescendantIterator<V>(copy) {
+      @Override
+      V toElement(Object[] key, @Nullable Object value) {
+        return cast(value);
+      }
+    };
+  }
+
+  @Override
+  public Iterable<Entry<V>> entries(Object[] prefix) {
+    Object[] copy = prefix.clone();
+    return () -> new DescendantIterator<Entry<V>>(copy) {
+      @Override
+      Entry<V> toElement(Object[] key, @Nullable Object value) {
+        return new Entry<>(key, cast(value));
+      }
+    };
+  }
+
+  @CheckForNull
+  private Node find(Object[] key) {
+    Node node = root;
+    for (int i = 0; i < key.length && node != null; i++) {
+      node = node.children == null ? null : node.children.get(key[i]);
+    }
+    return node;
+  }
+
+  /**
+   * Removes the nodes of the path of {@code key} which have neither value nor children
+   */
+  private void prune(Object[] key) {
+    Node[] path = new Node[key.length + 1];
+    path[0] = root;
+    for (int i = 0; i < key.length; i++) {
+      path[i + 1] = path[i].children.get(key[i]);
+    }
+    for (int i = key.length; i > 0 && path[i].isEmpty(); i--) {
+      path[i - 1].removeChild(key[i - 1]);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @CheckForNull
+  private V cast(@Nullable Object value) {
+    return (V) value;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static int comparePart(@Nullable Object a, @Nullable Object b) {
+    if (a == b) {
+      return 0;
+    }
+    if (a == null) {
+      return -1;
+    }
+    if (b == null) {
+      return 1;
+    }
+    if (a.getClass() != b.getClass()) {
+      int c = Integer.compare(typeOrder(a), typeOrder(b));
+      return c != 0 ? c : a.getClass().getName().compareTo(b.getClass().getName());
+    }
+    if (!(a instanceof Comparable)) {
+      throw new IllegalArgumentException(format("Part of key is not comparable: %s", a.getClass().getName()));
+    }
+    return ((Comparable) a).compareTo(b);
+  }
+
+  private static int typeOrder(Object part) {
+    if (part instanceof Number) {
+      return 0;
+    }
+    if (part instanceof String) {
+      return 1;
+    }
+    return 2;
+  }
+
+  private static final class Node {
+    private Object value = ABSENT;
+    private Map<Object, Node> children;
+    // keys of children in order, null if not computed since last addition or removal of a child
+    private Object[] sortedChildKeys;
+
+    private Node getOrCreateChild(@Nullable Object part) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      Node child = children.get(part);
+      if (child == null) {
+        child = new Node();
+        children.put(part, child);
+        sortedChildKeys = null;
+      }
+      return child;
+    }
+
+    private void removeChild(@Nullable Object part) {
+      children.remove(part);
+      sortedChildKeys = null;
+    }
+
+    private boolean isEmpty() {
+      return value == ABSENT && (children == null || children.isEmpty());
+    }
+
+    private Object[] sortedChildKeys() {
+      if (sortedChildKeys == null) {
+        Object[] keys = children.keySet().toArray();
+        Arrays.sort(keys, HeapStorage::comparePart);
+        sortedChildKeys = keys;
+      }
+      return sortedChildKeys;
+    }
+
+    private int countValues() {
+      int count = value == ABSENT ? 0 : 1;
+      if (children != null) {
+        for (Node child : children.values()) {
+          count += child.countValues();
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Depth-first traversal of the nodes below a prefix, a node being visited before its children. Children
+   * are looked up by key when they are visited, so that the changes of the storage do not break
+   * the traversal.
+   */
+  private abstract class DescendantIterator<T> implements Iterator<T> {
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final Object[] prefix;
+    private Object[] nextKey;
+    private Object nextValue;
+
+    DescendantIterator(Object[] prefix) {
+      this.prefix = prefix;
+      Node node = find(prefix);
+      if (node != null) {
+        stack.push(new Frame(node));
+      }
+    }
+
+    abstract T toElement(Object[] key, @Nullable Object value);
+
+    @Override
+    public boolean hasNext() {
+      while (nextKey == null && !stack.isEmpty()) {
+        Frame frame = stack.peek();
+        Object[] childKeys = frame.node.children == null ? new Object[0] : frame.node.sortedChildKeys();
+        if (frame.index >= childKeys.length) {
+          stack.pop();
+          continue;
+        }
+        Object part = childKeys[frame.index];
+        frame.index++;
+        Node child = frame.node.children.get(part);
+        if (child != null) {
+          Frame childFrame = new Frame(child);
+          childFrame.part = part;
+          stack.push(childFrame);
+          if (child.value != ABSENT) {
+            nextKey = currentKey();
+            nextValue = child.value;
+          }
+        }
+      }
+      return nextKey != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T element = toElement(nextKey, nextValue);
+      nextKey = null;
+      nextValue = null;
+      return element;
+    }
+
+    private Object[] currentKey() {
+      Object[] key = Arrays.copyOf(prefix, prefix.length + stack.size() - 1);
+      int i = key.length - 1;
+      for (Frame frame : stack) {
+        if (i >= prefix.length) {
+          key[i] = frame.part;
+          i--;
+        }
+      }
+      return key;
+    }
+  }
+
+  private static final class Frame {
+    private final Node node;
+    private Object part;
+    private int index = 0;
+
+    private Frame(Node node) {
+      this.node = node;
+    }
+  }
+}
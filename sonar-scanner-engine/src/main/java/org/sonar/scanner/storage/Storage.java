@@ -19,465 +19,183 @@
  */
 package org.sonar.scanner.storage;
 
-import com.google.common.collect.Sets;
-import com.persistit.Exchange;
-import com.persistit.Key;
-import com.persistit.KeyFilter;
-import com.persistit.exception.PersistitException;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
 import java.util.Set;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
+ * Sorted key-value storage of the scanner, where a key is composed of one or more parts. Keys are
+ * ordered part by part, so that all the entries whose key starts with the same parts can be
+ * traversed in order, removed or listed.
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * Storages are created by {@link Storages}. They are not thread-safe.
  * </p>
  */
-public class Storage<V> {
+public interface Storage<V> {
 
-  private final String name;
-  private final Exchange exchange;
+  Storage<V> put(Object[] key, V value);
 
-  Storage(String name, Exchange exchange) {
-    this.name = name;
-    this.exchange = exchange;
+  default Storage<V> put(Object key, V value) {
+    return put(new Object[] {key}, value);
   }
 
-  public Storage<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+  default Storage<V> put(Object firstKey, Object secondKey, V value) {
+    return put(new Object[] {firstKey, secondKey}, value);
   }
 
-  public Storage<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
-  }
-
-  public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
-  }
-
-  public Storage<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
-  }
-
-  private Storage<V> doPut(V value) {
-    try {
-      exchange.getValue().put(value);
-      exchange.store();
-      return this;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
-    }
+  default Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+    return put(new Object[] {firstKey, secondKey, thirdKey}, value);
   }
 
   /**
    * Returns the value object associated with keys, or null if not found.
    */
-  public V get(Object key) {
-    resetKey(key);
-    return doGet();
-  }
+  @CheckForNull
+  V get(Object[] key);
 
   /**
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+  default V get(Object key) {
+    return get(new Object[] {key});
   }
 
   /**
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+  default V get(Object firstKey, Object secondKey) {
+    return get(new Object[] {firstKey, secondKey});
   }
 
   /**
    * Returns the value object associated with keys, or null if not found.
    */
   @CheckForNull
-  public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+  default V get(Object firstKey, Object secondKey, Object thirdKey) {
+    return get(new Object[] {firstKey, secondKey, thirdKey});
   }
 
-  @SuppressWarnings("unchecked")
-  @CheckForNull
-  private V doGet() {
-    try {
-      exchange.fetch();
-      if (!exchange.getValue().isDefined()) {
-        return null;
-      }
-      return (V) exchange.getValue().get();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to get element from cache " + name, e);
-    }
-  }
+  boolean containsKey(Object[] key);
 
-  public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+  default boolean containsKey(Object key) {
+    return containsKey(new Object[] {key});
   }
 
-  public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+  default boolean containsKey(Object firstKey, Object secondKey) {
+    return containsKey(new Object[] {firstKey, secondKey});
   }
 
-  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+  default boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+    return containsKey(new Object[] {firstKey, secondKey, thirdKey});
   }
 
-  public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
-  }
-
-  private boolean doContainsKey() {
-    try {
-      exchange.fetch();
-      return exchange.isValueDefined();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to check if element is in cache " + name, e);
-    }
-  }
-
-  public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
-  }
-
-  public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
-  }
+  /**
+   * Removes the value associated with keys, but not the values of longer keys starting with them.
+   *
+   * @return true if a value was removed
+   */
+  boolean remove(Object[] key);
 
-  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+  default boolean remove(Object key) {
+    return remove(new Object[] {key});
   }
 
-  public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+  default boolean remove(Object firstKey, Object secondKey) {
+    return remove(new Object[] {firstKey, secondKey});
   }
 
-  private boolean doRemove() {
-    try {
-      return exchange.remove();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to get element from cache " + name, e);
-    }
+  default boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+    return remove(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   /**
-   * Removes everything in the specified group.
-   *
-   * @param group The group name.
+   * Removes the value associated with keys and the values of all the longer keys starting with them.
    */
-  public Storage<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
-  }
+  Storage<V> clear(Object[] key);
 
-  public Storage<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+  default Storage<V> clear(Object key) {
+    return clear(new Object[] {key});
   }
 
-  public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+  default Storage<V> clear(Object firstKey, Object secondKey) {
+    return clear(new Object[] {firstKey, secondKey});
   }
 
-  public Storage<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
-  }
-
-  private Storage<V> doClear() {
-    try {
-      Key to = new Key(exchange.getKey());
-      to.append(Key.AFTER);
-      exchange.removeKeyRange(exchange.getKey(), to);
-      return this;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear values from cache " + name, e);
-    }
+  default Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
+    return clear(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   /**
-   * Clears the default as well as all group caches.
+   * Removes all the values.
    */
-  public void clear() {
-    try {
-      exchange.clear();
-      exchange.removeAll();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear cache", e);
-    }
-  }
+  void clear();
 
   /**
-   * Returns the set of cache keys associated with this group.
-   * TODO implement a lazy-loading equivalent with Iterator/Iterable
-   *
-   * @param group The group.
-   * @return The set of cache keys for this group.
+   * Returns the distinct parts following {@code prefix} in the keys starting with {@code prefix}.
+   * For example the keys (a, b, c) and (a, d) give b and d for prefix (a).
    */
+  Set<Object> keySet(Object[] prefix);
+
   @SuppressWarnings("rawtypes")
-  public Set keySet(Object key) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+  default Set keySet(Object key) {
+    return keySet(new Object[] {key});
   }
 
   @SuppressWarnings("rawtypes")
-  public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+  default Set keySet(Object firstKey, Object secondKey) {
+    return keySet(new Object[] {firstKey, secondKey});
   }
 
   /**
-   * Returns the set of keys associated with this cache.
-   *
-   * @return The set containing the keys for this cache.
+   * Returns the distinct first parts of keys.
    */
-  public Set<Object> keySet() {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+  default Set<Object> keySet() {
+    return keySet(new Object[0]);
   }
 
+  /**
+   * Lazy-loading values of the keys longer than {@code prefix} and starting with it, in the order of keys.
+   * Each call to {@link Iterable#iterator()} traverses the current values of the storage.
+   */
+  Iterable<V> values(Object[] prefix);
+
   /**
    * Lazy-loading values for given keys
    */
-  public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+  default Iterable<V> values(Object firstKey, Object secondKey) {
+    return values(new Object[] {firstKey, secondKey});
   }
 
   /**
    * Lazy-loading values for a given key
    */
-  public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+  default Iterable<V> values(Object firstKey) {
+    return values(new Object[] {firstKey});
   }
 
   /**
    * Lazy-loading values
    */
-  public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
-  }
-
-  public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
-  }
-
-  public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
-  }
-
-  private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
+  default Iterable<V> values() {
+    return values(new Object[0]);
   }
 
-  private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
-  }
-
-  private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
-  }
-
-  private void resetKey(Object[] keys) {
-    exchange.clear();
-    for (Object o : keys) {
-      exchange.append(o);
-    }
-  }
-
-  //
-  // LAZY ITERATORS AND ITERABLES
-  //
-
-  private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<>(iteratorExchange, filter);
-    }
-  }
-
-  private static class ValueIterator<T> implements Iterator<T> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public T next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        return (T) exchange.getValue().get();
-      }
-      throw new NoSuchElementException();
-    }
+  /**
+   * Same as {@link #values(Object[])}, with the keys of values.
+   */
+  Iterable<Entry<V>> entries(Object[] prefix);
 
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
-    }
+  default Iterable<Entry<V>> entries() {
+    return entries(new Object[0]);
   }
 
-  private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<>(iteratorExchange, filter);
-    }
+  default Iterable<Entry<V>> entries(Object firstKey) {
+    return entries(new Object[] {firstKey});
   }
 
-  private static class EntryIterator<T> implements Iterator<Entry<T>> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Entry<T> next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        T value = (T) exchange.getValue().get();
-        Key key = exchange.getKey();
-        Object[] array = new Object[key.getDepth()];
-        for (int i = 0; i < key.getDepth(); i++) {
-          array[i] = key.indexTo(i - key.getDepth()).decode();
-        }
-        return new Entry<>(array, value);
-      }
-      throw new NoSuchElementException();
-    }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
-    }
-  }
-
-  public static class Entry<V> {
+  class Entry<V> {
     private final Object[] key;
     private final V value;
 
@@ -499,5 +217,4 @@ public class Storage<V> {
       return ToStringBuilder.reflectionToString(this);
     }
   }
-
 }
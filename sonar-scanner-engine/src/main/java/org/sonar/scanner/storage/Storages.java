@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.storage;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.persistit.Exchange;
 import com.persistit.Persistit;
@@ -27,24 +28,65 @@ import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.scanner.bootstrap.GlobalProperties;
+
+import static java.lang.String.format;
 
+/**
+ * Creates the storages of the project analysis. A storage keeps its values in heap until it reaches a maximum
+ * number of entries (see {@link #MAX_HEAP_ENTRIES_PROPERTY}), then it is moved to a Persistit temporary volume,
+ * so that small projects avoid serialization while large projects have bounded heap. Values stored in
+ * Persistit are serialized by the {@link ValueCoder} of their type, if any.
+ */
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
+
+  /**
+   * Maximum number of entries of each storage kept in heap. Zero or negative value to always store
+   * on disk.
+   */
+  public static final String MAX_HEAP_ENTRIES_PROPERTY = "sonar.scanner.storage.maxHeapEntries";
+  static final int DEFAULT_MAX_HEAP_ENTRIES = 50_000;
+
+  private final Set<String> cacheNames = new HashSet<>();
+  private final List<Exchange> exchanges = new ArrayList<>();
+  private final int maxHeapEntries;
   private Persistit persistit;
   private Volume volume;
 
+  public Storages(StoragesManager storagesManager, GlobalProperties globalProperties) {
+    this(storagesManager, maxHeapEntries(globalProperties));
+  }
+
   public Storages(StoragesManager storagesManager) {
+    this(storagesManager, DEFAULT_MAX_HEAP_ENTRIES);
+  }
+
+  @VisibleForTesting
+  Storages(StoragesManager storagesManager, int maxHeapEntries) {
+    this.maxHeapEntries = maxHeapEntries;
     persistit = storagesManager.persistit();
     doStart();
   }
 
+  private static int maxHeapEntries(GlobalProperties globalProperties) {
+    String value = globalProperties.property(MAX_HEAP_ENTRIES_PROPERTY);
+    if (value == null) {
+      return DEFAULT_MAX_HEAP_ENTRIES;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException(format("Value of property %s is not an integer: %s", MAX_HEAP_ENTRIES_PROPERTY, value), e);
+    }
+  }
+
   @Override
   public void start() {
     // done in constructor
@@ -66,13 +108,20 @@ public class Storages implements Startable {
 
   public <V> Storage<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
-    Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
+    Preconditions.checkState(cacheNames.add(cacheName), "Cache is already created: %s", cacheName);
+    if (maxHeapEntries <= 0) {
+      return createPersistitStorage(cacheName);
+    }
+    return new AdaptiveStorage<>(cacheName, maxHeapEntries, () -> createPersistitStorage(cacheName));
+  }
+
+  private <V> Storage<V> createPersistitStorage(String cacheName) {
+    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
+      exchanges.add(exchange);
+      return new PersistitStorage<>(cacheName, exchange);
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
     }
@@ -80,11 +129,12 @@ public class Storages implements Startable {
 
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (Exchange exchange : exchanges) {
+      persistit.releaseExchange(exchange);
     }
 
-    cacheMap.clear();
+    exchanges.clear();
+    cacheNames.clear();
 
     if (volume != null) {
       try {
@@ -208,11 +208,44 @@ public class CpdExecutorTest {
 
   @Test
   public void failOnMissingComponent() {
-    executor.runCpdAnalysis(null, "unknown", Collections.emptyList(), 1);
+    assertThat(executor.submit(null, null, "unknown", Collections.emptyList(), 1)).isNull();
     readDuplications(0);
     assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Resource not found in component store: unknown. Skipping CPD computation for it");
   }
 
+  @Test
+  public void threadsByDefaultIsNumberOfProcessors() {
+    assertThat(executor.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "3");
+    assertThat(executor.getThreads()).isEqualTo(3);
+  }
+
+  @Test
+  public void detectDuplicationsOfAllFiles() {
+    DefaultInputFile[] components = {batchComponent1, batchComponent2, batchComponent3};
+    for (DefaultInputFile component : components) {
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 3; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j * 100, j * 100 + 99)
+          .setBlockHash(new ByteArray(("hash000" + j).getBytes()))
+          .build());
+      }
+      index.insert((InputFile) component, blocks);
+    }
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "2");
+
+    executor.execute(10_000L);
+
+    for (DefaultInputFile component : components) {
+      assertThat(reader.readComponentDuplications(component.batchId())).hasSize(1);
+    }
+  }
+
   @Test
   public void timeout() {
     for (int i = 1; i <= 2; i++) {
@@ -22,16 +22,22 @@ package org.sonar.scanner.repository;
 import com.google.common.io.Resources;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.MessageException;
 import org.sonar.scanner.WsTestUtil;
+import org.sonar.home.cache.FileCache;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.bootstrap.Slf4jLogger;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
+import org.sonarqube.ws.WsBatch.WsProjectResponse.FileDataByPath;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsRequest;
 
@@ -44,16 +50,20 @@ public class DefaultProjectRepositoriesLoaderTest {
   private final static String PROJECT_KEY = "foo?";
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
 
   private DefaultProjectRepositoriesLoader loader;
   private ScannerWsClient wsClient;
+  private FileCache fileCache;
 
   @Before
   public void prepare() throws IOException {
     wsClient = mock(ScannerWsClient.class);
     InputStream is = mockData();
     WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", is);
-    loader = new DefaultProjectRepositoriesLoader(wsClient);
+    fileCache = FileCache.create(temp.newFolder(), new Slf4jLogger());
+    loader = new DefaultProjectRepositoriesLoader(wsClient, fileCache);
   }
 
   @Test
@@ -110,6 +120,58 @@ public class DefaultProjectRepositoriesLoaderTest {
     WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F");
   }
 
+  @Test
+  public void keepLocalCopyOfFileDataAndLoadOnlyUpdatedFiles() throws IOException {
+    WsProjectResponse.Builder full = WsProjectResponse.newBuilder().setVersion("ANALYSIS_1");
+    full.getMutableFileDataByModuleAndPath().put("foo?", fileDataByPath("src/A.java", "hashA1", "src/B.java", "hashB1"));
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(full.build()));
+    WsProjectResponse.Builder incremental = WsProjectResponse.newBuilder().setVersion("ANALYSIS_2").setIncremental(true);
+    incremental.getMutableFileDataByModuleAndPath().put("foo?", fileDataByPath("src/B.java", "hashB2"));
+    incremental.getMutableFileDataByModuleAndPath().put("bar", fileDataByPath("src/C.java", "hashC2"));
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&version=ANALYSIS_1", toStream(incremental.build()));
+
+    ProjectRepositories first = loader.load(PROJECT_KEY, false);
+    assertThat(first.fileData("foo?", "src/B.java").hash()).isEqualTo("hashB1");
+
+    ProjectRepositories second = loader.load(PROJECT_KEY, false);
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&version=ANALYSIS_1");
+    assertThat(second.fileData("foo?", "src/A.java").hash()).isEqualTo("hashA1");
+    assertThat(second.fileData("foo?", "src/B.java").hash()).isEqualTo("hashB2");
+    assertThat(second.fileData("bar", "src/C.java").hash()).isEqualTo("hashC2");
+  }
+
+  @Test
+  public void ignoreCorruptedLocalCopy() throws IOException {
+    WsProjectResponse.Builder first = WsProjectResponse.newBuilder().setVersion("ANALYSIS_1");
+    first.getMutableFileDataByModuleAndPath().put("foo?", fileDataByPath("src/A.java", "hashA1"));
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(first.build()));
+    loader.load(PROJECT_KEY, false);
+    File[] localCopies = new File(fileCache.getDir(), "_projects").listFiles();
+    assertThat(localCopies).hasSize(1);
+    FileUtils.write(localCopies[0], "corrupted");
+
+    WsProjectResponse.Builder second = WsProjectResponse.newBuilder().setVersion("ANALYSIS_2");
+    second.getMutableFileDataByModuleAndPath().put("foo?", fileDataByPath("src/A.java", "hashA2"));
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(second.build()));
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false);
+
+    assertThat(proj.fileData("foo?", "src/A.java").hash()).isEqualTo("hashA2");
+  }
+
+  private static FileDataByPath fileDataByPath(String... pathsAndHashes) {
+    FileDataByPath.Builder builder = FileDataByPath.newBuilder();
+    for (int i = 0; i < pathsAndHashes.length; i += 2) {
+      builder.getMutableFileDataByPath().put(pathsAndHashes[i], WsProjectResponse.FileData.newBuilder().setHash(pathsAndHashes[i + 1]).build());
+    }
+    return builder.build();
+  }
+
+  private static InputStream toStream(WsProjectResponse response) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    response.writeTo(os);
+    return new ByteArrayInputStream(os.toByteArray());
+  }
+
   private InputStream mockData() throws IOException {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     WsProjectResponse.Builder projectResponseBuilder = WsProjectResponse.newBuilder();
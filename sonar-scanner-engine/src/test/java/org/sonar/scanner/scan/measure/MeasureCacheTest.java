@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.scan.measure;
 
+import com.google.common.collect.ImmutableMap;
 import java.util.Iterator;
 import org.junit.Before;
 import org.junit.Rule;
@@ -27,8 +28,10 @@ import org.junit.rules.ExpectedException;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage.Entry;
+import org.sonar.scanner.storage.Storages;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -79,6 +82,7 @@ public class MeasureCacheTest extends AbstractCachesTest {
    */
   @Test
   public void should_add_measure_with_too_big_data_for_persistit_pre_patch() {
+    useDiskStorage();
     assertThat(measureCache.entries()).hasSize(0);
     assertThat(measureCache.byComponentKey(COMPONENT_KEY)).hasSize(0);
 
@@ -104,6 +108,7 @@ public class MeasureCacheTest extends AbstractCachesTest {
 
   @Test
   public void should_add_measure_with_too_big_data_for_persistit() {
+    useDiskStorage();
     assertThat(measureCache.entries()).hasSize(0);
     assertThat(measureCache.byComponentKey(COMPONENT_KEY)).hasSize(0);
 
@@ -159,4 +164,9 @@ public class MeasureCacheTest extends AbstractCachesTest {
     assertThat(measureCache.byComponentKey(dirKey).iterator().next()).isEqualTo(mDir);
   }
 
+  private void useDiskStorage() {
+    caches.stop();
+    caches = new Storages(cachesManager, new GlobalProperties(ImmutableMap.of(Storages.MAX_HEAP_ENTRIES_PROPERTY, "0")));
+    measureCache = new MeasureCache(caches, metricFinder);
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+
+/**
+ * Compares the storage in heap with the Persistit storage used for large projects. Keys are the ones
+ * of measures: component and metric. Run with the method {@link #main(String[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageBenchmark {
+
+  private static final int METRICS = 30;
+
+  @Param({"heap", "persistit"})
+  private String type;
+
+  @Param({"30000", "300000"})
+  private int entries;
+
+  private File dir;
+  private StoragesManager storagesManager;
+  private Storages storages;
+  private Storage<String> filled;
+  private int created = 0;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("storage-benchmark").toFile();
+    storagesManager = new StoragesManager(new DefaultTempFolder(dir, true));
+    storages = new Storages(storagesManager, "heap".equals(type) ? Integer.MAX_VALUE : 0);
+    filled = newStorage();
+    fill(filled);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    storages.stop();
+    storagesManager.stop();
+    FileUtils.deleteQuietly(dir);
+  }
+
+  @Benchmark
+  public void put() {
+    Storage<String> storage = newStorage();
+    fill(storage);
+    storage.clear();
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    for (int i = 0; i < entries; i++) {
+      blackhole.consume(filled.get(component(i), metric(i)));
+    }
+  }
+
+  @Benchmark
+  public void values_by_component(Blackhole blackhole) {
+    for (int c = 0; c < entries / METRICS; c++) {
+      for (String value : filled.values(component(c * METRICS))) {
+        blackhole.consume(value);
+      }
+    }
+  }
+
+  private Storage<String> newStorage() {
+    created++;
+    return storages.createCache("storage" + created);
+  }
+
+  private void fill(Storage<String> storage) {
+    for (int i = 0; i < entries; i++) {
+      storage.put(component(i), metric(i), "value of measure " + i);
+    }
+  }
+
+  private static String component(int i) {
+    return "org.sonarsource:project:src/main/java/org/sonar/File" + (i / METRICS) + ".java";
+  }
+
+  private static String metric(int i) {
+    return "metric" + (i % METRICS);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(StorageBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+}
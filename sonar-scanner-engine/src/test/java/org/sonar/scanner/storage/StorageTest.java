@@ -20,15 +20,40 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.collect.Iterables;
+import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage;
 import org.sonar.scanner.storage.Storage.Entry;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+@RunWith(Parameterized.class)
 public class StorageTest extends AbstractCachesTest {
 
+  private final int maxHeapEntries;
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Object[][] storages() {
+    return new Object[][] {
+      {"heap", 1_000},
+      {"disk", 0},
+      {"moved from heap to disk", 1}
+    };
+  }
+
+  public StorageTest(String name, int maxHeapEntries) {
+    this.maxHeapEntries = maxHeapEntries;
+  }
+
+  @Before
+  public void createStorages() {
+    caches.stop();
+    caches = new Storages(cachesManager, maxHeapEntries);
+  }
+
   @Test
   public void one_part_key() {
     Storage<String> cache = caches.createCache("capitals");
@@ -210,6 +235,31 @@ public class StorageTest extends AbstractCachesTest {
     assertThat(cache.values()).isEmpty();
   }
 
+  @Test
+  public void numbers_are_sorted_before_strings() {
+    Storage<String> cache = caches.createCache("numbers");
+    cache.put("b", "b");
+    cache.put(10, "ten");
+    cache.put("a", "a");
+    cache.put(2, "two");
+
+    assertThat(cache.values()).containsExactly("two", "ten", "a", "b");
+    assertThat(cache.keySet()).containsExactly(2, 10, "a", "b");
+  }
+
+  @Test
+  public void put_while_traversing_values() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+
+    for (String value : cache.values("europe")) {
+      cache.put("asia", value, value);
+    }
+
+    assertThat(cache.values("asia")).containsExactly("paris", "rome");
+  }
+
   @Test
   public void remove_versus_clear() {
     Storage<String> cache = caches.createCache("capitals");
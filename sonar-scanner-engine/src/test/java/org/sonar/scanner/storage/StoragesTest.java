@@ -19,10 +19,14 @@
  */
 package org.sonar.scanner.storage;
 
+import com.google.common.collect.ImmutableMap;
 import java.io.Serializable;
 
 import com.persistit.exception.PersistitException;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage;
 import org.sonar.scanner.storage.Storages;
@@ -31,6 +35,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 public class StoragesTest extends AbstractCachesTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Test
   public void should_create_cache() {
     Storage<Element> cache = caches.createCache("foo");
@@ -48,6 +56,39 @@ public class StoragesTest extends AbstractCachesTest {
     }
   }
 
+  @Test
+  public void storage_is_moved_to_disk_when_exceeding_max_heap_entries() {
+    caches.stop();
+    caches = new Storages(cachesManager, 2);
+    Storage<String> c = caches.createCache("foo");
+
+    c.put("a", "a").put("b", "b");
+    assertThat(((AdaptiveStorage<String>) c).isOnDisk()).isFalse();
+
+    c.put("c", "c");
+    assertThat(((AdaptiveStorage<String>) c).isOnDisk()).isTrue();
+    assertThat(c.values()).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  public void storages_are_on_disk_if_max_heap_entries_is_zero() {
+    caches.stop();
+    caches = new Storages(cachesManager, new GlobalProperties(ImmutableMap.of(Storages.MAX_HEAP_ENTRIES_PROPERTY, "0")));
+
+    assertThat(caches.createCache("foo")).isInstanceOf(PersistitStorage.class);
+  }
+
+  @Test
+  public void fail_if_max_heap_entries_is_not_an_integer() {
+    caches.stop();
+    caches = null;
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Value of property sonar.scanner.storage.maxHeapEntries is not an integer: foo");
+
+    new Storages(cachesManager, new GlobalProperties(ImmutableMap.of(Storages.MAX_HEAP_ENTRIES_PROPERTY, "foo")));
+  }
+
   @Test
   public void should_clean_resources() {
     Storage<String> c = caches.<String>createCache("test1");
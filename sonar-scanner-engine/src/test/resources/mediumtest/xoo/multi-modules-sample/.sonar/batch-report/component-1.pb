@@ -0,0 +1 @@
+2Sonar :: Integration Tests :: Multi-modules Sample :J1.0-SNAPSHOTR/com.sonarsource.it.samples:multi-modules-sample
\ No newline at end of file
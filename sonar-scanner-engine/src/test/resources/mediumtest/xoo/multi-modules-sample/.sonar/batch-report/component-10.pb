@@ -0,0 +1,2 @@
+
+8src/main/xoo/com/sonar/it/samples/modules/b1/HelloB1.xoo 2xooX
\ No newline at end of file
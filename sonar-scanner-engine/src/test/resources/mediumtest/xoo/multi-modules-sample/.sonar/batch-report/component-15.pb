@@ -0,0 +1 @@
+,src/main/xoo/com/sonar/it/samples/modules/a2 :
\ No newline at end of file
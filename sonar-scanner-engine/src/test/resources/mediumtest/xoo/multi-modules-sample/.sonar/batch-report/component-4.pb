@@ -0,0 +1 @@
+	module_a2Sub-module A2 :J1.0-SNAPSHOTRBcom.sonarsource.it.samples:multi-modules-sample:module_a:module_a2
\ No newline at end of file
@@ -0,0 +1 @@
+	module_b1Sub-module B1 :J1.0-SNAPSHOTRBcom.sonarsource.it.samples:multi-modules-sample:module_b:module_b1
\ No newline at end of file
@@ -0,0 +1 @@
+8src/main/xoo/com/sonar/it/samples/modules/b2/HelloB2.xoo 2xooX
\ No newline at end of file
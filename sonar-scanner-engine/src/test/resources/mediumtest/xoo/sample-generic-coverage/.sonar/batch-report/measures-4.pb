@@ -0,0 +1,5 @@
+$
+coverage_line_hits_data2	
+6=1;7=0
+lines_to_cover
+uncovered_lines
\ No newline at end of file
@@ -0,0 +1 @@
+Sample :J0.1-SNAPSHOTRsample
\ No newline at end of file
@@ -0,0 +1 @@
+xources/hello/HelloJava.xoo 2xooX
\ No newline at end of file
@@ -0,0 +1 @@
+xources/hello :
\ No newline at end of file
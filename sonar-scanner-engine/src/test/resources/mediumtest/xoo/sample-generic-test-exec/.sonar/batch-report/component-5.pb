@@ -0,0 +1 @@
+testx :
\ No newline at end of file
@@ -0,0 +1,3 @@
+ߞ4sample(:)
+xoo"
+	Sonar Way	Sonar Wayxoo #
\ No newline at end of file
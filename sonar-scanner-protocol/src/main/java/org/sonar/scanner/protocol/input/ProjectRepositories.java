@@ -38,6 +38,8 @@ public class ProjectRepositories {
   private Map<String, Map<String, String>> settingsByModule = new HashMap<>();
   private Map<String, Map<String, FileData>> fileDataByModuleAndPath = new HashMap<>();
   private Date lastAnalysisDate;
+  private String version;
+  private boolean incremental;
 
   public Map<String, String> settings(String moduleKey) {
     return settingsByModule.containsKey(moduleKey) ? settingsByModule.get(moduleKey) : Collections.<String, String>emptyMap();
@@ -105,6 +107,32 @@ public class ProjectRepositories {
     this.lastAnalysisDate = lastAnalysisDate;
   }
 
+  /**
+   * Uuid of the last analysis of the project, identifying the file data held by the batch
+   */
+  @CheckForNull
+  public String version() {
+    return version;
+  }
+
+  public ProjectRepositories setVersion(@Nullable String version) {
+    this.version = version;
+    return this;
+  }
+
+  /**
+   * When true, {@link #fileDataByModuleAndPath()} contains only the files updated since the version
+   * previously held by the batch.
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  public ProjectRepositories setIncremental(boolean incremental) {
+    this.incremental = incremental;
+    return this;
+  }
+
   public String toJson() {
     return GsonHelper.create().toJson(this);
   }
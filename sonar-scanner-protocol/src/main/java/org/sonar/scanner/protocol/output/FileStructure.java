@@ -20,6 +20,10 @@
 package org.sonar.scanner.protocol.output;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.CheckForNull;
 
 /**
  * Structure of files in the zipped report
@@ -75,6 +79,59 @@ public class FileStructure {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
 
+  /**
+   * References of the components which have a file in the domain
+   */
+  public List<Integer> componentRefs(Domain domain) {
+    List<Integer> refs = new ArrayList<>();
+    for (File file : listFiles()) {
+      Integer ref = componentRef(domain, file);
+      if (ref != null) {
+        refs.add(ref);
+      }
+    }
+    return refs;
+  }
+
+  /**
+   * Files of the report which do not belong to components, for example {@link #metadataFile()}
+   */
+  public List<File> nonComponentFiles() {
+    List<File> files = new ArrayList<>();
+    for (File file : listFiles()) {
+      if (file.isFile() && Arrays.stream(Domain.values()).allMatch(domain -> componentRef(domain, file) == null)) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  private File[] listFiles() {
+    File[] files = dir.listFiles();
+    return files == null ? new File[0] : files;
+  }
+
+  @CheckForNull
+  private static Integer componentRef(Domain domain, File file) {
+    String name = file.getName();
+    if (name.startsWith(domain.filePrefix) && name.endsWith(domain.fileSuffix)) {
+      String ref = name.substring(domain.filePrefix.length(), name.length() - domain.fileSuffix.length());
+      if (!ref.isEmpty() && ref.chars().allMatch(Character::isDigit)) {
+        return Integer.parseInt(ref);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Single file containing the data of all components, replacing the files returned by {@link #fileFor(Domain, int)}
+   *
+   * @see ReportSegments
+   */
+  public File segments() {
+    return new File(dir, "segments.dat");
+  }
+
   public File contextProperties() {
     return new File(dir, "context-props.pb");
   }
@@ -0,0 +1,259 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Data of all the components of the report packed into a single file, so that the report does not contain
+ * tens of thousands of small files to be zipped and then extracted. Each segment holds the content of one
+ * {@link FileStructure#fileFor(FileStructure.Domain, int)} and is compressed with LZ4 when it's worth it.
+ * Segments are appended, then the index is written at the end of file:
+ * <pre>
+ *   magic number | segments | index | offset of index (8 bytes) | magic number
+ *   index = number of segments | for each segment: domain, component ref, offset, stored size, raw size
+ * </pre>
+ * The file is read through memory mapping. Segments are not extracted, compressed ones are decompressed
+ * in memory when they are read.
+ */
+public final class ReportSegments {
+
+  private static final byte[] MAGIC = {'S', 'Q', 'R', 1};
+  private static final int TRAILER_SIZE = 8 + MAGIC.length;
+  private static final int MIN_SIZE_TO_COMPRESS = 64;
+  private static final int NOT_COMPRESSED = -1;
+  // a segment must fit into a region mapped at offset n * REGION_SIZE, whose size is at most Integer.MAX_VALUE
+  private static final long REGION_SIZE = 1L << 30;
+  private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+  private final File file;
+  private final long size;
+  private final Map<FileStructure.Domain, Map<Integer, Segment>> index;
+  private final MappedByteBuffer[] regions;
+
+  private ReportSegments(File file, long size, Map<FileStructure.Domain, Map<Integer, Segment>> index) {
+    this.file = file;
+    this.size = size;
+    this.index = index;
+    this.regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+  }
+
+  /**
+   * Packs the files of components of {@code fileStructure} into {@code target}, ordered by component so that
+   * the data of a component are close to each other.
+   */
+  public static void pack(FileStructure fileStructure, File target) {
+    List<Segment> segments = new ArrayList<>();
+    for (FileStructure.Domain domain : FileStructure.Domain.values()) {
+      for (int componentRef : fileStructure.componentRefs(domain)) {
+        segments.add(new Segment(domain, componentRef));
+      }
+    }
+    segments.sort((s1, s2) -> s1.componentRef == s2.componentRef ? s1.domain.compareTo(s2.domain) : Integer.compare(s1.componentRef, s2.componentRef));
+
+    LZ4Compressor compressor = LZ4.fastCompressor();
+    try (CountingOutputStream counting = new CountingOutputStream(Files.newOutputStream(target.toPath()));
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(counting))) {
+      output.write(MAGIC);
+      for (Segment segment : segments) {
+        File file = fileStructure.fileFor(segment.domain, segment.componentRef);
+        if (file.length() >= REGION_SIZE) {
+          throw new IllegalStateException("File of report is too big: " + file);
+        }
+        byte[] raw = Files.readAllBytes(file.toPath());
+        byte[] compressed = raw.length >= MIN_SIZE_TO_COMPRESS ? compressor.compress(raw) : null;
+        output.flush();
+        segment.offset = counting.getByteCount();
+        if (compressed != null && compressed.length < raw.length) {
+          segment.storedSize = compressed.length;
+          segment.rawSize = raw.length;
+          output.write(compressed);
+        } else {
+          segment.storedSize = raw.length;
+          segment.rawSize = NOT_COMPRESSED;
+          output.write(raw);
+        }
+      }
+      output.flush();
+      long indexOffset = counting.getByteCount();
+      writeIndex(segments, output);
+      output.writeLong(indexOffset);
+      output.write(MAGIC);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to pack report into " + target, e);
+    }
+  }
+
+  private static void writeIndex(List<Segment> segments, DataOutputStream output) throws IOException {
+    output.writeInt(segments.size());
+    for (Segment segment : segments) {
+      output.writeUTF(segment.domain.name());
+      output.writeInt(segment.componentRef);
+      output.writeLong(segment.offset);
+      output.writeInt(segment.storedSize);
+      output.writeInt(segment.rawSize);
+    }
+  }
+
+  public static ReportSegments open(File file) {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      long size = randomAccessFile.length();
+      byte[] magic = new byte[MAGIC.length];
+      randomAccessFile.readFully(magic);
+      checkMagic(file, magic, size);
+      randomAccessFile.seek(size - TRAILER_SIZE);
+      long indexOffset = randomAccessFile.readLong();
+      randomAccessFile.readFully(magic);
+      checkMagic(file, magic, size);
+
+      randomAccessFile.seek(indexOffset);
+      DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(randomAccessFile.getChannel())));
+      Map<FileStructure.Domain, Map<Integer, Segment>> index = new EnumMap<>(FileStructure.Domain.class);
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        Segment segment = new Segment(FileStructure.Domain.valueOf(input.readUTF()), input.readInt());
+        segment.offset = input.readLong();
+        segment.storedSize = input.readInt();
+        segment.rawSize = input.readInt();
+        index.computeIfAbsent(segment.domain, d -> new HashMap<>()).put(segment.componentRef, segment);
+      }
+      return new ReportSegments(file, size, index);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read index of report " + file, e);
+    }
+  }
+
+  private static void checkMagic(File file, byte[] magic, long size) {
+    if (size < MAGIC.length + TRAILER_SIZE || !Arrays.equals(magic, MAGIC)) {
+      throw new IllegalStateException("File is not a packed report: " + file);
+    }
+  }
+
+  public boolean contains(FileStructure.Domain domain, int componentRef) {
+    return segment(domain, componentRef) != null;
+  }
+
+  /**
+   * Content of the file of component, as it was before being packed, or {@code null} if the component has no data
+   * in the domain.
+   */
+  @CheckForNull
+  public InputStream open(FileStructure.Domain domain, int componentRef) {
+    Segment segment = segment(domain, componentRef);
+    if (segment == null) {
+      return null;
+    }
+    ByteBuffer stored = region(segment.offset).duplicate();
+    int position = (int) (segment.offset % REGION_SIZE);
+    stored.position(position);
+    stored.limit(position + segment.storedSize);
+    if (segment.rawSize == NOT_COMPRESSED) {
+      return new ByteBufferInputStream(stored.slice());
+    }
+    ByteBuffer raw = ByteBuffer.allocate(segment.rawSize);
+    LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+    decompressor.decompress(stored, position, raw, 0, segment.rawSize);
+    return new ByteBufferInputStream(raw);
+  }
+
+  @CheckForNull
+  private Segment segment(FileStructure.Domain domain, int componentRef) {
+    Map<Integer, Segment> segmentsByRef = index.get(domain);
+    return segmentsByRef == null ? null : segmentsByRef.get(componentRef);
+  }
+
+  private synchronized MappedByteBuffer region(long offset) {
+    int i = (int) (offset / REGION_SIZE);
+    if (regions[i] == null) {
+      long start = i * REGION_SIZE;
+      // mapping is still valid after the channel is closed
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+        regions[i] = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start, Math.min(Integer.MAX_VALUE, size - start));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to map report " + file, e);
+      }
+    }
+    return regions[i];
+  }
+
+  private static final class Segment {
+    private final FileStructure.Domain domain;
+    private final int componentRef;
+    private long offset;
+    private int storedSize;
+    private int rawSize;
+
+    private Segment(FileStructure.Domain domain, int componentRef) {
+      this.domain = domain;
+      this.componentRef = componentRef;
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -19,16 +19,29 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads the report extracted into a directory. Data of components are read either from {@link FileStructure#segments()}
+ * or, for the reports which are not packed, from the files {@link FileStructure#fileFor(FileStructure.Domain, int)}.
+ */
 public class ScannerReportReader {
 
   private final FileStructure fileStructure;
+  // lazily opened, as the report may be written after creation of the reader
+  private volatile ReportSegments segments;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
@@ -51,115 +64,112 @@ public class ScannerReportReader {
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.MEASURES, componentRef, ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
+    InputStream input = openComponentData(FileStructure.Domain.CHANGESETS, componentRef);
+    if (input != null) {
+      return read(input, FileStructure.Domain.CHANGESETS, componentRef, ScannerReport.Changesets.parser());
     }
     return null;
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    InputStream input = openComponentData(FileStructure.Domain.COMPONENT, componentRef);
+    if (input == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return read(input, FileStructure.Domain.COMPONENT, componentRef, ScannerReport.Component.parser());
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.ISSUES, componentRef, ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.DUPLICATIONS, componentRef, ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.SYMBOLS, componentRef, ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.COVERAGES, fileRef, ScannerReport.LineCoverage.parser());
   }
 
+  /**
+   * File of the source, only for the reports which are not packed.
+   *
+   * @see #openFileSource(int)
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return componentFile(FileStructure.Domain.SOURCE, fileRef);
   }
 
+  /**
+   * Content of the source, encoded in UTF-8, or {@code null} if the file has no source in the report
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return openComponentData(FileStructure.Domain.SOURCE, fileRef);
+  }
+
+  /**
+   * File of the tests, only for the reports which are not packed.
+   *
+   * @see #openTests(int)
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return componentFile(FileStructure.Domain.TESTS, testFileRef);
+  }
 
-    return null;
+  /**
+   * Stream of {@link ScannerReport.Test} which are not delimited, or {@code null} if the file has no tests in the report
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return openComponentData(FileStructure.Domain.TESTS, testFileRef);
   }
 
+  /**
+   * File of the coverage details, only for the reports which are not packed.
+   *
+   * @see #openCoverageDetails(int)
+   */
   @CheckForNull
   public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return componentFile(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
 
-    return null;
+  /**
+   * Stream of {@link ScannerReport.CoverageDetail} which are not delimited, or {@code null} if the file has no
+   * coverage details in the report
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return openComponentData(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
   }
 
   public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
@@ -170,6 +180,74 @@ public class ScannerReportReader {
     return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
+  private <MSG extends Message> CloseableIterator<MSG> readComponentStream(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    InputStream input = openComponentData(domain, componentRef);
+    if (input != null) {
+      return Protobuf.readStream(input, parser);
+    }
+    return emptyCloseableIterator();
+  }
+
+  private <MSG extends Message> MSG read(InputStream input, FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    try {
+      return Protobuf.read(input, parser);
+    } catch (ContextException e) {
+      throw e.addContext("file", fileStructure.fileFor(domain, componentRef));
+    }
+  }
+
+  private boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    ReportSegments reportSegments = segments();
+    if (reportSegments != null) {
+      return reportSegments.contains(domain, componentRef);
+    }
+    return fileExists(fileStructure.fileFor(domain, componentRef));
+  }
+
+  @CheckForNull
+  private InputStream openComponentData(FileStructure.Domain domain, int componentRef) {
+    ReportSegments reportSegments = segments();
+    if (reportSegments != null) {
+      return reportSegments.open(domain, componentRef);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open file " + file, e);
+    }
+  }
+
+  @CheckForNull
+  private File componentFile(FileStructure.Domain domain, int componentRef) {
+    if (segments() != null) {
+      throw new IllegalStateException("Data of components are packed into " + fileStructure.segments());
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return file;
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private ReportSegments segments() {
+    ReportSegments result = segments;
+    if (result == null && fileExists(fileStructure.segments())) {
+      synchronized (this) {
+        result = segments;
+        if (result == null) {
+          result = ReportSegments.open(fileStructure.segments());
+          segments = result;
+        }
+      }
+    }
+    return result;
+  }
+
   private static boolean fileExists(File file) {
     return file.exists() && file.isFile();
   }
@@ -22,7 +22,9 @@ package org.sonar.scanner.protocol.output;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import org.apache.commons.io.FileUtils;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
@@ -140,6 +142,24 @@ public class ScannerReportWriter {
     return file;
   }
 
+  /**
+   * Copies the report to {@code targetDir}, with the data of all components packed into
+   * {@link FileStructure#segments()}. The target directory is the one to be submitted to server.
+   */
+  public File pack(File targetDir) {
+    try {
+      FileUtils.forceMkdir(targetDir);
+      for (File file : fileStructure.nonComponentFiles()) {
+        FileUtils.copyFileToDirectory(file, targetDir);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to copy report to " + targetDir, e);
+    }
+    File segments = new FileStructure(targetDir).segments();
+    ReportSegments.pack(fileStructure, segments);
+    return segments;
+  }
+
   public File getSourceFile(int componentRef) {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
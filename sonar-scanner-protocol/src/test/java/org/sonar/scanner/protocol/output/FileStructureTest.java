@@ -71,6 +71,21 @@ public class FileStructureTest {
     assertThat(structure.fileFor(FileStructure.Domain.ISSUES, 42)).doesNotExist();
   }
 
+  @Test
+  public void list_files_of_components() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.write(new File(dir, "metadata.pb"), "metadata content");
+    FileUtils.write(new File(dir, "issues-3.pb"), "issues of component 3");
+    FileUtils.write(new File(dir, "issues-42.pb"), "issues of component 42");
+    FileUtils.write(new File(dir, "component-42.pb"), "details of component 42");
+
+    FileStructure structure = new FileStructure(dir);
+    assertThat(structure.componentRefs(FileStructure.Domain.ISSUES)).containsOnly(3, 42);
+    assertThat(structure.componentRefs(FileStructure.Domain.COMPONENT)).containsOnly(42);
+    assertThat(structure.componentRefs(FileStructure.Domain.MEASURES)).isEmpty();
+    assertThat(structure.nonComponentFiles()).containsOnly(structure.metadataFile());
+  }
+
   @Test
   public void contextProperties_file() throws Exception {
     File dir = temp.newFolder();
@@ -0,0 +1,93 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.io.InputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportSegmentsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void pack_and_read_files_of_components() throws Exception {
+    File dir = temp.newFolder();
+    String bigContent = StringUtils.repeat("public class Foo {}\n", 1_000);
+    FileUtils.write(new File(dir, "source-3.txt"), bigContent, UTF_8);
+    FileUtils.write(new File(dir, "source-12.txt"), "small", UTF_8);
+    FileUtils.write(new File(dir, "issues-3.pb"), "issues of 3", UTF_8);
+    FileUtils.write(new File(dir, "component-3.pb"), "", UTF_8);
+    FileUtils.write(new File(dir, "metadata.pb"), "metadata", UTF_8);
+    File target = temp.newFile();
+
+    ReportSegments.pack(new FileStructure(dir), target);
+
+    // source of file 3 is compressed
+    assertThat(target.length()).isLessThan(bigContent.length() / 10);
+    ReportSegments underTest = ReportSegments.open(target);
+    assertThat(read(underTest, FileStructure.Domain.SOURCE, 3)).isEqualTo(bigContent);
+    assertThat(read(underTest, FileStructure.Domain.SOURCE, 12)).isEqualTo("small");
+    assertThat(read(underTest, FileStructure.Domain.ISSUES, 3)).isEqualTo("issues of 3");
+    assertThat(read(underTest, FileStructure.Domain.COMPONENT, 3)).isEmpty();
+    assertThat(underTest.contains(FileStructure.Domain.COMPONENT, 3)).isTrue();
+    assertThat(underTest.contains(FileStructure.Domain.COMPONENT, 12)).isFalse();
+    assertThat(underTest.open(FileStructure.Domain.ISSUES, 12)).isNull();
+    assertThat(underTest.open(FileStructure.Domain.MEASURES, 3)).isNull();
+  }
+
+  @Test
+  public void pack_empty_report() throws Exception {
+    File target = temp.newFile();
+
+    ReportSegments.pack(new FileStructure(temp.newFolder()), target);
+
+    assertThat(ReportSegments.open(target).contains(FileStructure.Domain.COMPONENT, 1)).isFalse();
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_a_packed_report() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a packed report, but long enough", UTF_8);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("File is not a packed report: " + file);
+
+    ReportSegments.open(file);
+  }
+
+  private static String read(ReportSegments segments, FileStructure.Domain domain, int componentRef) throws Exception {
+    try (InputStream input = segments.open(domain, componentRef)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
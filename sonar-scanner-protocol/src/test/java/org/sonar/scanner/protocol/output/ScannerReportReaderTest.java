@@ -28,6 +28,7 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
@@ -44,6 +45,8 @@ public class ScannerReportReaderTest {
 
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
 
   File dir;
 
@@ -377,4 +380,64 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_packed_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").setRootComponentRef(1).build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).addChildRef(2).build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(2).setPath("src/Foo.java").build());
+    writer.writeComponentIssues(2, asList(
+      ScannerReport.Issue.newBuilder().setMsg("first").build(),
+      ScannerReport.Issue.newBuilder().setMsg("second").build()));
+    try (FileOutputStream outputStream = new FileOutputStream(writer.getSourceFile(2))) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+    writer.writeTests(2, singletonList(ScannerReport.Test.newBuilder().setMsg("message").build()));
+    File packedDir = temp.newFolder();
+
+    writer.pack(packedDir);
+
+    assertThat(packedDir.list()).containsOnly("metadata.pb", "segments.dat");
+    ScannerReportReader packed = new ScannerReportReader(packedDir);
+    assertThat(packed.readMetadata().getProjectKey()).isEqualTo("PROJECT_A");
+    assertThat(packed.readComponent(1).getChildRefList()).containsExactly(2);
+    assertThat(packed.readComponent(2).getPath()).isEqualTo("src/Foo.java");
+    try (CloseableIterator<ScannerReport.Issue> issues = packed.readComponentIssues(2)) {
+      assertThat(Lists.newArrayList(issues)).extracting(ScannerReport.Issue::getMsg).containsExactly("first", "second");
+    }
+    assertThat(packed.readComponentIssues(1)).isEmpty();
+    assertThat(packed.readChangesets(2)).isNull();
+    assertThat(packed.hasCoverage(2)).isFalse();
+    try (InputStream inputStream = packed.openFileSource(2)) {
+      assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+    }
+    try (InputStream inputStream = packed.openTests(2)) {
+      assertThat(ScannerReport.Test.parser().parseDelimitedFrom(inputStream).getMsg()).isEqualTo("message");
+    }
+    assertThat(packed.openCoverageDetails(2)).isNull();
+  }
+
+  @Test
+  public void open_data_of_report_which_is_not_packed() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeTests(1, singletonList(ScannerReport.Test.newBuilder().setMsg("message").build()));
+
+    try (InputStream inputStream = underTest.openTests(1)) {
+      assertThat(ScannerReport.Test.parser().parseDelimitedFrom(inputStream).getMsg()).isEqualTo("message");
+    }
+    assertThat(underTest.openFileSource(1)).isNull();
+  }
+
+  @Test
+  public void fail_to_get_file_of_packed_report() throws Exception {
+    new ScannerReportWriter(dir).writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    File packedDir = temp.newFolder();
+    new ScannerReportWriter(dir).pack(packedDir);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Data of components are packed into");
+
+    new ScannerReportReader(packedDir).readFileSource(1);
+  }
 }
@@ -21,10 +21,14 @@ package org.sonarsource.sonarqube.perf.scanner.suite;
 
 import com.sonar.orchestrator.Orchestrator;
 import com.sonar.orchestrator.build.MavenBuild;
+import com.sonar.orchestrator.build.SonarScanner;
 import com.sonar.orchestrator.locator.FileLocation;
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Properties;
 import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -79,6 +83,60 @@ public class DuplicationTest extends PerfTestCase {
     assertThat(measure.get("duplicated_lines")).isGreaterThan(50000.0);
   }
 
+  /**
+   * Detection of duplications on 2'000 files sharing a lot of blocks, with one thread then with 4 threads
+   */
+  @Test
+  public void detectDuplicationsConcurrently() throws IOException {
+    File baseDir = prepareDuplicatedProject();
+
+    long sequential = computeDuplications(baseDir, 1);
+    long concurrent = computeDuplications(baseDir, 4);
+
+    System.out.printf("Test %s : %d ms with 1 thread, %d ms with 4 threads (speedup %.2f)\n", testName.getMethodName(), sequential, concurrent,
+      (double) sequential / concurrent);
+    assertDurationLessThan(collector, concurrent, sequential);
+  }
+
+  private long computeDuplications(File baseDir, int threads) throws IOException {
+    orchestrator.resetData();
+    String projectKey = "duplications" + threads;
+    SonarScanner scanner = SonarScanner.create()
+      .setProperties(
+        "sonar.projectKey", projectKey,
+        "sonar.projectName", projectKey,
+        "sonar.projectVersion", "1.0",
+        "sonar.sources", "src",
+        "sonar.scm.disabled", "true",
+        "sonar.xoo.useNewCpdTokenizerApi", "true",
+        "sonar.cpd.threads", String.valueOf(threads),
+        "sonar.showProfiling", "true")
+      .setEnvironmentVariable("SONAR_RUNNER_OPTS", "-Xmx1024m -server")
+      .setProjectDir(baseDir);
+    orchestrator.executeBuild(scanner);
+
+    Properties prof = readProfiling(baseDir, projectKey);
+    return Long.valueOf(prof.getProperty("Computing duplications"));
+  }
+
+  private File prepareDuplicatedProject() throws IOException {
+    File baseDir = temp.newFolder();
+    File srcDir = new File(baseDir, "src");
+    srcDir.mkdir();
+
+    int nbFiles = 2000;
+    for (int nb = 1; nb <= nbFiles; nb++) {
+      StringBuilder content = new StringBuilder();
+      for (int line = 1; line <= 500; line++) {
+        // blocks shared by groups of 20 files, then lines specific to the file
+        int group = line <= 400 ? nb % 100 : nb;
+        content.append("token").append(group).append(' ').append(line % 50).append(" x y z\n");
+      }
+      FileUtils.write(new File(srcDir, "sample" + nb + ".xoo"), content);
+    }
+    return baseDir;
+  }
+
   private Map<String, Double> getMeasures(String key) {
     return newWsClient().measures().component(new ComponentWsRequest()
       .setComponentKey(key)